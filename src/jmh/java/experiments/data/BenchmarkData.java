@@ -0,0 +1,78 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package experiments.data;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import tsml.data_containers.TimeSeriesInstances;
+
+import static experiments.data.DatasetLoading.BAKED_IN_MTSC_DATASETS;
+import static experiments.data.DatasetLoading.BAKED_IN_MTSC_DATA_PATH;
+import static experiments.data.DatasetLoading.BAKED_IN_TSC_DATA_PATH;
+
+/**
+ * Data for the JMH benchmarks. Each benchmark runs over the fold 0 train split of one of the baked in problems,
+ * optionally resized so cost can be measured against series length on realistic values: longer series repeat the
+ * original values end to end and shorter ones are truncated. A length of 0 keeps the problem's own length.
+ */
+public class BenchmarkData {
+
+    private BenchmarkData() {}
+
+    /**
+     * The problems benchmarks are run over, GunPoint (150 long), ItalyPowerDemand (24 long) and the multivariate
+     * BasicMotions (6 dimensions, 100 long).
+     */
+    public static final String[] DATASETS = {"GunPoint", "ItalyPowerDemand", "BasicMotions"};
+
+    /**
+     * Loads the fold 0 train split of a baked in problem.
+     *
+     * @param problem name of the problem
+     * @param seriesLength length to resize every series to, or 0 to leave them as they are
+     * @return the train data
+     */
+    public static TimeSeriesInstances loadTrain(String problem, int seriesLength) throws IOException {
+        final String path = Arrays.asList(BAKED_IN_MTSC_DATASETS).contains(problem) ? BAKED_IN_MTSC_DATA_PATH
+                : BAKED_IN_TSC_DATA_PATH;
+        final TimeSeriesInstances train = DatasetLoading.sampleTSDataset(path, problem, 0)[0];
+        return seriesLength > 0 ? resize(train, seriesLength) : train;
+    }
+
+    /**
+     * Resizes every dimension of every series to the given length, repeating or truncating the values.
+     *
+     * @param data the data
+     * @param seriesLength the new length
+     * @return a resized copy of the data
+     */
+    public static TimeSeriesInstances resize(TimeSeriesInstances data, int seriesLength) {
+        final double[][][] values = data.toValueArray();
+        for (double[][] inst : values) {
+            for (int d = 0; d < inst.length; d++) {
+                final double[] resized = new double[seriesLength];
+                for (int i = 0; i < seriesLength; i++) {
+                    resized[i] = inst[d][i % inst[d].length];
+                }
+                inst[d] = resized;
+            }
+        }
+        return new TimeSeriesInstances(values, data.getClassIndexes(), data.getClassLabels());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package machine_learning.classifiers;
+
+import java.util.concurrent.TimeUnit;
+
+import experiments.data.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tsml.data_containers.utilities.Converter;
+import tsml.transformers.ROCKET;
+import weka.core.Instances;
+
+/**
+ * Time for RidgeClassifierCV to build on the ROCKET transform of the train data, i.e. the 20,000 features of 10,000
+ * kernels by default. Repeating the train cases gives problems with as many cases as the gram based solution is used
+ * for in practice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class RidgeClassifierCVBenchmark {
+
+    @Param({"10000"})
+    public int numKernels;
+
+    @Param({"GunPoint", "ItalyPowerDemand", "BasicMotions"})
+    public String datasetName;
+
+    // 0 keeps the problem's own number of train cases
+    @Param({"0", "500", "1000"})
+    public int numInstances;
+
+    private Instances data;
+
+    @Setup
+    public void setup() throws Exception {
+        final ROCKET rocket = new ROCKET(numKernels);
+        rocket.setSeed(0);
+        final Instances train = Converter.toArff(rocket.fitTransform(BenchmarkData.loadTrain(datasetName, 0)));
+        data = new Instances(train, Math.max(numInstances, train.numInstances()));
+        for (int i = 0; i < Math.max(numInstances, train.numInstances()); i++) {
+            data.add(train.get(i % train.numInstances()));
+        }
+    }
+
+    @Benchmark
+    public RidgeClassifierCV build() throws Exception {
+        final RidgeClassifierCV ridge = new RidgeClassifierCV();
+        ridge.buildClassifier(data);
+        return ridge;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tsml.classifiers.dictionary_based;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import experiments.data.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tsml.classifiers.dictionary_based.IndividualTDE.Bag;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+
+/**
+ * Bag creation in IndividualTDE. trainBags builds the classifier, i.e. the breakpoints and a bag for every train case.
+ * testBag is the bag for a single unseen case, as made for every prediction, found through the private method used by
+ * classifyInstance. Multivariate problems use their first dimension, as IndividualTDE does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndividualTDEBenchmark {
+
+    @Param({"10", "20"})
+    public int windowSize;
+
+    @Param({"GunPoint", "ItalyPowerDemand", "BasicMotions"})
+    public String datasetName;
+
+    // 0 keeps the problem's own series length
+    @Param({"0", "128", "512"})
+    public int seriesLength;
+
+    private TimeSeriesInstances data;
+    private IndividualTDE tde;
+    private MethodHandle testBag;
+    private int next = 0;
+
+    private IndividualTDE newIndividualTDE() {
+        final IndividualTDE tde = new IndividualTDE(8, 4, windowSize, true, 2, false);
+        tde.setSeed(0);
+        return tde;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        data = BenchmarkData.loadTrain(datasetName, seriesLength);
+        tde = newIndividualTDE();
+        tde.buildClassifier(data);
+        final Method method = IndividualTDE.class.getDeclaredMethod("BOSSSpatialPyramidsTransform",
+                TimeSeriesInstance.class);
+        method.setAccessible(true);
+        testBag = MethodHandles.lookup().unreflect(method);
+    }
+
+    @Benchmark
+    public IndividualTDE trainBags() throws Exception {
+        final IndividualTDE tde = newIndividualTDE();
+        tde.buildClassifier(data);
+        return tde;
+    }
+
+    @Benchmark
+    public Bag testBag() throws Throwable {
+        final TimeSeriesInstance inst = data.get(next);
+        next = (next + 1) % data.numInstances();
+        return (Bag) testBag.invokeExact(tde, inst);
+    }
+}
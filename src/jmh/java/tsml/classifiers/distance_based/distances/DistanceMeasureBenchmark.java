@@ -0,0 +1,104 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.classifiers.distance_based.distances;
+
+import java.util.concurrent.TimeUnit;
+
+import experiments.data.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.classifiers.distance_based.distances.erp.ERPDistance;
+import tsml.classifiers.distance_based.distances.lcss.LCSSDistance;
+import tsml.classifiers.distance_based.distances.msm.MSMDistance;
+import tsml.classifiers.distance_based.distances.twed.TWEDistance;
+import tsml.classifiers.distance_based.distances.wdtw.WDTWDistance;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+
+/**
+ * Time for a single unbounded distance between two train cases, averaged over a fixed set of pairs. Every measure
+ * uses its default parameters, which for the windowed measures is a full window, i.e. the worst case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceMeasureBenchmark {
+
+    private static final int NUM_PAIRS = 16;
+
+    @Param({"DTW", "WDTW", "ERP", "LCSS", "MSM", "TWE"})
+    public String distanceMeasureName;
+
+    @Param({"GunPoint", "ItalyPowerDemand", "BasicMotions"})
+    public String datasetName;
+
+    // 0 keeps the problem's own series length
+    @Param({"0", "128", "512"})
+    public int seriesLength;
+
+    private DistanceMeasure distanceMeasure;
+    private final TimeSeriesInstance[] as = new TimeSeriesInstance[NUM_PAIRS];
+    private final TimeSeriesInstance[] bs = new TimeSeriesInstance[NUM_PAIRS];
+
+    public static DistanceMeasure newDistanceMeasure(String name) {
+        switch(name) {
+            case "DTW": return new DTWDistance();
+            case "WDTW": return new WDTWDistance();
+            case "ERP": return new ERPDistance();
+            case "LCSS": return new LCSSDistance();
+            case "MSM": return new MSMDistance();
+            case "TWE": return new TWEDistance();
+            default: throw new IllegalArgumentException("unknown distance measure: " + name);
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        final TimeSeriesInstances data = BenchmarkData.loadTrain(datasetName, seriesLength);
+        distanceMeasure = newDistanceMeasure(distanceMeasureName);
+        distanceMeasure.buildDistanceMeasure(data);
+        // pairs of neighbouring cases
+        for(int i = 0; i < NUM_PAIRS; i++) {
+            as[i] = data.get(i % data.numInstances());
+            bs[i] = data.get((i + 1) % data.numInstances());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_PAIRS)
+    public void distance(Blackhole blackhole) {
+        for(int i = 0; i < NUM_PAIRS; i++) {
+            blackhole.consume(distanceMeasure.distance(as[i], bs[i]));
+        }
+    }
+}
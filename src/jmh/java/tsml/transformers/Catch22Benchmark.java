@@ -0,0 +1,76 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tsml.transformers;
+
+import java.util.concurrent.TimeUnit;
+
+import experiments.data.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+
+/**
+ * Time for Catch22 to transform a single case, all dimensions of it, cycling through the train data.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class Catch22Benchmark {
+
+    @Param({"false", "true"})
+    public boolean outlierNormalise;
+
+    @Param({"GunPoint", "ItalyPowerDemand", "BasicMotions"})
+    public String datasetName;
+
+    // 0 keeps the problem's own series length
+    @Param({"0", "128", "512"})
+    public int seriesLength;
+
+    private Catch22 catch22;
+    private TimeSeriesInstances data;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        data = BenchmarkData.loadTrain(datasetName, seriesLength);
+        catch22 = new Catch22();
+        catch22.setOutlierNormalise(outlierNormalise);
+    }
+
+    @Benchmark
+    public TimeSeriesInstance transform() {
+        final TimeSeriesInstance inst = data.get(next);
+        next = (next + 1) % data.numInstances();
+        return catch22.transform(inst);
+    }
+}
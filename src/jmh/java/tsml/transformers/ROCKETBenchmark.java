@@ -0,0 +1,78 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tsml.transformers;
+
+import java.util.concurrent.TimeUnit;
+
+import experiments.data.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+
+/**
+ * Time for ROCKET to transform a single case, cycling through the train data. The kernels are fit once with a fixed
+ * seed so every run applies the same kernels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ROCKETBenchmark {
+
+    @Param({"10000"})
+    public int numKernels;
+
+    @Param({"GunPoint", "ItalyPowerDemand", "BasicMotions"})
+    public String datasetName;
+
+    // 0 keeps the problem's own series length
+    @Param({"0", "128", "512"})
+    public int seriesLength;
+
+    private ROCKET rocket;
+    private TimeSeriesInstances data;
+    private int next = 0;
+
+    @Setup
+    public void setup() throws Exception {
+        data = BenchmarkData.loadTrain(datasetName, seriesLength);
+        rocket = new ROCKET(numKernels);
+        rocket.setSeed(0);
+        rocket.fit(data);
+    }
+
+    @Benchmark
+    public TimeSeriesInstance transform() {
+        final TimeSeriesInstance inst = data.get(next);
+        next = (next + 1) % data.numInstances();
+        return rocket.transform(inst);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package tsml.transformers.shapelet_tools.distance_functions;
+
+import java.util.concurrent.TimeUnit;
+
+import experiments.data.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType;
+import weka.core.DenseInstance;
+
+/**
+ * Time for ShapeletDistance.calculate between one candidate and one series, averaged over a fixed set of candidate and
+ * series pairs. Series are laid out as ShapeletTransform sees them, the first dimension followed by the class value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ShapeletDistanceBenchmark {
+
+    private static final int NUM_PAIRS = 16;
+
+    @Param({"NORMAL", "ONLINE", "IMPROVED_ONLINE", "SLIDING"})
+    public DistanceType distanceType;
+
+    // candidate length as a proportion of the series length
+    @Param({"0.1", "0.5"})
+    public double shapeletProportion;
+
+    @Param({"GunPoint", "ItalyPowerDemand", "BasicMotions"})
+    public String datasetName;
+
+    // 0 keeps the problem's own series length
+    @Param({"0", "128", "512"})
+    public int seriesLength;
+
+    private final ShapeletDistance[] distances = new ShapeletDistance[NUM_PAIRS];
+    private final double[][] series = new double[NUM_PAIRS][];
+    private final int[] seriesIds = new int[NUM_PAIRS];
+
+    public static ShapeletDistance newShapeletDistance(DistanceType distanceType) {
+        switch (distanceType) {
+            case NORMAL: return new ShapeletDistance();
+            case ONLINE: return new OnlineShapeletDistance();
+            case IMPROVED_ONLINE: return new ImprovedOnlineShapeletDistance();
+            case SLIDING: return new SlidingShapeletDistance();
+            default: throw new IllegalArgumentException("unsupported distance type: " + distanceType);
+        }
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        final TimeSeriesInstances data = BenchmarkData.loadTrain(datasetName, seriesLength);
+        final int numCases = data.numInstances();
+        final int length = data.getMaxLength();
+        final int shapeletLength = Math.max(3, (int) (shapeletProportion * length));
+        for (int i = 0; i < NUM_PAIRS; i++) {
+            seriesIds[i] = (i + 1) % numCases;
+            series[i] = withClassValue(data, seriesIds[i]);
+            // candidates from a spread of cases and positions
+            final int start = (i * 7) % (length - shapeletLength + 1);
+            distances[i] = newShapeletDistance(distanceType);
+            distances[i].init(data);
+            distances[i].setSeries(i % numCases);
+            distances[i].setCandidate(new DenseInstance(1, withClassValue(data, i % numCases)), start, shapeletLength, 0);
+        }
+    }
+
+    private static double[] withClassValue(TimeSeriesInstances data, int index) {
+        final double[] values = data.get(index).get(0).toValueArray();
+        final double[] withClass = new double[values.length + 1];
+        System.arraycopy(values, 0, withClass, 0, values.length);
+        withClass[values.length] = data.get(index).getLabelIndex();
+        return withClass;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_PAIRS)
+    public void calculate(Blackhole blackhole) {
+        for (int i = 0; i < NUM_PAIRS; i++) {
+            blackhole.consume(distances[i].calculate(series[i], seriesIds[i]));
+        }
+    }
+}
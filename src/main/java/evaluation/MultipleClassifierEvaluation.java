@@ -202,6 +202,14 @@ public class MultipleClassifierEvaluation implements DebugPrinting {
         return this;
     }
     
+    /**
+     * the number of results files to read at once when loading, see ClassifierResultsCollection.enableMultiThreading
+     */
+    public MultipleClassifierEvaluation setNumLoadingThreads(int numThreads) {
+        resultsCollection.enableMultiThreading(numThreads);
+        return this;
+    }
+    
     /**
      * if true, will perform xmeans clustering on the classifierXdataset results, to find data-driven datasetgroupings, as well
      * as any extra dataset groupings you've defined.
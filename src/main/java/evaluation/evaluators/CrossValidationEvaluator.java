@@ -25,9 +25,9 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import utilities.ThreadingUtilities;
 import weka.classifiers.Classifier;
 import weka.core.Instances;
 
@@ -130,7 +130,7 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
                 futureResultsPerFold.get(i).add(null);
         }
         if (multiThread)
-            executor = Executors.newFixedThreadPool(numThreads);
+            executor = ThreadingUtilities.buildExecutorService(numThreads);
         
         //for each fold as test
         for(int fold = 0; fold < numFolds; fold++){
@@ -138,23 +138,14 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
             final Instances train = trainTest[0];
             final Instances test = trainTest[1];
             
-            String foldStr = "cvFold"+fold;
-            
             //for each classifier in ensemble
             for (int classifierIndex = 0; classifierIndex < classifiers.length; ++classifierIndex) {
                 
                 // get the classifier instance to be used this fold
                 final Classifier foldClassifier = cloneClassifiers ? foldClassifiers[classifierIndex][fold] : classifiers[classifierIndex];
-                final SingleTestSetEvaluator tester = new SingleTestSetEvaluator(seed, cloneData, setClassMissing);
+                final int testFold = fold;
                 
-                Callable<ClassifierResults> eval = () -> {
-                    long estimateTime = System.nanoTime();
-                    ClassifierResults res = tester.evaluate(foldClassifier, train, test);
-                    estimateTime = System.nanoTime() - estimateTime;
-                    res.setErrorEstimateTime(estimateTime);
-                    res.setDatasetName(res.getDatasetName()+"_"+foldStr);
-                    return res;
-                };
+                Callable<ClassifierResults> eval = () -> evaluateFold(foldClassifier, train, test, testFold);
                 
                 if (!multiThread) {
                     //compute the result now
@@ -197,8 +188,64 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
         return results;
     }
     
-    private ClassifierResults concatenateAndReorderFoldPredictions(ClassifierResults[] foldResults, String fullClassifierName, String fullDatasetName, double[] trueClassVals) throws Exception {
-        ClassifierResults res = new ClassifierResults(foldResults[0].numClasses());
+    private ClassifierResults evaluateFold(Classifier classifier, Instances train, Instances test, int fold) throws Exception {
+        final SingleTestSetEvaluator tester = new SingleTestSetEvaluator(seed, cloneData, setClassMissing);
+        long estimateTime = System.nanoTime();
+        ClassifierResults res = tester.evaluate(classifier, train, test);
+        estimateTime = System.nanoTime() - estimateTime;
+        res.setErrorEstimateTime(estimateTime);
+        res.setDatasetName(res.getDatasetName()+"_cvFold"+fold);
+        return res;
+    }
+    
+    /**
+     * Builds the classifier on all folds but one and predicts the held out fold, exactly as 
+     * crossValidateWithStats does for that fold. The folds must already have been built by 
+     * buildFolds(). This is not synchronized, so any number of classifiers and folds can be 
+     * evaluated concurrently against the same folds, e.g. by a tuner racing parameter sets
+     * 
+     * @return results for the held out fold, in the order of the fold
+     */
+    public ClassifierResults evaluateFold(Classifier classifier, int fold) throws Exception {
+        Instances[] trainTest = buildTrainTestSet(fold);
+        return evaluateFold(classifier, trainTest[0], trainTest[1], fold);
+    }
+    
+    /**
+     * Combines results from evaluateFold() into a single results object in the order of the 
+     * original dataset, as crossValidateWithStats would return. Folds that are null (not evaluated) 
+     * are left out, so the predictions cover only the instances of the evaluated folds, still in 
+     * their original relative order
+     * 
+     * @param foldResults [fold], null for folds not evaluated
+     */
+    public ClassifierResults combineFoldResults(ClassifierResults[] foldResults, String classifierName, Instances dataset) throws Exception {
+        return concatenateAndReorderFoldPredictions(foldResults, classifierName, dataset.relationName(), 
+                dataset.attributeToDoubleArray(dataset.classIndex()));
+    }
+    
+    private ClassifierResults concatenateAndReorderFoldPredictions(ClassifierResults[] foldResults, String fullClassifierName, String fullDatasetName, double[] allTrueClassVals) throws Exception {
+        //position of each original instance among the predictions kept, -1 if its fold was not evaluated
+        int[] positions = new int[allTrueClassVals.length];
+        Arrays.fill(positions, -1);
+        int numClasses = -1;
+        for (int fold = 0; fold < numFolds; fold++) {
+            if (foldResults[fold] == null)
+                continue;
+            numClasses = foldResults[fold].numClasses();
+            for (int i = 0; i < foldResults[fold].numInstances(); i++)
+                positions[getOriginalInstIndex(fold, i)] = 0;
+        }
+        int numKept = 0;
+        for (int i = 0; i < positions.length; i++)
+            if (positions[i] == 0)
+                positions[i] = numKept++;
+        double[] trueClassVals = new double[numKept];
+        for (int i = 0; i < positions.length; i++)
+            if (positions[i] >= 0)
+                trueClassVals[positions[i]] = allTrueClassVals[i];
+        
+        ClassifierResults res = new ClassifierResults(numClasses);
         res.setTimeUnit(TimeUnit.NANOSECONDS);
         res.setClassifierName(fullClassifierName);
         res.setDatasetName(fullDatasetName);
@@ -220,17 +267,19 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
 
             //has the preds in order predicted for this fold
             ClassifierResults foldRes = foldResults[fold];
+            if (foldRes == null)
+                continue;
             totalBuildTime += foldRes.getBuildTime();
             totalEstimateTime += foldRes.getErrorEstimateTime();
 
             for (int i = 0; i < foldRes.numInstances(); i++) {
                 //get them out as original order in train set
-                int originalIndex = getOriginalInstIndex(fold, i);
+                int index = positions[getOriginalInstIndex(fold, i)];
 
                 double[] dist = foldRes.getProbabilityDistribution(i);
-                dists[originalIndex] = dist;
-                times[originalIndex] = foldRes.getPredictionTime(i);
-                descs[originalIndex] = foldStr+foldRes.getPredDescription(i);
+                dists[index] = dist;
+                times[index] = foldRes.getPredictionTime(i);
+                descs[index] = foldStr+foldRes.getPredDescription(i);
 
                 //crossvalidator always resolved ties randomly, continued for reproducability
                 //even if the lower-level evaluator resolved ties e.g. naively per fold
@@ -238,7 +287,7 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
                 double tiesResolvedRandomlyPred;
                 tiesResolvedRandomlyPred = indexOfMax(dist);
 
-                preds[originalIndex] = tiesResolvedRandomlyPred;
+                preds[index] = tiesResolvedRandomlyPred;
             }
         }
 
@@ -569,6 +618,7 @@ public class CrossValidationEvaluator extends MultiSamplingEvaluator {
     @Override
     public Evaluator cloneEvaluator() {
         CrossValidationEvaluator ev = new CrossValidationEvaluator(this.seed, this.cloneData, this.setClassMissing, this.cloneClassifiers, this.maintainClassifiers);
+        ev.setNumFolds(this.numFolds);
         //INTENTIONALLY NOT COPYING ACROSS FOLDS. That is a utility to help speed things up
         
         //If people try to clone evaluators with folds already built, safer to force
@@ -23,9 +23,9 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import utilities.ThreadingUtilities;
 import weka.classifiers.Classifier;
 import weka.core.Instances;
 
@@ -75,6 +75,7 @@ public class StratifiedResamplesEvaluator extends MultiSamplingEvaluator {
     @Override
     public Evaluator cloneEvaluator() {
         StratifiedResamplesEvaluator ev = new StratifiedResamplesEvaluator(this.seed, this.cloneData, this.setClassMissing, this.cloneClassifiers, this.maintainClassifiers);
+        ev.setNumFolds(this.numFolds);
         ev.setPropInstancesInTrain(this.propInstancesInTrain);
         ev.setUseEachResampleIdAsSeed(this.useEachResampleIdAsSeed);
         return ev;
@@ -189,7 +190,7 @@ public class StratifiedResamplesEvaluator extends MultiSamplingEvaluator {
                 futureResultsPerFold.get(i).add(null);
         }
         if (multiThread)
-            executor = Executors.newFixedThreadPool(numThreads);
+            executor = ThreadingUtilities.buildExecutorService(numThreads);
         
         
         for (int classifierIndex = 0; classifierIndex < classifiers.length; ++classifierIndex) {
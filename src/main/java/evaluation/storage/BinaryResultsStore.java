@@ -0,0 +1,216 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package evaluation.storage;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import utilities.ThreadingUtilities;
+
+/**
+ * Converts directories of csv results files to the binary results format (see ClassifierResults.BINARY_FILE_EXTENSION),
+ * and maintains an index for each classifier's results directory.
+ * 
+ * Results are assumed to be in the usual {resultsPath}/{classifier}/Predictions/{dataset}/{split}Fold{fold}.csv layout. 
+ * Each binary file is written next to its csv file, and each {classifier}/Predictions/ directory gets an index file 
+ * holding the header (meta info and summary metrics) of every binary file beneath it. When only summaries are needed, 
+ * ClassifierResultsCollection can then load all of a classifier's results from that single file.
+ * 
+ * The index is a snapshot, conversion should be rerun after adding or changing results. Conversion only rewrites 
+ * binary files older than their csv file, so reruns are cheap. Until then, readers fall back to the csv of any 
+ * results whose binary file or index is older than it. 
+ * 
+ * Usage: java evaluation.storage.BinaryResultsStore {resultsPath} [numThreads]
+ */
+public class BinaryResultsStore {
+
+    public static final String INDEX_FILE_NAME = "resultsIndex" + ClassifierResults.BINARY_FILE_EXTENSION + "i";
+
+    private static final int INDEX_MAGIC = 0x54535249; //"TSRI"
+    private static final int INDEX_VERSION = 1;
+
+    private static final Pattern RESULTS_FILE_NAME = Pattern.compile(".+Fold\\d+\\.csv");
+
+    private BinaryResultsStore() {}
+
+    /**
+     * @return the name of the binary equivalent of the csv results file given
+     */
+    public static String binaryFileName(String csvFileName) {
+        if (csvFileName.endsWith(".csv"))
+            csvFileName = csvFileName.substring(0, csvFileName.length() - 4);
+        return csvFileName + ClassifierResults.BINARY_FILE_EXTENSION;
+    }
+
+    /**
+     * @return whether a binary file or index made from the csv results file given is at least as new as the csv, 
+     * i.e. the csv has not been rewritten since conversion. True if there is no csv
+     */
+    public static boolean isUpToDate(File binary, String csvFileName) {
+        File csv = new File(csvFileName);
+        return !csv.exists() || binary.lastModified() >= csv.lastModified();
+    }
+
+    static String indexKey(String dataset, String split, int fold) {
+        return dataset + "/" + split + "Fold" + fold;
+    }
+
+    /**
+     * Converts all csv results files of every classifier found in resultsPath that have no up to date binary
+     * file, and rewrites each classifier's index.
+     * 
+     * @return the number of files converted
+     */
+    public static int convert(String resultsPath, int numThreads) throws Exception {
+        File[] classifierDirs = new File(resultsPath).listFiles(File::isDirectory);
+        if (classifierDirs == null)
+            throw new IOException("Results path cannot be found: " + resultsPath);
+        Arrays.sort(classifierDirs);
+
+        int numConverted = 0;
+        for (File classifierDir : classifierDirs) {
+            File predictionsDir = new File(classifierDir, "Predictions");
+            if (predictionsDir.isDirectory())
+                numConverted += convertClassifier(predictionsDir.getPath(), numThreads);
+        }
+        return numConverted;
+    }
+
+    /**
+     * Converts the csv results files beneath a single {classifier}/Predictions/ directory that have no up to date 
+     * binary file, and rewrites its index. Files that fail to convert are reported and skipped.
+     * 
+     * @return the number of files converted
+     */
+    public static int convertClassifier(String predictionsPath, int numThreads) throws Exception {
+        List<Runnable> jobs = new ArrayList<>();
+        AtomicInteger numConverted = new AtomicInteger();
+        for (File datasetDir : listDirectories(predictionsPath)) {
+            File[] csvFiles = datasetDir.listFiles((dir, name) -> RESULTS_FILE_NAME.matcher(name).matches());
+            for (File csv : csvFiles) {
+                File binary = new File(binaryFileName(csv.getPath()));
+                if (binary.exists() && isUpToDate(binary, csv.getPath()))
+                    continue;
+
+                jobs.add(() -> {
+                    try {
+                        new ClassifierResults(csv.getPath()).writeBinaryResultsToFile(binary.getPath());
+                        numConverted.incrementAndGet();
+                    } catch (Exception e) {
+                        System.out.println("Failed to convert " + csv.getPath() + ": " + e);
+                    }
+                });
+            }
+        }
+
+        if (numThreads > 1)
+            ThreadingUtilities.runAll(ThreadingUtilities.buildExecutorService(numThreads), jobs, true);
+        else
+            for (Runnable job : jobs)
+                job.run();
+
+        writeIndex(predictionsPath);
+        return numConverted.get();
+    }
+
+    /**
+     * Writes the index of all binary results files beneath a {classifier}/Predictions/ directory
+     */
+    public static void writeIndex(String predictionsPath) throws IOException {
+        List<String> keys = new ArrayList<>();
+        List<byte[]> headers = new ArrayList<>();
+        for (File datasetDir : listDirectories(predictionsPath)) {
+            File[] binaryFiles = datasetDir.listFiles((dir, name) -> name.endsWith(ClassifierResults.BINARY_FILE_EXTENSION));
+            Arrays.sort(binaryFiles);
+            for (File binary : binaryFiles) {
+                String name = binary.getName();
+                keys.add(datasetDir.getName() + "/" + name.substring(0, name.length() - ClassifierResults.BINARY_FILE_EXTENSION.length()));
+                headers.add(ClassifierResults.readBinaryHeader(binary.getPath()));
+            }
+        }
+
+        File index = new File(predictionsPath, INDEX_FILE_NAME);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(index)))) {
+            out.writeInt(INDEX_MAGIC);
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(keys.size());
+            for (int i = 0; i < keys.size(); i++) {
+                out.writeUTF(keys.get(i));
+                out.writeInt(headers.get(i).length);
+                out.write(headers.get(i));
+            }
+        }
+    }
+
+    /**
+     * Reads the index of a {classifier}/Predictions/ directory, see ClassifierResults.fromBinaryHeader
+     * 
+     * @return the header of each indexed results file by indexKey(dataset, split, fold), or null if there is no index
+     */
+    public static Map<String, byte[]> readIndex(String predictionsPath) throws IOException {
+        File index = new File(predictionsPath, INDEX_FILE_NAME);
+        if (!index.exists())
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(index)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readInt() != INDEX_VERSION)
+                throw new IOException("Not a results index, or an unsupported version: " + index.getPath());
+            int numEntries = in.readInt();
+            Map<String, byte[]> headers = new HashMap<>(numEntries * 2);
+            for (int i = 0; i < numEntries; i++) {
+                String key = in.readUTF();
+                byte[] header = new byte[in.readInt()];
+                in.readFully(header);
+                headers.put(key, header);
+            }
+            return headers;
+        }
+    }
+
+    private static File[] listDirectories(String path) {
+        File[] dirs = new File(path).listFiles(File::isDirectory);
+        if (dirs == null)
+            return new File[0];
+        Arrays.sort(dirs);
+        return dirs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Usage: java evaluation.storage.BinaryResultsStore {resultsPath} [numThreads]");
+            return;
+        }
+        int numThreads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        long startTime = System.nanoTime();
+        int numConverted = convert(args[0], numThreads);
+        System.out.println("Converted " + numConverted + " results files in " + (System.nanoTime() - startTime) / 1000000 + "ms");
+    }
+}
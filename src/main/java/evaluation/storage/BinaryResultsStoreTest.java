@@ -0,0 +1,154 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package evaluation.storage;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static evaluation.storage.ResultsFixture.randomResults;
+
+public class BinaryResultsStoreTest {
+
+    private static final String[] CLASSIFIERS = {"A", "B"};
+    private static final String[] DATASETS = {"D1", "D2", "D3"};
+    private static final int NUM_FOLDS = 3;
+
+    private static final List<Function<ClassifierResults, Double>> STATS = Arrays.asList(
+        ClassifierResults.GETTER_Accuracy, ClassifierResults.GETTER_BalancedAccuracy, ClassifierResults.GETTER_AUROC,
+        ClassifierResults.GETTER_NLL, ClassifierResults.GETTER_F1, ClassifierResults.GETTER_MCC,
+        ClassifierResults.GETTER_Precision, ClassifierResults.GETTER_Recall
+    );
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ResultsFixture fixture;
+    private String basePath;
+
+    @Before
+    public void setup() throws Exception {
+        fixture = new ResultsFixture(folder.getRoot(), CLASSIFIERS, DATASETS, NUM_FOLDS, "test");
+        basePath = fixture.basePath;
+    }
+
+    private ClassifierResultsCollection newCollection() {
+        ClassifierResultsCollection col = fixture.newCollection();
+        col.setSplit_Test();
+        return col;
+    }
+
+    @Test
+    public void testBinaryMatchesCsv() throws Exception {
+        ClassifierResults results = randomResults(new Random(1), "A", "D1", 0, "test");
+        results.setParas("a=1,b=2");
+        results.writeFullResultsToFile(basePath + "res.csv");
+        results.writeBinaryResultsToFile(basePath + "res" + ClassifierResults.BINARY_FILE_EXTENSION);
+
+        ClassifierResults csv = new ClassifierResults(basePath + "res.csv");
+        ClassifierResults binary = new ClassifierResults(basePath + "res" + ClassifierResults.BINARY_FILE_EXTENSION);
+        csv.findAllStats();
+        binary.findAllStats();
+
+        Assert.assertEquals(csv.getClassifierName(), binary.getClassifierName());
+        Assert.assertEquals(csv.getDatasetName(), binary.getDatasetName());
+        Assert.assertEquals(csv.getFoldID(), binary.getFoldID());
+        Assert.assertEquals(csv.getParas(), binary.getParas());
+        Assert.assertEquals(csv.getBuildTime(), binary.getBuildTime());
+        Assert.assertEquals(csv.numClasses(), binary.numClasses());
+        Assert.assertArrayEquals(csv.getTrueClassValsAsArray(), binary.getTrueClassValsAsArray(), 0);
+        Assert.assertArrayEquals(csv.getPredClassValsAsArray(), binary.getPredClassValsAsArray(), 0);
+        Assert.assertArrayEquals(csv.getPredictionTimesAsArray(), binary.getPredictionTimesAsArray());
+        Assert.assertArrayEquals(csv.getPredDescriptionsAsArray(), binary.getPredDescriptionsAsArray());
+        Assert.assertArrayEquals(csv.getProbabilityDistributionsAsArray(), binary.getProbabilityDistributionsAsArray());
+        for (Function<ClassifierResults, Double> stat : STATS)
+            Assert.assertEquals(stat.apply(csv), stat.apply(binary), 0);
+
+        ClassifierResults summary = new ClassifierResults();
+        summary.loadSummaryFromFile(basePath + "res" + ClassifierResults.BINARY_FILE_EXTENSION);
+        for (Function<ClassifierResults, Double> stat : STATS)
+            Assert.assertEquals(stat.apply(csv), stat.apply(summary), 0);
+    }
+
+    @Test
+    public void testConvertAndIndex() throws Exception {
+        Assert.assertEquals(CLASSIFIERS.length * DATASETS.length * NUM_FOLDS, BinaryResultsStore.convert(basePath, 2));
+        Assert.assertEquals(0, BinaryResultsStore.convert(basePath, 2)); //all up to date
+
+        Map<String, byte[]> index = BinaryResultsStore.readIndex(basePath + "A/Predictions/");
+        Assert.assertEquals(DATASETS.length * NUM_FOLDS, index.size());
+        Assert.assertTrue(index.containsKey(BinaryResultsStore.indexKey("D2", "test", 1)));
+
+        ClassifierResultsCollection csv = newCollection();
+        csv.load();
+
+        ClassifierResultsCollection binary = newCollection();
+        binary.setUseBinaryResults(true);
+        binary.load();
+
+        ClassifierResultsCollection summaries = newCollection();
+        summaries.setUseBinaryResults(true);
+        summaries.setLoadSummariesOnly(true);
+        summaries.load();
+
+        for (Function<ClassifierResults, Double> stat : STATS) {
+            Assert.assertArrayEquals(csv.retrieveDoubles(stat), binary.retrieveDoubles(stat));
+            Assert.assertArrayEquals(csv.retrieveDoubles(stat), summaries.retrieveDoubles(stat));
+        }
+        Assert.assertTrue(summaries.getNumBytesRead() < binary.getNumBytesRead());
+    }
+
+    @Test
+    public void testStaleBinaryFallsBackToCsv() throws Exception {
+        BinaryResultsStore.convert(basePath, 1);
+
+        //rerun an experiment after conversion, its csv is now newer than the binary file and the index
+        String csvFileName = basePath + "A/Predictions/D2/testFold1.csv";
+        randomResults(new Random(2), "A", "D2", 1, "test").writeFullResultsToFile(csvFileName);
+        File binaryFile = new File(BinaryResultsStore.binaryFileName(csvFileName));
+        File indexFile = new File(basePath + "A/Predictions/" + BinaryResultsStore.INDEX_FILE_NAME);
+        new File(csvFileName).setLastModified(Math.max(binaryFile.lastModified(), indexFile.lastModified()) + 10000);
+
+        ClassifierResultsCollection csv = newCollection();
+        csv.load();
+
+        ClassifierResultsCollection binary = newCollection();
+        binary.setUseBinaryResults(true);
+        binary.load();
+
+        //a summary read from a csv file holds only the accuracy
+        ClassifierResultsCollection summaries = newCollection();
+        summaries.setUseBinaryResults(true);
+        summaries.setLoadSummariesOnly(true);
+        summaries.load();
+
+        for (Function<ClassifierResults, Double> stat : STATS)
+            Assert.assertArrayEquals(csv.retrieveDoubles(stat), binary.retrieveDoubles(stat));
+        Assert.assertEquals(csv.retrieveDoubles(ClassifierResults.GETTER_Accuracy)[0][0][1][1], 
+                summaries.retrieveDoubles(ClassifierResults.GETTER_Accuracy)[0][0][1][1], 0);
+    }
+}
@@ -17,9 +17,25 @@
 package evaluation.storage;
 
 import fileIO.OutFile;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -71,6 +87,8 @@ import utilities.*;
  *
  * Supports reading/writing of results from/to file, in the 'classifierResults file-format'
  *    - loadResultsFromFile(String path)
+ *    - loadSummaryFromFile(String path)  (meta info and summary metrics only, skipping the predictions)
+ *    - writeBinaryResultsToFile(String path)  (compact binary format, read by the above when path ends with BINARY_FILE_EXTENSION)
  *    - writeFullResultsToFile(String path)  (other writing formats also supported, write...ToFile(...)
  *
  * Supports recording of timings in different time units. Milliseconds is the default for
@@ -1293,6 +1311,7 @@ public class ClassifierResults implements DebugPrinting, Serializable {
     }
 
     private boolean firstTimeDistMissing = true;
+    private transient int[] fieldStarts, fieldEnds; //bounds of the fields of the prediction line being read
     public static boolean printDistMissingWarning = true;
     /**
      * Reads and STORES the prediction in this classifierresults object
@@ -1305,13 +1324,33 @@ public class ClassifierResults implements DebugPrinting, Serializable {
      * [true],[pred], ,[dist[0]],...,[dist[c]], ,[predTime], ,[description until end of line, may have commas in it]
      */
     private boolean instancePredictionFromString(String predLine) throws Exception {
-        String[] split=predLine.split(",");
+        //the same fields as predLine.split(","), which drops trailing empty fields,
+        //found as [start,end) bounds instead of substrings
+        int lineEnd = predLine.length();
+        while (lineEnd > 0 && predLine.charAt(lineEnd - 1) == ',')
+            lineEnd--;
+        int numFields = 1;
+        for (int i = 0; i < lineEnd; i++)
+            if (predLine.charAt(i) == ',')
+                numFields++;
+        if (fieldStarts == null || fieldStarts.length < numFields) {
+            fieldStarts = new int[numFields];
+            fieldEnds = new int[numFields];
+        }
+        fieldStarts[0] = 0;
+        for (int i = 0, f = 0; i < lineEnd; i++) {
+            if (predLine.charAt(i) == ',') {
+                fieldEnds[f++] = i;
+                fieldStarts[f] = i + 1;
+            }
+        }
+        fieldEnds[numFields - 1] = lineEnd;
 
         //collect actual/predicted class
-        double trueClassVal=Double.valueOf(split[0].trim());
-        double predClassVal=Double.valueOf(split[1].trim());
+        double trueClassVal=parseDouble(predLine, fieldStarts[0], fieldEnds[0]);
+        double predClassVal=parseDouble(predLine, fieldStarts[1], fieldEnds[1]);
 
-        if(split.length<3) { //no probabilities, no timing. VERY old files will not have them
+        if(numFields<3) { //no probabilities, no timing. VERY old files will not have them
             if (printDistMissingWarning && firstTimeDistMissing) {
                 System.out.println("*********");
                 System.out.println("");
@@ -1330,50 +1369,38 @@ public class ClassifierResults implements DebugPrinting, Serializable {
         //else
         //collect probabilities
         final int distStartInd = 3; //actual, predicted, space, distStart
-        double[] dist = null;
         if (numClasses < 2) {
-            List<Double> distL = new ArrayList<>();
-            for(int i = distStartInd; i < split.length; i++) {
-                if (split[i].equals(""))
-                    break; //we're at the empty-space-separator between probs and timing
-                else
-                    distL.add(Double.valueOf(split[i].trim()));
-            }
+            int i = distStartInd;
+            while (i < numFields && fieldStarts[i] != fieldEnds[i]) //up to the empty-space-separator between probs and timing
+                i++;
 
-            numClasses = distL.size();
+            numClasses = i - distStartInd;
             assert(numClasses >= 2);
-
-            dist = new double[numClasses];
-            for (int i = 0; i < numClasses; i++)
-                dist[i] = distL.get(i);
         }
-        else {
-            //we know how many classes there should be, use this as implicit
-            //file verification
-            dist = new double[numClasses];
-            for (int i = 0; i < numClasses; i++) {
-                //now need to offset by 3.
-                dist[i] = Double.valueOf(split[i+distStartInd].trim());
-            }
+        //we know how many classes there should be, use this as implicit
+        //file verification
+        if (numFields < distStartInd + numClasses)
+            throw new ArrayIndexOutOfBoundsException("Expected " + numClasses + " probabilities in prediction line: " + predLine);
+        double[] dist = new double[numClasses];
+        for (int i = 0; i < numClasses; i++) {
+            //now need to offset by 3.
+            dist[i] = parseDouble(predLine, fieldStarts[i+distStartInd], fieldEnds[i+distStartInd]);
         }
 
         //collect timings
         long predTime = -1;
         final int timingInd = distStartInd + (numClasses-1) + 1 + 1; //actual, predicted, space, dist, space, timing
-        if (split.length > timingInd)
-            predTime = Long.parseLong(split[timingInd].trim());
+        if (numFields > timingInd)
+            predTime = Long.parseLong(predLine.substring(fieldStarts[timingInd], fieldEnds[timingInd]).trim());
 
         //collect description
         String description = "";
         final int descriptionInd = timingInd + 1 + 1; //actual, predicted, space, dist, space, timing, space, description
-        if (split.length > descriptionInd) {
-            description = split[descriptionInd];
-
+        if (numFields > descriptionInd) {
             //no reason currently why the description passed cannot have commas in it,
             //might be a natural way to separate it in to different parts.
             //description reall just fills up the remainder of the line.
-            for (int i = descriptionInd+1; i < split.length; i++)
-                description += "," + split[i];
+            description = predLine.substring(fieldStarts[descriptionInd], lineEnd);
         }
 
 
@@ -1381,12 +1408,62 @@ public class ClassifierResults implements DebugPrinting, Serializable {
         return trueClassVal==predClassVal;
     }
 
-    private void instancePredictionsFromScanner(Scanner in) throws Exception {
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Parses the double in str between start (inclusive) and end (exclusive), ignoring surrounding whitespace.
+     *
+     * Plain decimals of at most 15 significant digits, which is everything written by this class, are read
+     * directly: the digits and the power of ten are both exact doubles, so the one division is correctly
+     * rounded and the value is identical to Double.parseDouble's. Anything else is passed to Double.parseDouble.
+     */
+    private static double parseDouble(String str, int start, int end) {
+        while (start < end && str.charAt(start) <= ' ')
+            start++;
+        while (end > start && str.charAt(end - 1) <= ' ')
+            end--;
+
+        int i = start;
+        boolean negative = false;
+        if (i < end && (str.charAt(i) == '-' || str.charAt(i) == '+'))
+            negative = str.charAt(i++) == '-';
+
+        long digits = 0;
+        int numDigits = 0;
+        int numFractionDigits = -1;
+        boolean sawDigit = false;
+        for (; i < end; i++) {
+            char c = str.charAt(i);
+            if (c >= '0' && c <= '9') {
+                sawDigit = true;
+                digits = digits * 10 + (c - '0');
+                if (digits != 0)
+                    numDigits++;
+                if (numFractionDigits >= 0)
+                    numFractionDigits++;
+            }
+            else if (c == '.' && numFractionDigits < 0)
+                numFractionDigits = 0;
+            else
+                break;
+        }
+
+        if (i < end || !sawDigit || numDigits > 15 || numFractionDigits >= POWERS_OF_TEN.length)
+            return Double.parseDouble(str.substring(start, end));
+
+        double val = numFractionDigits > 0 ? digits / POWERS_OF_TEN[numFractionDigits] : digits;
+        return negative ? -val : val;
+    }
+
+    private void instancePredictionsFromReader(BufferedReader in) throws Exception {
         double correct = 0;
-        while (in.hasNext()) {
-            String line = in.nextLine();
+        String line;
+        while ((line = in.readLine()) != null) {
             //may be trailing empty lines at the end of the file
-            if (line == null || line.equals(""))
+            if (line.trim().isEmpty())
                 break;
 
             if (instancePredictionFromString(line))
@@ -1673,6 +1750,22 @@ public class ClassifierResults implements DebugPrinting, Serializable {
     }
 
     public void loadResultsFromFile(String path) throws FileNotFoundException, Exception {
+        loadFromFile(path, false);
+    }
+
+    /**
+     * Reads only the meta info on the first three lines of the file at path, plus the summary metrics
+     * if it is a METRICS file. Much quicker for large files when the individual predictions are not needed,
+     * but for PREDICTIONS files only the stats held on line three (accuracy, timings, numClasses etc.) are
+     * available afterwards, and nothing is checked against the predictions.
+     *
+     * The results are treated as finalised with all stats found, so findAllStatsOnce() does nothing.
+     */
+    public void loadSummaryFromFile(String path) throws FileNotFoundException, Exception {
+        loadFromFile(path, true);
+    }
+
+    private void loadFromFile(String path, boolean summaryOnly) throws FileNotFoundException, Exception {
 
         try {
             //init
@@ -1692,18 +1785,42 @@ public class ClassifierResults implements DebugPrinting, Serializable {
             if (!(f.exists() && f.length() > 0))
                 throw new FileNotFoundException("File " + path + " NOT FOUND");
 
-            Scanner inf = new Scanner(f);
+            if (path.endsWith(BINARY_FILE_EXTENSION))
+                loadFromBinaryFile(path, summaryOnly);
+            else
+                loadFromCsvFile(f, path, summaryOnly);
+
+            finalised = true;
+            if (summaryOnly)
+                allStatsFound = true;
+        }
+        catch (FileNotFoundException fnf) {
+            if (printOnFailureToLoad)
+                System.out.println("File " + path + " NOT FOUND");
+            throw fnf;
+        }
+        catch (Exception ex) {
+            if (printOnFailureToLoad)
+                System.out.println("File " + path + " FAILED TO LOAD");
+            throw ex;
+        }
+    }
 
+    private void loadFromCsvFile(File f, String path, boolean summaryOnly) throws Exception {
+        try (BufferedReader inf = new BufferedReader(new FileReader(f))) {
             //parse meta infos
-            parseFirstLine(inf.nextLine());
-            parseSecondLine(inf.nextLine());
-            double reportedTestAcc = parseThirdLine(inf.nextLine());
+            parseFirstLine(nextLine(inf));
+            parseSecondLine(nextLine(inf));
+            double reportedTestAcc = parseThirdLine(nextLine(inf));
 
             //fileType was read in from first line.
             switch (fileType) {
                 case PREDICTIONS: {
+                    if (summaryOnly) //acc is left as reported on line 3
+                        break;
+
                     //have all meta info, start reading predictions or metrics
-                    instancePredictionsFromScanner(inf);
+                    instancePredictionsFromReader(inf);
 
                     //acts as a basic form of verification, does the acc reported on line 3 align with
                     //the acc calculated while reading predictions
@@ -1721,25 +1838,369 @@ public class ClassifierResults implements DebugPrinting, Serializable {
                     break;
                 }
                 case METRICS:
-                    allPerformanceMetricsFromScanner(inf);
+                    allPerformanceMetricsFromScanner(new Scanner(inf));
                     break;
                 case COMPACT:
                     throw new UnsupportedOperationException("COMPACT file reading not yet supported");
             }
+        }
+    }
 
-            finalised = true;
-            inf.close();
+    /**
+     * As Scanner.nextLine(), which the header lines used to be read with
+     */
+    private static String nextLine(BufferedReader in) throws IOException {
+        String line = in.readLine();
+        if (line == null)
+            throw new NoSuchElementException("No line found");
+        return line;
+    }
+
+
+
+
+    /********************************
+    *
+    *     BINARY FILE READ/WRITING
+    *
+    *  A compact binary equivalent of the PREDICTIONS file, intended for results that are analysed
+    *  many times over, e.g. by MultipleClassifierEvaluation. The file is
+    *
+    *    [magic, version]
+    *    [header length][header: line 1, line 2 and line 3 meta info, numInstances, and the summary
+    *                    metrics that would be written to a METRICS file]
+    *    [the predictions column by column: true classes, predicted classes, distributions, prediction
+    *     times, descriptions]
+    *
+    *  The header alone is enough to summarise the results (see loadSummaryFromFile(...), and
+    *  BinaryResultsStore, which indexes the headers of a whole directory of results). Distributions are
+    *  stored as the values written to csv files, i.e. to 6 decimal places, as floats wherever that is exact.
+    *  Loading a binary file gives the same predictions and stats as loading the equivalent csv file.
+    */
+
+    public static final String BINARY_FILE_EXTENSION = ".tsr";
+
+    private static final int BINARY_MAGIC = 0x54535242; //"TSRB"
+    private static final int BINARY_VERSION = 1;
+
+    private static final byte DISTS_NONE = 0, DISTS_FLOAT = 1, DISTS_DOUBLE = 2;
+
+    /**
+     * Writes the results to path in the binary format, see BINARY_FILE_EXTENSION. The results are
+     * finalised and their stats found, as for writeSummaryResultsToFile(...)
+     */
+    public void writeBinaryResultsToFile(String path) throws Exception {
+        finaliseResults();
+        fileType = FileType.PREDICTIONS;
+
+        //the predictions exactly as a csv file would hold them, and the stats as reading that csv would find them
+        final int n = numInstances();
+        final double[] trueVals = new double[n], predVals = new double[n];
+        final long[] times = new long[n];
+        final String[] descs = new String[n];
+        final boolean hasDists = hasProbabilityDistributionInformation();
+        final double[][] dists = hasDists ? new double[n][] : null;
+        for (int i = 0; i < n; i++) {
+            trueVals[i] = trueClassValues.get(i).intValue();
+            predVals[i] = predClassValues.get(i).intValue();
+            times[i] = predTimes.get(i);
+            descs[i] = predDescriptions.get(i);
+            if (hasDists) {
+                dists[i] = predDistributions.get(i).clone();
+                for (int c = 0; c < dists[i].length; c++)
+                    dists[i][c] = toResultsPrecision(dists[i][c]);
+            }
         }
-        catch (FileNotFoundException fnf) {
-            if (printOnFailureToLoad)
-                System.out.println("File " + path + " NOT FOUND");
-            throw fnf;
+        ClassifierResults asRead = new ClassifierResults(numClasses());
+        for (int i = 0; i < n; i++) {
+            asRead.trueClassValues.add(trueVals[i]);
+            asRead.predClassValues.add(predVals[i]);
+            asRead.predDistributions.add(hasDists ? dists[i] : null);
+            asRead.predTimes.add(times[i]);
+            asRead.predDescriptions.add(descs[i]);
         }
-        catch (Exception ex) {
-            if (printOnFailureToLoad)
-                System.out.println("File " + path + " FAILED TO LOAD");
-            throw ex;
+        asRead.numInstances = n;
+        asRead.calculateAcc();
+        asRead.findAllStats();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(BINARY_MAGIC);
+            out.writeInt(BINARY_VERSION);
+
+            byte[] header = writeBinaryHeader(asRead);
+            out.writeInt(header.length);
+            out.write(header);
+
+            for (int i = 0; i < n; i++)
+                out.writeInt((int) trueVals[i]);
+            for (int i = 0; i < n; i++)
+                out.writeInt((int) predVals[i]);
+
+            if (!hasDists)
+                out.writeByte(DISTS_NONE);
+            else {
+                boolean floatsExact = true;
+                for (int i = 0; i < n && floatsExact; i++)
+                    for (int c = 0; c < numClasses && floatsExact; c++)
+                        floatsExact = fromFloat((float) dists[i][c]) == dists[i][c];
+
+                out.writeByte(floatsExact ? DISTS_FLOAT : DISTS_DOUBLE);
+                for (int i = 0; i < n; i++)
+                    for (int c = 0; c < numClasses; c++) {
+                        if (floatsExact)
+                            out.writeFloat((float) dists[i][c]);
+                        else
+                            out.writeDouble(dists[i][c]);
+                    }
+            }
+
+            for (int i = 0; i < n; i++)
+                out.writeLong(times[i]);
+
+            boolean hasDescriptions = false;
+            for (int i = 0; i < n && !hasDescriptions; i++)
+                hasDescriptions = descs[i] != null && !descs[i].isEmpty();
+            out.writeBoolean(hasDescriptions);
+            if (hasDescriptions)
+                for (int i = 0; i < n; i++)
+                    writeString(out, descs[i]);
+        } catch (IOException e) {
+             throw new Exception("Error writing binary results file.\n"
+                     + "Outfile most likely didnt open successfully, probably directory doesnt exist yet.\n"
+                     + "Path: " + path +"\nError: "+ e);
+        }
+    }
+
+    /**
+     * The meta info and summary metrics of results, as stored at the start of binary files and in
+     * BinaryResultsStore indexes. The meta info is taken from this object, the metrics from stats
+     */
+    private byte[] writeBinaryHeader(ClassifierResults stats) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        //line 1
+        writeString(out, datasetName);
+        writeString(out, classifierName);
+        writeString(out, split);
+        out.writeInt(foldID);
+        writeString(out, timeUnit.name());
+        writeString(out, description);
+
+        //line 2
+        writeString(out, paras);
+
+        //line 3
+        out.writeDouble(stats.acc);
+        out.writeLong(buildTime);
+        out.writeLong(testTime);
+        out.writeLong(benchmarkTime);
+        out.writeLong(memoryUsage);
+        out.writeInt(numClasses);
+        writeString(out, errorEstimateMethod);
+        out.writeLong(errorEstimateTime);
+        out.writeLong(buildPlusEstimateTime);
+
+        //metrics
+        out.writeInt(stats.numInstances);
+        out.writeDouble(stats.balancedAcc);
+        out.writeDouble(stats.sensitivity);
+        out.writeDouble(stats.precision);
+        out.writeDouble(stats.recall);
+        out.writeDouble(stats.specificity);
+        out.writeDouble(stats.f1);
+        out.writeDouble(stats.mcc);
+        out.writeDouble(stats.nll);
+        out.writeDouble(stats.meanAUROC);
+        out.writeDouble(stats.stddev);
+        out.writeLong(stats.medianPredTime);
+        out.writeInt(stats.countPerClass.length);
+        for (double d : stats.countPerClass)
+            out.writeDouble(d);
+        out.writeInt(stats.confusionMatrix.length);
+        for (double[] row : stats.confusionMatrix)
+            for (double d : row)
+                out.writeDouble(d);
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads the header written by writeBinaryHeader, including the summary metrics. These are exactly the stats
+     * findAllStats() would find from the predictions stored after the header
+     *
+     * @return the number of predictions stored after the header
+     */
+    private int readBinaryHeader(ByteBuffer in) {
+        datasetName = readString(in);
+        classifierName = readString(in);
+        split = readString(in);
+        foldID = in.getInt();
+        timeUnit = TimeUnit.valueOf(readString(in));
+        description = readString(in);
+        fileType = FileType.PREDICTIONS;
+
+        paras = readString(in);
+
+        acc = in.getDouble();
+        buildTime = in.getLong();
+        testTime = in.getLong();
+        benchmarkTime = in.getLong();
+        memoryUsage = in.getLong();
+        numClasses = in.getInt();
+        errorEstimateMethod = readString(in);
+        errorEstimateTime = in.getLong();
+        buildPlusEstimateTime = in.getLong();
+
+        int headerNumInstances = in.getInt();
+        balancedAcc = in.getDouble();
+        sensitivity = in.getDouble();
+        precision = in.getDouble();
+        recall = in.getDouble();
+        specificity = in.getDouble();
+        f1 = in.getDouble();
+        mcc = in.getDouble();
+        nll = in.getDouble();
+        meanAUROC = in.getDouble();
+        stddev = in.getDouble();
+        medianPredTime = in.getLong();
+        countPerClass = new double[in.getInt()];
+        for (int i = 0; i < countPerClass.length; i++)
+            countPerClass[i] = in.getDouble();
+        confusionMatrix = new double[in.getInt()][countPerClass.length];
+        for (double[] row : confusionMatrix)
+            for (int i = 0; i < row.length; i++)
+                row[i] = in.getDouble();
+
+        return headerNumInstances;
+    }
+
+    /**
+     * Loads the summary of results from a header stored in a BinaryResultsStore index
+     */
+    static ClassifierResults fromBinaryHeader(byte[] header) {
+        ClassifierResults res = new ClassifierResults();
+        res.numInstances = res.readBinaryHeader(ByteBuffer.wrap(header));
+        res.finalised = true;
+        res.allStatsFound = true;
+        return res;
+    }
+
+    /**
+     * The header of the binary results file at path, without reading the rest of the file
+     */
+    static byte[] readBinaryHeader(String path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            checkBinaryMagic(in.readInt(), in.readInt(), path);
+            byte[] header = new byte[in.readInt()];
+            in.readFully(header);
+            return header;
+        }
+    }
+
+    private static void checkBinaryMagic(int magic, int version, String path) throws IOException {
+        if (magic != BINARY_MAGIC)
+            throw new IOException("Not a binary results file: " + path);
+        if (version != BINARY_VERSION)
+            throw new IOException("Unsupported binary results file version " + version + ": " + path);
+    }
+
+    private void loadFromBinaryFile(String path, boolean summaryOnly) throws Exception {
+        if (summaryOnly) {
+            numInstances = readBinaryHeader(ByteBuffer.wrap(readBinaryHeader(path)));
+            return;
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(Paths.get(path)));
+        checkBinaryMagic(in.getInt(), in.getInt(), path);
+        int headerEnd = in.getInt() + in.position();
+        int n = readBinaryHeader(in);
+        in.position(headerEnd);
+
+        int[] trueVals = new int[n], predVals = new int[n];
+        for (int i = 0; i < n; i++)
+            trueVals[i] = in.getInt();
+        for (int i = 0; i < n; i++)
+            predVals[i] = in.getInt();
+
+        byte distsFormat = in.get();
+        double[][] dists = new double[n][];
+        if (distsFormat != DISTS_NONE) {
+            for (int i = 0; i < n; i++) {
+                dists[i] = new double[numClasses];
+                for (int c = 0; c < numClasses; c++)
+                    dists[i][c] = distsFormat == DISTS_FLOAT ? fromFloat(in.getFloat()) : in.getDouble();
+            }
+        }
+
+        long[] times = new long[n];
+        for (int i = 0; i < n; i++)
+            times[i] = in.getLong();
+
+        boolean hasDescriptions = in.get() != 0;
+
+        double reportedTestAcc = acc;
+        long reportedTestTime = testTime;
+        double correct = 0;
+        for (int i = 0; i < n; i++) {
+            addPrediction(trueVals[i], dists[i], predVals[i], times[i], hasDescriptions ? readString(in) : "");
+            if (trueVals[i] == predVals[i])
+                correct++;
+        }
+        acc = correct / numInstances;
+        testTime = reportedTestTime; //not the sum of the prediction times added up again
+
+        //as for csv files, a basic form of verification
+        double eps = 1.e-8;
+        if (Math.abs(reportedTestAcc - acc) > eps) {
+            throw new ArithmeticException("Calculated accuracy (" + acc + ") differs from written accuracy (" + reportedTestAcc + ") "
+                    + "by more than eps (" + eps + "). File = " + path + ". numinstances = " + numInstances + ". numClasses = " + numClasses);
         }
+
+        if (distsFormat == DISTS_NONE && printDistMissingWarning)
+            System.out.println("Probability distributions missing from file: " + path);
+
+        //the stats in the header are those of these predictions, unless they are changed by
+        //e.g. populateMissingDists(), which is only relevant when there are no distributions
+        allStatsFound = distsFormat != DISTS_NONE;
+    }
+
+    /**
+     * Rounds to the precision results files are written with, RESULTS_DECIMAL_FORMAT, such that values
+     * written to binary files are identical to those read back from csv files
+     */
+    private static double toResultsPrecision(double d) {
+        if (Double.isNaN(d) || Double.isInfinite(d))
+            return d;
+        return new BigDecimal(d).setScale(6, RoundingMode.HALF_EVEN).doubleValue();
+    }
+
+    /**
+     * The 6 decimal place value a float stored in a binary file was written from. Correct for all
+     * values that can be written as floats, which is checked when writing
+     */
+    private static double fromFloat(float f) {
+        return Math.round(f * 1e6) / 1e6;
+    }
+
+    private static void writeString(DataOutputStream out, String str) throws IOException {
+        if (str == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0)
+            return null;
+        String str = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return str;
     }
 
 
@@ -24,11 +24,16 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import tsml.classifiers.MultiThreadable;
 import utilities.DebugPrinting;
 import utilities.ErrorReport;
+import utilities.ThreadingUtilities;
 
 /**
  * Essentially a loader for many results over a given set of classifiers, datasets, folds, and splits
@@ -48,6 +53,13 @@ import utilities.ErrorReport;
  *      RETRIEVE...(...) methods get a particular stat or info from each results object
  *          retrieveAccuracies() wraps the accuracies getter as a shortcut/example 
  * 
+ * Loading large collections: enableMultiThreading(n) reads n files at a time, and 
+ * setLoadSummariesOnly(true) reads just the meta info and summary stats of each file, 
+ * skipping the predictions, for when e.g. only accuracies and timings are wanted. 
+ * setPrintProgress(true) reports progress while loading, and getLoadTimeNanos(), 
+ * getNumFilesRead() and getNumBytesRead() describe the last load. setUseBinaryResults(true)
+ * reads binary results files where they exist, see BinaryResultsStore
+ * 
  * todo integrate into multipleclassifierevaluation/classifierresultsanalysis
  * todo replace old DebugPrinting stuff with loggers if/when going full enterprise
  * todo proper missing results summaries, option to reduce to largest complete subset 
@@ -57,7 +69,7 @@ import utilities.ErrorReport;
  * 
  * @author James Large (james.large@uea.ac.uk)
  */
-public class ClassifierResultsCollection implements DebugPrinting {
+public class ClassifierResultsCollection implements DebugPrinting, MultiThreadable {
     
     /**
      * ClassifierResults[split][classifier][dataset][fold]
@@ -132,6 +144,40 @@ public class ClassifierResultsCollection implements DebugPrinting {
      */
     private boolean ignoreMissingDistributions = false;
     
+    /**
+     * If true, will only read the meta info and summary stats of each file, see ClassifierResults.loadSummaryFromFile
+     * 
+     * Defaults to false
+     */
+    private boolean loadSummariesOnly = false;
+    
+    /**
+     * If true, will read the binary equivalent of each results file where one exists, and when only loading 
+     * summaries will read them from each classifier's index where there is one. See BinaryResultsStore
+     * 
+     * Defaults to false
+     */
+    private boolean useBinaryResults = false;
+    
+    /**
+     * The number of files read at once
+     * 
+     * Defaults to 1
+     */
+    private int numThreads = 1;
+    
+    /**
+     * If true, will print the number of files read so far every 10% of the way through loading
+     * 
+     * Defaults to false
+     */
+    private boolean printProgress = false;
+    
+    //metrics of the last load()
+    private long loadTimeNanos;
+    private int numFilesRead;
+    private long numBytesRead;
+    
     public ClassifierResultsCollection() {
         
     }
@@ -163,6 +209,10 @@ public class ClassifierResultsCollection implements DebugPrinting {
         this.cleanResults = other.cleanResults;
         this.allowMissingResults = other.allowMissingResults;
         this.ignoreMissingDistributions = other.ignoreMissingDistributions;
+        this.loadSummariesOnly = other.loadSummariesOnly;
+        this.useBinaryResults = other.useBinaryResults;
+        this.numThreads = other.numThreads;
+        this.printProgress = other.printProgress;
     }
     
     /**
@@ -368,6 +418,46 @@ public class ClassifierResultsCollection implements DebugPrinting {
         this.ignoreMissingDistributions = ignoreMissingDistributions;
     }
     
+    /**
+     * if true, will only read the first three lines of each file (plus the summary stats of METRICS files), 
+     * skipping the individual predictions. Stats that are not stored in the files, e.g. auroc of PREDICTIONS files, 
+     * will then not be available, and ignoreMissingDistributions has no effect
+     * 
+     * defaults to false
+     */
+    public void setLoadSummariesOnly(boolean loadSummariesOnly) {
+        this.loadSummariesOnly = loadSummariesOnly;
+    }
+    
+    /**
+     * if true, will read the binary equivalent of each results file where one exists, and when only loading 
+     * summaries will read them from each classifier's index where there is one. See BinaryResultsStore
+     * 
+     * defaults to false
+     */
+    public void setUseBinaryResults(boolean useBinaryResults) {
+        this.useBinaryResults = useBinaryResults;
+    }
+    
+    /**
+     * if true, will print the number of files read so far every 10% of the way through loading
+     * 
+     * defaults to false
+     */
+    public void setPrintProgress(boolean printProgress) {
+        this.printProgress = printProgress;
+    }
+    
+    /**
+     * Reads up to numThreads files at once when loading. Each file is still read and 
+     * summarised by a single thread, and missing files are reported exactly as they are when
+     * loading sequentially
+     */
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+    
     public int getNumDatasets() {
         return numDatasets;
     }
@@ -447,6 +537,49 @@ public class ClassifierResultsCollection implements DebugPrinting {
         return ignoreMissingDistributions;
     }
     
+    /**
+     * If true, will only read the first three lines of each file (plus the summary stats of METRICS files), 
+     * skipping the individual predictions
+     * 
+     * Defaults to false
+     */
+    public boolean getLoadSummariesOnly() {
+        return loadSummariesOnly;
+    }
+    
+    public boolean getUseBinaryResults() {
+        return useBinaryResults;
+    }
+    
+    public boolean getPrintProgress() {
+        return printProgress;
+    }
+    
+    public int getNumThreads() {
+        return numThreads;
+    }
+    
+    /**
+     * @return the wall clock time taken by the last call to load(), in nanoseconds
+     */
+    public long getLoadTimeNanos() {
+        return loadTimeNanos;
+    }
+    
+    /**
+     * @return the number of files successfully read by the last call to load()
+     */
+    public int getNumFilesRead() {
+        return numFilesRead;
+    }
+    
+    /**
+     * @return the total size of the files successfully read by the last call to load(), in bytes
+     */
+    public long getNumBytesRead() {
+        return numBytesRead;
+    }
+    
     
     public int getTotalNumResultsIgnoreMissing() { 
         return (numSplits * numClassifiers * numDatasets * numFolds);
@@ -554,12 +687,19 @@ public class ClassifierResultsCollection implements DebugPrinting {
      */
     public ClassifierResults[][][][] load() throws Exception { 
         confirmMinimalInfoGivenAndValid();
+        long startTime = System.nanoTime();
         
         ErrorReport masterError = new ErrorReport("Results files not found:\n");
 
         allResults = new ClassifierResults[numSplits][numClassifiers][numDatasets][numFolds];
         numMissingResults = 0;
         
+        //read everything first, possibly many files at once, then go through the outcomes in a fixed 
+        //order so that the reporting of missing results does not depend on the order files were read in
+        Exception[] failures = new Exception[getTotalNumResultsIgnoreMissing()];
+        boolean[] distsWereMissing = new boolean[failures.length];
+        readAllFiles(failures, distsWereMissing, startTime);
+        
         //train files may be produced via TrainAccuracyEstimate, older code
         //while test files likely by experiments, but still might be a very old file
         //so having separate checks for each.
@@ -573,48 +713,40 @@ public class ClassifierResultsCollection implements DebugPrinting {
         for (int c = 0; c < numClassifiers; c++) {
             String classifierStorage = classifierNamesInStorage[c];
             String classifierOutput = classifierNamesInOutput[c];
-            printlnDebug(classifierStorage + "(" + classifierOutput + ") reading");
             
             int classifierFnfs = 0;
             try {
-                ErrorReport perClassifierError = new ErrorReport("FileNotFoundExceptions thrown:\n");
+                ErrorReport perClassifierError = new ErrorReport("Results files not found or failed to load:\n");
 
                 for (int d = 0; d < numDatasets; d++) {
                     String datasetStorage = datasetNamesInStorage[d];
-                    String datasetOutput = datasetNamesInOutput[d];
-                    printlnDebug("\t" + datasetStorage + "(" + datasetOutput + ") reading");
 
                     for (int f = 0; f < numFolds; f++) {
                         int fold = folds[f];
-                        printlnDebug("\t\t" + fold + " reading");
 
                         for (int s = 0; s < numSplits; s++) {
                             String split = splits[s];     
-                            printlnDebug("\t\t\t" + split + " reading");
-
-                            String readPath = resultsFilesDirectories.length == 1 ? resultsFilesDirectories[0] : resultsFilesDirectories[c];
-                            String fileName = buildFileName(readPath, classifierStorage, datasetStorage, split, fold); 
-                            try {
-                                allResults[s][c][d][f] = new ClassifierResults(fileName);
-                                if (ignoreMissingDistributions) {
-                                    boolean wasMissing = allResults[s][c][d][f].populateMissingDists();
-                                    if (wasMissing && ignoringDistsFirstTime) {
-                                        System.out.println("---------Probability distributions missing, but ignored: " 
-                                                + classifierStorage + " - " + datasetStorage + " - " + f + " - train");
-                                        ignoringDistsFirstTime = false;
-                                    }
-                                }
-                                allResults[s][c][d][f].findAllStatsOnce();
-                                if (cleanResults)
-                                    allResults[s][c][d][f].cleanPredictionInfo();
-                            } catch (FileNotFoundException ex) {
+                            int file = fileIndex(c, d, f, s);
+                            
+                            if (distsWereMissing[file] && ignoringDistsFirstTime) {
+                                System.out.println("---------Probability distributions missing, but ignored: " 
+                                        + classifierStorage + " - " + datasetStorage + " - " + f + " - train");
+                                ignoringDistsFirstTime = false;
+                            }
+                            
+                            Exception failure = failures[file];
+                            if (failure != null) {
+                                String fileName = buildFileName(getReadPath(c), classifierStorage, datasetStorage, split, fold); 
                                 if (allowMissingResults) {
                                     allResults[s][c][d][f] = null;
                                     System.out.println("Failed to load " + fileName);
                                 }
-                                else {
+                                else if (failure instanceof FileNotFoundException) {
                                     perClassifierError.log(fileName + "\n");
                                 }
+                                else {
+                                    perClassifierError.log(fileName + " (" + failure + ")\n");
+                                }
                                 
                                 classifierFnfs++;
                                 
@@ -622,14 +754,9 @@ public class ClassifierResultsCollection implements DebugPrinting {
                                 classifiersWithMissingResults.add(classifierStorage);
                                 datasetsWithMissingResults.add(datasetStorage);
                                 foldsWithMissingResults.add(fold);
-                                
                             }
-
-                            printlnDebug("\t\t\t" + split + " successfully read in");
                         }
-                        printlnDebug("\t\t" + fold + " successfully read in");
                     }
-                    printlnDebug("\t" + datasetStorage + "(" + datasetOutput + ") successfully read in");
                 }
 
                 if (!perClassifierError.isEmpty())
@@ -644,11 +771,117 @@ public class ClassifierResultsCollection implements DebugPrinting {
             numMissingResults += classifierFnfs;
         }
         
+        loadTimeNanos = System.nanoTime() - startTime;
+        
         masterError.throwIfErrors();
         
         return allResults;
     }
     
+    /**
+     * Reads every file into allResults, numThreads at a time. A file that cannot be read leaves its entry null
+     * and its exception in failures, at the index given by fileIndex(...)
+     */
+    private void readAllFiles(Exception[] failures, boolean[] distsWereMissing, long startTime) throws Exception {
+        AtomicInteger numFilesDone = new AtomicInteger();
+        AtomicInteger filesRead = new AtomicInteger();
+        AtomicLong bytesRead = new AtomicLong();
+        
+        //summaries can come straight from the indexes, read up front as each is shared by a whole classifier
+        List<Map<String, byte[]>> indexes = new ArrayList<>(numClassifiers);
+        List<File> indexFiles = new ArrayList<>(numClassifiers);
+        for (int c = 0; c < numClassifiers; c++) {
+            String predictionsPath = getReadPath(c) + classifierNamesInStorage[c] + "/Predictions/";
+            indexes.add(useBinaryResults && loadSummariesOnly ? BinaryResultsStore.readIndex(predictionsPath) : null);
+            indexFiles.add(new File(predictionsPath, BinaryResultsStore.INDEX_FILE_NAME));
+        }
+        
+        List<Runnable> jobs = new ArrayList<>(failures.length);
+        for (int c = 0; c < numClassifiers; c++) {
+            for (int d = 0; d < numDatasets; d++) {
+                for (int f = 0; f < numFolds; f++) {
+                    for (int s = 0; s < numSplits; s++) {
+                        final int fc = c, fd = d, ff = f, fs = s;
+                        final int file = fileIndex(c, d, f, s);
+                        final String csvFileName = buildFileName(getReadPath(c), classifierNamesInStorage[c], datasetNamesInStorage[d], splits[s], folds[f]);
+                        final byte[] indexedHeader = indexes.get(c) == null ? null 
+                                : indexes.get(c).get(BinaryResultsStore.indexKey(datasetNamesInStorage[d], splits[s], folds[f]));
+                        final File indexFile = indexFiles.get(c);
+                        
+                        jobs.add(() -> {
+                            printlnDebug(csvFileName + " reading");
+                            try {
+                                ClassifierResults res;
+                                long bytes;
+                                //binary copies older than their csv are stale, the csv was rewritten since conversion
+                                if (indexedHeader != null && BinaryResultsStore.isUpToDate(indexFile, csvFileName)) {
+                                    res = ClassifierResults.fromBinaryHeader(indexedHeader);
+                                    bytes = indexedHeader.length;
+                                }
+                                else {
+                                    String fileName = csvFileName;
+                                    File binary = new File(BinaryResultsStore.binaryFileName(csvFileName));
+                                    if (useBinaryResults && binary.exists() && BinaryResultsStore.isUpToDate(binary, csvFileName))
+                                        fileName = binary.getPath();
+                                    
+                                    res = new ClassifierResults();
+                                    if (loadSummariesOnly)
+                                        res.loadSummaryFromFile(fileName);
+                                    else {
+                                        res.loadResultsFromFile(fileName);
+                                        if (ignoreMissingDistributions)
+                                            distsWereMissing[file] = res.populateMissingDists();
+                                    }
+                                    bytes = new File(fileName).length();
+                                }
+                                res.findAllStatsOnce();
+                                if (cleanResults)
+                                    res.cleanPredictionInfo();
+                                
+                                allResults[fs][fc][fd][ff] = res;
+                                filesRead.incrementAndGet();
+                                bytesRead.addAndGet(bytes);
+                            } catch (Exception e) {
+                                failures[file] = e;
+                            }
+                            reportProgress(numFilesDone.incrementAndGet(), failures.length, startTime);
+                        });
+                    }
+                }
+            }
+        }
+        
+        if (numThreads > 1)
+            ThreadingUtilities.runAll(ThreadingUtilities.buildExecutorService(numThreads), jobs, true);
+        else {
+            for (Runnable job : jobs)
+                job.run();
+        }
+        
+        numFilesRead = filesRead.get();
+        numBytesRead = bytesRead.get();
+    }
+    
+    private void reportProgress(int numFilesDone, int numFiles, long startTime) {
+        if (!printProgress)
+            return;
+        
+        //each time another 10% of the files are done
+        if (numFilesDone * 10 / numFiles != (numFilesDone - 1) * 10 / numFiles) {
+            double secs = (System.nanoTime() - startTime) / 1e9;
+            System.out.println(String.format("Read %d of %d results files (%d%%) in %.1fs, %.0f files/s", 
+                    numFilesDone, numFiles, numFilesDone * 100 / numFiles, secs, numFilesDone / secs));
+        }
+    }
+    
+    private int fileIndex(int classifier, int dataset, int fold, int split) {
+        return ((classifier * numDatasets + dataset) * numFolds + fold) * numSplits + split;
+    }
+    
+    private String getReadPath(int classifier) {
+        return resultsFilesDirectories.length == 1 ? resultsFilesDirectories[0] : resultsFilesDirectories[classifier];
+    }
+    
     
     /**
      * Returns a ClassifierResultsCollection that contains the same classifier, dataset and fold
@@ -0,0 +1,141 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package evaluation.storage;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static evaluation.storage.ResultsFixture.randomResults;
+
+public class ClassifierResultsCollectionTest {
+
+    private static final String[] CLASSIFIERS = {"A", "B", "C"};
+    private static final String[] DATASETS = {"D1", "D2", "D3", "D4"};
+    private static final int NUM_FOLDS = 5;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ResultsFixture fixture;
+    private String basePath;
+
+    @Before
+    public void setup() throws Exception {
+        fixture = new ResultsFixture(folder.getRoot(), CLASSIFIERS, DATASETS, NUM_FOLDS, "train", "test");
+        basePath = fixture.basePath;
+    }
+
+    private ClassifierResultsCollection newCollection() {
+        ClassifierResultsCollection col = fixture.newCollection();
+        col.setSplit_TrainTest();
+        return col;
+    }
+
+    @Test
+    public void testPredictionsRoundTrip() throws Exception {
+        ClassifierResults written = randomResults(new Random(1), "A", "D1", 0, "test");
+        String path = basePath + "roundTrip.csv";
+        written.writeFullResultsToFile(path);
+        ClassifierResults read = new ClassifierResults(path);
+
+        Assert.assertEquals(written.numInstances(), read.numInstances());
+        Assert.assertArrayEquals(written.getTrueClassValsAsArray(), read.getTrueClassValsAsArray(), 0);
+        Assert.assertArrayEquals(written.getPredClassValsAsArray(), read.getPredClassValsAsArray(), 0);
+        Assert.assertArrayEquals(written.getPredictionTimesAsArray(), read.getPredictionTimesAsArray());
+        Assert.assertArrayEquals(written.getPredDescriptionsAsArray(), read.getPredDescriptionsAsArray());
+        double[][] dists = read.getProbabilityDistributionsAsArray();
+        for (int i = 0; i < dists.length; i++)
+            for (int c = 0; c < dists[i].length; c++)
+                Assert.assertEquals(Double.parseDouble(utilities.GenericTools.RESULTS_DECIMAL_FORMAT.format(
+                        written.getProbabilityDistribution(i)[c])), dists[i][c], 0);
+    }
+
+    @Test
+    public void testParallelLoadMatchesSequential() throws Exception {
+        ClassifierResultsCollection sequential = newCollection();
+        double[][][][] seqAccs = retrieve(sequential.load(), ClassifierResults.GETTER_Accuracy);
+        double[][][][] seqAurocs = retrieve(sequential.retrieveResults(), ClassifierResults.GETTER_AUROC);
+
+        ClassifierResultsCollection parallel = newCollection();
+        parallel.enableMultiThreading(4);
+        parallel.load();
+
+        Assert.assertArrayEquals(seqAccs, retrieve(parallel.retrieveResults(), ClassifierResults.GETTER_Accuracy));
+        Assert.assertArrayEquals(seqAurocs, retrieve(parallel.retrieveResults(), ClassifierResults.GETTER_AUROC));
+        Assert.assertEquals(sequential.getTotalNumResults(), parallel.getNumFilesRead());
+        Assert.assertEquals(sequential.getNumBytesRead(), parallel.getNumBytesRead());
+        Assert.assertTrue(parallel.getLoadTimeNanos() > 0);
+    }
+
+    @Test
+    public void testSummariesOnly() throws Exception {
+        ClassifierResults[][][][] full = newCollection().load();
+
+        ClassifierResultsCollection col = newCollection();
+        col.setLoadSummariesOnly(true);
+        ClassifierResults[][][][] summaries = col.load();
+
+        Assert.assertArrayEquals(retrieve(full, ClassifierResults.GETTER_Accuracy), retrieve(summaries, ClassifierResults.GETTER_Accuracy));
+        Assert.assertArrayEquals(retrieve(full, r -> (double) r.getBuildTime()), retrieve(summaries, r -> (double) r.getBuildTime()));
+        Assert.assertArrayEquals(retrieve(full, r -> (double) r.numClasses()), retrieve(summaries, r -> (double) r.numClasses()));
+    }
+
+    @Test
+    public void testMissingAndMalformedResults() throws Exception {
+        new File(basePath + "B/Predictions/D2/testFold3.csv").delete();
+        try (FileWriter out = new FileWriter(basePath + "C/Predictions/D4/trainFold1.csv")) {
+            out.write("D4,C,train,1,NANOSECONDS,PREDICTIONS,\nparas\nnot,a,number\n");
+        }
+
+        ClassifierResultsCollection col = newCollection();
+        col.enableMultiThreading(4);
+        try {
+            col.load();
+            Assert.fail("missing results should fail the load unless allowed");
+        } catch (Exception e) {
+            Assert.assertTrue(e.getMessage().contains("testFold3"));
+            Assert.assertTrue(e.getMessage().contains("trainFold1"));
+        }
+
+        col = newCollection();
+        col.enableMultiThreading(4);
+        col.setAllowMissingResults(true);
+        ClassifierResults[][][][] res = col.load();
+        Assert.assertEquals(2, col.getNumMissingResults());
+        Assert.assertNull(res[1][1][1][3]);
+        Assert.assertNull(res[0][2][3][1]);
+        Assert.assertArrayEquals(new String[] {"A"}, col.reduceToMinimalCompleteResults_classifiers().getClassifierNamesInStorage());
+    }
+
+    private static double[][][][] retrieve(ClassifierResults[][][][] res, java.util.function.Function<ClassifierResults, Double> getter) {
+        double[][][][] vals = new double[res.length][res[0].length][res[0][0].length][res[0][0][0].length];
+        for (int i = 0; i < vals.length; i++)
+            for (int j = 0; j < vals[i].length; j++)
+                for (int k = 0; k < vals[i][j].length; k++)
+                    for (int l = 0; l < vals[i][j][k].length; l++)
+                        vals[i][j][k][l] = getter.apply(res[i][j][k][l]);
+        return vals;
+    }
+}
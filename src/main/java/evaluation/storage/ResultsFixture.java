@@ -0,0 +1,80 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+package evaluation.storage;
+
+import java.io.File;
+import java.util.Random;
+
+/**
+ * Test fixture shared by the results storage tests: a results directory of random predictions for every
+ * classifier, dataset, fold and split, laid out as basePath/classifier/Predictions/dataset/splitFoldN.csv.
+ */
+final class ResultsFixture {
+
+    final String basePath;
+    final String[] classifiers;
+    final String[] datasets;
+    final int numFolds;
+
+    ResultsFixture(File root, String[] classifiers, String[] datasets, int numFolds, String... splits) throws Exception {
+        this.basePath = root.getAbsolutePath() + "/";
+        this.classifiers = classifiers;
+        this.datasets = datasets;
+        this.numFolds = numFolds;
+        Random rand = new Random(0);
+        for (String classifier : classifiers)
+            for (String dataset : datasets) {
+                new File(basePath + classifier + "/Predictions/" + dataset).mkdirs();
+                for (int fold = 0; fold < numFolds; fold++)
+                    for (String split : splits)
+                        randomResults(rand, classifier, dataset, fold, split).writeFullResultsToFile(
+                                basePath + classifier + "/Predictions/" + dataset + "/" + split + "Fold" + fold + ".csv");
+            }
+    }
+
+    /**
+     * @return a collection over every classifier, dataset and fold in the fixture, with no split set
+     */
+    ClassifierResultsCollection newCollection() {
+        ClassifierResultsCollection col = new ClassifierResultsCollection();
+        col.addClassifiers(classifiers, basePath);
+        col.setDatasets(datasets);
+        col.setFolds(numFolds);
+        return col;
+    }
+
+    static ClassifierResults randomResults(Random rand, String classifier, String dataset, int fold, String split) throws Exception {
+        int numClasses = 2 + rand.nextInt(3);
+        ClassifierResults res = new ClassifierResults(numClasses);
+        res.setClassifierName(classifier);
+        res.setDatasetName(dataset);
+        res.setFoldID(fold);
+        res.setSplit(split);
+        res.setBuildTime(1 + rand.nextInt(1000));
+        for (int i = 0; i < 20 + rand.nextInt(20); i++) {
+            double[] dist = new double[numClasses];
+            double sum = 0;
+            for (int c = 0; c < numClasses; c++)
+                sum += dist[c] = rand.nextDouble();
+            for (int c = 0; c < numClasses; c++)
+                dist[c] /= sum;
+            res.addPrediction(rand.nextInt(numClasses), dist, utilities.GenericTools.indexOfMax(dist), 1 + rand.nextInt(100), i % 3 == 0 ? "a,description" : "");
+        }
+        res.finaliseResults();
+        return res;
+    }
+}
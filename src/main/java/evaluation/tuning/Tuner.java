@@ -24,27 +24,51 @@ import evaluation.tuning.searchers.ParameterSearcher;
 import experiments.data.DatasetLoading;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import utilities.FileHandlingTools;
 import utilities.InstanceTools;
+import utilities.ThreadingUtilities;
 import machine_learning.classifiers.SaveEachParameter;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.functions.SMO;
 import weka.classifiers.functions.supportVector.PolyKernel;
 import weka.core.Instances;
 import tsml.classifiers.Checkpointable;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 
 /**
+ * Selects the best parameter set for a classifier by evaluating each set given by the searcher. 
+ * 
+ * By default parameter sets are evaluated one at a time. With enableMultiThreading(), parameter 
+ * sets are evaluated concurrently on the shared pool, and with a CrossValidationEvaluator the 
+ * unit of work is a single fold of a single parameter set, so even a small space keeps every 
+ * thread busy. Without racing this gives the same result as the sequential search.
+ * 
+ * With setRacing(true) and a CrossValidationEvaluator the space is searched by successive halving: 
+ * every parameter set is evaluated on the first fold, the best 1/racingReductionFactor of them on 
+ * the folds up to the second, and so on with the number of folds growing and the number of parameter 
+ * sets shrinking by racingReductionFactor each round, until the survivors have been evaluated on 
+ * every fold. Parameter sets which are clearly worse on the first folds are thereby dropped having 
+ * cost a fraction of a full cross validation. Racing is ignored when saving each parameter set, as 
+ * every saved parameter set must have been fully evaluated.
+ * 
+ * With a train time contract, no more work is started once the time used plus the longest piece of 
+ * work so far would pass the contract. At least one parameter set is always fully evaluated.
  *
  * @author James Large (james.large@uea.ac.uk)
  */
 public class Tuner 
-        implements SaveEachParameter,Checkpointable, TrainTimeContractable {
+        implements SaveEachParameter,Checkpointable, TrainTimeContractable, MultiThreadable {
     
     //Main 3 design choices.
     private ParameterSearcher searcher;                      //default = new GridSearcher();
@@ -74,6 +98,10 @@ public class Tuner
     
     private boolean includeMarkersInParaLine = true;
     
+    private int numThreads = 1; //MultiThreadable
+    private boolean racing = false;
+    private int racingReductionFactor = 2;
+    
     /**
      * if true, the base classifier will be cloned in order to evaluate each parameter set 
      * this will prevent any potentially un-handled changes to the classifiers' state after 
@@ -181,6 +209,37 @@ public class Tuner
         this.includeMarkersInParaLine = includeMarkersInParaLine;
     }
     
+    public boolean getRacing() {
+        return racing;
+    }
+
+    /**
+     * If true and evaluating by cross validation, parameter sets are raced by successive halving
+     * over the folds instead of every set being evaluated on every fold
+     */
+    public void setRacing(boolean racing) {
+        this.racing = racing;
+    }
+
+    public int getRacingReductionFactor() {
+        return racingReductionFactor;
+    }
+
+    /**
+     * When racing, each round keeps the best 1/racingReductionFactor of the parameter sets, and 
+     * the number of folds evaluated grows by the same factor. Default 2
+     */
+    public void setRacingReductionFactor(int racingReductionFactor) {
+        if (racingReductionFactor < 2)
+            throw new IllegalArgumentException("racingReductionFactor must be at least 2: " + racingReductionFactor);
+        this.racingReductionFactor = racingReductionFactor;
+    }
+    
+    @Override //MultiThreadable
+    public void enableMultiThreading(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+    
     public ParameterSearcher getSearcher() {
         return searcher;
     }
@@ -227,20 +286,27 @@ public class Tuner
     }
     
     public ClassifierResults evaluateParameterSet(AbstractClassifier baseClassifier, Instances trainSet, ParameterSet parameterSet) throws Exception { 
+        return evaluateParameterSet(cloneClassifierIfNeeded(baseClassifier), trainSet, parameterSet, evaluator);
+    }
+    
+    private ClassifierResults evaluateParameterSet(AbstractClassifier classifier, Instances trainSet, ParameterSet parameterSet, Evaluator evaluator) throws Exception { 
         Instances data = cloneDataIfNeeded(trainSet);
-        AbstractClassifier classifier = cloneClassifierIfNeeded(baseClassifier); 
             
         String[] options = parameterSet.toOptionsList();
         classifier.setOptions(options);
 
         ClassifierResults results = evaluator.evaluate(classifier, data);
+        labelResults(results, parameterSet);
+        
+        return results;
+    }
+    
+    private void labelResults(ClassifierResults results, ParameterSet parameterSet) {
         results.setClassifierName("TunedClassifier:"+classifierName);
         results.setDatasetName(datasetName);
         results.setFoldID(seed);
         results.setSplit("train");
         results.setParas(parameterSet.toClassifierResultsParaLine(includeMarkersInParaLine));
-        
-        return results;
     }
     
     public ParameterResults tune(AbstractClassifier baseClassifier, Instances trainSet, ParameterSpace parameterSpace) throws Exception {
@@ -261,6 +327,22 @@ public class Tuner
         //for resolving ties for the best paraset
         List<ParameterResults> tiesBestSoFar = new ArrayList<>();
         
+        if (numThreads > 1 || racing) {
+            //exhausts the iterator, so the sequential loop below does nothing
+            List<ParameterSet> psets = new ArrayList<>();
+            iter.forEachRemaining(psets::add);
+            
+            ExecutorService executor = ThreadingUtilities.buildExecutorService(numThreads);
+            try {
+                if (evaluator instanceof CrossValidationEvaluator)
+                    tiesBestSoFar = evaluateFoldsConcurrently(executor, baseClassifier, trainSet, psets, startTime);
+                else
+                    tiesBestSoFar = evaluateConcurrently(executor, baseClassifier, trainSet, psets, startTime);
+            } finally {
+                executor.shutdown();
+            }
+        }
+        
         //iterate over the space
         int parameterSetID = -1;
         while (iter.hasNext()) {
@@ -288,7 +370,7 @@ public class Tuner
 //                int numParasEvald = parameterSetID + 1; 
 //                long avgTimePerPara = totalTimeSoFar / numParasEvald;
                 
-                if (withinTrainContract(totalTimeSoFar+maxParaEvalTime))
+                if (!withinTrainContract(totalTimeSoFar+maxParaEvalTime))
                     break;
             }
             
@@ -316,6 +398,205 @@ public class Tuner
         return bestParaSetAndResults;
     }
     
+    /**
+     * Evaluates each parameter set as a single task with its own copy of the classifier and evaluator. 
+     * 
+     * @return the ties for the best parameter set, empty if saving parameters
+     */
+    private List<ParameterResults> evaluateConcurrently(ExecutorService executor, AbstractClassifier baseClassifier, 
+            Instances trainSet, List<ParameterSet> psets, long startTime) throws Exception {
+        AtomicLong maxParaEvalTime = new AtomicLong();
+        
+        List<Future<ClassifierResults>> futures = new ArrayList<>(psets.size());
+        for (int i = 0; i < psets.size(); i++) {
+            final int parameterSetID = i;
+            if (saveParameters && parametersAlreadyEvaluated(parameterSetID)) {
+                futures.add(null);
+                continue;
+            }
+            
+            futures.add(executor.submit(() -> {
+                if (outOfContractTime(startTime, maxParaEvalTime.get()))
+                    return null;
+                
+                long thisParaStartTime = System.nanoTime();
+                AbstractClassifier classifier = (AbstractClassifier)AbstractClassifier.makeCopy(baseClassifier);
+                ClassifierResults results = evaluateParameterSet(classifier, trainSet, psets.get(parameterSetID), evaluator.cloneEvaluator());
+                maxParaEvalTime.accumulateAndGet(System.nanoTime() - thisParaStartTime, Math::max);
+                
+                if (saveParameters)
+                    saveParaResults(parameterSetID, results);
+                return results;
+            }));
+        }
+        
+        List<ParameterResults> tiesBestSoFar = new ArrayList<>();
+        boolean anyEvaluated = false;
+        for (int i = 0; i < psets.size(); i++) {
+            ClassifierResults results = futures.get(i) == null ? null : futures.get(i).get();
+            if (results != null) {
+                anyEvaluated = true;
+                if (!saveParameters)
+                    storeParaResult(psets.get(i), results, tiesBestSoFar);
+            }
+        }
+        
+        if (!anyEvaluated && !saveParameters && !psets.isEmpty()) {
+            //the contract ran out before anything was evaluated, as in the sequential search the first set is always evaluated
+            AbstractClassifier classifier = (AbstractClassifier)AbstractClassifier.makeCopy(baseClassifier);
+            storeParaResult(psets.get(0), evaluateParameterSet(classifier, trainSet, psets.get(0), evaluator), tiesBestSoFar);
+        }
+        
+        return tiesBestSoFar;
+    }
+    
+    /**
+     * Evaluates each fold of each parameter set as a single task, against folds shared by every parameter 
+     * set. When racing, folds are evaluated in rounds of successive halving, otherwise in a single round.
+     * 
+     * @return the ties for the best parameter set, empty if saving parameters
+     */
+    private List<ParameterResults> evaluateFoldsConcurrently(ExecutorService executor, AbstractClassifier baseClassifier, 
+            Instances trainSet, List<ParameterSet> psets, long startTime) throws Exception {
+        CrossValidationEvaluator cv = (CrossValidationEvaluator) evaluator;
+        cv.buildFolds(cloneDataIfNeeded(trainSet));
+        final int numFolds = cv.getNumFolds();
+        final boolean race = racing && !saveParameters;
+        
+        ClassifierResults[][] foldResults = new ClassifierResults[psets.size()][numFolds];
+        AtomicInteger[] foldsRemaining = new AtomicInteger[psets.size()];
+        AtomicLong maxFoldEvalTime = new AtomicLong();
+        
+        List<Integer> survivors = new ArrayList<>();
+        for (int i = 0; i < psets.size(); i++) {
+            if (saveParameters && parametersAlreadyEvaluated(i))
+                continue;
+            survivors.add(i);
+            foldsRemaining[i] = new AtomicInteger(numFolds);
+        }
+        
+        int foldsDone = 0;
+        while (foldsDone < numFolds && !survivors.isEmpty()) {
+            final int roundEnd = race ? Math.min(numFolds, Math.max(1, foldsDone * racingReductionFactor)) : numFolds;
+            
+            List<Future<?>> futures = new ArrayList<>();
+            for (int parameterSetID : survivors) {
+                for (int fold = foldsDone; fold < roundEnd; fold++) {
+                    final int foldID = fold;
+                    futures.add(executor.submit(() -> {
+                        if (outOfContractTime(startTime, maxFoldEvalTime.get()))
+                            return null;
+                        
+                        long foldStartTime = System.nanoTime();
+                        foldResults[parameterSetID][foldID] = evaluateFold(cv, baseClassifier, psets.get(parameterSetID), foldID);
+                        maxFoldEvalTime.accumulateAndGet(System.nanoTime() - foldStartTime, Math::max);
+                        
+                        if (saveParameters && foldsRemaining[parameterSetID].decrementAndGet() == 0)
+                            saveParaResults(parameterSetID, combineFoldResults(cv, trainSet, psets.get(parameterSetID), foldResults[parameterSetID]));
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : futures)
+                future.get();
+            foldsDone = roundEnd;
+            
+            //only those evaluated on every fold so far stay in, the rest were cut off by the contract
+            List<Integer> completed = new ArrayList<>();
+            for (int parameterSetID : survivors) {
+                if (countFolds(foldResults[parameterSetID]) == foldsDone)
+                    completed.add(parameterSetID);
+            }
+            survivors = completed;
+            
+            if (outOfContractTime(startTime, maxFoldEvalTime.get()))
+                break;
+            
+            if (race && foldsDone < numFolds && survivors.size() > 1) {
+                int numToKeep = (survivors.size() + racingReductionFactor - 1) / racingReductionFactor;
+                survivors = bestByScore(cv, trainSet, psets, foldResults, survivors).subList(0, numToKeep);
+            }
+        }
+        
+        if (saveParameters)
+            return new ArrayList<>();
+        
+        List<ParameterResults> tiesBestSoFar = new ArrayList<>();
+        for (int i = 0; i < psets.size(); i++) {
+            if (countFolds(foldResults[i]) == numFolds)
+                storeParaResult(psets.get(i), combineFoldResults(cv, trainSet, psets.get(i), foldResults[i]), tiesBestSoFar);
+        }
+        
+        if (tiesBestSoFar.isEmpty() && !psets.isEmpty()) {
+            //the contract ran out before any parameter set was fully evaluated, finish the best partially evaluated one
+            int mostFolds = 0;
+            List<Integer> candidates = new ArrayList<>();
+            for (int i = 0; i < psets.size(); i++) {
+                int count = countFolds(foldResults[i]);
+                if (count > mostFolds) {
+                    mostFolds = count;
+                    candidates.clear();
+                }
+                if (count == mostFolds)
+                    candidates.add(i);
+            }
+            int best = mostFolds == 0 ? 0 : bestByScore(cv, trainSet, psets, foldResults, candidates).get(0);
+            for (int fold = 0; fold < numFolds; fold++) {
+                if (foldResults[best][fold] == null)
+                    foldResults[best][fold] = evaluateFold(cv, baseClassifier, psets.get(best), fold);
+            }
+            storeParaResult(psets.get(best), combineFoldResults(cv, trainSet, psets.get(best), foldResults[best]), tiesBestSoFar);
+        }
+        
+        return tiesBestSoFar;
+    }
+    
+    private ClassifierResults evaluateFold(CrossValidationEvaluator cv, AbstractClassifier baseClassifier, ParameterSet parameterSet, int fold) throws Exception {
+        AbstractClassifier classifier = (AbstractClassifier)AbstractClassifier.makeCopy(baseClassifier);
+        classifier.setOptions(parameterSet.toOptionsList());
+        return cv.evaluateFold(classifier, fold);
+    }
+    
+    /**
+     * Combines the folds evaluated so far into results over the instances in those folds, 
+     * over the whole train set once every fold has been evaluated
+     */
+    private ClassifierResults combineFoldResults(CrossValidationEvaluator cv, Instances trainSet, ParameterSet parameterSet, ClassifierResults[] foldResults) throws Exception {
+        ClassifierResults results = cv.combineFoldResults(foldResults, classifierName, trainSet);
+        results.findAllStatsOnce();
+        labelResults(results, parameterSet);
+        return results;
+    }
+    
+    private static int countFolds(ClassifierResults[] foldResults) {
+        int count = 0;
+        for (ClassifierResults results : foldResults)
+            if (results != null)
+                count++;
+        return count;
+    }
+    
+    /**
+     * @return the given parameter set ids ordered by score on the folds evaluated so far, best first, 
+     * ties kept in search order
+     */
+    private List<Integer> bestByScore(CrossValidationEvaluator cv, Instances trainSet, List<ParameterSet> psets, 
+            ClassifierResults[][] foldResults, List<Integer> parameterSetIDs) throws Exception {
+        double[] scores = new double[psets.size()];
+        for (int parameterSetID : parameterSetIDs) {
+            double score = evalMetric.apply(combineFoldResults(cv, trainSet, psets.get(parameterSetID), foldResults[parameterSetID]));
+            scores[parameterSetID] = Double.isNaN(score) ? Double.NEGATIVE_INFINITY : score;
+        }
+        
+        List<Integer> ordered = new ArrayList<>(parameterSetIDs);
+        ordered.sort(Comparator.comparingDouble((Integer parameterSetID) -> scores[parameterSetID]).reversed());
+        return ordered;
+    }
+    
+    private boolean outOfContractTime(long startTime, long maxEvalTime) {
+        return trainTimeContract && !withinTrainContract(System.nanoTime() - startTime + maxEvalTime);
+    }
+    
     private boolean canWeEvaluateAnotherParaSet(long maxParaEvalTime, long totalTimeSoFar) {
         return trainContractTimeNanos - totalTimeSoFar > maxParaEvalTime;
     }
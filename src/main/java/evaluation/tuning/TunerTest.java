@@ -0,0 +1,83 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package evaluation.tuning;
+
+import evaluation.evaluators.CrossValidationEvaluator;
+import evaluation.storage.ClassifierResults;
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import weka.classifiers.lazy.IBk;
+import weka.core.Instances;
+
+public class TunerTest {
+
+    private Instances train;
+    private ParameterSpace space;
+
+    @Before
+    public void setup() throws Exception {
+        train = DatasetLoading.sampleItalyPowerDemand(0)[0];
+        space = new ParameterSpace();
+        space.addParameter("K", new int[] {1, 2, 3, 5, 7, 9, 11, 15});
+    }
+
+    private Tuner newTuner() {
+        Tuner tuner = new Tuner(new CrossValidationEvaluator());
+        tuner.setSeed(0);
+        return tuner;
+    }
+
+    @Test
+    public void testConcurrentMatchesSequential() throws Exception {
+        ParameterResults sequential = newTuner().tune(new IBk(), train, space);
+
+        Tuner tuner = newTuner();
+        tuner.enableMultiThreading(4);
+        ParameterResults concurrent = tuner.tune(new IBk(), train, space);
+
+        Assert.assertEquals(sequential.paras.toString(), concurrent.paras.toString());
+        Assert.assertEquals(sequential.score, concurrent.score, 0);
+        Assert.assertArrayEquals(sequential.results.getPredClassValsAsArray(), concurrent.results.getPredClassValsAsArray(), 0);
+    }
+
+    @Test
+    public void testRacingEvaluatesWinnerOnEveryFold() throws Exception {
+        Tuner tuner = newTuner();
+        tuner.setRacing(true);
+        ParameterResults raced = tuner.tune(new IBk(), train, space);
+
+        // the winner is scored on the full cross validation, as without racing
+        Assert.assertEquals(train.numInstances(), raced.results.numInstances());
+        ClassifierResults direct = newTuner().evaluateParameterSet(new IBk(), train, raced.paras);
+        Assert.assertEquals(direct.getAcc(), raced.score, 0);
+    }
+
+    @Test
+    public void testContractStillEvaluatesOneParameterSet() throws Exception {
+        Tuner tuner = newTuner();
+        tuner.enableMultiThreading(2);
+        tuner.setRacing(true);
+        tuner.setTrainTimeLimit(1);
+        ParameterResults best = tuner.tune(new IBk(), train, space);
+
+        Assert.assertNotNull(best);
+        Assert.assertEquals(train.numInstances(), best.results.numInstances());
+    }
+}
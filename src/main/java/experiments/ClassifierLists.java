@@ -315,7 +315,7 @@ public class ClassifierLists {
      * SHAPELET BASED: Classifiers that use shapelets in some way.
      */
     public static String[] shapelet= {"FastShapelets","LearnShapelets","ShapeletTransformClassifier",
-            "ShapeletTreeClassifier","STC","ROCKET","Arsenal","STC-Pruned"};
+            "ShapeletTreeClassifier","STC","ROCKET","Arsenal","STC-Pruned","MiniROCKET","Arsenal-MiniROCKET"};
     public static HashSet<String> shapeletBased=new HashSet<String>( Arrays.asList(shapelet));
     private static Classifier setShapeletBased(Experiments.ExperimentalArguments exp){
         String classifier=exp.classifierName;
@@ -345,6 +345,16 @@ public class ClassifierLists {
             case "Arsenal":
                 c = new Arsenal();
                 break;
+            case "MiniROCKET":
+                ROCKETClassifier miniRocket = new ROCKETClassifier();
+                miniRocket.setUseMiniROCKET(true);
+                c = miniRocket;
+                break;
+            case "Arsenal-MiniROCKET":
+                Arsenal miniArsenal = new Arsenal();
+                miniArsenal.setUseMiniROCKET(true);
+                c = miniArsenal;
+                break;
            default:
                 System.out.println("Unknown shapelet based classifier "+classifier+" should not be able to get here ");
                 System.out.println("There is a mismatch between array interval and the switch statement ");
@@ -0,0 +1,360 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package experiments;
+
+import evaluation.storage.ClassifierResults;
+import experiments.Experiments.ExperimentalArguments;
+import tsml.classifiers.distance_based.utils.system.memory.MemoryWatcher;
+import utilities.ThreadingUtilities;
+import weka.core.Instances;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a batch of experiments concurrently on the shared work stealing pool, in place of handing them all to a fixed
+ * thread pool at once.
+ *
+ * Experiments are run longest first, so the long ones do not end up running alone at the end of the batch. The cost of
+ * an experiment is estimated as the size of its dataset on disk times a relative cost for its classifier (1 unless set
+ * through setClassifierCost). Experiments on the same dataset and fold are run together, most costly group first, and
+ * share a single load of the data, which is dropped once the last experiment on it finishes. Each experiment is given
+ * its own copy of the Instances, which shares the values of the loaded data until they are changed.
+ *
+ * Concurrency is bounded by the number of threads and by a heap budget. Each experiment is assumed to need a fixed
+ * multiple of its dataset's size in memory, and is only started while the estimates of the running experiments plus
+ * its own fit in the budget, and while the live data measured after the latest garbage collection (by a MemoryWatcher)
+ * plus its estimate does too. An experiment always starts when nothing else is running, so no experiment is starved.
+ *
+ * Progress, throughput and an estimate of the time remaining are printed as each experiment finishes.
+ */
+public class ExperimentScheduler {
+
+    // how often to recheck the memory when an experiment is waiting for some to be freed
+    private static final long MEMORY_POLL_MILLIS = 1000;
+
+    private final int numThreads;
+    private long heapBudget = (long) (0.8 * Runtime.getRuntime().maxMemory());
+    private double memoryPerDataByte = 10;
+    private final Map<String, Double> classifierCosts = new HashMap<>();
+    private boolean printProgress = true;
+
+    // guarded by this
+    private final Map<String, SharedDataset> datasets = new HashMap<>();
+    private MemoryWatcher memoryWatcher;
+    private int numRunning;
+    private long reservedMemory;
+    private int numTotal;
+    private int numFinished;
+    private int numSkipped;
+    private int numFailed;
+    private int numDatasetLoads;
+    private int maxRunning;
+    private long startTime;
+
+    /**
+     * @param numThreads the most experiments to run at once
+     */
+    public ExperimentScheduler(int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be at least 1: " + numThreads);
+        }
+        this.numThreads = numThreads;
+    }
+
+    /**
+     * Runs all of the experiments, returning once they have all finished. Experiments whose results already exist are
+     * skipped as usual, and failures are logged and counted rather than stopping the batch.
+     */
+    public void run(List<ExperimentalArguments> exps) throws InterruptedException {
+        final List<Job> queue = order(exps);
+        final ExecutorService executor = ThreadingUtilities.buildExecutorService(numThreads);
+        synchronized (this) {
+            datasets.clear();
+            for (Job job : queue) {
+                datasets.computeIfAbsent(job.datasetKey, key -> new SharedDataset(job.exp)).numPendingJobs++;
+            }
+            numTotal = queue.size();
+            numRunning = numFinished = numSkipped = numFailed = numDatasetLoads = maxRunning = 0;
+            reservedMemory = 0;
+            startTime = System.nanoTime();
+            memoryWatcher = new MemoryWatcher();
+            memoryWatcher.start();
+        }
+        try {
+            synchronized (this) {
+                while (!queue.isEmpty()) {
+                    final Job job = nextJob(queue);
+                    if (job == null) {
+                        // woken when a job finishes, the timeout only matters when waiting on the memory
+                        wait(numRunning < numThreads ? MEMORY_POLL_MILLIS : 0);
+                        continue;
+                    }
+                    queue.remove(job);
+                    numRunning++;
+                    maxRunning = Math.max(maxRunning, numRunning);
+                    reservedMemory += job.memoryEstimate;
+                    executor.execute(() -> runJob(job));
+                }
+                while (numRunning > 0) {
+                    wait();
+                }
+            }
+        } finally {
+            executor.shutdown();
+            synchronized (this) {
+                memoryWatcher.stop();
+            }
+        }
+        if (printProgress) {
+            System.out.println("Finished all experiments in " + formatDuration(System.nanoTime() - startTime) + ": "
+                    + (numFinished - numSkipped - numFailed) + " run, " + numSkipped + " already existed, "
+                    + numFailed + " failed");
+        }
+    }
+
+    /**
+     * Puts the experiments in the order they are started in: groups of experiments on the same dataset and fold, most
+     * costly group first, and most costly experiment first within each group.
+     */
+    List<Job> order(List<ExperimentalArguments> exps) {
+        final Map<String, List<Job>> groups = new LinkedHashMap<>();
+        final Map<String, Long> dataBytes = new HashMap<>();
+        for (ExperimentalArguments exp : exps) {
+            final long bytes = dataBytes.computeIfAbsent(exp.dataReadLocation + "/" + exp.datasetName,
+                    name -> estimateDataBytes(exp));
+            final Job job = new Job(exp, bytes * getClassifierCost(exp.classifierName),
+                    (long) (bytes * memoryPerDataByte));
+            groups.computeIfAbsent(job.datasetKey, key -> new ArrayList<>()).add(job);
+        }
+        final List<List<Job>> sortedGroups = new ArrayList<>(groups.values());
+        sortedGroups.sort(Comparator.comparingDouble((List<Job> group) ->
+                group.stream().mapToDouble(job -> job.cost).sum()).reversed());
+        final List<Job> jobs = new ArrayList<>(exps.size());
+        for (List<Job> group : sortedGroups) {
+            group.sort(Comparator.comparingDouble((Job job) -> job.cost).reversed());
+            jobs.addAll(group);
+        }
+        return jobs;
+    }
+
+    /**
+     * The size on disk of the files for a dataset, used as the measure of its size in cost and memory estimates.
+     */
+    static long estimateDataBytes(ExperimentalArguments exp) {
+        final File[] files = new File(exp.dataReadLocation, exp.datasetName).listFiles(
+                file -> file.isFile() && file.getName().startsWith(exp.datasetName));
+        long bytes = 0;
+        if (files != null) {
+            for (File file : files) {
+                bytes += file.length();
+            }
+        }
+        return Math.max(1, bytes);
+    }
+
+    /**
+     * The first queued job which may start now, or null if none can.
+     */
+    private Job nextJob(List<Job> queue) {
+        if (numRunning >= numThreads) {
+            return null;
+        }
+        if (numRunning == 0) {
+            return queue.get(0);
+        }
+        final long liveMemory = memoryWatcher.getLatestMemoryUsage();
+        for (Job job : queue) {
+            if (reservedMemory + job.memoryEstimate <= heapBudget && liveMemory + job.memoryEstimate <= heapBudget) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    private void runJob(Job job) {
+        final SharedDataset dataset;
+        synchronized (this) {
+            dataset = datasets.get(job.datasetKey);
+        }
+        // the data is only asked for once it is known the results do not exist yet
+        final boolean[] loaded = {false};
+        boolean failed = true;
+        try {
+            final ClassifierResults[] results = Experiments.setupAndRunExperiment(job.exp, () -> {
+                loaded[0] = true;
+                return dataset.acquire();
+            });
+            failed = loaded[0] && results == null;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            final boolean ran = loaded[0] || failed;
+            synchronized (this) {
+                if (--dataset.numPendingJobs == 0) {
+                    datasets.remove(job.datasetKey);
+                }
+                numRunning--;
+                reservedMemory -= job.memoryEstimate;
+                numFinished++;
+                if (!ran) {
+                    numSkipped++;
+                }
+                if (failed) {
+                    numFailed++;
+                }
+                if (printProgress) {
+                    reportProgress(job, ran, failed);
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    private void reportProgress(Job job, boolean ran, boolean failed) {
+        final long elapsed = System.nanoTime() - startTime;
+        final double perMinute = numFinished / (elapsed / 6e10);
+        final long remaining = (long) ((double) elapsed / numFinished * (numTotal - numFinished));
+        System.out.println("Experiment " + numFinished + "/" + numTotal + " " + (failed ? "failed" : ran ? "done" : "skipped")
+                + " (" + job.exp.toShortString() + "), " + String.format("%.1f", 100.0 * numFinished / numTotal)
+                + "% complete, " + String.format("%.2f", perMinute) + " experiments/min, " + formatDuration(remaining)
+                + " remaining, " + numRunning + " running, " + (memoryWatcher.getLatestMemoryUsage() >> 20)
+                + "MB live after last gc");
+    }
+
+    private static String formatDuration(long nanos) {
+        final long seconds = TimeUnit.NANOSECONDS.toSeconds(nanos);
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    /**
+     * @param heapBudget the most memory in bytes the running experiments may be expected to use, defaults to 80% of the
+     *                   maximum heap
+     */
+    public void setHeapBudget(long heapBudget) {
+        this.heapBudget = heapBudget;
+    }
+
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+
+    /**
+     * @param memoryPerDataByte the memory an experiment is expected to need per byte of its dataset on disk, defaults
+     *                          to 10
+     */
+    public void setMemoryPerDataByte(double memoryPerDataByte) {
+        this.memoryPerDataByte = memoryPerDataByte;
+    }
+
+    public double getMemoryPerDataByte() {
+        return memoryPerDataByte;
+    }
+
+    /**
+     * @param classifierName name of the classifier as in ClassifierLists
+     * @param relativeCost how costly the classifier is relative to others on the same data, defaults to 1
+     */
+    public void setClassifierCost(String classifierName, double relativeCost) {
+        classifierCosts.put(classifierName, relativeCost);
+    }
+
+    public double getClassifierCost(String classifierName) {
+        return classifierCosts.getOrDefault(classifierName, 1.0);
+    }
+
+    public void setPrintProgress(boolean printProgress) {
+        this.printProgress = printProgress;
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public synchronized int getNumFinished() {
+        return numFinished;
+    }
+
+    public synchronized int getNumSkipped() {
+        return numSkipped;
+    }
+
+    public synchronized int getNumFailed() {
+        return numFailed;
+    }
+
+    /**
+     * @return how many times a dataset was loaded in the last run, at most once per dataset and fold
+     */
+    public synchronized int getNumDatasetLoads() {
+        return numDatasetLoads;
+    }
+
+    /**
+     * @return the most experiments which ran at once in the last run
+     */
+    public synchronized int getMaxRunning() {
+        return maxRunning;
+    }
+
+    static class Job {
+        final ExperimentalArguments exp;
+        final String datasetKey;
+        final double cost;
+        final long memoryEstimate;
+
+        Job(ExperimentalArguments exp, double cost, long memoryEstimate) {
+            this.exp = exp;
+            this.datasetKey = exp.dataReadLocation + "/" + exp.datasetName + "/" + exp.foldId;
+            this.cost = cost;
+            this.memoryEstimate = memoryEstimate;
+        }
+    }
+
+    /**
+     * A dataset and fold, loaded on first use by any of the experiments on it.
+     */
+    private class SharedDataset {
+        private final ExperimentalArguments exp;
+        // guarded by the scheduler
+        private int numPendingJobs;
+        // guarded by this
+        private Instances[] data;
+
+        SharedDataset(ExperimentalArguments exp) {
+            this.exp = exp;
+        }
+
+        synchronized Instances[] acquire() throws Exception {
+            if (data == null) {
+                data = Experiments.sampleDataset(exp);
+                synchronized (ExperimentScheduler.this) {
+                    numDatasetLoads++;
+                }
+            }
+            return new Instances[] {new Instances(data[0]), new Instances(data[1])};
+        }
+    }
+}
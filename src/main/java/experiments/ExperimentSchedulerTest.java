@@ -0,0 +1,100 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package experiments;
+
+import experiments.Experiments.ExperimentalArguments;
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.List;
+
+public class ExperimentSchedulerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final String[] CLASSIFIERS = {"Logistic", "C45"};
+    private static final String[] DATASETS = {"ItalyPowerDemand", "Chinatown"};
+
+    private List<ExperimentalArguments> experiments() {
+        ExperimentalArguments args = new ExperimentalArguments();
+        args.dataReadLocation = DatasetLoading.BAKED_IN_TSC_DATA_PATH;
+        args.resultsWriteLocation = folder.getRoot().getPath() + "/";
+        return args.generateExperiments(CLASSIFIERS, null, DATASETS, 0, 2);
+    }
+
+    @Test
+    public void testRunsAllAndSharesData() throws Exception {
+        ExperimentScheduler scheduler = new ExperimentScheduler(2);
+        scheduler.setPrintProgress(false);
+        scheduler.run(experiments());
+
+        Assert.assertEquals(8, scheduler.getNumFinished());
+        Assert.assertEquals(0, scheduler.getNumFailed());
+        Assert.assertEquals(0, scheduler.getNumSkipped());
+        // each dataset and fold is loaded once for both classifiers
+        Assert.assertEquals(4, scheduler.getNumDatasetLoads());
+        for (String classifier : CLASSIFIERS) {
+            for (String dataset : DATASETS) {
+                for (int fold = 0; fold < 2; fold++) {
+                    Assert.assertTrue(new File(folder.getRoot(), classifier + "/Predictions/" + dataset + "/testFold" + fold + ".csv").exists());
+                }
+            }
+        }
+
+        // everything exists now, so a second run loads nothing
+        scheduler.run(experiments());
+        Assert.assertEquals(8, scheduler.getNumSkipped());
+        Assert.assertEquals(0, scheduler.getNumDatasetLoads());
+    }
+
+    @Test
+    public void testOrdersLargestFirst() {
+        ExperimentScheduler scheduler = new ExperimentScheduler(1);
+        scheduler.setClassifierCost("C45", 5);
+        List<ExperimentScheduler.Job> jobs = scheduler.order(experiments());
+
+        for (int i = 1; i < jobs.size(); i++) {
+            ExperimentScheduler.Job previous = jobs.get(i - 1);
+            ExperimentScheduler.Job job = jobs.get(i);
+            if (previous.datasetKey.equals(job.datasetKey)) {
+                Assert.assertTrue(previous.cost >= job.cost);
+            }
+        }
+        // ItalyPowerDemand is the larger on disk, and experiments on the same data are kept together
+        Assert.assertEquals("ItalyPowerDemand", jobs.get(0).exp.datasetName);
+        Assert.assertEquals("C45", jobs.get(0).exp.classifierName);
+        Assert.assertEquals(jobs.get(0).datasetKey, jobs.get(1).datasetKey);
+    }
+
+    @Test
+    public void testHeapBudgetLimitsConcurrency() throws Exception {
+        ExperimentScheduler scheduler = new ExperimentScheduler(4);
+        scheduler.setPrintProgress(false);
+        scheduler.setHeapBudget(1);
+        scheduler.run(experiments());
+
+        // nothing fits the budget, so experiments run one at a time rather than not at all
+        Assert.assertEquals(8, scheduler.getNumFinished());
+        Assert.assertEquals(1, scheduler.getMaxRunning());
+    }
+}
@@ -25,7 +25,9 @@ import evaluation.evaluators.CrossValidationEvaluator;
 import evaluation.evaluators.SingleSampleEvaluator;
 import evaluation.evaluators.SingleTestSetEvaluator;
 import evaluation.evaluators.StratifiedResamplesEvaluator;
+import evaluation.storage.BinaryResultsStore;
 import evaluation.storage.ClassifierResults;
+import experiments.data.DatasetCache;
 import experiments.data.DatasetLoading;
 import machine_learning.classifiers.SaveEachParameter;
 import machine_learning.classifiers.ensembles.SaveableEnsemble;
@@ -43,8 +45,7 @@ import java.io.*;
 import java.lang.reflect.Field;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.logging.Level;
@@ -210,6 +211,28 @@ public class Experiments  {
      * 6) If we're good to go, runs the experiment.
      */
     public static ClassifierResults[] setupAndRunExperiment(ExperimentalArguments expSettings) throws Exception {
+        return setupAndRunExperiment(expSettings, () -> sampleDataset(expSettings));
+    }
+
+    /**
+     * Samples the {train, test} split for the experiment, through the shared DatasetCache if --cacheDatasets is set.
+     */
+    public static Instances[] sampleDataset(ExperimentalArguments expSettings) throws Exception {
+        if (expSettings.cacheDatasets) {
+            DatasetCache cache = DatasetCache.getShared();
+            if (expSettings.datasetCachePath != null)
+                cache.setDiskCacheDirectory(new File(expSettings.datasetCachePath));
+            return cache.sampleDataset(expSettings.dataReadLocation, expSettings.datasetName, expSettings.foldId);
+        }
+        return DatasetLoading.sampleDataset(expSettings.dataReadLocation, expSettings.datasetName, expSettings.foldId);
+    }
+
+    /**
+     * As setupAndRunExperiment(expSettings), but taking the {train, test} split from the given loader, which is only
+     * called once it is known the experiment needs running. Used by the ExperimentScheduler to share loaded datasets
+     * between experiments on the same dataset and fold.
+     */
+    public static ClassifierResults[] setupAndRunExperiment(ExperimentalArguments expSettings, Callable<Instances[]> dataLoader) throws Exception {
         if (beQuiet)
             LOGGER.setLevel(Level.SEVERE); // only print severe things
         else {
@@ -241,7 +264,7 @@ public class Experiments  {
         if (quitEarlyDueToResultsExistence(expSettings))
             return null;
 
-        Instances[] data = DatasetLoading.sampleDataset(expSettings.dataReadLocation, expSettings.datasetName, expSettings.foldId);
+        Instances[] data = dataLoader.call();
         setupClassifierExperimentalOptions(expSettings, expSettings.classifier, data[0]);
         ClassifierResults[] results = runExperiment(expSettings, data[0], data[1], expSettings.classifier);
         LOGGER.log(Level.INFO, "Experiment finished " + expSettings.toShortString() + ", Test Acc:" + results[1].getAcc());
@@ -926,6 +949,12 @@ public class Experiments  {
         if (f.exists()) {
             f.setWritable(true, false);
         }
+
+        if (exp.writeBinaryResults) {
+            String binaryWritingPath = BinaryResultsStore.binaryFileName(fullTestWritingPath);
+            results.writeBinaryResultsToFile(binaryWritingPath);
+            new File(binaryWritingPath).setWritable(true, false);
+        }
     }
 
     /**
@@ -980,6 +1009,8 @@ public class Experiments  {
      * Will run through all combinations of classifiers*datasets*folds provided, using the meta experimental info stored in the
      * standardArgs. If numThreads > 0, will spawn that many threads. If numThreads == 0, will use as many threads as there are cores,
      * else if numThreads == -1, will spawn as many threads as there are cores minus 1, to aid usability of the machine.
+     * The experiments are run by an ExperimentScheduler, largest first, sharing loaded datasets and keeping within
+     * standardArgs.heapBudget of the heap.
      *
      * If using bespoke classifiers (not found in setClassifier), e.g. different parameterisations, bespoke ensembles etc,
      * provide a generator function for each classifier, in a list that is parallel with classifierNames. Assuming the
@@ -1002,16 +1033,11 @@ public class Experiments  {
 
         System.out.println("# cores ="+numCores);
         System.out.println("# threads ="+numThreads);
-        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        ExperimentScheduler scheduler = new ExperimentScheduler(numThreads);
+        scheduler.setHeapBudget((long) (standardArgs.heapBudget * Runtime.getRuntime().maxMemory()));
 
         List<ExperimentalArguments> exps = standardArgs.generateExperiments(classifierNames, classifierGenerators, datasetNames, minFolds, maxFolds);
-        for (ExperimentalArguments exp : exps)
-            executor.execute(exp);
-
-        executor.shutdown();
-        while (!executor.isTerminated()) {
-        }
-        System.out.println("Finished all threads");
+        scheduler.run(exps);
     }
 
 
@@ -1099,6 +1125,22 @@ public class Experiments  {
                 + "requires the least space. Use options other than 0 if generating too many files with too much prediction information for the disk space available, however be aware that there is of course a loss of information.")
         public int classifierResultsFileFormat = 0;
 
+        @Parameter(names={"-wb","--writeBinaryResults"}, arity=1, description = "(boolean) If true, also writes each results file in the compact binary results format, next to the file "
+                + "written according to --fileFormat, for faster loading by later analyses. See evaluation.storage.BinaryResultsStore, which can also convert existing results.")
+        public boolean writeBinaryResults = false;
+
+        @Parameter(names={"-cd","--cacheDatasets"}, arity=1, description = "(boolean) If true, dataset splits are kept in memory and shared between experiments on the same dataset "
+                + "and fold run in this process, instead of being loaded and resampled for each one. See experiments.data.DatasetCache.")
+        public boolean cacheDatasets = false;
+
+        @Parameter(names={"-dcp","--datasetCachePath"}, description = "(String) With --cacheDatasets, a directory to also store the dataset splits in, so that later runs "
+                + "can read them instead of loading and resampling the original files again.")
+        public String datasetCachePath = null;
+
+        @Parameter(names={"-hb","--heapBudget"}, description = "(double) When running multiple experiments in one process through setupAndRunMultipleExperimentsThreaded, the fraction of the maximum heap "
+                + "the running experiments may be expected to use, defaults to 0.8. Experiments wait to start while they would exceed it, see ExperimentScheduler.")
+        public double heapBudget = 0.8;
+
         @Parameter(names={"-nt","--numberOfThreads"}, arity=1, description = "(int) Number of threads to be set for MultiThreadable classifiers, defaults to 1. If set to"
                 + " < 1, Runtime.getRuntime().availableProcessors()-1 threads are used.")
         public int numberOfThreads = 1;
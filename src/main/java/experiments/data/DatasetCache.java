@@ -0,0 +1,322 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package experiments.data;
+
+import tsml.classifiers.distance_based.utils.strings.StrUtils;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A cache of the train/test splits made by DatasetLoading.sampleDataset and sampleTSDataset, so that experiments on the
+ * same dataset and fold in one process read and resample the data once between them.
+ *
+ * Splits are keyed on the data location, problem, fold and the way they were sampled. The cache holds one copy of each
+ * split and hands out copies of it which share the series values: Instances copies share each instance's values until
+ * they are changed (weka copies them on write), and TimeSeriesInstances copies share the immutable TimeSeriesInstance
+ * objects. Callers can therefore change what they are given without affecting the cached split or other callers.
+ *
+ * The memory held is bounded by an estimate of the size of each split, the least recently used splits being evicted
+ * first. Optionally the splits are also written to a directory on disk, from which later processes can read them
+ * without parsing and resampling the original files again. A disk copy is ignored once any of the dataset's files is
+ * newer than it.
+ *
+ * Concurrent requests for the same split wait for a single load, requests for different splits load in parallel.
+ */
+public class DatasetCache {
+
+    private final static Logger LOGGER = Logger.getLogger(DatasetCache.class.getName());
+
+    private static final String DISK_EXTENSION = ".split";
+
+    private static final DatasetCache SHARED = new DatasetCache(Runtime.getRuntime().maxMemory() / 4);
+
+    /**
+     * @return the process wide cache, holding up to a quarter of the maximum heap
+     */
+    public static DatasetCache getShared() {
+        return SHARED;
+    }
+
+    private long maxBytes;
+    private File diskCacheDirectory = null;
+
+    // guarded by this, in least recently used order
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long numBytes = 0;
+    private int numHits = 0;
+    private int numMisses = 0;
+    private int numDiskHits = 0;
+    private int numEvictions = 0;
+
+    /**
+     * @param maxBytes the most memory, by estimate, the cached splits may take up
+     */
+    public DatasetCache(long maxBytes) {
+        setMaxBytes(maxBytes);
+    }
+
+    /**
+     * As DatasetLoading.sampleDataset, returning a copy of the cached split.
+     *
+     * @return new Instances[] { trainSet, testSet };
+     */
+    public Instances[] sampleDataset(String parentFolder, String problem, int fold) throws Exception {
+        final String folder = StrUtils.asDirPath(parentFolder);
+        // the proportion decides the split when the data is in a single file
+        final String key = "weka:" + new File(folder).getAbsolutePath() + ":" + problem + ":" + fold + ":"
+                + DatasetLoading.getProportionKeptForTraining() + ":" + DatasetLoading.getLeaveOneXOutAttributeID();
+        final Instances[] split = get(key, folder, problem, fold, () -> DatasetLoading.sampleDataset(folder, problem, fold));
+        return new Instances[] {new Instances(split[0]), new Instances(split[1])};
+    }
+
+    /**
+     * As DatasetLoading.sampleTSDataset, returning a copy of the cached split.
+     *
+     * @return new TimeSeriesInstances[] { trainSet, testSet };
+     */
+    public TimeSeriesInstances[] sampleTSDataset(String parentFolder, String problem, int fold) throws Exception {
+        final String key = "ts:" + new File(parentFolder).getAbsolutePath() + ":" + problem + ":" + fold;
+        final TimeSeriesInstances[] split = get(key, parentFolder, problem, fold,
+                () -> DatasetLoading.sampleTSDataset(parentFolder, problem, fold));
+        return new TimeSeriesInstances[] {copy(split[0]), copy(split[1])};
+    }
+
+    private static TimeSeriesInstances copy(TimeSeriesInstances data) {
+        final TimeSeriesInstances copy = new TimeSeriesInstances(data.getAll(), data.getClassLabels().clone());
+        copy.setProblemName(data.getProblemName());
+        copy.setDescription(data.getDescription());
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T[] get(String key, String parentFolder, String problem, int fold, Callable<T[]> loader) throws Exception {
+        final Entry entry;
+        synchronized (this) {
+            Entry existing = entries.get(key);
+            if (existing == null) {
+                existing = new Entry();
+                entries.put(key, existing);
+            }
+            entry = existing;
+        }
+        synchronized (entry) {
+            if (entry.split != null) {
+                synchronized (this) {
+                    numHits++;
+                }
+                return (T[]) entry.split;
+            }
+            final File diskFile = diskCacheDirectory == null ? null : new File(diskCacheDirectory,
+                    problem + "_" + fold + "_" + Integer.toHexString(key.hashCode()) + DISK_EXTENSION);
+            T[] split = diskFile == null ? null : readFromDisk(diskFile, new File(parentFolder, problem));
+            if (split != null) {
+                synchronized (this) {
+                    numDiskHits++;
+                }
+            } else {
+                split = loader.call();
+                synchronized (this) {
+                    numMisses++;
+                }
+                if (diskFile != null) {
+                    writeToDisk(diskFile, split);
+                }
+            }
+            entry.split = split;
+            long splitBytes = 0;
+            for (Object data : split) {
+                splitBytes += data instanceof Instances ? estimateBytes((Instances) data)
+                        : estimateBytes((TimeSeriesInstances) data);
+            }
+            synchronized (this) {
+                entry.numBytes = splitBytes;
+                // the entry may have been evicted or cleared while loading, in which case it is just not kept
+                if (entries.get(key) == entry) {
+                    numBytes += entry.numBytes;
+                    evict();
+                }
+            }
+            return split;
+        }
+    }
+
+    /**
+     * Drops least recently used splits until those held fit in the memory bound.
+     */
+    private void evict() {
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (numBytes > maxBytes && iterator.hasNext()) {
+            final Entry entry = iterator.next().getValue();
+            // splits still loading have no size yet and are left be
+            if (entry.numBytes > 0) {
+                iterator.remove();
+                numBytes -= entry.numBytes;
+                numEvictions++;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T[] readFromDisk(File diskFile, File datasetFolder) {
+        if (!diskFile.exists()) {
+            return null;
+        }
+        final File[] sources = datasetFolder.listFiles();
+        if (sources != null) {
+            for (File source : sources) {
+                if (source.lastModified() > diskFile.lastModified()) {
+                    return null;
+                }
+            }
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(diskFile)))) {
+            return (T[]) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.log(Level.WARNING, "Could not read cached split " + diskFile + ", loading the dataset instead", e);
+            return null;
+        }
+    }
+
+    private static void writeToDisk(File diskFile, Object[] split) {
+        try {
+            Files.createDirectories(diskFile.getParentFile().toPath());
+            // written to a temporary file first, so other processes never read a partial split
+            final File temp = File.createTempFile(diskFile.getName(), ".tmp", diskFile.getParentFile());
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+                out.writeObject(split);
+            }
+            Files.move(temp.toPath(), diskFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not write cached split " + diskFile, e);
+        }
+    }
+
+    /**
+     * A rough estimate of the memory taken by some Instances: the values and the objects holding them.
+     */
+    static long estimateBytes(Instances data) {
+        long bytes = 64;
+        for (Instance instance : data) {
+            bytes += 48 + 8L * instance.numValues();
+            for (int i = 0; i < instance.numAttributes(); i++) {
+                if (instance.attribute(i).type() == Attribute.RELATIONAL && !instance.isMissing(i)) {
+                    bytes += estimateBytes(instance.relationalValue(i));
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * A rough estimate of the memory taken by some TimeSeriesInstances: the values and the objects holding them.
+     */
+    static long estimateBytes(TimeSeriesInstances data) {
+        long bytes = 64;
+        for (TimeSeriesInstance instance : data) {
+            bytes += 48;
+            for (int d = 0; d < instance.getNumDimensions(); d++) {
+                bytes += 48 + 8L * instance.get(d).getSeriesLength();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops every split held in memory. Any on disk are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        numBytes = 0;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("maxBytes cannot be negative: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        evict();
+    }
+
+    public synchronized long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @param diskCacheDirectory directory to also keep splits in between processes, or null to only cache in memory
+     */
+    public synchronized void setDiskCacheDirectory(File diskCacheDirectory) {
+        this.diskCacheDirectory = diskCacheDirectory;
+    }
+
+    public synchronized File getDiskCacheDirectory() {
+        return diskCacheDirectory;
+    }
+
+    /**
+     * @return estimated memory taken by the splits held
+     */
+    public synchronized long getNumBytes() {
+        return numBytes;
+    }
+
+    public synchronized int getNumHits() {
+        return numHits;
+    }
+
+    /**
+     * @return how many splits were loaded from the original files
+     */
+    public synchronized int getNumMisses() {
+        return numMisses;
+    }
+
+    public synchronized int getNumDiskHits() {
+        return numDiskHits;
+    }
+
+    public synchronized int getNumEvictions() {
+        return numEvictions;
+    }
+
+    private static class Entry {
+        // guarded by the entry
+        private Object[] split;
+        // guarded by the cache
+        private long numBytes;
+    }
+}
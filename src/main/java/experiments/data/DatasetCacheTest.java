@@ -0,0 +1,89 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package experiments.data;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tsml.data_containers.TimeSeriesInstances;
+import weka.core.Instances;
+
+import static experiments.data.DatasetLoading.BAKED_IN_TSC_DATA_PATH;
+
+public class DatasetCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static void assertSameData(Instances expected, Instances actual) {
+        Assert.assertEquals(expected.numInstances(), actual.numInstances());
+        for (int i = 0; i < expected.numInstances(); i++) {
+            Assert.assertArrayEquals(expected.get(i).toDoubleArray(), actual.get(i).toDoubleArray(), 0);
+        }
+    }
+
+    @Test
+    public void testHitsShareButIsolateChanges() throws Exception {
+        DatasetCache cache = new DatasetCache(Long.MAX_VALUE);
+        Instances[] expected = DatasetLoading.sampleDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 1);
+        Instances[] first = cache.sampleDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 1);
+        first[0].get(0).setValue(0, -1000);
+        first[1].delete(0);
+        Instances[] second = cache.sampleDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 1);
+
+        Assert.assertEquals(1, cache.getNumMisses());
+        Assert.assertEquals(1, cache.getNumHits());
+        assertSameData(expected[0], second[0]);
+        assertSameData(expected[1], second[1]);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() throws Exception {
+        DatasetCache cache = new DatasetCache(Long.MAX_VALUE);
+        cache.sampleDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 0);
+        long oneSplit = cache.getNumBytes();
+        cache.setMaxBytes(oneSplit * 3 / 2);
+
+        cache.sampleDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 1);
+        Assert.assertEquals(1, cache.getNumEvictions());
+        cache.sampleDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 1);
+        Assert.assertEquals(1, cache.getNumHits());
+        cache.sampleDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 0);
+        Assert.assertEquals(3, cache.getNumMisses());
+    }
+
+    @Test
+    public void testDiskCacheSharedBetweenInstances() throws Exception {
+        DatasetCache writer = new DatasetCache(Long.MAX_VALUE);
+        writer.setDiskCacheDirectory(folder.getRoot());
+        Instances[] expected = writer.sampleDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 2);
+        TimeSeriesInstances[] expectedTS = writer.sampleTSDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 2);
+
+        DatasetCache reader = new DatasetCache(Long.MAX_VALUE);
+        reader.setDiskCacheDirectory(folder.getRoot());
+        Instances[] actual = reader.sampleDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 2);
+        TimeSeriesInstances[] actualTS = reader.sampleTSDataset(BAKED_IN_TSC_DATA_PATH, "Chinatown", 2);
+
+        Assert.assertEquals(0, reader.getNumMisses());
+        Assert.assertEquals(2, reader.getNumDiskHits());
+        assertSameData(expected[0], actual[0]);
+        assertSameData(expected[1], actual[1]);
+        Assert.assertArrayEquals(expectedTS[1].toValueArray(), actualTS[1].toValueArray());
+    }
+}
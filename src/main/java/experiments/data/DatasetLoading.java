@@ -23,6 +23,8 @@ import experiments.ClassifierLists;
 import experiments.Experiments;
 import tsml.classifiers.distance_based.utils.strings.StrUtils;
 import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.ts_fileIO.TSBinaryReader;
+import tsml.data_containers.ts_fileIO.TSBinaryWriter;
 import tsml.data_containers.ts_fileIO.TSWriter;
 import tsml.data_containers.utilities.Converter;
 import tsml.data_containers.utilities.TimeSeriesResampler;
@@ -272,33 +274,19 @@ public class DatasetLoading {
     public static Instances[] sampleDataset(String parentFolder, String problem, int fold) throws Exception {
         parentFolder = StrUtils.asDirPath(parentFolder);
         Instances[] data = new Instances[2];
-        File trainFile = new File(parentFolder + problem + "/" + problem + fold + "_TRAIN.arff");
-        File testFile = new File(parentFolder + problem + "/" + problem + fold + "_TEST.arff");
-        boolean predefinedSplitsExist = trainFile.exists() && testFile.exists();
-        if (!predefinedSplitsExist){ //.arff files dont exist, look for .ts
-            trainFile = new File(parentFolder + problem + "/" + problem + fold + "_TRAIN.ts");
-            testFile = new File(parentFolder + problem + "/" + problem + fold + "_TEST.ts");
-            predefinedSplitsExist = trainFile.exists() && testFile.exists();
-        }
-        if (predefinedSplitsExist) {
+        File[] splitFiles = findSplitFiles(parentFolder + problem + "/" + problem + fold);
+        if (splitFiles != null) {
             // CASE 1)
-            data[0] = loadDataThrowable(trainFile);
-            data[1] = loadDataThrowable(testFile);
+            data[0] = loadDataThrowable(splitFiles[0]);
+            data[1] = loadDataThrowable(splitFiles[1]);
             LOGGER.log(Level.FINE, problem + " loaded from predefined folds.");
         }
         else {
-            trainFile = new File(parentFolder + problem + "/" + problem + "_TRAIN.arff");
-            testFile = new File(parentFolder + problem + "/" + problem + "_TEST.arff");
-            boolean predefinedFold0Exists = trainFile.exists() && testFile.exists();
-            if (!predefinedFold0Exists){ //.arff files dont exist, look for .ts
-                trainFile = new File(parentFolder + problem + "/" + problem + "_TRAIN.ts");
-                testFile = new File(parentFolder + problem + "/" + problem + "_TEST.ts");
-                predefinedFold0Exists = trainFile.exists() && testFile.exists();
-            }
-            if (predefinedFold0Exists) {
+            splitFiles = findSplitFiles(parentFolder + problem + "/" + problem);
+            if (splitFiles != null) {
                 // CASE 2)
-                data[0] = loadDataThrowable(trainFile);
-                data[1] = loadDataThrowable(testFile);
+                data[0] = loadDataThrowable(splitFiles[0]);
+                data[1] = loadDataThrowable(splitFiles[1]);
                 if (fold != 0)
 //                    data = InstanceTools.resampleTrainAndTestInstances(data[0], data[1], fold);
 //                data = InstanceTools.resampleTrainAndTestInstances(data[0], data[1], fold);
@@ -344,6 +332,51 @@ public class DatasetLoading {
         return data;
     }
 
+    /**
+     * Finds a pair of train and test files, i.e. pathPrefix_TRAIN and pathPrefix_TEST, looking for .arff, then .ts
+     * formats. Binary .tsb versions of the pair are preferred when both exist and are up to date, see upToDateBinary.
+     *
+     * @param pathPrefix path to the files without the _TRAIN / _TEST suffix
+     * @return new File[] { trainFile, testFile }, or null if no pair exists in any format
+     */
+    private static File[] findSplitFiles(String pathPrefix) {
+        File[] splitFiles = null;
+        for (String extension : new String[] {".arff", ".ts"}) {
+            File trainFile = new File(pathPrefix + "_TRAIN" + extension);
+            File testFile = new File(pathPrefix + "_TEST" + extension);
+            if (trainFile.exists() && testFile.exists()) {
+                splitFiles = new File[] { trainFile, testFile };
+                break;
+            }
+        }
+
+        File trainBinary = upToDateBinary(pathPrefix + "_TRAIN", splitFiles == null ? null : splitFiles[0]);
+        File testBinary = upToDateBinary(pathPrefix + "_TEST", splitFiles == null ? null : splitFiles[1]);
+        if (trainBinary != null && testBinary != null)
+            return new File[] { trainBinary, testBinary };
+        return splitFiles;
+    }
+
+    /**
+     * Finds the binary .tsb version of a file, if it is no older than the file it was converted from. A .tsb older
+     * than its source is ignored, as the source has been changed since the conversion.
+     *
+     * @param pathWithoutExtension path to the file without its extension
+     * @param source the .ts or .arff file the binary was converted from, or null if there is none
+     * @return the .tsb file, or null if it does not exist or is out of date
+     */
+    private static File upToDateBinary(String pathWithoutExtension, File source) {
+        File tsb = new File(pathWithoutExtension + TSBinaryWriter.EXTENSION);
+        if (!tsb.exists())
+            return null;
+        if (source != null && tsb.lastModified() < source.lastModified()) {
+            System.out.println("Ignoring " + tsb.getAbsolutePath() + " as it is older than " + source.getName()
+                    + ", reconvert it with TSBinaryConverter");
+            return null;
+        }
+        return tsb;
+    }
+
     /**
      * If the dataset loaded has a first attribute whose name _contains_ the string "experimentsSplitAttribute".toLowerCase()
      * then it will be assumed that we want to perform a leave out one X cross validation. Instances are sampled such that fold N is comprised of
@@ -407,6 +440,9 @@ public class DatasetLoading {
      * Loads the arff file at the target location and sets the last attribute to be the class value,
      * or throws IOException on any error.
      *
+     * Binary .tsb files are copied in full into Instances, which holds several copies of the data during the conversion
+     * and gives up most of the speed of the mapped read. Use loadTSData to read them without converting.
+     *
      * @param targetFile the file to try and load
      * @return Instances from file.
      * @throws java.io.IOException if cannot find the file, or file is malformed
@@ -414,14 +450,14 @@ public class DatasetLoading {
     public static Instances loadDataThrowable(File targetFile) throws IOException {
         String[] parts = targetFile.getName().split(Pattern.quote("."));
         String extension = "";
-        final String ARFF = ".arff", TS = ".ts";
+        final String ARFF = ".arff", TS = ".ts", TSB = TSBinaryWriter.EXTENSION;
 
         if (parts.length == 2) {
             extension = "." + parts[1]; //split will remove the .
         }
         else {
             //have not been given a specific extension
-            //look for arff or ts formats
+            //look for arff, ts or binary ts formats
             //arbitrarily looking for arff first
             File newtarget = new File(targetFile.getAbsolutePath() + ARFF);
             if (newtarget.exists()) {
@@ -434,24 +470,40 @@ public class DatasetLoading {
                     targetFile = newtarget;
                     extension = TS;
                 }
-                else
-                    throw new IOException("Cannot find file " + targetFile.getAbsolutePath() + " with either .arff or .ts extensions.");
+                else {
+                    newtarget = new File(targetFile.getAbsolutePath() + TSB);
+                    if (newtarget.exists()) {
+                        targetFile = newtarget;
+                        extension = TSB;
+                    }
+                    else
+                        throw new IOException("Cannot find file " + targetFile.getAbsolutePath() + " with either .arff, .ts or .tsb extensions.");
+                }
             }
         }
 
         Instances inst = null;
-        FileReader reader = new FileReader(targetFile);
 
-        if (extension.toLowerCase().equals(ARFF)) {
-            inst = new Instances(reader);
+        if (extension.toLowerCase().equals(TSB)) {
+            // binary data is read via memory mapping, no reader required. Instances cannot wrap the mapped
+            // values, so the whole dataset is copied out of the mapping and then again into Instances
+            inst = Converter.toArff(new TSBinaryReader(targetFile).GetInstances());
         }
-        else if (extension.toLowerCase().equals(TS)) {
-            TSReader tsreader = new TSReader(reader);
-            inst = tsreader.GetInstances();
+        else {
+            FileReader reader = new FileReader(targetFile);
+
+            if (extension.toLowerCase().equals(ARFF)) {
+                inst = new Instances(reader);
+            }
+            else if (extension.toLowerCase().equals(TS)) {
+                TSReader tsreader = new TSReader(reader);
+                inst = tsreader.GetInstances();
+            }
+
+            reader.close();
         }
 
         inst.setClassIndex(inst.numAttributes() - 1);
-        reader.close();
 
         return inst;
     }
@@ -637,8 +689,9 @@ public class DatasetLoading {
     public static TimeSeriesInstances[] sampleTSDataset(String parentFolder, String problem, int fold) throws IOException {
         TimeSeriesInstances[] split = new TimeSeriesInstances[2];
 
-        TimeSeriesInstances train = DatasetLoading.loadTSData(parentFolder + problem + "/" + problem + "_TRAIN.ts");
-        TimeSeriesInstances test = DatasetLoading.loadTSData(parentFolder + problem + "/" + problem + "_TEST.ts");
+        // no extension, so a binary copy of the data is preferred if there is one
+        TimeSeriesInstances train = DatasetLoading.loadTSData(parentFolder + problem + "/" + problem + "_TRAIN");
+        TimeSeriesInstances test = DatasetLoading.loadTSData(parentFolder + problem + "/" + problem + "_TEST");
 
         TimeSeriesResampler.TrainTest trainTest = TimeSeriesResampler.resampleTrainTest(train, test, fold);
         split[0] = trainTest.train;
@@ -657,29 +710,35 @@ public class DatasetLoading {
     public static TimeSeriesInstances loadTSData(File targetFile) throws IOException {
         String[] parts = targetFile.getName().split(Pattern.quote("."));
         String extension;
-        final String ARFF = ".arff", TS = ".ts";
+        final String ARFF = ".arff", TS = ".ts", TSB = TSBinaryWriter.EXTENSION;
 
         if (parts.length == 2) {
             extension = "." + parts[1]; //split will remove the .
         }
         else {
             //have not been given a specific extension
-            //look for ts or arff formats
-            //arbitrarily looking for ts first
-            File newtarget = new File(targetFile.getAbsolutePath() + TS);
-            if (newtarget.exists()) {
-                targetFile = newtarget;
-                extension = TS;
+            //look for binary ts, ts or arff formats
+            //binary first as it is by far the quickest to load, unless it is older
+            //than the file it was converted from, i.e. that file has been changed since
+            File ts = new File(targetFile.getAbsolutePath() + TS);
+            File arff = new File(targetFile.getAbsolutePath() + ARFF);
+            File source = ts.exists() ? ts : arff.exists() ? arff : null;
+            File tsb = upToDateBinary(targetFile.getAbsolutePath(), source);
+
+            if (tsb != null) {
+                targetFile = tsb;
+                extension = TSB;
             }
-            else {
-                newtarget = new File(targetFile.getAbsolutePath() + ARFF);
-                if (newtarget.exists()) {
-                    targetFile = newtarget;
-                    extension = ARFF;
-                }
-                else
-                    throw new IOException("Cannot find file " + targetFile.getAbsolutePath() + " with either .arff or .ts extensions.");
+            else if (source != null) {
+                targetFile = source;
+                extension = source == ts ? TS : ARFF;
             }
+            else
+                throw new IOException("Cannot find file " + targetFile.getAbsolutePath() + " with either .tsb, .ts or .arff extensions.");
+        }
+
+        if (extension.equalsIgnoreCase(TSB)) {
+            return new TSBinaryReader(targetFile).GetInstances();
         }
 
         TimeSeriesInstances inst = null;
@@ -726,6 +785,19 @@ public class DatasetLoading {
     }
 
 
+    /**
+     * Simple utility to save a TimeSeriesInstances object to a binary file, which can be loaded much faster than
+     * the text formats.
+     *
+     * @param dataSet to save
+     * @param fileName full path for file to be saved, without extension
+     */
+    public static void saveTSBinaryDataset(TimeSeriesInstances dataSet, String fileName) throws IOException {
+        TSBinaryWriter writer = new TSBinaryWriter(new File(fileName + TSBinaryWriter.EXTENSION));
+        writer.setData(dataSet);
+        writer.writeBatch();
+    }
+
     /*
      * Testing
      */
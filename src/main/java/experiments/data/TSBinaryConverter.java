@@ -0,0 +1,97 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package experiments.data;
+
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.ts_fileIO.TSBinaryWriter;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Command line tool to convert .ts and .arff datasets into the binary .tsb format read by TSBinaryReader. Converting
+ * a data directory once means every subsequent experiment loads the data by memory mapping rather than parsing text.
+ *
+ * Usage: TSBinaryConverter inputPath [outputPath]
+ *
+ * The input may be a single file or a directory, which is converted recursively keeping the same structure under the
+ * output path. Without an output path the binary files are written next to the originals. Where a .ts and an .arff
+ * file share a name only the .ts file is converted.
+ */
+public class TSBinaryConverter {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: TSBinaryConverter inputPath [outputPath]");
+            System.exit(1);
+        }
+        final File input = new File(args[0]);
+        final File output = args.length == 2 ? new File(args[1]) : input;
+        final long startTime = System.nanoTime();
+        final int numConverted = convert(input, output);
+        System.out.println("converted " + numConverted + " files in " + (System.nanoTime() - startTime) / 1000000 + "ms");
+    }
+
+    /**
+     * Converts a file, or every .ts / .arff file under a directory.
+     *
+     * @param input file or directory
+     * @param output file or directory to write to, may be the same as the input
+     * @return number of files converted
+     */
+    public static int convert(File input, File output) throws IOException {
+        if (input.isDirectory()) {
+            final File[] files = input.listFiles();
+            if (files == null) {
+                throw new IOException("cannot list " + input);
+            }
+            int count = 0;
+            for (File file : files) {
+                count += convert(file, new File(output, file.getName()));
+            }
+            return count;
+        }
+
+        final String name = input.getName();
+        final String base;
+        if (name.endsWith(".ts")) {
+            base = name.substring(0, name.length() - ".ts".length());
+        } else if (name.endsWith(".arff")) {
+            base = name.substring(0, name.length() - ".arff".length());
+            if (new File(input.getParentFile(), base + ".ts").exists()) {
+                // the .ts version takes priority
+                return 0;
+            }
+        } else {
+            return 0;
+        }
+
+        // output is either a directory to write into, or the path of the input mirrored under the output directory
+        final File parent = output.isDirectory() ? output : output.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("cannot create " + parent);
+        }
+        final File target = new File(parent, base + TSBinaryWriter.EXTENSION);
+        final TimeSeriesInstances data = DatasetLoading.loadTSData(input);
+        final TSBinaryWriter writer = new TSBinaryWriter(target);
+        writer.setData(data);
+        writer.writeBatch();
+        System.out.println(input + " -> " + target);
+        return 1;
+    }
+}
@@ -17,17 +17,19 @@
 package machine_learning.classifiers;
 
 import experiments.data.DatasetLoading;
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.eigen.Eigen;
-import org.nd4j.linalg.factory.Nd4j;
 import tsml.classifiers.MultiThreadable;
 import tsml.transformers.ROCKET;
 import utilities.ClassifierTools;
+import utilities.ThreadingUtilities;
 import weka.classifiers.AbstractClassifier;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.matrix.Maths;
 
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 import static utilities.InstanceTools.resampleTrainAndTestInstances;
 
@@ -36,6 +38,11 @@ import static utilities.InstanceTools.resampleTrainAndTestInstances;
  * <p>
  * Based on RidgeClassifierCV from sklearn.
  * https://scikit-learn.org/stable/modules/generated/sklearn.linear_model.RidgeClassifierCV.html
+ * <p>
+ * As in sklearn when there are fewer instances than attributes, the alpha values are compared on their efficient
+ * leave-one-out error, found from a single eigendecomposition of the gram matrix. The gram matrix is built in blocks
+ * of instances and attributes that fit in cache, and the eigendecomposition keeps each eigenvector in a row so its
+ * rotations run over contiguous memory. Multithreading splits building the gram matrix and the final coefficients.
  *
  * @author Matthew Middlehurst
  */
@@ -45,18 +52,27 @@ public class RidgeClassifierCV extends AbstractClassifier implements MultiThread
     private final double[] alphas = {1.00000000e-03, 4.64158883e-03, 2.15443469e-02, 1.00000000e-01,
             4.64158883e-01, 2.15443469e+00, 1.00000000e+01, 4.64158883e+01, 2.15443469e+02, 1.00000000e+03};
 
-    private INDArray coefficients;
+    //instances and attributes in a block of the gram matrix
+    private static final int BLOCK_INSTANCES = 64;
+    private static final int BLOCK_ATTRIBUTES = 256;
+
+    //coefficients per target, [target][attribute]
+    private double[][] coefficients;
     private double[] intercept;
 
     private int numThreads = 1;
-    private static boolean printedNumThreadsError = false;
 
     private double bestScore = -999999;
+    private double bestAlpha;
 
     public double getBestScore() {
         return bestScore;
     }
 
+    public double getBestAlpha() {
+        return bestAlpha;
+    }
+
     @Override
     public void enableMultiThreading(int numThreads) {
         this.numThreads = numThreads;
@@ -67,21 +83,6 @@ public class RidgeClassifierCV extends AbstractClassifier implements MultiThread
         if (instances.classIndex() != instances.numAttributes() - 1)
             throw new Exception("Class attribute must be the final index.");
 
-        //Set to OMP_NUM_THREADS=1 for single thread run
-        //Check if OMP_NUM_THREADS matches numThreads
-        if (!printedNumThreadsError) {
-            String value = System.getenv("OMP_NUM_THREADS");
-            if (value == null && numThreads != Runtime.getRuntime().availableProcessors())
-                System.err.println("RidgeClassifierCV: OMP_NUM_THREADS environmental variable not set. Set it to the " +
-                        "number of threads you wish to use or set numThreads to " +
-                        "Runtime.getRuntime().availableProcessors(). Must be consistent with numThreads field." +
-                        System.lineSeparator() + "Example: OMP_NUM_THREADS=1 java tsml.jar");
-            if (value != null && Integer.parseInt(value) != numThreads)
-                System.err.println("RidgeClassifierCV: OMP_NUM_THREADS environmental variable and numThreads do not " +
-                        "match.");
-            printedNumThreadsError = true;
-        }
-
         bestScore = -999999;
 
         double[][] data = new double[instances.numInstances()][instances.numAttributes() - 1];
@@ -121,89 +122,440 @@ public class RidgeClassifierCV extends AbstractClassifier implements MultiThread
         double[] xScale = new double[data[0].length];
         preprocessData(data, labels, xOffset, yOffset, xScale);
 
-        //original uses SVD when no. instances > no. attributes
-        INDArray matrix = Nd4j.create(data);
-        INDArray q = matrix.mmul(matrix.transpose());
-        INDArray eigvals = Eigen.symmetricGeneralizedEigenvalues(q);
-        INDArray qt_y = q.transpose();
-        qt_y = qt_y.mmul(Nd4j.create(labels));
-
-        INDArray bestCoef = null;
-        for (double alpha : alphas) {
-            double[] w = new double[(int) eigvals.size(0)];
-            for (int i = 0; i < w.length; i++) {
-                w[i] = 1. / (eigvals.getDouble(i) + alpha);
+        ExecutorService ex = numThreads > 1 ? ThreadingUtilities.buildExecutorService(numThreads) : null;
+        try {
+            //original uses SVD when no. instances > no. attributes
+            //q is overwritten with the eigenvectors, one per row
+            double[][] q = gram(data, ex);
+            double[] eigvals = symmetricEigen(q);
+            int numTargets = labels[0].length;
+
+            double[][] qt_y = new double[q.length][numTargets];
+            for (int i = 0; i < q.length; i++) {
+                for (int n = 0; n < q.length; n++) {
+                    for (int t = 0; t < numTargets; t++) {
+                        qt_y[i][t] += q[i][n] * labels[n][t];
+                    }
+                }
             }
 
-            double[][] p = new double[1][data.length];
-            Arrays.fill(p[0], Math.sqrt(data.length) / data.length);
-            INDArray sw = Nd4j.create(p);
-            double[] k = sw.mmul(q).toDoubleVector();
-            for (int i = 0; i < k.length; i++) k[i] = Math.abs(k[i]);
+            //the eigenvector closest to constant is left unpenalised to fit the intercept
+            double sw = Math.sqrt(data.length) / data.length;
+            double[] k = new double[q.length];
+            for (int i = 0; i < q.length; i++) {
+                for (int n = 0; n < q.length; n++) {
+                    k[i] += sw * q[i][n];
+                }
+                k[i] = Math.abs(k[i]);
+            }
             int idx = argmax(k);
-            w[idx] = 0;
 
-            double[][] d = new double[w.length][(int) qt_y.size(1)];
-            for (int i = 0; i < d.length; i++) {
-                for (int n = 0; n < d[i].length; n++) {
-                    d[i][n] = w[i] * qt_y.getDouble(i, n);
+            double[][] bestCoef = null;
+            for (double alpha : alphas) {
+                double[] w = new double[eigvals.length];
+                for (int i = 0; i < w.length; i++) {
+                    w[i] = 1. / (eigvals[i] + alpha);
+                }
+                w[idx] = 0;
+
+                //dual coefficients and the diagonal of the inverse of the gram matrix plus alpha
+                double[][] coefs = new double[q.length][numTargets];
+                double[] sums = new double[q.length];
+                for (int i = 0; i < w.length; i++) {
+                    if (w[i] == 0) continue;
+                    double[] row = q[i];
+                    for (int n = 0; n < row.length; n++) {
+                        double v = w[i] * row[n];
+                        sums[n] += v * row[n];
+                        for (int t = 0; t < numTargets; t++) {
+                            coefs[n][t] += v * qt_y[i][t];
+                        }
+                    }
                 }
-            }
 
-            INDArray coefs = q.mmul(Nd4j.create(d));
+                double e = 0;
+                for (int i = 0; i < sums.length; i++) {
+                    for (int n = 0; n < numTargets; n++) {
+                        e += Math.pow(coefs[i][n] / sums[i], 2);
+                    }
+                }
+                e /= sums.length * numTargets;
+                e = 1 - e;
 
-            double[] sums = new double[w.length];
-            for (int i = 0; i < w.length; i++) {
-                for (int n = 0; n < q.size(0); n++) {
-                    sums[n] += w[i] * Math.pow(q.getDouble(n, i), 2);
+                if (e > bestScore) {
+                    bestScore = e;
+                    bestAlpha = alpha;
+                    bestCoef = coefs;
                 }
             }
 
-            double e = 0;
-            for (int i = 0; i < sums.length; i++) {
-                for (int n = 0; n < coefs.size(1); n++) {
-                    e += Math.pow(coefs.getDouble(i, n) / sums[i], 2);
-                }
+            coefficients = primal(bestCoef, data, xScale, ex);
+        } finally {
+            if (ex != null) ThreadingUtilities.shutdownExecutor(ex);
+        }
+
+        intercept = new double[yOffset.length];
+        for (int i = 0; i < intercept.length; i++) {
+            double d = 0;
+            for (int n = 0; n < xOffset.length; n++) {
+                d += xOffset[n] * coefficients[i][n];
             }
-            e /= sums.length * coefs.size(1);
-            e = 1 - e;
+            intercept[i] = yOffset[i] - d;
+        }
+    }
+
+    @Override
+    public double classifyInstance(Instance inst) {
+        return classify(inst.toDoubleArray());
+    }
 
-            if (e > bestScore) {
-                bestScore = e;
-                bestCoef = coefs;
+    /**
+     * Classifies the attribute values of an instance without going through a weka Instance. Only the values of the
+     * attributes seen in training are read, so a trailing class value is ignored.
+     *
+     * @param values the attribute values, in training order
+     * @return the index of the predicted class
+     */
+    public double classify(double[] values) {
+        double best = -Double.MAX_VALUE;
+        int bestIdx = -1;
+        for (int i = 0; i < intercept.length; i++) {
+            double[] coef = coefficients[i];
+            double sum = intercept[i];
+            for (int n = 0; n < coef.length; n++) {
+                sum += values[n] * coef[n];
+            }
+            if (intercept.length == 1) {
+                return sum > 0 ? 1 : 0;
+            }
+            if (sum > best) {
+                best = sum;
+                bestIdx = i;
             }
         }
+        return bestIdx;
+    }
 
-        INDArray a = bestCoef.transpose().mmul(matrix);
-        double[][] b = a.size(0) == 1 ? new double[][]{a.toDoubleVector()} : a.toDoubleMatrix();
-        for (int i = 0; i < b.length; i++) {
-            for (int n = 0; n < b[i].length; n++) {
-                b[i][n] /= xScale[n];
+    /**
+     * The gram matrix of the data, i.e. the dot product of every pair of instances. Each block of instances is
+     * multiplied with every later block a block of attributes at a time, so both stay in cache.
+     */
+    static double[][] gram(double[][] data, ExecutorService ex) throws Exception {
+        final double[][] gram = new double[data.length][data.length];
+        if (ex == null) {
+            for (int i = 0; i < data.length; i += BLOCK_INSTANCES) {
+                gramBlock(data, gram, i);
+            }
+        } else {
+            List<Callable<Void>> jobs = new ArrayList<>();
+            for (int i = 0; i < data.length; i += BLOCK_INSTANCES) {
+                final int from = i;
+                jobs.add(() -> {
+                    gramBlock(data, gram, from);
+                    return null;
+                });
             }
+            ThreadingUtilities.computeAll(ex, jobs, false);
         }
 
-        double[][] c = new double[][]{xOffset};
-        coefficients = Nd4j.create(b).transpose();
-        INDArray d = Nd4j.create(c).mmul(coefficients);
-        intercept = new double[yOffset.length];
-        for (int i = 0; i < intercept.length; i++) {
-            intercept[i] = yOffset[i] - d.getDouble(i);
+        for (int i = 0; i < gram.length; i++) {
+            for (int n = 0; n < i; n++) {
+                gram[i][n] = gram[n][i];
+            }
         }
+        return gram;
     }
 
-    @Override
-    public double classifyInstance(Instance inst) {
-        double[][] data = new double[1][(int) coefficients.size(0)];
-        for (int i = 0; i < data[0].length; i++) {
-            data[0][i] = inst.value(i);
+    /**
+     * Fills the upper triangle of the gram matrix for the block of instances starting at from.
+     */
+    private static void gramBlock(double[][] data, double[][] gram, int from) {
+        final int to = Math.min(data.length, from + BLOCK_INSTANCES);
+        final int numAttributes = data[0].length;
+        for (int start = 0; start < numAttributes; start += BLOCK_ATTRIBUTES) {
+            final int end = Math.min(numAttributes, start + BLOCK_ATTRIBUTES);
+            for (int blockStart = from; blockStart < data.length; blockStart += BLOCK_INSTANCES) {
+                final int blockEnd = Math.min(data.length, blockStart + BLOCK_INSTANCES);
+                for (int i = from; i < to; i++) {
+                    final double[] a = data[i];
+                    final double[] row = gram[i];
+                    int n = Math.max(i, blockStart);
+                    //four dot products at once, for independent sums and a quarter of the reads of a
+                    for (; n + 3 < blockEnd; n += 4) {
+                        final double[] b0 = data[n];
+                        final double[] b1 = data[n + 1];
+                        final double[] b2 = data[n + 2];
+                        final double[] b3 = data[n + 3];
+                        double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+                        for (int k = start; k < end; k++) {
+                            final double v = a[k];
+                            s0 += v * b0[k];
+                            s1 += v * b1[k];
+                            s2 += v * b2[k];
+                            s3 += v * b3[k];
+                        }
+                        row[n] += s0;
+                        row[n + 1] += s1;
+                        row[n + 2] += s2;
+                        row[n + 3] += s3;
+                    }
+                    for (; n < blockEnd; n++) {
+                        final double[] b = data[n];
+                        double s = 0;
+                        for (int k = start; k < end; k++) {
+                            s += a[k] * b[k];
+                        }
+                        row[n] += s;
+                    }
+                }
+            }
         }
+    }
 
-        double[] x = Nd4j.create(data).mmul(coefficients).toDoubleVector();
-        for (int i = 0; i < intercept.length; i++) {
-            x[i] += intercept[i];
+    /**
+     * The coefficients of each target in the original attribute space, found from the dual coefficients a block of
+     * attributes at a time.
+     */
+    private static double[][] primal(double[][] dual, double[][] data, double[] xScale, ExecutorService ex)
+            throws Exception {
+        final int numTargets = dual[0].length;
+        final double[][] coefficients = new double[numTargets][xScale.length];
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for (int i = 0; i < xScale.length; i += BLOCK_ATTRIBUTES * 4) {
+            final int start = i;
+            final int end = Math.min(xScale.length, i + BLOCK_ATTRIBUTES * 4);
+            jobs.add(() -> {
+                for (int n = 0; n < data.length; n++) {
+                    for (int t = 0; t < numTargets; t++) {
+                        final double c = dual[n][t];
+                        final double[] coef = coefficients[t];
+                        for (int k = start; k < end; k++) {
+                            coef[k] += c * data[n][k];
+                        }
+                    }
+                }
+                for (int t = 0; t < numTargets; t++) {
+                    for (int k = start; k < end; k++) {
+                        coefficients[t][k] /= xScale[k];
+                    }
+                }
+                return null;
+            });
+        }
+
+        if (ex == null) {
+            for (Callable<Void> job : jobs) {
+                job.call();
+            }
+        } else {
+            ThreadingUtilities.computeAll(ex, jobs, false);
+        }
+        return coefficients;
+    }
+
+    /**
+     * Eigendecomposition of a symmetric matrix, by Householder reduction to tridiagonal form and the implicit QL
+     * algorithm, as in JAMA. Unlike JAMA the matrix is kept transposed so every inner loop runs along a row.
+     *
+     * @param a the symmetric matrix, overwritten with the eigenvectors, one per row
+     * @return the eigenvalues, in the order of the eigenvectors
+     */
+    static double[] symmetricEigen(double[][] a) {
+        final int n = a.length;
+        final double[] d = new double[n];
+        final double[] e = new double[n];
+        tridiagonalise(a, d, e);
+        diagonalise(a, d, e);
+        return d;
+    }
+
+    /**
+     * Householder reduction to tridiagonal form, JAMA tred2 on the transpose. Leaves the diagonal in d, the
+     * subdiagonal in e and the transpose of the accumulated transformations in z.
+     */
+    private static void tridiagonalise(double[][] z, double[] d, double[] e) {
+        final int n = z.length;
+        for (int j = 0; j < n; j++) {
+            d[j] = z[j][n - 1];
         }
 
-        return x.length > 1 ? argmax(x) : (x[0] > 0 ? 1 : 0);
+        for (int i = n - 1; i > 0; i--) {
+            double scale = 0;
+            double h = 0;
+            for (int k = 0; k < i; k++) {
+                scale += Math.abs(d[k]);
+            }
+
+            if (scale == 0) {
+                e[i] = d[i - 1];
+                for (int j = 0; j < i; j++) {
+                    d[j] = z[j][i - 1];
+                    z[j][i] = 0;
+                    z[i][j] = 0;
+                }
+            } else {
+                for (int k = 0; k < i; k++) {
+                    d[k] /= scale;
+                    h += d[k] * d[k];
+                }
+                double f = d[i - 1];
+                double g = Math.sqrt(h);
+                if (f > 0) {
+                    g = -g;
+                }
+                e[i] = scale * g;
+                h = h - f * g;
+                d[i - 1] = f - g;
+                for (int j = 0; j < i; j++) {
+                    e[j] = 0;
+                }
+
+                final double[] zi = z[i];
+                for (int j = 0; j < i; j++) {
+                    final double[] zj = z[j];
+                    f = d[j];
+                    zi[j] = f;
+                    g = e[j] + zj[j] * f;
+                    for (int k = j + 1; k < i; k++) {
+                        g += zj[k] * d[k];
+                        e[k] += zj[k] * f;
+                    }
+                    e[j] = g;
+                }
+
+                f = 0;
+                for (int j = 0; j < i; j++) {
+                    e[j] /= h;
+                    f += e[j] * d[j];
+                }
+                final double hh = f / (h + h);
+                for (int j = 0; j < i; j++) {
+                    e[j] -= hh * d[j];
+                }
+                for (int j = 0; j < i; j++) {
+                    final double[] zj = z[j];
+                    f = d[j];
+                    g = e[j];
+                    for (int k = j; k < i; k++) {
+                        zj[k] -= (f * e[k] + g * d[k]);
+                    }
+                    d[j] = zj[i - 1];
+                    zj[i] = 0;
+                }
+            }
+            d[i] = h;
+        }
+
+        //accumulate the transformations
+        for (int i = 0; i < n - 1; i++) {
+            final double[] zi = z[i];
+            final double[] next = z[i + 1];
+            zi[n - 1] = zi[i];
+            zi[i] = 1;
+            final double h = d[i + 1];
+            if (h != 0) {
+                for (int k = 0; k <= i; k++) {
+                    d[k] = next[k] / h;
+                }
+                for (int j = 0; j <= i; j++) {
+                    final double[] zj = z[j];
+                    double g = 0;
+                    for (int k = 0; k <= i; k++) {
+                        g += next[k] * zj[k];
+                    }
+                    for (int k = 0; k <= i; k++) {
+                        zj[k] -= g * d[k];
+                    }
+                }
+            }
+            for (int k = 0; k <= i; k++) {
+                next[k] = 0;
+            }
+        }
+        for (int j = 0; j < n; j++) {
+            d[j] = z[j][n - 1];
+            z[j][n - 1] = 0;
+        }
+        z[n - 1][n - 1] = 1;
+        e[0] = 0;
+    }
+
+    /**
+     * Symmetric tridiagonal QL algorithm, JAMA tql2 on the transpose. The eigenvalues are left unsorted.
+     */
+    private static void diagonalise(double[][] z, double[] d, double[] e) {
+        final int n = z.length;
+        for (int i = 1; i < n; i++) {
+            e[i - 1] = e[i];
+        }
+        e[n - 1] = 0;
+
+        double f = 0;
+        double tst1 = 0;
+        final double eps = Math.pow(2, -52);
+        for (int l = 0; l < n; l++) {
+            //find a small subdiagonal element
+            tst1 = Math.max(tst1, Math.abs(d[l]) + Math.abs(e[l]));
+            int m = l;
+            while (m < n - 1 && Math.abs(e[m]) > eps * tst1) {
+                m++;
+            }
+
+            //if m == l, d[l] is already an eigenvalue, otherwise iterate
+            if (m > l) {
+                do {
+                    double g = d[l];
+                    double p = (d[l + 1] - g) / (2 * e[l]);
+                    double r = Maths.hypot(p, 1);
+                    if (p < 0) {
+                        r = -r;
+                    }
+                    d[l] = e[l] / (p + r);
+                    d[l + 1] = e[l] * (p + r);
+                    final double dl1 = d[l + 1];
+                    double h = g - d[l];
+                    for (int i = l + 2; i < n; i++) {
+                        d[i] -= h;
+                    }
+                    f += h;
+
+                    //implicit QL transformation
+                    p = d[m];
+                    double c = 1;
+                    double c2 = c;
+                    double c3 = c;
+                    final double el1 = e[l + 1];
+                    double s = 0;
+                    double s2 = 0;
+                    for (int i = m - 1; i >= l; i--) {
+                        c3 = c2;
+                        c2 = c;
+                        s2 = s;
+                        g = c * e[i];
+                        h = c * p;
+                        r = Maths.hypot(p, e[i]);
+                        e[i + 1] = s * r;
+                        s = e[i] / r;
+                        c = p / r;
+                        p = c * d[i] - s * g;
+                        d[i + 1] = h + s * (c * g + s * d[i]);
+
+                        final double[] zi = z[i];
+                        final double[] next = z[i + 1];
+                        for (int k = 0; k < n; k++) {
+                            h = next[k];
+                            next[k] = s * zi[k] + c * h;
+                            zi[k] = c * zi[k] - s * h;
+                        }
+                    }
+                    p = -s * s2 * c3 * el1 * e[l] / dl1;
+                    e[l] = s * p;
+                    d[l] = c * p;
+                } while (Math.abs(e[l]) > eps * tst1);
+            }
+            d[l] = d[l] + f;
+            e[l] = 0;
+        }
     }
 
     private void preprocessData(double[][] data, double[][] labels, double[] xOffset, double[] yOffset,
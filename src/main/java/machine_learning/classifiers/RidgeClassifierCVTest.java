@@ -0,0 +1,202 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package machine_learning.classifiers;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.classifiers.kernel_based.ROCKETClassifier;
+import utilities.ClassifierTools;
+import weka.core.Instances;
+import weka.core.matrix.Matrix;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class RidgeClassifierCVTest {
+
+    @Test
+    public void testEigendecomposition() throws Exception {
+        // a gram matrix of fewer attributes than instances, so most eigenvalues are 0
+        Random rand = new Random(0);
+        double[][] data = new double[60][20];
+        for (double[] row : data) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = rand.nextGaussian();
+            }
+        }
+        double[][] gram = RidgeClassifierCV.gram(data, null);
+        double[][] vectors = RidgeClassifierCV.gram(data, null);
+        double[] values = RidgeClassifierCV.symmetricEigen(vectors);
+
+        for (int e = 0; e < vectors.length; e++) {
+            for (int i = 0; i < gram.length; i++) {
+                double sum = 0;
+                for (int n = 0; n < gram.length; n++) {
+                    sum += gram[i][n] * vectors[e][n];
+                }
+                Assert.assertEquals(values[e] * vectors[e][i], sum, 1e-9);
+            }
+            for (int f = 0; f < vectors.length; f++) {
+                double dot = 0;
+                for (int n = 0; n < gram.length; n++) {
+                    dot += vectors[e][n] * vectors[f][n];
+                }
+                Assert.assertEquals(e == f ? 1 : 0, dot, 1e-12);
+            }
+        }
+    }
+
+    /**
+     * Centres and scales the attributes as the classifier does, returning the offsets in the last two rows.
+     */
+    private static double[][] standardise(Instances data) {
+        int numAttributes = data.numAttributes() - 1;
+        double[][] x = new double[data.numInstances() + 2][numAttributes];
+        double[] offset = x[data.numInstances()];
+        double[] scale = x[data.numInstances() + 1];
+        for (int i = 0; i < data.numInstances(); i++) {
+            for (int n = 0; n < numAttributes; n++) {
+                x[i][n] = data.get(i).value(n);
+                offset[n] += x[i][n] / data.numInstances();
+            }
+        }
+        for (int i = 0; i < data.numInstances(); i++) {
+            for (int n = 0; n < numAttributes; n++) {
+                x[i][n] -= offset[n];
+                scale[n] += x[i][n] * x[i][n];
+            }
+        }
+        for (int n = 0; n < numAttributes; n++) {
+            scale[n] = Math.sqrt(scale[n]);
+            for (int i = 0; i < data.numInstances(); i++) {
+                x[i][n] /= scale[n];
+            }
+        }
+        return x;
+    }
+
+    /**
+     * Ridge regression with an unpenalised intercept on the given rows, solved directly through the gram matrix.
+     * Returns the coefficients followed by the intercept.
+     */
+    private static double[] ridge(double[][] x, double[] y, boolean[] use, double alpha) {
+        int numRows = 0;
+        double[] mean = new double[x[0].length];
+        double yMean = 0;
+        for (int i = 0; i < y.length; i++) {
+            if (!use[i]) continue;
+            numRows++;
+            yMean += y[i];
+            for (int n = 0; n < mean.length; n++) {
+                mean[n] += x[i][n];
+            }
+        }
+        yMean /= numRows;
+        for (int n = 0; n < mean.length; n++) {
+            mean[n] /= numRows;
+        }
+
+        double[][] centred = new double[numRows][];
+        double[][] target = new double[numRows][1];
+        for (int i = 0, r = 0; i < y.length; i++) {
+            if (!use[i]) continue;
+            centred[r] = new double[mean.length];
+            for (int n = 0; n < mean.length; n++) {
+                centred[r][n] = x[i][n] - mean[n];
+            }
+            target[r++][0] = y[i] - yMean;
+        }
+        Matrix xc = new Matrix(centred);
+        Matrix k = xc.times(xc.transpose()).plus(Matrix.identity(numRows, numRows).times(alpha));
+        double[] beta = xc.transpose().times(k.solve(new Matrix(target))).getColumnPackedCopy();
+
+        double[] result = new double[beta.length + 1];
+        System.arraycopy(beta, 0, result, 0, beta.length);
+        result[beta.length] = yMean;
+        for (int n = 0; n < beta.length; n++) {
+            result[beta.length] -= mean[n] * beta[n];
+        }
+        return result;
+    }
+
+    @Test
+    public void testLeaveOneOutScore() throws Exception {
+        Instances train = DatasetLoading.sampleGunPoint(0)[0];
+        RidgeClassifierCV ridge = new RidgeClassifierCV();
+        ridge.buildClassifier(train);
+
+        // the efficient leave one out error matches refitting without each instance
+        double[][] x = standardise(train);
+        double[] y = new double[train.numInstances()];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = train.get(i).classValue() == 1 ? 1 : -1;
+        }
+        double error = 0;
+        for (int i = 0; i < y.length; i++) {
+            boolean[] use = new boolean[y.length];
+            Arrays.fill(use, true);
+            use[i] = false;
+            double[] beta = ridge(x, y, use, ridge.getBestAlpha());
+            double pred = beta[beta.length - 1];
+            for (int n = 0; n < beta.length - 1; n++) {
+                pred += x[i][n] * beta[n];
+            }
+            error += (y[i] - pred) * (y[i] - pred);
+        }
+        Assert.assertEquals(1 - error / y.length, ridge.getBestScore(), 1e-8);
+    }
+
+    @Test
+    public void testPredictionsMatchDirectSolution() throws Exception {
+        Instances[] data = DatasetLoading.sampleGunPoint(0);
+        RidgeClassifierCV ridge = new RidgeClassifierCV();
+        ridge.enableMultiThreading(2);
+        ridge.buildClassifier(data[0]);
+
+        double[][] x = standardise(data[0]);
+        int numInstances = data[0].numInstances();
+        double[] offset = x[numInstances];
+        double[] scale = x[numInstances + 1];
+        double[] y = new double[numInstances];
+        boolean[] use = new boolean[numInstances];
+        for (int i = 0; i < y.length; i++) {
+            y[i] = data[0].get(i).classValue() == 1 ? 1 : -1;
+            use[i] = true;
+        }
+        double[] beta = ridge(x, y, use, ridge.getBestAlpha());
+
+        for (int i = 0; i < data[1].numInstances(); i++) {
+            double pred = beta[beta.length - 1];
+            for (int n = 0; n < beta.length - 1; n++) {
+                pred += (data[1].get(i).value(n) - offset[n]) / scale[n] * beta[n];
+            }
+            Assert.assertEquals(pred > 0 ? 1 : 0, ridge.classifyInstance(data[1].get(i)), 0);
+        }
+    }
+
+    @Test
+    public void testROCKETAccuracy() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        ROCKETClassifier c = new ROCKETClassifier();
+        c.setSeed(0);
+        c.setNumKernels(1000);
+        c.buildClassifier(data[0]);
+        Assert.assertTrue(ClassifierTools.accuracy(data[1], c) > 0.9);
+    }
+}
@@ -34,6 +34,7 @@ import java.util.Arrays;
 
 import tsml.classifiers.EnhancedAbstractClassifier;
 import tsml.classifiers.Checkpointable;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 import machine_learning.classifiers.SaveEachParameter;
 import tsml.classifiers.Tuneable;
@@ -62,7 +63,7 @@ import tsml.classifiers.Tuneable;
  * @author James Large (james.large@uea.ac.uk)
  */
 public class TunedClassifier extends EnhancedAbstractClassifier 
-        implements SaveEachParameter,ParameterSplittable,Checkpointable, TrainTimeContractable {
+        implements SaveEachParameter,ParameterSplittable,Checkpointable, TrainTimeContractable, MultiThreadable {
 
     ParameterSpace space = null;
     Tuner tuner = null;
@@ -84,6 +85,8 @@ public class TunedClassifier extends EnhancedAbstractClassifier
     
     boolean PS_parameterSplitting = false; //ParameterSplittable
     int PS_paraSetID = -1; //ParameterSplittable
+    
+    int numThreads = 1; //MultiThreadable
     ////////// end interface variables
 
     /**
@@ -394,6 +397,15 @@ public class TunedClassifier extends EnhancedAbstractClassifier
     public boolean withinTrainContract(long start) {
         return tuner.withinTrainContract(start);
     }
+    
+    /**
+     * Evaluates parameter sets concurrently while tuning, see Tuner. The final build on the 
+     * full train data with the best parameters is not affected
+     */
+    @Override //MultiThreadable
+    public void enableMultiThreading(int numThreads) {
+        this.numThreads = numThreads;
+    }
 
     
     /**
@@ -409,5 +421,8 @@ public class TunedClassifier extends EnhancedAbstractClassifier
         
         if (trainTimeContract)
             tuner.setTrainTimeLimit(this.trainContractTimeNanos);
+        
+        if (numThreads > 1)
+            tuner.enableMultiThreading(numThreads);
     }
 }
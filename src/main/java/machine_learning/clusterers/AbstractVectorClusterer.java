@@ -17,24 +17,43 @@
  
 package machine_learning.clusterers;
 
+import tsml.classifiers.MultiThreadable;
+import tsml.classifiers.distance_based.distances.DistanceMeasure;
+import utilities.ThreadingUtilities;
 import weka.clusterers.AbstractClusterer;
 import weka.core.DistanceFunction;
 import weka.core.EuclideanDistance;
 import weka.core.Instance;
 import weka.core.Instances;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
 /**
  * Abstract class for vector based clusterers.
  *
  * @author Matthew Middlehurst
  */
-public abstract class AbstractVectorClusterer extends AbstractClusterer{
+public abstract class AbstractVectorClusterer extends AbstractClusterer implements MultiThreadable{
+
+    //points per job when finding silhouette values on several threads.
+    private static final int SILHOUETTE_BLOCK_SIZE = 256;
 
     protected DistanceFunction distFunc = new EuclideanDistance();
     protected boolean normaliseData = true;
     protected boolean copyInstances = true;
+    protected int numThreads = 1;
+
+    //storage for distance matrices, floats halve the memory and a directory
+    //maps the matrix into a file there rather than holding it on the heap.
+    protected boolean floatDistances = false;
+    protected File distancesDirectory = null;
 
     protected int[] assignments;
     protected ArrayList<Integer>[] clusters;
@@ -55,6 +74,23 @@ public abstract class AbstractVectorClusterer extends AbstractClusterer{
         this.distFunc = distFunc;
     }
 
+    public void setDistanceMeasure(DistanceMeasure distanceMeasure){
+        this.distFunc = distanceMeasure.asDistanceFunction();
+    }
+
+    public void setFloatDistances(boolean b){
+        this.floatDistances = b;
+    }
+
+    public void setDistancesDirectory(File directory){
+        this.distancesDirectory = directory;
+    }
+
+    @Override
+    public void enableMultiThreading(int numThreads){
+        this.numThreads = Math.max(1, numThreads);
+    }
+
     public void setNormaliseData(boolean b){
         this.normaliseData = b;
     }
@@ -84,4 +120,114 @@ public abstract class AbstractVectorClusterer extends AbstractClusterer{
             }
         }
     }
+
+    //Find the distances between every pair of instances, the caller closes
+    //the matrix once done with it.
+    protected DistanceMatrix buildDistanceMatrix(Instances data) throws IOException{
+        DistanceMatrix distanceMatrix;
+
+        if (distancesDirectory == null){
+            distanceMatrix = new DistanceMatrix(data.numInstances(), floatDistances);
+        }
+        else{
+            distanceMatrix = new DistanceMatrix(data.numInstances(), floatDistances, distancesDirectory);
+        }
+
+        try {
+            distanceMatrix.fill(data, distFunc, numThreads);
+        } catch (RuntimeException e){
+            distanceMatrix.close();
+            throw e;
+        }
+
+        return distanceMatrix;
+    }
+
+    //Lletı, R., et al.
+    //"Selecting variables for k-means cluster analysis by using a genetic algorithm that optimises the silhouettes."
+    //Analytica Chimica Acta 515.1 (2004): 87-100.
+
+    //Sum of the silhouette values of every point for a clustering, used to
+    //find the best value for k. The distances from a point to the points in
+    //each cluster are summed in one pass along its row of the matrix.
+    protected double totalSilhouette(DistanceMatrix distanceMatrix, int[] assignments, ArrayList<Integer>[] clusters)
+            throws Exception{
+        double[] silVals = new double[assignments.length];
+
+        if (numThreads <= 1 || assignments.length <= SILHOUETTE_BLOCK_SIZE){
+            silhouetteValues(distanceMatrix, assignments, clusters, silVals, 0, assignments.length);
+        }
+        else{
+            List<Callable<Void>> jobs = new ArrayList<>();
+
+            for (int i = 0; i < assignments.length; i += SILHOUETTE_BLOCK_SIZE){
+                int start = i;
+                int end = Math.min(assignments.length, i + SILHOUETTE_BLOCK_SIZE);
+                jobs.add(() -> {
+                    silhouetteValues(distanceMatrix, assignments, clusters, silVals, start, end);
+                    return null;
+                });
+            }
+
+            ExecutorService executor = ThreadingUtilities.buildExecutorService(numThreads);
+
+            try {
+                ThreadingUtilities.computeAll(executor, jobs, false);
+            } catch (ExecutionException e){
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                executor.shutdown();
+            }
+        }
+
+        double totalSilVal = 0;
+
+        for (ArrayList<Integer> cluster : clusters){
+            for (int index : cluster){
+                totalSilVal += silVals[index];
+            }
+        }
+
+        return totalSilVal;
+    }
+
+    private void silhouetteValues(DistanceMatrix distanceMatrix, int[] assignments, ArrayList<Integer>[] clusters,
+                                  double[] silVals, int start, int end){
+        double[] clusterDists = new double[clusters.length];
+
+        for (int i = start; i < end; i++){
+            Arrays.fill(clusterDists, 0);
+
+            for (int n = 0; n < assignments.length; n++){
+                clusterDists[assignments[n]] += distanceMatrix.get(i, n);
+            }
+
+            //Find mean distance of the point to other points in its cluster
+            //and the minimum mean distance to the points of another cluster.
+            int cluster = assignments[i];
+            double clusterDist = clusterDists[cluster] / clusters[cluster].size();
+            double minOtherClusterDist = Double.MAX_VALUE;
+
+            for (int n = 0; n < clusters.length; n++){
+                if (n == cluster){
+                    continue;
+                }
+
+                double otherClusterDist = clusterDists[n] / clusters[n].size();
+
+                if (otherClusterDist < minOtherClusterDist){
+                    minOtherClusterDist = otherClusterDist;
+                }
+            }
+
+            double silVal = minOtherClusterDist - clusterDist;
+            double div = clusterDist;
+
+            if (minOtherClusterDist > clusterDist){
+                div = minOtherClusterDist;
+            }
+
+            silVals[i] = silVal / div;
+        }
+    }
 }
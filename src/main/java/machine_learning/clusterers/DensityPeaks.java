@@ -19,13 +19,11 @@ package machine_learning.clusterers;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 
 import experiments.data.DatasetLoading;
 import utilities.GenericTools;
 import weka.core.Instances;
 
-import static utilities.ClusteringUtilities.createDistanceMatrix;
 import static utilities.InstanceTools.deleteClassAttribute;
 
 /**
@@ -47,7 +45,7 @@ public class DensityPeaks extends AbstractVectorClusterer {
     private double clusterCenterCutoff = -1;
     private double outlierCutoff = -1;
 
-    private double[][] distanceMatrix;
+    private DistanceMatrix distanceMatrix;
     private double[] localDensities;
     private double[] shortestDist;
     private int[] nearestNeighbours;
@@ -104,22 +102,29 @@ public class DensityPeaks extends AbstractVectorClusterer {
         }
 
         numInstances = data.size();
-        distanceMatrix = createDistanceMatrix(data, distFunc);
+        distanceMatrix = buildDistanceMatrix(data);
 
-        if (distC < 0){
-            distC = getDistCDefault();
-        }
+        //The distances are only needed while building, and may be held in a
+        //large temporary file.
+        try {
+            if (distC < 0){
+                distC = getDistCDefault();
+            }
 
-        if (gaussianKernel){
-            generateLocalDensitiesGuassian();
-        }
-        else{
-            generateLocalDensitiesCutoff();
-        }
+            if (gaussianKernel){
+                generateLocalDensitiesGuassian();
+            }
+            else{
+                generateLocalDensitiesCutoff();
+            }
 
-        generateHighDensDistance();
-        findClusterCentres();
-        assignClusters();
+            generateHighDensDistance();
+            findClusterCentres();
+            assignClusters();
+        } finally {
+            distanceMatrix.close();
+            distanceMatrix = null;
+        }
 
         //Create and store an ArrayList for each cluster containing indexes of
         //points inside the cluster
@@ -141,19 +146,11 @@ public class DensityPeaks extends AbstractVectorClusterer {
     //average number of neighbors is around 1 to 2% of the total number of
     //points in the dataset
     private double getDistCDefault(){
-        ArrayList<Double> sortedDistances = new ArrayList<>(numInstances);
-
-        for (int i = 0; i < numInstances; i++){
-            for (int n = 0; n < i; n++){
-                sortedDistances.add(distanceMatrix[i][n]);
-            }
-        }
-
-        Collections.sort(sortedDistances);
+        long numDistances = (long)numInstances * (numInstances - 1) / 2;
 
         double percent = 2.0;
-        int position = (int)(sortedDistances.size() * percent / 100);
-        return sortedDistances.get(position-1);
+        long position = (long)(numDistances * percent / 100);
+        return distanceMatrix.smallest(position);
     }
 
     //Gets the local density for each instance i with the density defined as the
@@ -163,7 +160,7 @@ public class DensityPeaks extends AbstractVectorClusterer {
 
         for (int i = 0; i < numInstances; i++){
             for (int n = 0; n < i; n++){
-                if (distanceMatrix[i][n] - distC < 0){
+                if (distanceMatrix.get(i, n) - distC < 0){
                     localDensities[i]++;
                     localDensities[n]++;
                 }
@@ -178,7 +175,7 @@ public class DensityPeaks extends AbstractVectorClusterer {
 
         for (int i = 0; i < numInstances; i++){
             for (int n = 0; n < i; n++){
-                double j = distanceMatrix[i][n] / distC;
+                double j = distanceMatrix.get(i, n) / distC;
                 j = Math.exp(-(j*j));
 
                 localDensities[i] += j;
@@ -203,20 +200,15 @@ public class DensityPeaks extends AbstractVectorClusterer {
         //Find the shortest distance/nearest neigbour from points with a higher
         //local density for each point
         for (int i = 1; i < numInstances; i++){
-            shortestDist[sortedDensitiesIndex[i]] = Double.MAX_VALUE;
+            int point = sortedDensitiesIndex[i];
+            shortestDist[point] = Double.MAX_VALUE;
 
             for (int n = 0; n < i; n++){
-                if (sortedDensitiesIndex[n] > sortedDensitiesIndex[i]){
-                    if (distanceMatrix[sortedDensitiesIndex[n]][sortedDensitiesIndex[i]] < shortestDist[sortedDensitiesIndex[i]]){
-                        shortestDist[sortedDensitiesIndex[i]] = distanceMatrix[sortedDensitiesIndex[n]][sortedDensitiesIndex[i]];
-                        nearestNeighbours[sortedDensitiesIndex[i]] = sortedDensitiesIndex[n];
-                    }
-                }
-                else {
-                    if (distanceMatrix[sortedDensitiesIndex[i]][sortedDensitiesIndex[n]] < shortestDist[sortedDensitiesIndex[i]]){
-                        shortestDist[sortedDensitiesIndex[i]] = distanceMatrix[sortedDensitiesIndex[i]][sortedDensitiesIndex[n]];
-                        nearestNeighbours[sortedDensitiesIndex[i]] = sortedDensitiesIndex[n];
-                    }
+                double dist = distanceMatrix.get(point, sortedDensitiesIndex[n]);
+
+                if (dist < shortestDist[point]){
+                    shortestDist[point] = dist;
+                    nearestNeighbours[point] = sortedDensitiesIndex[n];
                 }
             }
         }
@@ -337,7 +329,7 @@ public class DensityPeaks extends AbstractVectorClusterer {
 
             for (int i = 0; i < numInstances; i++){
                 for (int n = 0; n < i; n++){
-                    if (assignments[i] != assignments[n] && distanceMatrix[i][n] <= distC){
+                    if (assignments[i] != assignments[n] && distanceMatrix.get(i, n) <= distC){
                         double ldAvg = (localDensities[i] + localDensities[n])/2;
 
                         if (ldAvg > border[assignments[i]]) {
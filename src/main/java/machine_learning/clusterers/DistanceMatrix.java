@@ -0,0 +1,446 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package machine_learning.clusterers;
+
+import tsml.classifiers.distance_based.distances.DistanceFunctionAdapter;
+import tsml.classifiers.distance_based.distances.DistanceMeasure;
+import tsml.classifiers.distance_based.utils.system.copy.CopierUtils;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.utilities.Converter;
+import utilities.ThreadingUtilities;
+import weka.core.DistanceFunction;
+import weka.core.Instances;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Distances between every pair of a set of instances for the distance based clusterers. Distances are taken to be
+ * symmetric with no distance from an instance to itself, so only the upper triangle is held, n(n-1)/2 values for n
+ * instances. Values are held as doubles, or floats to halve the memory, either on the heap or in a temporary file
+ * mapped into memory when the heap cannot hold them.
+ *
+ * The matrix is filled in square tiles of pairs shared out between threads. Once filled it can be handed to any
+ * number of clusterers built on the same data, e.g. one for each k tried when finding the best k.
+ */
+public class DistanceMatrix implements Closeable {
+
+    // entries per chunk of storage, keeping each array or mapped region well under the 2^31 limit on their length
+    private static final int CHUNK_BITS = 24;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // instances along each side of a tile when filling
+    private static final int TILE_SIZE = 64;
+
+    private final int size;
+    private final long numEntries;
+    private final boolean floatPrecision;
+
+    // exactly one of these holds the entries
+    private double[][] doubleChunks;
+    private float[][] floatChunks;
+    private ByteBuffer[] mappedChunks;
+    private File file;
+
+    public DistanceMatrix(int size) {
+        this(size, false);
+    }
+
+    /**
+     * Creates a matrix held on the heap.
+     *
+     * @param size the number of instances
+     * @param floatPrecision whether to hold distances as floats rather than doubles
+     */
+    public DistanceMatrix(int size, boolean floatPrecision) {
+        this.size = size;
+        this.floatPrecision = floatPrecision;
+        numEntries = (long) size * (size - 1) / 2;
+
+        final int numChunks = numChunks();
+
+        if (floatPrecision){
+            floatChunks = new float[numChunks][];
+
+            for (int i = 0; i < numChunks; i++){
+                floatChunks[i] = new float[chunkLength(i)];
+            }
+        }
+        else{
+            doubleChunks = new double[numChunks][];
+
+            for (int i = 0; i < numChunks; i++){
+                doubleChunks[i] = new double[chunkLength(i)];
+            }
+        }
+    }
+
+    /**
+     * Creates a matrix held in a temporary file mapped into memory, so its size is bounded by disk rather than heap.
+     * The file is deleted on close, or failing that when the JVM exits.
+     *
+     * @param size the number of instances
+     * @param floatPrecision whether to hold distances as floats rather than doubles
+     * @param directory the directory to create the file in, or null for the default temporary directory
+     */
+    public DistanceMatrix(int size, boolean floatPrecision, File directory) throws IOException {
+        this.size = size;
+        this.floatPrecision = floatPrecision;
+        numEntries = (long) size * (size - 1) / 2;
+
+        final int numChunks = numChunks();
+        final int entryBytes = floatPrecision ? Float.BYTES : Double.BYTES;
+        file = File.createTempFile("distances", ".tmp", directory);
+        file.deleteOnExit();
+        mappedChunks = new ByteBuffer[numChunks];
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")){
+            raf.setLength(numEntries * entryBytes);
+            final FileChannel channel = raf.getChannel();
+
+            //Mappings stay valid once the channel is closed.
+            for (int i = 0; i < numChunks; i++){
+                mappedChunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * CHUNK_SIZE * entryBytes,
+                        (long) chunkLength(i) * entryBytes).order(ByteOrder.nativeOrder());
+            }
+        }
+    }
+
+    //Copies a lower half matrix, as made by ClusteringUtilities.createDistanceMatrix.
+    public static DistanceMatrix fromLowerTriangle(double[][] distances){
+        DistanceMatrix matrix = new DistanceMatrix(distances.length);
+
+        for (int i = 0; i < distances.length; i++){
+            for (int n = 0; n < i; n++){
+                matrix.set(i, n, distances[i][n]);
+            }
+        }
+
+        return matrix;
+    }
+
+    public int size(){
+        return size;
+    }
+
+    public boolean isFloatPrecision(){
+        return floatPrecision;
+    }
+
+    public boolean isMapped(){
+        return file != null;
+    }
+
+    public double get(int i, int j){
+        if (i == j){
+            return 0;
+        }
+
+        return i < j ? getEntry(index(i, j)) : getEntry(index(j, i));
+    }
+
+    public void set(int i, int j, double distance){
+        if (i == j){
+            throw new IllegalArgumentException("no entry for the distance from instance " + i + " to itself");
+        }
+
+        setEntry(i < j ? index(i, j) : index(j, i), distance);
+    }
+
+    /**
+     * Fills the matrix with the distances between each pair of instances, the distance for each pair found with the
+     * higher index instance first. Distance functions wrapping a tsml DistanceMeasure read each instance into a time
+     * series once and use the measure directly.
+     *
+     * @param data the instances, one per row of the matrix
+     * @param distFunc the distance function, set up with the instances before any distances are found
+     * @param numThreads the number of threads to find distances on. Each thread but the first uses a copy of the
+     *                   distance function unless it wraps a thread safe DistanceMeasure.
+     */
+    public void fill(Instances data, DistanceFunction distFunc, int numThreads){
+        checkSize(data.numInstances());
+        distFunc.setInstances(data);
+
+        if (distFunc instanceof DistanceFunctionAdapter){
+            TimeSeriesInstance[] series = new TimeSeriesInstance[size];
+
+            for (int i = 0; i < size; i++){
+                series[i] = Converter.fromArffValues(data.get(i));
+            }
+
+            fill(series, ((DistanceFunctionAdapter) distFunc).getDistanceMeasure(), numThreads);
+        }
+        else{
+            //Weka distance functions make no promise to be thread safe.
+            List<PairDistance> workers = new ArrayList<>();
+
+            for (int i = 0; i < numWorkers(numThreads); i++){
+                DistanceFunction workerDistFunc = i == 0 ? distFunc : CopierUtils.deepCopy(distFunc);
+                workers.add((first, second) -> workerDistFunc.distance(data.get(first), data.get(second)));
+            }
+
+            fillTiles(workers);
+        }
+    }
+
+    /**
+     * Fills the matrix with the distances between each pair of series, the distance for each pair found with the
+     * higher index series first.
+     *
+     * @param data the series, one per row of the matrix
+     * @param distanceMeasure the distance measure, built on the series before any distances are found
+     * @param numThreads the number of threads to find distances on. Each thread but the first uses a copy of the
+     *                   distance measure unless it is thread safe.
+     */
+    public void fill(TimeSeriesInstances data, DistanceMeasure distanceMeasure, int numThreads){
+        checkSize(data.numInstances());
+        distanceMeasure.buildDistanceMeasure(data);
+        TimeSeriesInstance[] series = new TimeSeriesInstance[size];
+
+        for (int i = 0; i < size; i++){
+            series[i] = data.get(i);
+        }
+
+        fill(series, distanceMeasure, numThreads);
+    }
+
+    private void fill(TimeSeriesInstance[] series, DistanceMeasure distanceMeasure, int numThreads){
+        List<PairDistance> workers = new ArrayList<>();
+
+        for (int i = 0; i < numWorkers(numThreads); i++){
+            DistanceMeasure workerDistanceMeasure = i == 0 || distanceMeasure.isThreadSafe() ? distanceMeasure :
+                    CopierUtils.deepCopy(distanceMeasure);
+            workers.add((first, second) -> workerDistanceMeasure.distance(series[first], series[second]));
+        }
+
+        fillTiles(workers);
+    }
+
+    /**
+     * Finds the distance of the given rank among all the entries, counting from 1, i.e. the distance at index
+     * rank - 1 were the entries sorted in ascending order. Only the rank smallest distances are held while searching,
+     * rather than a sorted copy of every entry.
+     *
+     * @param rank the rank of the distance to find, between 1 and the number of entries
+     * @return the distance
+     */
+    public double smallest(long rank){
+        if (rank < 1 || rank > numEntries || rank > Integer.MAX_VALUE - 8){
+            throw new IllegalArgumentException("rank " + rank + " out of range for " + numEntries + " entries");
+        }
+
+        //Max heap of the smallest distances seen so far.
+        double[] heap = new double[(int) rank];
+        int heapSize = 0;
+
+        for (long i = 0; i < numEntries; i++){
+            double distance = getEntry(i);
+
+            if (heapSize < heap.length){
+                int child = heapSize++;
+
+                while (child > 0 && Double.compare(heap[(child - 1) / 2], distance) < 0){
+                    heap[child] = heap[(child - 1) / 2];
+                    child = (child - 1) / 2;
+                }
+
+                heap[child] = distance;
+            }
+            else if (Double.compare(distance, heap[0]) < 0){
+                int parent = 0;
+
+                while (true){
+                    int child = parent * 2 + 1;
+
+                    if (child >= heapSize){
+                        break;
+                    }
+
+                    if (child + 1 < heapSize && Double.compare(heap[child + 1], heap[child]) > 0){
+                        child++;
+                    }
+
+                    if (Double.compare(heap[child], distance) <= 0){
+                        break;
+                    }
+
+                    heap[parent] = heap[child];
+                    parent = child;
+                }
+
+                heap[parent] = distance;
+            }
+        }
+
+        return heap[0];
+    }
+
+    /**
+     * Releases the storage, deleting the file behind a mapped matrix. The matrix cannot be used afterwards.
+     */
+    @Override
+    public void close(){
+        doubleChunks = null;
+        floatChunks = null;
+        mappedChunks = null;
+
+        if (file != null){
+            file.delete();
+            file = null;
+        }
+    }
+
+    private int numChunks(){
+        return (int) ((numEntries + CHUNK_SIZE - 1) >>> CHUNK_BITS);
+    }
+
+    private int chunkLength(int chunk){
+        return (int) Math.min(CHUNK_SIZE, numEntries - ((long) chunk << CHUNK_BITS));
+    }
+
+    private int numWorkers(int numThreads){
+        int numBlocks = (size + TILE_SIZE - 1) / TILE_SIZE;
+        return Math.max(1, Math.min(numThreads, numBlocks * (numBlocks + 1) / 2));
+    }
+
+    private void checkSize(int numInstances){
+        if (numInstances != size){
+            throw new IllegalArgumentException("matrix for " + size + " instances, given " + numInstances);
+        }
+    }
+
+    //Index of the entry for instances i < j, row by row along the upper triangle.
+    private long index(int i, int j){
+        return (long) i * (2L * size - i - 1) / 2 + (j - i - 1);
+    }
+
+    private double getEntry(long index){
+        int chunk = (int) (index >>> CHUNK_BITS);
+        int offset = (int) index & CHUNK_MASK;
+
+        if (doubleChunks != null){
+            return doubleChunks[chunk][offset];
+        }
+        else if (floatChunks != null){
+            return floatChunks[chunk][offset];
+        }
+        else if (floatPrecision){
+            return mappedChunks[chunk].getFloat(offset * Float.BYTES);
+        }
+        else{
+            return mappedChunks[chunk].getDouble(offset * Double.BYTES);
+        }
+    }
+
+    private void setEntry(long index, double distance){
+        int chunk = (int) (index >>> CHUNK_BITS);
+        int offset = (int) index & CHUNK_MASK;
+
+        if (doubleChunks != null){
+            doubleChunks[chunk][offset] = distance;
+        }
+        else if (floatChunks != null){
+            floatChunks[chunk][offset] = (float) distance;
+        }
+        else if (floatPrecision){
+            mappedChunks[chunk].putFloat(offset * Float.BYTES, (float) distance);
+        }
+        else{
+            mappedChunks[chunk].putDouble(offset * Double.BYTES, distance);
+        }
+    }
+
+    //Fills the tiles on and above the diagonal, each worker taking the next unfilled tile until none are left.
+    private void fillTiles(List<PairDistance> workers){
+        int numBlocks = (size + TILE_SIZE - 1) / TILE_SIZE;
+        int numTiles = numBlocks * (numBlocks + 1) / 2;
+        int[] tileRows = new int[numTiles];
+        int[] tileCols = new int[numTiles];
+
+        for (int row = 0, i = 0; row < numBlocks; row++){
+            for (int col = row; col < numBlocks; col++, i++){
+                tileRows[i] = row;
+                tileCols[i] = col;
+            }
+        }
+
+        if (workers.size() == 1){
+            for (int i = 0; i < numTiles; i++){
+                fillTile(tileRows[i], tileCols[i], workers.get(0));
+            }
+
+            return;
+        }
+
+        AtomicInteger nextTile = new AtomicInteger();
+        List<Callable<Void>> jobs = new ArrayList<>(workers.size());
+
+        for (PairDistance worker : workers){
+            jobs.add(() -> {
+                for (int i = nextTile.getAndIncrement(); i < numTiles; i = nextTile.getAndIncrement()){
+                    fillTile(tileRows[i], tileCols[i], worker);
+                }
+
+                return null;
+            });
+        }
+
+        ExecutorService executor = ThreadingUtilities.buildExecutorService(workers.size());
+
+        try {
+            ThreadingUtilities.computeAll(executor, jobs, false);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e){
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void fillTile(int rowBlock, int colBlock, PairDistance worker){
+        int rowEnd = Math.min(size, (rowBlock + 1) * TILE_SIZE);
+        int colEnd = Math.min(size, (colBlock + 1) * TILE_SIZE);
+
+        for (int i = rowBlock * TILE_SIZE; i < rowEnd; i++){
+            long index = index(i, Math.max(i + 1, colBlock * TILE_SIZE));
+
+            for (int j = Math.max(i + 1, colBlock * TILE_SIZE); j < colEnd; j++, index++){
+                setEntry(index, worker.distance(j, i));
+            }
+        }
+    }
+
+    private interface PairDistance {
+        double distance(int first, int second);
+    }
+}
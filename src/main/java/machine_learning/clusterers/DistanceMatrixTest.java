@@ -0,0 +1,318 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package machine_learning.clusterers;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.data_containers.TimeSeriesInstance;
+import utilities.ClusteringUtilities;
+import utilities.SharedExecutorService;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.EuclideanDistance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class DistanceMatrixTest {
+
+    //enough instances for several tiles of distances and several blocks of
+    //silhouette values, so work really is shared between threads
+    private static final int NUM_INSTANCES = 300;
+    private static final int SERIES_LENGTH = 40;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Instances data;
+
+    @Before
+    public void setup() {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+
+        for (int i = 0; i < SERIES_LENGTH; i++) {
+            attributes.add(new Attribute("att" + i));
+        }
+
+        data = new Instances("synthetic", attributes, NUM_INSTANCES);
+        Random random = new Random(0);
+
+        //noisy sine waves of three frequencies
+        for (int i = 0; i < NUM_INSTANCES; i++) {
+            double[] values = new double[SERIES_LENGTH];
+
+            for (int n = 0; n < SERIES_LENGTH; n++) {
+                values[n] = Math.sin(n * (i % 3 + 1) / 5.0) + random.nextGaussian() * 0.5;
+            }
+
+            data.add(new DenseInstance(1, values));
+        }
+    }
+
+    @Test
+    public void testMatchesLowerHalfMatrix() {
+        double[][] expected = ClusteringUtilities.createDistanceMatrix(data, new EuclideanDistance());
+
+        for (int numThreads : new int[] {1, 4}) {
+            DistanceMatrix matrix = new DistanceMatrix(data.numInstances());
+            matrix.fill(data, new EuclideanDistance(), numThreads);
+
+            for (int i = 0; i < data.numInstances(); i++) {
+                Assert.assertEquals(0, matrix.get(i, i), 0);
+
+                for (int n = 0; n < i; n++) {
+                    Assert.assertEquals(expected[i][n], matrix.get(i, n), 0);
+                    Assert.assertEquals(expected[i][n], matrix.get(n, i), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDistanceFunctionCopiedPerThread() {
+        DistanceMatrix serial = new DistanceMatrix(data.numInstances());
+        serial.fill(data, new EuclideanDistance(), 1);
+
+        SingleThreadEuclidean.THREADS.clear();
+        DistanceMatrix threaded = new DistanceMatrix(data.numInstances());
+        threaded.fill(data, new SingleThreadEuclidean(), 4);
+        assertSeveralThreads(SingleThreadEuclidean.THREADS);
+
+        for (int i = 0; i < data.numInstances(); i++) {
+            for (int n = 0; n < i; n++) {
+                Assert.assertEquals(serial.get(i, n), threaded.get(i, n), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testDistanceMeasureOnThreads() {
+        DTWDistance dtw = new DTWDistance();
+        dtw.setWindow(0.1);
+        DistanceMatrix serial = new DistanceMatrix(data.numInstances());
+        serial.fill(data, dtw.asDistanceFunction(), 1);
+
+        //thread safe measures are shared, the rest copied for each thread
+        DistanceMatrix shared = new DistanceMatrix(data.numInstances());
+        shared.fill(data, dtw.asDistanceFunction(), 4);
+
+        SingleThreadDTW.THREADS.clear();
+        SingleThreadDTW singleThreadDTW = new SingleThreadDTW();
+        singleThreadDTW.setWindow(0.1);
+        DistanceMatrix copied = new DistanceMatrix(data.numInstances());
+        copied.fill(data, singleThreadDTW.asDistanceFunction(), 4);
+        assertSeveralThreads(SingleThreadDTW.THREADS);
+
+        for (int i = 0; i < data.numInstances(); i++) {
+            for (int n = 0; n < i; n++) {
+                Assert.assertEquals(dtw.distance(data.get(i), data.get(n)), serial.get(i, n), 0);
+                Assert.assertEquals(serial.get(i, n), shared.get(i, n), 0);
+                Assert.assertEquals(serial.get(i, n), copied.get(i, n), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testFloatAndMappedStorage() throws Exception {
+        DistanceMatrix matrix = new DistanceMatrix(data.numInstances());
+        matrix.fill(data, new EuclideanDistance(), 1);
+        DistanceMatrix floats = new DistanceMatrix(data.numInstances(), true);
+        floats.fill(data, new EuclideanDistance(), 1);
+        File directory = folder.newFolder();
+
+        try (DistanceMatrix mapped = new DistanceMatrix(data.numInstances(), false, directory);
+             DistanceMatrix mappedFloats = new DistanceMatrix(data.numInstances(), true, directory)) {
+            mapped.fill(data, new EuclideanDistance(), 4);
+            mappedFloats.fill(data, new EuclideanDistance(), 4);
+            Assert.assertTrue(mapped.isMapped());
+
+            for (int i = 0; i < data.numInstances(); i++) {
+                for (int n = 0; n < i; n++) {
+                    Assert.assertEquals(matrix.get(i, n), mapped.get(i, n), 0);
+                    Assert.assertEquals((float) matrix.get(i, n), floats.get(i, n), 0);
+                    Assert.assertEquals((float) matrix.get(i, n), mappedFloats.get(i, n), 0);
+                }
+            }
+        }
+
+        Assert.assertEquals(0, directory.list().length);
+    }
+
+    @Test
+    public void testSmallestMatchesSortedDistances() {
+        DistanceMatrix matrix = new DistanceMatrix(data.numInstances());
+        matrix.fill(data, new EuclideanDistance(), 1);
+        int numInstances = data.numInstances();
+        double[] sorted = new double[numInstances * (numInstances - 1) / 2];
+
+        for (int i = 0, j = 0; i < numInstances; i++) {
+            for (int n = i + 1; n < numInstances; n++) {
+                sorted[j++] = matrix.get(i, n);
+            }
+        }
+
+        Arrays.sort(sorted);
+
+        for (int rank : new int[] {1, 2, 99, sorted.length / 50, sorted.length}) {
+            Assert.assertEquals(sorted[rank - 1], matrix.smallest(rank), 0);
+        }
+    }
+
+    @Test
+    public void testClusterersOnThreads() throws Exception {
+        PAM serialPAM = new PAM();
+        serialPAM.setFindBestK(true);
+        serialPAM.setSeed(0);
+        serialPAM.buildClusterer(data);
+
+        PAM threadedPAM = new PAM();
+        threadedPAM.setFindBestK(true);
+        threadedPAM.setSeed(0);
+        threadedPAM.enableMultiThreading(4);
+        threadedPAM.buildClusterer(data);
+
+        Assert.assertArrayEquals(serialPAM.getAssignments(), threadedPAM.getAssignments());
+        Assert.assertArrayEquals(serialPAM.getMedoids(), threadedPAM.getMedoids());
+
+        KMeans serialKMeans = new KMeans();
+        serialKMeans.setFindBestK(true);
+        serialKMeans.setSeed(0);
+        serialKMeans.buildClusterer(data);
+
+        KMeans threadedKMeans = new KMeans();
+        threadedKMeans.setFindBestK(true);
+        threadedKMeans.setSeed(0);
+        threadedKMeans.enableMultiThreading(4);
+        threadedKMeans.buildClusterer(data);
+
+        Assert.assertArrayEquals(serialKMeans.getAssignments(), threadedKMeans.getAssignments());
+    }
+
+    @Test
+    public void testSilhouetteOnThreads() throws Exception {
+        PAM pam = new PAM();
+        pam.setNumberOfClusters(3);
+        pam.setSeed(0);
+        pam.buildClusterer(data);
+
+        try (DistanceMatrix matrix = new DistanceMatrix(data.numInstances())) {
+            matrix.fill(data, new EuclideanDistance(), 1);
+
+            PAM serial = new PAM();
+            double expected = serial.totalSilhouette(matrix, pam.getAssignments(), pam.getClusters());
+            PAM threaded = new PAM();
+            threaded.enableMultiThreading(4);
+            Assert.assertEquals(expected, threaded.totalSilhouette(matrix, pam.getAssignments(), pam.getClusters()), 0);
+        }
+    }
+
+    @Test
+    public void testClusterersDeleteMappedDistances() throws Exception {
+        File directory = folder.newFolder();
+
+        KMeans kmeans = new KMeans();
+        kmeans.setFindBestK(true);
+        kmeans.setSeed(0);
+        kmeans.setDistancesDirectory(directory);
+        kmeans.buildClusterer(data);
+        Assert.assertEquals(0, directory.list().length);
+
+        PAM pam = new PAM();
+        pam.setFindBestK(true);
+        pam.setRefinedInitialMedoids(true);
+        pam.setSeed(0);
+        pam.setDistancesDirectory(directory);
+        pam.buildClusterer(data);
+        Assert.assertEquals(0, directory.list().length);
+
+        DensityPeaks densityPeaks = new DensityPeaks();
+        densityPeaks.setDistancesDirectory(directory);
+        densityPeaks.buildClusterer(data);
+        Assert.assertEquals(0, directory.list().length);
+    }
+
+    //Fails if any one object is used from more than one thread, recording
+    //the threads used across all objects.
+    private static class SingleThreadEuclidean extends EuclideanDistance {
+
+        private static final Set<Thread> THREADS = ConcurrentHashMap.newKeySet();
+
+        private transient Thread owner;
+
+        @Override
+        public double distance(Instance first, Instance second) {
+            owner = checkOwner(owner, THREADS);
+            return super.distance(first, second);
+        }
+    }
+
+    private static class SingleThreadDTW extends DTWDistance {
+
+        private static final Set<Thread> THREADS = ConcurrentHashMap.newKeySet();
+
+        private transient Thread owner;
+
+        @Override
+        public boolean isThreadSafe() {
+            return false;
+        }
+
+        @Override
+        public double distance(TimeSeriesInstance a, TimeSeriesInstance b, double limit) {
+            owner = checkOwner(owner, THREADS);
+            return super.distance(a, b, limit);
+        }
+    }
+
+    //Only a shared pool of several threads can run the workers concurrently,
+    //the build runs tests with at least four, see tsml.threads in build.gradle.
+    private static void assertSeveralThreads(Set<Thread> threads) {
+        if (SharedExecutorService.getSharedPool().getParallelism() > 1) {
+            Assert.assertTrue(threads.size() > 1);
+        }
+    }
+
+    private static Thread checkOwner(Thread owner, Set<Thread> threads) {
+        Thread thread = Thread.currentThread();
+
+        if (owner != null && owner != thread) {
+            throw new IllegalStateException("used from more than one thread");
+        }
+
+        //give the other threads a chance to claim tiles on a single core
+        if (threads.add(thread)) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return thread;
+    }
+}
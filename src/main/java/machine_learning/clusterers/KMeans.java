@@ -26,7 +26,6 @@ import experiments.data.DatasetLoading;
 import weka.core.Instance;
 import weka.core.Instances;
 
-import static utilities.ClusteringUtilities.createDistanceMatrix;
 import static utilities.InstanceTools.deleteClassAttribute;
 
 /**
@@ -419,97 +418,33 @@ public class KMeans extends AbstractVectorClusterer{
         }
     }
 
-    //Lletı, R., et al.
-    //"Selecting variables for k-means cluster analysis by using a genetic algorithm that optimises the silhouettes."
-    //Analytica Chimica Acta 515.1 (2004): 87-100.
-
-    //Method of finding the best value for k based on the silhouette method
-    //above
+    //Method of finding the best value for k based on the silhouette method,
+    //see AbstractVectorClusterer.totalSilhouette
     private void findBestK(Instances data) throws Exception{
         int maxK = 10;
         double bestSilVal = 0;
 
-        double[][] distMatrix = createDistanceMatrix(data, distFunc);
-
-        //For each value of K
-        for (int i = 2; i <= maxK; i++){
-            KMeans kmeans = new KMeans();
-            kmeans.setNumberOfClusters(i);
-            kmeans.setNormaliseData(false);
-            kmeans.setFindBestK(false);
-            kmeans.setRefinedInitialMedoids(refinedInitialCenters);
-            kmeans.setSeed(seed);
-            kmeans.buildClusterer(data);
-
-            double totalSilVal = 0;
-
-            //For each cluster created by k-means
-            for (int n = 0; n < i; n++){
-                //For each point in the cluster
-                for (int g = 0; g < kmeans.clusters[n].size(); g++){
-                    double clusterDist = 0;
-                    double minOtherClusterDist = Double.MAX_VALUE;
-
-                    int index = kmeans.clusters[n].get(g);
-
-                    //Find mean distance of the point to other points in its
-                    //cluster
-                    for (int j = 0; j < kmeans.clusters[n].size(); j++){
-                        if (index > kmeans.clusters[n].get(j)){
-                            clusterDist += distMatrix[index][kmeans.clusters[n].get(j)];
-                        }
-                        else {
-                            clusterDist += distMatrix[kmeans.clusters[n].get(j)][index];
-                        }
-                    }
-
-                    clusterDist /= kmeans.clusters[n].size();
-
-                    //Find the minimum distance of the point to other clusters
-                    for (int m = 0; m < i; m++){
-                        if(m == n){
-                            continue;
-                        }
-
-                        double otherClusterDist = 0;
-
-                        for (int j = 0; j < kmeans.clusters[m].size(); j++){
-                            if (index > kmeans.clusters[m].get(j)){
-                                otherClusterDist += distMatrix[index][kmeans.clusters[m].get(j)];
-                            }
-                            else {
-                                otherClusterDist += distMatrix[kmeans.clusters[m].get(j)][index];
-                            }
-                        }
-
-                        otherClusterDist /= kmeans.clusters[m].size();
-
-                        if(otherClusterDist < minOtherClusterDist){
-                            minOtherClusterDist = otherClusterDist;
-                        }
-                    }
-
-                    //Calculate the silhoutte value for the point and add it
-                    //to the total.
-                    double silVal = minOtherClusterDist - clusterDist;
-                    double div = clusterDist;
+        try (DistanceMatrix distMatrix = buildDistanceMatrix(data)){
+            //For each value of K
+            for (int i = 2; i <= maxK; i++){
+                KMeans kmeans = new KMeans();
+                kmeans.setNumberOfClusters(i);
+                kmeans.setNormaliseData(false);
+                kmeans.setFindBestK(false);
+                kmeans.setRefinedInitialMedoids(refinedInitialCenters);
+                kmeans.setSeed(seed);
+                kmeans.buildClusterer(data);
 
-                    if(minOtherClusterDist > clusterDist){
-                        div = minOtherClusterDist;
-                    }
+                double totalSilVal = totalSilhouette(distMatrix, kmeans.assignments, kmeans.clusters);
 
-                    silVal /= div;
-                    totalSilVal += silVal;
+                if (totalSilVal > bestSilVal){
+                    bestSilVal = totalSilVal;
+                    clusterCenters = kmeans.clusterCenters;
+                    assignments = kmeans.assignments;
+                    clusters = kmeans.clusters;
+                    k = kmeans.k;
                 }
             }
-
-            if (totalSilVal > bestSilVal){
-                bestSilVal = totalSilVal;
-                clusterCenters = kmeans.clusterCenters;
-                assignments = kmeans.assignments;
-                clusters = kmeans.clusters;
-                k = kmeans.k;
-            }
         }
     }
 
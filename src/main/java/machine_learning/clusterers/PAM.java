@@ -25,7 +25,6 @@ import java.util.Random;
 import experiments.data.DatasetLoading;
 import weka.core.Instances;
 
-import static utilities.ClusteringUtilities.createDistanceMatrix;
 import static utilities.InstanceTools.deleteClassAttribute;
 
 /**
@@ -46,21 +45,28 @@ public class PAM extends AbstractVectorClusterer{
     private int numSubsamples = 30;
     private int seed = Integer.MIN_VALUE;
 
-    private double[][] distanceMatrix;
+    private DistanceMatrix distanceMatrix;
     private int numInstances;
     boolean hasInitialMedoids = false;
     private boolean hasDistances = false;
 
     private int[] medoids;
+    private double clusterSquaredDistance;
 
     public PAM(){}
 
     //Used when finding best value for k to avoid recalculating distances
-    public PAM(double[][] distanceMatrix){
+    public PAM(DistanceMatrix distanceMatrix){
         this.distanceMatrix = distanceMatrix;
         this.hasDistances = true;
     }
 
+    //Takes a lower half distance matrix, as made by
+    //ClusteringUtilities.createDistanceMatrix.
+    public PAM(double[][] distanceMatrix){
+        this(DistanceMatrix.fromLowerTriangle(distanceMatrix));
+    }
+
     //Used when selecting refined initial medoids.
     private PAM(int[] initialMedoids){
         super();
@@ -129,6 +135,7 @@ public class PAM extends AbstractVectorClusterer{
                 }
             }
 
+            clusterSquaredDistance = 0;
             return;
         }
 
@@ -136,11 +143,22 @@ public class PAM extends AbstractVectorClusterer{
             normaliseData(data);
         }
 
-
         if (!hasDistances){
-            distanceMatrix = createDistanceMatrix(data, distFunc);
+            distanceMatrix = buildDistanceMatrix(data);
         }
 
+        try {
+            buildClusters(data);
+        } finally {
+            //Release distances found here, which may be held in a large temporary file.
+            if (!hasDistances){
+                distanceMatrix.close();
+                distanceMatrix = null;
+            }
+        }
+    }
+
+    private void buildClusters(Instances data) throws Exception{
         if (findBestK){
             //Build clusters using multiple values of k and uses the best one.
             findBestK(data);
@@ -171,24 +189,30 @@ public class PAM extends AbstractVectorClusterer{
                 }
             }
         }
+
+        clusterSquaredDistance = findClusterSquaredDistance();
     }
 
     //Returns the sum of the squared distance from each point to its cluster
-    //medoid
+    //medoid, found when the clusterer was built
     public double clusterSquaredDistance(){
+        return clusterSquaredDistance;
+    }
+
+    private double findClusterSquaredDistance(){
         double distSum = 0;
 
         for (int i = 0; i < k; i++){
             for(int n = 0; n < clusters[i].size(); n++){
                 if (medoids[i] == clusters[i].get(n)) continue;
 
+                double dist = distanceMatrix.get(medoids[i], clusters[i].get(n));
+
                 if (medoids[i] > clusters[i].get(n)){
-                    distSum += distanceMatrix[medoids[i]][clusters[i].get(n)]
-                        * distanceMatrix[medoids[i]][clusters[i].get(n)];
+                    distSum += dist * dist;
                 }
                 else {
-                    distSum += distanceMatrix[clusters[i].get(n)][medoids[i]]
-                            + distanceMatrix[clusters[i].get(n)][medoids[i]];
+                    distSum += dist + dist;
                 }
             }
         }
@@ -317,22 +341,17 @@ public class PAM extends AbstractVectorClusterer{
             double minDist = Double.MAX_VALUE;
 
             for (int n = 0; n < k; n++){
-                if (medoids[n] > i){
-                    if (distanceMatrix[medoids[n]][i] < minDist){
-                        minDist = distanceMatrix[medoids[n]][i];
-                        assignments[i] = medoids[n];
-                    }
-                }
                 //If a point is a medoid set it to its own cluster.
-                else if (medoids[n] == i){
+                if (medoids[n] == i){
                     assignments[i] = medoids[n];
                     break;
                 }
-                else {
-                    if (distanceMatrix[i][medoids[n]] < minDist){
-                        minDist = distanceMatrix[i][medoids[n]];
-                        assignments[i] = medoids[n];
-                    }
+
+                double dist = distanceMatrix.get(i, medoids[n]);
+
+                if (dist < minDist){
+                    minDist = dist;
+                    assignments[i] = medoids[n];
                 }
             }
         }
@@ -360,24 +379,20 @@ public class PAM extends AbstractVectorClusterer{
         for (int i = 0; i < k; i++){
             double minDist = Double.MAX_VALUE;
             int bestMedoid = -1;
+            int[] cluster = clusters[i].stream().mapToInt(Integer::intValue).toArray();
 
-            for (int n = 0; n < clusters[i].size(); n++){
+            for (int n = 0; n < cluster.length; n++){
                 double clusterDist = 0;
 
-                for (int g = 0; g < clusters[i].size(); g++){
-                    if (clusters[i].get(n) == clusters[i].get(g)) continue;
+                for (int g = 0; g < cluster.length; g++){
+                    if (n == g) continue;
 
-                    if (clusters[i].get(n) > clusters[i].get(g)){
-                        clusterDist += distanceMatrix[clusters[i].get(n)][clusters[i].get(g)];
-                    }
-                    else {
-                        clusterDist += distanceMatrix[clusters[i].get(g)][clusters[i].get(n)];
-                    }
+                    clusterDist += distanceMatrix.get(cluster[n], cluster[g]);
                 }
 
                 if (clusterDist < minDist){
                     minDist = clusterDist;
-                    bestMedoid = clusters[i].get(n);
+                    bestMedoid = cluster[n];
                 }
             }
 
@@ -391,12 +406,8 @@ public class PAM extends AbstractVectorClusterer{
         return !changedMedoid;
     }
 
-    //Lletı, R., et al.
-    //"Selecting variables for k-means cluster analysis by using a genetic algorithm that optimises the silhouettes."
-    //Analytica Chimica Acta 515.1 (2004): 87-100.
-
-    //Method of finding the best value for k based on the silhouette method
-    //above
+    //Method of finding the best value for k based on the silhouette method,
+    //see AbstractVectorClusterer.totalSilhouette
     private void findBestK(Instances data) throws Exception{
         int maxK = 10;
         double bestSilVal = 0;
@@ -410,69 +421,7 @@ public class PAM extends AbstractVectorClusterer{
             pam.setSeed(seed);
             pam.buildClusterer(data);
 
-            double totalSilVal = 0;
-
-            //For each cluster created by k-means.
-            for (int n = 0; n < i; n++){
-                //For each point in the cluster.
-                for (int g = 0; g < pam.clusters[n].size(); g++){
-                    double clusterDist = 0;
-                    double minOtherClusterDist = Double.MAX_VALUE;
-
-                    int index = pam.clusters[n].get(g);
-
-                    //Find mean distance of the point to other points in its
-                    //cluster.
-                    for (int j = 0; j < pam.clusters[n].size(); j++){
-                        if (index == pam.clusters[n].get(j)) continue;
-
-                        if (index > pam.clusters[n].get(j)){
-                            clusterDist += distanceMatrix[index][pam.clusters[n].get(j)];
-                        }
-                        else {
-                            clusterDist += distanceMatrix[pam.clusters[n].get(j)][index];
-                        }
-                    }
-
-                    clusterDist /= pam.clusters[n].size();
-
-                    //Find the minimum distance of the point to other clusters.
-                    for (int m = 0; m < i; m++){
-                        if(m == n){
-                            continue;
-                        }
-
-                        double otherClusterDist = 0;
-
-                        for (int j = 0; j < pam.clusters[m].size(); j++){
-                            if (index > pam.clusters[m].get(j)){
-                                otherClusterDist += distanceMatrix[index][pam.clusters[m].get(j)];
-                            }
-                            else {
-                                otherClusterDist += distanceMatrix[pam.clusters[m].get(j)][index];
-                            }
-                        }
-
-                        otherClusterDist /= pam.clusters[m].size();
-
-                        if(otherClusterDist < minOtherClusterDist){
-                            minOtherClusterDist = otherClusterDist;
-                        }
-                    }
-
-                    //Calculate the silhoutte value for the point and add it
-                    //to the total
-                    double silVal = minOtherClusterDist - clusterDist;
-                    double div = clusterDist;
-
-                    if(minOtherClusterDist > clusterDist){
-                        div = minOtherClusterDist;
-                    }
-
-                    silVal /= div;
-                    totalSilVal += silVal;
-                }
-            }
+            double totalSilVal = totalSilhouette(distanceMatrix, pam.assignments, pam.clusters);
 
             if (totalSilVal > bestSilVal){
                 bestSilVal = totalSilVal;
@@ -23,6 +23,11 @@ package tsml.classifiers;
  * 
  * Known classifiers: AbstractEnsemble, BOSS, cBOSS, BOSSIndividual, MultiSamplingEvaluator
  * 
+ * Implementations should get their executor from ThreadingUtilities.buildExecutorService rather than creating their 
+ * own thread pool. That hands out a view of one process wide work stealing pool limited to numThreads concurrent 
+ * tasks, so nested threaded classifiers (e.g. the components of a threaded ensemble) share the same cores instead of 
+ * each spawning numThreads threads.
+ * 
  * @author Matthew Middlehurst, James Large (james.large@uea.ac.uk)
  */
 public interface MultiThreadable {
@@ -28,9 +28,10 @@ import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
+import utilities.ThreadingUtilities;
+
 /**
  * BOSS classifier to be used with known parameters, for boss with parameter search, use BOSSEnsemble.
  *
@@ -532,7 +533,7 @@ public class IndividualBOSS extends AbstractClassifier implements Serializable,
 
         if (multiThread){
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
+            if (ex == null) ex = ThreadingUtilities.buildExecutorService(numThreads);
 
             ArrayList<Future<Bag>> futures = new ArrayList<>(data.numInstances());
 
@@ -24,15 +24,16 @@ import tsml.classifiers.EnhancedAbstractClassifier;
 import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.dictionary_based.bitword.BitWord;
 import tsml.classifiers.dictionary_based.bitword.BitWordInt;
-import tsml.classifiers.dictionary_based.bitword.BitWordLong;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import tsml.data_containers.utilities.Converter;
+import utilities.ThreadingUtilities;
 import utilities.generic_storage.SerialisableComparablePair;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.UnassignedClassException;
 
+import java.io.Serializable;
 import java.util.*;
 import java.util.concurrent.*;
 
@@ -75,7 +76,8 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
     protected int seriesLength;
 
     //feature selection
-    private ObjectHashSet<SerialisableComparablePair<BitWord, Byte>> chiSquare;
+    private LongHashSet chiSquare;
+    private LongHashSet chiSquareBigrams;
     protected int chiLimit = 2;
 
     protected int ensembleID = -1;
@@ -171,21 +173,129 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         this.numThreads = numThreads;
     }
 
-    //map of <word, level> => count
-    public static class Bag extends HashMap<SerialisableComparablePair<BitWord, Byte>, Integer> {
+    /**
+     * Histogram of <word, level> => count. Words are counted in primitive hash maps while the bag is built, then
+     * compacted into arrays sorted by key so bags can be compared by merging rather than hashing.
+     *
+     * Unigram keys hold the word in the upper bits and its pyramid quadrant in the lowest byte. Bigram keys hold
+     * both words, which can fill all 64 bits, so are kept in their own arrays.
+     */
+    public static class Bag implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private long[] words = new long[0];
+        private int[] wordCounts = new int[0];
+        private long[] bigrams = new long[0];
+        private int[] bigramCounts = new int[0];
         private int classVal;
 
-        public Bag() {
-            super();
-        }
+        //only used while building, null once compacted
+        private transient LongIntHashMap wordCounter;
+        private transient LongIntHashMap bigramCounter;
+
+        public Bag() { }
 
         public Bag(int classValue) {
-            super();
             classVal = classValue;
         }
 
         public int getClassVal() { return classVal; }
         public void setClassVal(int classVal) { this.classVal = classVal; }
+
+        public static long wordKey(int word, int quadrant) {
+            return (Integer.toUnsignedLong(word) << 8) | (quadrant & 0xFF);
+        }
+
+        public static long bigramKey(int firstWord, int secondWord) {
+            return ((long)firstWord << 32) | Integer.toUnsignedLong(secondWord);
+        }
+
+        public void addWord(int word, int quadrant) {
+            if (wordCounter == null) wordCounter = new LongIntHashMap();
+            wordCounter.putOrAdd(wordKey(word, quadrant), 1, 1);
+        }
+
+        public void addBigram(int firstWord, int secondWord) {
+            if (bigramCounter == null) bigramCounter = new LongIntHashMap();
+            bigramCounter.putOrAdd(bigramKey(firstWord, secondWord), 1, 1);
+        }
+
+        /**
+         * Moves any words added since the last call into the sorted arrays.
+         */
+        public void compact() {
+            if (wordCounter != null) {
+                words = sortedKeys(wordCounter, words, wordCounts);
+                wordCounts = countsOf(wordCounter, words);
+                wordCounter = null;
+            }
+            if (bigramCounter != null) {
+                bigrams = sortedKeys(bigramCounter, bigrams, bigramCounts);
+                bigramCounts = countsOf(bigramCounter, bigrams);
+                bigramCounter = null;
+            }
+        }
+
+        private static long[] sortedKeys(LongIntHashMap counter, long[] keys, int[] counts) {
+            for (int i = 0; i < keys.length; i++) {
+                counter.addTo(keys[i], counts[i]);
+            }
+            long[] sorted = counter.keys().toArray();
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private static int[] countsOf(LongIntHashMap counter, long[] keys) {
+            int[] counts = new int[keys.length];
+            for (int i = 0; i < keys.length; i++) {
+                counts[i] = counter.get(keys[i]);
+            }
+            return counts;
+        }
+
+        public int size() { return words.length + bigrams.length; }
+
+        public int numWords() { return words.length; }
+        public int getWord(int i) { return (int)(words[i] >>> 8); }
+        public byte getQuadrant(int i) { return (byte)words[i]; }
+        public int getWordCount(int i) { return wordCounts[i]; }
+
+        public int numBigrams() { return bigrams.length; }
+        public long getBigram(int i) { return bigrams[i]; }
+        public int getBigramCount(int i) { return bigramCounts[i]; }
+
+        /**
+         * @return a copy of this bag holding only the words in the given sets of keys
+         */
+        public Bag filter(LongHashSet wordKeys, LongHashSet bigramKeys) {
+            Bag bag = new Bag(classVal);
+            int n = 0;
+            for (int i = 0; i < words.length; i++) {
+                if (wordKeys.contains(words[i])) n++;
+            }
+            bag.words = new long[n];
+            bag.wordCounts = new int[n];
+            for (int i = 0, j = 0; i < words.length; i++) {
+                if (wordKeys.contains(words[i])) {
+                    bag.words[j] = words[i];
+                    bag.wordCounts[j++] = wordCounts[i];
+                }
+            }
+
+            n = 0;
+            for (int i = 0; i < bigrams.length; i++) {
+                if (bigramKeys.contains(bigrams[i])) n++;
+            }
+            bag.bigrams = new long[n];
+            bag.bigramCounts = new int[n];
+            for (int i = 0, j = 0; i < bigrams.length; i++) {
+                if (bigramKeys.contains(bigrams[i])) {
+                    bag.bigrams[j] = bigrams[i];
+                    bag.bigramCounts[j++] = bigramCounts[i];
+                }
+            }
+            return bag;
+        }
     }
 
     public int getWindowSize() { return windowSize; }
@@ -561,21 +671,30 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
     private void trainChiSquared() {
         // Chi2 Test
-        ObjectIntHashMap<SerialisableComparablePair<BitWord, Byte>> featureCount
-                = new ObjectIntHashMap<>(bags.get(0).size());
+        LongIntHashMap featureCount = new LongIntHashMap(bags.get(0).numWords());
+        LongIntHashMap bigramFeatureCount = new LongIntHashMap(bags.get(0).numBigrams());
         DoubleDoubleHashMap classProb = new DoubleDoubleHashMap(10);
-        DoubleObjectHashMap<ObjectIntHashMap<SerialisableComparablePair<BitWord, Byte>>> observed
-                = new DoubleObjectHashMap<>(bags.get(0).size());
+        DoubleObjectHashMap<LongIntHashMap> observed = new DoubleObjectHashMap<>();
+        DoubleObjectHashMap<LongIntHashMap> observedBigrams = new DoubleObjectHashMap<>();
 
         // count number of samples with this word
         for (Bag bag : bags) {
             if (!observed.containsKey(bag.classVal)) {
-                observed.put(bag.classVal, new ObjectIntHashMap<>());
+                observed.put(bag.classVal, new LongIntHashMap());
+                observedBigrams.put(bag.classVal, new LongIntHashMap());
+            }
+            LongIntHashMap observe = observed.get(bag.classVal);
+            for (int i = 0; i < bag.words.length; i++) {
+                if (bag.wordCounts[i] > 0) {
+                    featureCount.putOrAdd(bag.words[i], 1, 1);
+                    observe.putOrAdd(bag.words[i], 1, 1);
+                }
             }
-            for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> word : bag.entrySet()) {
-                if (word.getValue() > 0) {
-                    featureCount.putOrAdd(word.getKey(), 1, 1);
-                    observed.get(bag.classVal).putOrAdd(word.getKey(), 1, 1);
+            observe = observedBigrams.get(bag.classVal);
+            for (int i = 0; i < bag.bigrams.length; i++) {
+                if (bag.bigramCounts[i] > 0) {
+                    bigramFeatureCount.putOrAdd(bag.bigrams[i], 1, 1);
+                    observe.putOrAdd(bag.bigrams[i], 1, 1);
                 }
             }
 
@@ -583,42 +702,37 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         }
 
         // chi-squared: observed minus expected occurrence
-        chiSquare = new ObjectHashSet<>(featureCount.size());
+        chiSquare = new LongHashSet(featureCount.size());
+        chiSquareBigrams = new LongHashSet(bigramFeatureCount.size());
         for (DoubleDoubleCursor classLabel : classProb) {
             classLabel.value /= bags.size();
             if (observed.get(classLabel.key) != null) {
-                ObjectIntHashMap<SerialisableComparablePair<BitWord, Byte>> observe = observed.get(classLabel.key);
-                for (ObjectIntCursor<SerialisableComparablePair<BitWord, Byte>> feature : featureCount) {
-                    double expected = classLabel.value * feature.value;
-                    double chi = observe.get(feature.key) - expected;
-                    double newChi = chi * chi / expected;
-                    if (newChi >= chiLimit && !chiSquare.contains(feature.key)) {
-                        chiSquare.add(feature.key);
-                    }
-                }
+                selectChiSquared(featureCount, observed.get(classLabel.key), classLabel.value, chiSquare);
+                selectChiSquared(bigramFeatureCount, observedBigrams.get(classLabel.key), classLabel.value,
+                        chiSquareBigrams);
             }
         }
 
         // best elements above limit
         for (int i = 0; i < bags.size(); i++) {
-            Bag newBag = new Bag(bags.get(i).classVal);
-            for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> cursor : bags.get(i).entrySet()) {
-                if (chiSquare.contains(cursor.getKey())) {
-                    newBag.put(cursor.getKey(), cursor.getValue());
-                }
-            }
-            bags.set(i, newBag);
+            bags.set(i, filterChiSquared(bags.get(i)));
         }
     }
 
-    private Bag filterChiSquared(Bag bag) {
-        Bag newBag = new Bag(bag.classVal);
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> cursor : bag.entrySet()) {
-            if (chiSquare.contains(cursor.getKey())) {
-                newBag.put(cursor.getKey(), cursor.getValue());
+    private void selectChiSquared(LongIntHashMap featureCount, LongIntHashMap observe, double classProb,
+                                  LongHashSet selected) {
+        for (LongIntCursor feature : featureCount) {
+            double expected = classProb * feature.value;
+            double chi = observe.get(feature.key) - expected;
+            double newChi = chi * chi / expected;
+            if (newChi >= chiLimit) {
+                selected.add(feature.key);
             }
         }
-        return newBag;
+    }
+
+    private Bag filterChiSquared(Bag bag) {
+        return bag.filter(chiSquare, chiSquareBigrams);
     }
 
     /**
@@ -641,10 +755,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
             if (useBigrams) {
                 if (wInd - windowSize >= 0) {
-                    BitWord bigram = new BitWordLong(words[wInd - windowSize], word);
-
-                    SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(bigram, (byte) -1);
-                    bag.merge(key, 1, Integer::sum);
+                    bag.addBigram(words[wInd - windowSize].getWord().intValue(), word.getWord().intValue());
                 }
             }
 
@@ -756,10 +867,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
             if (useBigrams) {
                 if (wInd - windowSize >= 0) {
-                    BitWord bigram = new BitWordLong(newWords[wInd - windowSize], word);
-
-                    SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(bigram, (byte) -1);
-                    bag.merge(key, 1, Integer::sum);
+                    bag.addBigram(newWords[wInd - windowSize].getWord().intValue(), word.getWord().intValue());
                 }
             }
 
@@ -801,10 +909,14 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         }
     }
 
+    /**
+     * Compacts the bag then weights each word count by the level of the pyramid it was found on.
+     */
     protected void applyPyramidWeights(Bag bag) {
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> ent : bag.entrySet()) {
+        bag.compact();
+        for (int i = 0; i < bag.words.length; i++) {
             //find level that this quadrant is on
-            int quadrant = ent.getKey().var2;
+            int quadrant = bag.getQuadrant(i);
             int qEnd = 0;
             int level = 0;
             while (qEnd < quadrant) {
@@ -813,8 +925,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             }
 
             //double val = ent.getValue() * (Math.pow(levelWeighting, levels-level-1)); //weighting ^ (levels - level)
-            int val = ent.getValue() * (int)Math.pow(2,level);
-            bag.put(ent.getKey(), val);
+            bag.wordCounts[i] *= (int)Math.pow(2,level);
         }
     }
 
@@ -823,6 +934,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
         //e.g level 0 = 0
         //    level 1 = 1
         //    level 2 = 3
+        int w = word.getWord().intValue();
         for (int l = 0; l < levels; ++l) {
             //need to do the cell finding thing in the regular grid
             int numQuadrants = (int)Math.pow(2, l);
@@ -830,8 +942,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
             int pos = wInd + (windowSize/2); //use the middle of the window as its position
             int quadrant = qStart + (pos/quadrantSize);
 
-            SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(word, (byte)quadrant);
-            bag.merge(key, 1, Integer::sum);
+            bag.addWord(w, quadrant);
 
             qStart += numQuadrants;
         }
@@ -868,7 +979,7 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
 
         if (multiThread){
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
+            if (ex == null) ex = ThreadingUtilities.buildExecutorService(numThreads);
 
             ArrayList<Future<Bag>> futures = new ArrayList<>(data.numInstances());
 
@@ -913,39 +1024,55 @@ public class IndividualTDE extends EnhancedAbstractClassifier implements Compara
      * @return distance FROM instA TO instB, or Double.MAX_VALUE if it would be greater than bestDist
      */
     public double BOSSdistance(Bag instA, Bag instB, double bestDist) {
-        double dist = 0.0;
+        //find dist only from values in instA, both bags are sorted so walk through them together
+        double dist = BOSSdistance(instA.words, instA.wordCounts, instB.words, instB.wordCounts, 0, bestDist);
+        if (dist > bestDist)
+            return Double.MAX_VALUE;
+
+        dist = BOSSdistance(instA.bigrams, instA.bigramCounts, instB.bigrams, instB.bigramCounts, dist, bestDist);
+        if (dist > bestDist)
+            return Double.MAX_VALUE;
+
+        return dist;
+    }
 
-        //find dist only from values in instA
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : instA.entrySet()) {
-            Integer valA = entry.getValue();
-            Integer valB = instB.get(entry.getKey());
-            if (valB == null) valB = 1;
+    private static double BOSSdistance(long[] keysA, int[] countsA, long[] keysB, int[] countsB, double dist,
+                                       double bestDist) {
+        int j = 0;
+        for (int i = 0; i < keysA.length; i++) {
+            while (j < keysB.length && keysB[j] < keysA[i]) j++;
+
+            int valA = countsA[i];
+            int valB = j < keysB.length && keysB[j] == keysA[i] ? countsB[j] : 1;
             dist += (valA-valB)*(valA-valB);
 
             if (dist > bestDist)
-                return Double.MAX_VALUE;
+                return dist;
         }
-
         return dist;
     }
 
     public double histogramIntersection(Bag instA, Bag instB) {
         //min vals of keys that exist in only one of the bags will always be 0
         //therefore want to only bother looking at counts of words in both bags
-        //therefore will simply loop over words in a, skipping those that dont appear in b
-        //no need to loop over b, since only words missed will be those not in a anyway
+        //both bags are sorted, so simply walk through them together picking out the matching keys
 
-        double sim = 0.0;
-
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : instA.entrySet()) {
-            Integer valA = entry.getValue();
-            Integer valB = instB.get(entry.getKey());
-            if (valB == null)
-                continue;
+        return histogramIntersection(instA.words, instA.wordCounts, instB.words, instB.wordCounts)
+                + histogramIntersection(instA.bigrams, instA.bigramCounts, instB.bigrams, instB.bigramCounts);
+    }
 
-            sim += Math.min(valA,valB);
+    private static double histogramIntersection(long[] keysA, int[] countsA, long[] keysB, int[] countsB) {
+        long sim = 0;
+        int i = 0, j = 0;
+        while (i < keysA.length && j < keysB.length) {
+            if (keysA[i] < keysB[j]) {
+                i++;
+            } else if (keysA[i] > keysB[j]) {
+                j++;
+            } else {
+                sim += Math.min(countsA[i++], countsB[j++]);
+            }
         }
-
         return sim;
     }
 
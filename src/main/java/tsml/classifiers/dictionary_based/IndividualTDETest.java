@@ -0,0 +1,91 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.classifiers.dictionary_based;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.utilities.Converter;
+import weka.core.Instances;
+
+/**
+ * Expected values were recorded from the HashMap based bags the packed bags replaced, on GunPoint fold 0.
+ */
+public class IndividualTDETest {
+
+    private static void assertBags(IndividualTDE tde, long[] distances, double limit, long[] intersections,
+            String trainPredictions, String testPredictions) throws Exception {
+        final Instances[] data = DatasetLoading.sampleGunPoint(0);
+        tde.setSeed(0);
+        tde.buildClassifier(data[0]);
+
+        final IndividualTDE.Bag first = tde.getBags().get(0);
+        for (int i = 0; i < distances.length; i++) {
+            final IndividualTDE.Bag bag = tde.getBags().get(i);
+            Assert.assertEquals(distances[i], tde.BOSSdistance(first, bag, Double.MAX_VALUE), 0);
+            Assert.assertEquals(distances[i] > limit ? Double.MAX_VALUE : distances[i],
+                    tde.BOSSdistance(first, bag, limit), 0);
+            Assert.assertEquals(intersections[i], tde.histogramIntersection(first, bag), 0);
+        }
+
+        final StringBuilder train = new StringBuilder();
+        for (int i = 0; i < data[0].numInstances(); i++) {
+            train.append((int) tde.classifyInstance(i));
+        }
+        Assert.assertEquals(trainPredictions, train.toString());
+
+        final TimeSeriesInstances test = Converter.fromArff(data[1]);
+        final StringBuilder predictions = new StringBuilder();
+        for (int i = 0; i < testPredictions.length(); i++) {
+            predictions.append((int) tde.classifyInstance(test.get(i)));
+        }
+        Assert.assertEquals(testPredictions, predictions.toString());
+    }
+
+    @Test
+    public void testHistogramIntersection() throws Exception {
+        assertBags(new IndividualTDE(8, 4, 40, true, 2, true),
+                new long[] {0, 121, 80, 104, 155, 115, 269, 208, 248, 181}, 100,
+                new long[] {182, 89, 83, 80, 82, 81, 36, 50, 54, 38},
+                "11001111100000101101000101001101101011111000110101",
+                "0110010110001000011101000100110110000001010010110111010011010100100111111111111000111101000101001100");
+    }
+
+    @Test
+    public void testBOSSDistance() throws Exception {
+        final IndividualTDE tde = new IndividualTDE(8, 4, 40, false, 1, false);
+        tde.setHistogramIntersection(false);
+        assertBags(tde,
+                new long[] {0, 18, 17, 18, 18, 18, 19, 19, 18, 18}, 18,
+                new long[] {133, 39, 31, 34, 25, 19, 8, 4, 17, 13},
+                "11000111000010001101010100001101101010111000110001",
+                "0010111010100000001101110100100110011000111111110101010011100101100001111101110010110100011101101100");
+    }
+
+    @Test
+    public void testFeatureSelection() throws Exception {
+        final IndividualTDE tde = new IndividualTDE(8, 4, 40, true, 2, true);
+        tde.setUseFeatureSelection(true);
+        assertBags(tde,
+                new long[] {0, 6, 15, 42, 7, 2, 11, 10, 10, 10}, 10,
+                new long[] {31, 19, 3, 3, 10, 23, 0, 2, 14, 2},
+                "11001111100000101101000101001001101011111000110101",
+                "0110010110001000011101000100110110000001010010110111010011010100100111111111111000111101000101001100");
+    }
+}
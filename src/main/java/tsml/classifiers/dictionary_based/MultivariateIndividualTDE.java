@@ -29,6 +29,7 @@ import tsml.classifiers.dictionary_based.bitword.BitWordInt;
 import tsml.classifiers.dictionary_based.bitword.BitWordLong;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
+import utilities.ThreadingUtilities;
 import utilities.generic_storage.SerialisableComparablePair;
 
 import java.io.Serializable;
@@ -535,9 +536,7 @@ public class MultivariateIndividualTDE extends IndividualTDE {
                         int pos = wInd + (windowSize/2); //use the middle of the window as its position
                         int quadrant = qStart + (pos/quadrantSize);
 
-                        SerialisableComparablePair<BitWord, Byte> key = new SerialisableComparablePair<>(word,
-                                (byte)quadrant);
-                        bag.merge(key, 1, Integer::sum);
+                        bag.addWord(word.getWord().intValue(), quadrant);
 
                         qStart += numQuadrants;
                     }
@@ -622,7 +621,7 @@ public class MultivariateIndividualTDE extends IndividualTDE {
 
         if (multiThread){
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
+            if (ex == null) ex = ThreadingUtilities.buildExecutorService(numThreads);
 
             ArrayList<Future<BagMV>> futures = new ArrayList<>(data.numInstances());
 
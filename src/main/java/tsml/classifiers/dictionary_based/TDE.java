@@ -21,7 +21,6 @@ import evaluation.storage.ClassifierResults;
 import experiments.data.DatasetLoading;
 import fileIO.OutFile;
 import tsml.classifiers.*;
-import tsml.classifiers.dictionary_based.bitword.BitWord;
 import tsml.classifiers.dictionary_based.bitword.BitWordInt;
 import tsml.classifiers.dictionary_based.bitword.BitWordLong;
 import tsml.data_containers.TSCapabilities;
@@ -29,6 +28,7 @@ import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import tsml.data_containers.utilities.Converter;
 import utilities.ClassifierTools;
+import utilities.ThreadingUtilities;
 import utilities.generic_storage.SerialisableComparablePair;
 import weka.classifiers.functions.GaussianProcesses;
 import weka.core.*;
@@ -36,7 +36,6 @@ import weka.core.*;
 import java.io.*;
 import java.util.*;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -402,7 +401,7 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
         }
 
         if (multiThread) {
-            ex = Executors.newFixedThreadPool(numThreads);
+            ex = ThreadingUtilities.buildExecutorService(numThreads);
         }
 
         //Contracting
@@ -1326,22 +1325,13 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
             }
         });
 
-        HashMap<SerialisableComparablePair<Byte, String>, Integer> histWords = new HashMap<>();
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : histogram.entrySet()) {
-            String word = entry.getKey().var2 == -1 ? ((BitWordLong) entry.getKey().var1).toStringBigram()
-                    : ((BitWordInt) entry.getKey().var1).toStringUnigram();
+        HashMap<SerialisableComparablePair<Byte, String>, Integer> histWords = bagWordStrings(histogram,
+                tde.getWordLength());
+        keys.addAll(histWords.keySet());
 
-            keys.add(new SerialisableComparablePair<>(entry.getKey().var2, word));
-            histWords.put(new SerialisableComparablePair<>(entry.getKey().var2, word), entry.getValue());
-        }
-
-        HashMap<SerialisableComparablePair<Byte, String>, Integer> nearestWords = new HashMap<>();
-        for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : nearestHistogram.entrySet()) {
-            String word = entry.getKey().var2 == -1 ? ((BitWordLong) entry.getKey().var1).toStringBigram()
-                    : ((BitWordInt) entry.getKey().var1).toStringUnigram();
-            keys.add(new SerialisableComparablePair<>(entry.getKey().var2, word));
-            nearestWords.put(new SerialisableComparablePair<>(entry.getKey().var2, word), entry.getValue());
-        }
+        HashMap<SerialisableComparablePair<Byte, String>, Integer> nearestWords = bagWordStrings(nearestHistogram,
+                tde.getWordLength());
+        keys.addAll(nearestWords.keySet());
 
         int numLevels = 1;
         for (int i = 0; i < tde.getLevels(); i++) {
@@ -1523,16 +1513,9 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
             if (classCount[cls] >= 1) continue;
             classCount[cls]++;
 
-            for (Map.Entry<SerialisableComparablePair<BitWord, Byte>, Integer> entry : bag.entrySet()) {
-                SerialisableComparablePair<BitWord, Byte> key = entry.getKey();
-
-                String word = key.var2 == -1 ? ((BitWordLong) key.var1).toStringBigram()
-                        : ((BitWordInt) key.var1).toStringUnigram();
-
-                SerialisableComparablePair<Byte, String> newKey = new SerialisableComparablePair<>(key.var2, word);
-                Integer val = classCounts[cls].get(newKey);
-                if (val == null) val = 0;
-                classCounts[cls].put(newKey, val + entry.getValue());
+            for (Map.Entry<SerialisableComparablePair<Byte, String>, Integer> entry :
+                    bagWordStrings(bag, tde.getWordLength()).entrySet()) {
+                classCounts[cls].merge(entry.getKey(), entry.getValue(), Integer::sum);
             }
         }
 
@@ -1633,6 +1616,23 @@ public class TDE extends EnhancedAbstractClassifier implements TrainTimeContract
         return true;
     }
 
+    /**
+     * Maps the words in a bag to their printable form, keyed alongside their pyramid quadrant, or -1 for bigrams.
+     */
+    private static HashMap<SerialisableComparablePair<Byte, String>, Integer> bagWordStrings(IndividualTDE.Bag bag,
+                                                                                             int wordLength) {
+        HashMap<SerialisableComparablePair<Byte, String>, Integer> words = new HashMap<>();
+        for (int i = 0; i < bag.numWords(); i++) {
+            String word = new BitWordInt(bag.getWord(i), (byte) wordLength).toStringUnigram();
+            words.put(new SerialisableComparablePair<>(bag.getQuadrant(i), word), bag.getWordCount(i));
+        }
+        for (int i = 0; i < bag.numBigrams(); i++) {
+            String word = new BitWordLong(bag.getBigram(i), (byte) 32).toStringBigram();
+            words.put(new SerialisableComparablePair<>((byte) -1, word), bag.getBigramCount(i));
+        }
+        return words;
+    }
+
     /**
      * Development tests for the TDE classifier.
      *
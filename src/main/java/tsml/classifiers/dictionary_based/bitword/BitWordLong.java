@@ -89,6 +89,11 @@ public class BitWordLong implements BitWord {
         this.length = bw.length;
     }
 
+    public BitWordLong(long word, byte length) {
+        this.word = word;
+        this.length = length;
+    }
+
     public BitWordLong(int [] letters) throws Exception {
         setWord(letters);
     }
@@ -24,6 +24,7 @@ import tsml.classifiers.EnhancedAbstractClassifier;
 import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
 import utilities.ClassifierTools;
+import utilities.ThreadingUtilities;
 import utilities.samplers.RandomIndexSampler;
 import utilities.samplers.RandomRoundRobinIndexSampler;
 import utilities.samplers.RandomStratifiedIndexSampler;
@@ -37,7 +38,6 @@ import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -507,7 +507,7 @@ public class cBOSS extends EnhancedAbstractClassifier implements TrainTimeContra
 
         if (multiThread) {
             if (numThreads == 1) numThreads = Runtime.getRuntime().availableProcessors();
-            if (ex == null) ex = Executors.newFixedThreadPool(numThreads);
+            if (ex == null) ex = ThreadingUtilities.buildExecutorService(numThreads);
         }
 
         //required to deal with multivariate datasets, each channel is split into its own instances
@@ -17,6 +17,10 @@ public class DistanceFunctionAdapter implements DistanceFunction {
 
     private final DistanceMeasure dm;
 
+    public DistanceMeasure getDistanceMeasure() {
+        return dm;
+    }
+
     public boolean isSymmetric() {
         return dm.isSymmetric();
     }
@@ -45,19 +45,29 @@ public interface DistanceMeasure extends Serializable, ParamHandler {
         return true;
     }
 
+    /**
+     * Whether a single instance of the distance measure can find distances on several threads at once. If not, each
+     * thread must use its own copy.
+     * @return
+     */
+    default boolean isThreadSafe() {
+        return false;
+    }
+
     default double distance(final Instance a, final Instance b) {
         return distance(a, b, Double.POSITIVE_INFINITY);
     }
     
     /**
-     * Override this distance func
+     * Override this distance func. By default the values of each inst (less the class value) are read straight into
+     * a TimeSeriesInstance, i.e. without converting the inst's whole dataset.
      * @param a
      * @param b
      * @param limit
      * @return
      */
     default double distance(final Instance a, final Instance b, final double limit) {
-        return distance(Converter.fromArff(a), Converter.fromArff(b), limit);
+        return distance(Converter.fromArffValues(a), Converter.fromArffValues(b), limit);
     }
 
     default double distance(final TimeSeriesInstance a, final TimeSeriesInstance b) {
@@ -35,10 +35,12 @@ import tsml.data_containers.TimeSeriesInstances;
 import tsml.data_containers.utilities.Converter;
 import tsml.transformers.Derivative;
 import utilities.FileUtils;
+import utilities.ThreadingUtilities;
 import weka.core.Instance;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 import static experiments.data.DatasetLoading.*;
 import static tsml.classifiers.distance_based.distances.DistanceMeasure.DISTANCE_MEASURE_FLAG;
@@ -193,6 +195,40 @@ public class DistanceMeasureTest {
         }
     }
     
+    @Test
+    public void testConcurrentDistances() throws Exception {
+        Assert.assertTrue(distanceMeasure.isThreadSafe());
+        if(distanceMeasure instanceof MatrixBasedDistanceMeasure) {
+            ((MatrixBasedDistanceMeasure) distanceMeasure).setRecordCostMatrix(false);
+        }
+        // random pairs of insts, with their distances found on this thread
+        final Random random = new Random(0);
+        final int numPairs = 100;
+        final int[][] pairs = new int[numPairs][];
+        final double[] expected = new double[numPairs];
+        for(int i = 0; i < numPairs; i++) {
+            pairs[i] = new int[] {random.nextInt(data.numInstances()), random.nextInt(data.numInstances())};
+            expected[i] = distanceMeasure.distance(data.get(pairs[i][0]), data.get(pairs[i][1]));
+        }
+        // the same distance measure shared by several threads, each visiting the pairs in a different order
+        final int numThreads = 4;
+        final List<Callable<double[]>> jobs = new ArrayList<>();
+        for(int t = 0; t < numThreads; t++) {
+            final int offset = t * numPairs / numThreads;
+            jobs.add(() -> {
+                final double[] distances = new double[numPairs];
+                for(int j = 0; j < numPairs; j++) {
+                    final int i = (j + offset) % numPairs;
+                    distances[i] = distanceMeasure.distance(data.get(pairs[i][0]), data.get(pairs[i][1]));
+                }
+                return distances;
+            });
+        }
+        for(double[] distances : ThreadingUtilities.computeAll(ThreadingUtilities.buildExecutorService(numThreads), jobs, true)) {
+            Assert.assertArrayEquals(expected, distances, 0d);
+        }
+    }
+    
     private void testDistances() throws Exception {
         try(final BufferedReader reader = new BufferedReader(new FileReader(testResultsFilePath))) {
             reader.readLine(); // read the header line
@@ -19,6 +19,10 @@ public class IndependentDistanceMeasure extends BaseDistanceMeasure {
         return distanceMeasure.isSymmetric();
     }
 
+    @Override public boolean isThreadSafe() {
+        return distanceMeasure.isThreadSafe();
+    }
+
     @Override public double distance(final TimeSeriesInstance a, final TimeSeriesInstance b,
             final double limit) {
         double sum = 0;
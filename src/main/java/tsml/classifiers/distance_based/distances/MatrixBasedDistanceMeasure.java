@@ -30,66 +30,95 @@ import java.util.Arrays;
  */
 public abstract class MatrixBasedDistanceMeasure extends BaseDistanceMeasure {
 
+    // working space for each thread, shared by every matrix based distance measure used on that thread
+    private static final ThreadLocal<Context> CONTEXT = ThreadLocal.withInitial(Context::new);
+
     private boolean recordCostMatrix = false;
-    // the distance matrix produced by the distance function
-    private double[][] costMatrix;
-    private double[] oddRow;
-    private double[] evenRow;
-    private int numCols;
-    private boolean recycleRows;
+    // the distance matrix produced by the most recent distance computation
+    private volatile double[][] costMatrix;
 
     /**
-     * Indicate that a new distance is being computed and a corresponding matrix or pair or rows are required
-     * @param numRows
-     * @param numCols
+     * The working space for computing a single distance on a single thread. Rather than the distance measure holding
+     * rows during a distance computation, each thread has its own pair of rows which only ever grow. Once the rows
+     * are as long as the longest series seen, computing a distance allocates nothing, and a single configured
+     * distance measure can be used by any number of threads at once.
      */
-    protected void setup(int numRows, int numCols, boolean recycleRows) {
-        oddRow = null;
-        evenRow = null;
-        costMatrix = null;
-        this.numCols = numCols;
-        this.recycleRows = recycleRows;
-        if(recordCostMatrix) {
-            costMatrix = new double[numRows][numCols];
-            for(double[] array : costMatrix) Arrays.fill(array, getFillerValue());
-        } else {
-            oddRow = new double[numCols];
-            evenRow = new double[numCols];
+    protected static final class Context {
+        private double[] evenRow = new double[0];
+        private double[] oddRow = new double[0];
+        private double[] buffer = new double[0];
+        private double[][] costMatrix;
+
+        private Context() {}
+
+        private void setup(int numRows, int numCols, double[][] costMatrix) {
+            this.costMatrix = costMatrix;
+            if(costMatrix == null) {
+                if(evenRow.length < numCols) {
+                    evenRow = new double[numCols];
+                    oddRow = new double[numCols];
+                    buffer = new double[numCols];
+                }
+                // start from zeroed rows, as if freshly allocated
+                Arrays.fill(evenRow, 0, numCols, 0);
+                Arrays.fill(oddRow, 0, numCols, 0);
+            } else if(buffer.length < numCols) {
+                buffer = new double[numCols];
+            }
         }
-    }
-    
-    protected double getFillerValue() {
-        return Double.POSITIVE_INFINITY;
-    }
 
-    /**
-     * Indicate that distance has been computed and any resources can be discarded. This preserves the distance matrix if set to do so, and discards all other resources. This is helpful to avoid the DistanceMeasure(s) retaining various rows / matrices post computation, never to be needed again but remaining in use in memory.
-     */
-    protected void teardown() {
-        oddRow = null;
-        evenRow = null;
-        numCols = -1;
-        recycleRows = false;
-        if(!recordCostMatrix) {
-            costMatrix = null;
+        /**
+         * Get a specified row. This is the row of the cost matrix if recording it, otherwise a pair of rows are
+         * recycled, i.e. row i overwrites row i - 2. Rows may be longer than the number of columns.
+         * @param i
+         * @return
+         */
+        public double[] getRow(int i) {
+            if(costMatrix != null) {
+                return costMatrix[i];
+            } else {
+                return i % 2 == 0 ? evenRow : oddRow;
+            }
+        }
+
+        /**
+         * Get a spare array at least as long as a row for any other per column working values. Its contents are
+         * undefined at the start of a distance computation.
+         * @return
+         */
+        public double[] getBuffer() {
+            return buffer;
         }
     }
 
     /**
-     * Get a specified row. This manages the matrix automatically, returning the corresponding row, or recycles the rows if using a paired rows approach, or allocates a fresh row as required.
-     * @param i
+     * Indicate that a new distance is being computed and get the calling thread's context holding the matrix or
+     * pair of rows required.
+     * @param numRows
+     * @param numCols
      * @return
      */
-    protected double[] getRow(int i) {
+    protected Context setup(int numRows, int numCols) {
+        double[][] costMatrix = null;
         if(recordCostMatrix) {
-            return costMatrix[i];
-        } else if(recycleRows) {
-            return i % 2 == 0 ? evenRow : oddRow;
-        } else {
-            return new double[numCols];
+            costMatrix = new double[numRows][numCols];
+            for(double[] array : costMatrix) Arrays.fill(array, getFillerValue());
+            this.costMatrix = costMatrix;
         }
+        final Context context = CONTEXT.get();
+        context.setup(numRows, numCols, costMatrix);
+        return context;
     }
     
+    @Override public boolean isThreadSafe() {
+        // all working space is held per thread
+        return true;
+    }
+
+    protected double getFillerValue() {
+        return Double.POSITIVE_INFINITY;
+    }
+
     public double[][] costMatrix() {
         return costMatrix;
     }
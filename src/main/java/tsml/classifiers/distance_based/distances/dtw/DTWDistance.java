@@ -20,7 +20,6 @@ package tsml.classifiers.distance_based.distances.dtw;
 import tsml.classifiers.distance_based.distances.MatrixBasedDistanceMeasure;
 import tsml.classifiers.distance_based.utils.collections.checks.Checks;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
-import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
 import utilities.Utilities;
 
@@ -36,16 +35,28 @@ public class DTWDistance extends MatrixBasedDistanceMeasure implements DTW {
     public static double cost(final TimeSeriesInstance a, final int aIndex, final TimeSeriesInstance b, final int bIndex) {
         double sum = 0;
         for(int i = 0; i < a.getNumDimensions(); i++) {
-            final TimeSeries aDim = a.get(i);
-            final TimeSeries bDim = b.get(i);
-            final double aValue = aDim.get(aIndex);
-            final double bValue = bDim.get(bIndex);
-            final double sqDiff = StrictMath.pow(aValue - bValue, 2);
-            sum += sqDiff;
+            final double diff = a.get(i).getValue(aIndex) - b.get(i).getValue(bIndex);
+            sum += diff * diff;
         }
         return sum;
     }
 
+    private static double[][] backingArrays(TimeSeriesInstance inst) {
+        final double[][] arrays = new double[inst.getNumDimensions()][];
+        for(int d = 0; d < arrays.length; d++) {
+            arrays[d] = inst.get(d).getBackingArray();
+        }
+        return arrays;
+    }
+
+    private static int[] offsets(TimeSeriesInstance inst) {
+        final int[] offsets = new int[inst.getNumDimensions()];
+        for(int d = 0; d < offsets.length; d++) {
+            offsets[d] = inst.get(d).getOffset();
+        }
+        return offsets;
+    }
+
     private double window = 1;
 
     @Override public void setWindow(final double window) {
@@ -58,6 +69,16 @@ public class DTWDistance extends MatrixBasedDistanceMeasure implements DTW {
 
     public double distance(TimeSeriesInstance a, TimeSeriesInstance b, final double limit) {
 
+        if(!isRecordCostMatrix()) {
+            // no matrix needed so use the primitive kernel with its lower bound cascade
+            if(a.isEqualLength() && b.isEqualLength()) {
+                // read the values in place, which for packed data avoids copying each series out of its column
+                return DTWKernel.distance(backingArrays(a), offsets(a), a.getMaxLength(), backingArrays(b), offsets(b),
+                        b.getMaxLength(), window, limit);
+            }
+            return DTWKernel.distance(a.getValueArrayView(), b.getValueArrayView(), window, limit);
+        }
+
         // make a the longest time series
         if(a.getMaxLength() < b.getMaxLength()) {
             TimeSeriesInstance tmp = a;
@@ -67,7 +88,7 @@ public class DTWDistance extends MatrixBasedDistanceMeasure implements DTW {
         
         final int aLength = a.getMaxLength();
         final int bLength = b.getMaxLength();
-        setup(aLength, bLength, true);
+        final Context context = setup(aLength, bLength);
         
         // step is the increment of the mid point for each row
         final double step = (double) (bLength - 1) / (aLength - 1);
@@ -81,7 +102,7 @@ public class DTWDistance extends MatrixBasedDistanceMeasure implements DTW {
         double mid = 0;
         int end = Math.min(bLength - 1, (int) Math.floor(windowSize));
         int prevEnd; // store end of window from previous row to fill in shifted space with inf
-        double[] row = getRow(i);
+        double[] row = context.getRow(i);
         double[] prevRow;
 
         // col index
@@ -102,7 +123,7 @@ public class DTWDistance extends MatrixBasedDistanceMeasure implements DTW {
             min = Double.POSITIVE_INFINITY;
             // change rows
             prevRow = row;
-            row = getRow(i);
+            row = context.getRow(i);
 
             // start, end and mid of window
             prevEnd = end;
@@ -136,8 +157,7 @@ public class DTWDistance extends MatrixBasedDistanceMeasure implements DTW {
         }
 
         // last value in the current row is the distance
-        final double distance = row[row.length - 1];
-        teardown();
+        final double distance = row[bLength - 1];
         return distance;
     }
 
@@ -25,6 +25,8 @@ import tsml.data_containers.TimeSeriesInstances;
 import utilities.InstanceTools;
 import weka.core.Instances;
 
+import java.util.Random;
+
 import static tsml.classifiers.distance_based.distances.dtw.spaces.DDTWDistanceSpace.newDDTWDistance;
 
 /**
@@ -115,6 +117,69 @@ public class DTWDistanceTest {
         Assert.assertEquals(distance, otherDistance, 0d);
     }
     
+    @Test
+    public void testKernelMatchesCostMatrix() {
+        final Random random = new Random(0);
+        final DTWDistance matrixDtw = new DTWDistance();
+        matrixDtw.setRecordCostMatrix(true);
+        final DTWDistance kernelDtw = new DTWDistance();
+        for(int i = 0; i < 200; i++) {
+            final int numDimensions = 1 + random.nextInt(3);
+            final int aLength = 1 + random.nextInt(30);
+            final int bLength = random.nextBoolean() ? aLength : 1 + random.nextInt(30);
+            final double[][] a = new double[numDimensions][aLength];
+            final double[][] b = new double[numDimensions][bLength];
+            for(int d = 0; d < numDimensions; d++) {
+                for(int j = 0; j < aLength; j++) a[d][j] = random.nextGaussian();
+                for(int j = 0; j < bLength; j++) b[d][j] = random.nextGaussian();
+            }
+            final double window = random.nextDouble();
+            matrixDtw.setWindow(window);
+            kernelDtw.setWindow(window);
+            final double expected = matrixDtw.distanceMultivariate(a, b);
+            Assert.assertEquals(expected, kernelDtw.distanceMultivariate(a, b), 0d);
+            if(expected == Double.POSITIVE_INFINITY) {
+                // window too narrow for the difference in length, no warping path exists
+                continue;
+            }
+            // the lower bounds may only abandon when the distance really is beyond the limit
+            final double limit = expected * random.nextDouble() * 2;
+            final double limited = kernelDtw.distanceMultivariate(a, b, limit);
+            if(limited == Double.POSITIVE_INFINITY) {
+                Assert.assertTrue(expected > limit);
+            } else {
+                Assert.assertEquals(expected, limited, 0d);
+            }
+        }
+    }
+
+    @Test
+    public void testKernelOnPackedData() {
+        // packed series are regions of one array per dimension, so the envelope must be matched by offset too
+        final Random random = new Random(1);
+        for(int numDimensions = 1; numDimensions <= 2; numDimensions++) {
+            final double[][][] values = new double[20][numDimensions][25];
+            for(double[][] inst : values) {
+                for(double[] dim : inst) {
+                    for(int j = 0; j < dim.length; j++) dim[j] = random.nextGaussian();
+                }
+            }
+            final TimeSeriesInstances data = new TimeSeriesInstances(values, new double[values.length]);
+            final TimeSeriesInstances packed = data.pack();
+            Assert.assertTrue(packed.get(1).get(0).isView());
+            final DTWDistance dtw = new DTWDistance();
+            dtw.setWindow(0.2);
+            for(int i = 0; i < data.numInstances(); i++) {
+                for(int j = 0; j < data.numInstances(); j++) {
+                    final double expected = dtw.distance(data.get(i), data.get(j));
+                    Assert.assertEquals(expected, dtw.distance(packed.get(i), packed.get(j)), 0d);
+                    // a limit of the distance itself must not be abandoned by the lower bounds
+                    Assert.assertEquals(expected, dtw.distance(packed.get(i), packed.get(j), expected), 0d);
+                }
+            }
+        }
+    }
+
     public static class DTWParamTest extends ParamHandlerTest {
 
         @Override public Object getHandler() {
@@ -0,0 +1,422 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.classifiers.distance_based.distances.dtw;
+
+import java.util.Arrays;
+
+/**
+ * Allocation free DTW over primitive arrays. Series are given as [dim][time] arrays and the cost of aligning two
+ * points is the squared difference summed over dimensions, i.e. dependent multivariate DTW. Each dimension may instead
+ * be a region of a larger array, given by an offset per dimension and a length shared by all dimensions, so series
+ * packed into TimeSeriesColumns are read in place.
+ * <p>
+ * When a finite limit is given the distance is found through a cascade of increasingly expensive checks, each of which
+ * can show the distance exceeds the limit without going any further:
+ * <ol>
+ *     <li>LB_Kim, the cost of the first and last points which every warping path must align</li>
+ *     <li>LB_Keogh, the distance from one series to the warping window envelope of the other (equal length only)</li>
+ *     <li>DTW over two rolling rows, abandoned as soon as a whole row is beyond the limit</li>
+ * </ol>
+ * Rows, envelopes and deques are held in per thread scratch space so repeated calls allocate nothing. The envelope
+ * of the last series enveloped is kept, so a nearest neighbour search against a fixed query builds the envelope once.
+ * Envelopes are matched to series by array identity and offset, so regions passed in must not be modified between
+ * calls.
+ * <p>
+ * Contributors: goastler
+ */
+public final class DTWKernel {
+
+    private DTWKernel() {}
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /**
+     * Reusable working space for a single thread.
+     */
+    private static class Scratch {
+        private double[] evenRow = new double[0];
+        private double[] oddRow = new double[0];
+        private int[] upperDeque = new int[0];
+        private int[] lowerDeque = new int[0];
+        // the region the envelope was built from, arrays compared by identity, and the window radius used
+        private double[][] envelopeSeries;
+        private int[] envelopeOffsets;
+        private int envelopeLength;
+        private int envelopeRadius = -1;
+        private double[][] upper = new double[0][];
+        private double[][] lower = new double[0][];
+        // first dimension of the first series in the previous call, used to guess which series is the fixed query
+        private double[] previousA;
+        private int previousAOffset;
+        // offsets for series which start at the beginning of their arrays, never written to
+        private int[] zeros = new int[0];
+
+        private int[] zeros(int numDimensions) {
+            if(zeros.length < numDimensions) {
+                zeros = new int[numDimensions];
+            }
+            return zeros;
+        }
+
+        private void ensureRows(int length) {
+            if(evenRow.length < length) {
+                evenRow = new double[length];
+                oddRow = new double[length];
+            }
+        }
+
+        private boolean hasEnvelope(double[][] series, int[] offsets, int length, int radius) {
+            if(envelopeSeries == null || envelopeRadius != radius || envelopeLength != length
+                       || envelopeSeries.length != series.length) {
+                return false;
+            }
+            for(int i = 0; i < series.length; i++) {
+                if(envelopeSeries[i] != series[i] || envelopeOffsets[i] != offsets[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void buildEnvelope(double[][] series, int[] offsets, int length, int radius) {
+            if(upper.length < series.length) {
+                upper = Arrays.copyOf(upper, series.length);
+                lower = Arrays.copyOf(lower, series.length);
+            }
+            if(upperDeque.length < length) {
+                upperDeque = new int[length];
+                lowerDeque = new int[length];
+            }
+            for(int d = 0; d < series.length; d++) {
+                if(upper[d] == null || upper[d].length < length) {
+                    upper[d] = new double[length];
+                    lower[d] = new double[length];
+                }
+                envelope(series[d], offsets[d], length, radius, lower[d], upper[d], lowerDeque, upperDeque);
+            }
+            envelopeSeries = series.clone();
+            envelopeOffsets = Arrays.copyOf(offsets, series.length);
+            envelopeLength = length;
+            envelopeRadius = radius;
+        }
+    }
+
+    /**
+     * Returns the DTW distance between two series, or positive infinity if the distance is found to exceed the limit.
+     *
+     * @param a series, [dim][time]
+     * @param b series, [dim][time]
+     * @param window proportion of the shorter series length the warping path may deviate from the diagonal
+     * @param limit abandon once the distance is known to exceed this
+     * @return the distance
+     */
+    public static double distance(double[][] a, double[][] b, double window, double limit) {
+        final int[] zeros = SCRATCH.get().zeros(Math.max(a.length, b.length));
+        return distance(a, zeros, maxLength(a), b, zeros, maxLength(b), window, limit);
+    }
+
+    /**
+     * Returns the DTW distance between two series held in regions of larger arrays, or positive infinity if the
+     * distance is found to exceed the limit.
+     *
+     * @param a arrays holding series a, one per dimension
+     * @param aOffsets index of the first value of a in each array
+     * @param aLength length of a
+     * @param b arrays holding series b, one per dimension
+     * @param bOffsets index of the first value of b in each array
+     * @param bLength length of b
+     * @param window proportion of the shorter series length the warping path may deviate from the diagonal
+     * @param limit abandon once the distance is known to exceed this
+     * @return the distance
+     */
+    public static double distance(double[][] a, int[] aOffsets, int aLength, double[][] b, int[] bOffsets,
+            int bLength, double window, double limit) {
+        // make a the longest time series
+        if(aLength < bLength) {
+            final double[][] tmp = a;
+            a = b;
+            b = tmp;
+            final int[] tmpOffsets = aOffsets;
+            aOffsets = bOffsets;
+            bOffsets = tmpOffsets;
+            final int tmpLength = aLength;
+            aLength = bLength;
+            bLength = tmpLength;
+        }
+        final Scratch scratch = SCRATCH.get();
+        if(limit != Double.POSITIVE_INFINITY) {
+            if(lbKim(a, aOffsets, aLength, b, bOffsets, bLength) > limit) {
+                return Double.POSITIVE_INFINITY;
+            }
+            if(aLength == bLength
+                       && lbKeogh(scratch, a, aOffsets, b, bOffsets, bLength, (int) Math.floor(window * bLength), limit) > limit) {
+                return Double.POSITIVE_INFINITY;
+            }
+        }
+        return dtw(scratch, a, aOffsets, aLength, b, bOffsets, bLength, window, limit);
+    }
+
+    /**
+     * Returns the DTW distance between two univariate series, or positive infinity if the distance is found to exceed
+     * the limit.
+     *
+     * @param a series
+     * @param b series
+     * @param window proportion of the shorter series length the warping path may deviate from the diagonal
+     * @param limit abandon once the distance is known to exceed this
+     * @return the distance
+     */
+    public static double distance(double[] a, double[] b, double window, double limit) {
+        return distance(new double[][] {a}, new double[][] {b}, window, limit);
+    }
+
+    private static int maxLength(double[][] series) {
+        int length = 0;
+        for(double[] dim : series) {
+            length = Math.max(length, dim.length);
+        }
+        return length;
+    }
+
+    private static double cost(double[][] a, int[] aOffsets, int aIndex, double[][] b, int[] bOffsets, int bIndex) {
+        double sum = 0;
+        for(int d = 0; d < a.length; d++) {
+            final double diff = a[d][aOffsets[d] + aIndex] - b[d][bOffsets[d] + bIndex];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Returns LB_Kim, the cost of aligning the first points plus the cost of aligning the last points. Every warping
+     * path contains both of these cells so the bound holds for any window and for unequal lengths.
+     *
+     * @param a series, [dim][time]
+     * @param aLength length of a
+     * @param b series, [dim][time]
+     * @param bLength length of b
+     * @return the lower bound
+     */
+    public static double lbKim(double[][] a, int aLength, double[][] b, int bLength) {
+        final int[] zeros = new int[Math.max(a.length, b.length)];
+        return lbKim(a, zeros, aLength, b, zeros, bLength);
+    }
+
+    /**
+     * Returns LB_Kim for two series held in regions of larger arrays.
+     *
+     * @param a arrays holding series a, one per dimension
+     * @param aOffsets index of the first value of a in each array
+     * @param aLength length of a
+     * @param b arrays holding series b, one per dimension
+     * @param bOffsets index of the first value of b in each array
+     * @param bLength length of b
+     * @return the lower bound
+     */
+    public static double lbKim(double[][] a, int[] aOffsets, int aLength, double[][] b, int[] bOffsets, int bLength) {
+        double bound = cost(a, aOffsets, 0, b, bOffsets, 0);
+        if(aLength > 1 || bLength > 1) {
+            bound += cost(a, aOffsets, aLength - 1, b, bOffsets, bLength - 1);
+        }
+        return bound;
+    }
+
+    /**
+     * Finds LB_Keogh for two equal length series. The envelope is built around whichever series looks to be the
+     * fixed query, judged by which series recurs between calls, so it is reused across a nearest neighbour search.
+     */
+    private static double lbKeogh(Scratch scratch, double[][] a, int[] aOffsets, double[][] b, int[] bOffsets,
+            int length, int radius, double limit) {
+        final boolean aRecurs = a[0] == scratch.previousA && aOffsets[0] == scratch.previousAOffset;
+        scratch.previousA = a[0];
+        scratch.previousAOffset = aOffsets[0];
+        if(scratch.hasEnvelope(b, bOffsets, length, radius)) {
+            return lbKeogh(a, aOffsets, length, scratch.lower, scratch.upper, limit);
+        }
+        if(scratch.hasEnvelope(a, aOffsets, length, radius)) {
+            return lbKeogh(b, bOffsets, length, scratch.lower, scratch.upper, limit);
+        }
+        if(aRecurs) {
+            scratch.buildEnvelope(a, aOffsets, length, radius);
+            return lbKeogh(b, bOffsets, length, scratch.lower, scratch.upper, limit);
+        } else {
+            scratch.buildEnvelope(b, bOffsets, length, radius);
+            return lbKeogh(a, aOffsets, length, scratch.lower, scratch.upper, limit);
+        }
+    }
+
+    /**
+     * Returns LB_Keogh, the squared distance from a series to the parts of an envelope it falls outside of. Summing
+     * stops once the limit is exceeded.
+     *
+     * @param series [dim][time]
+     * @param lower [dim][time] lower envelope
+     * @param upper [dim][time] upper envelope
+     * @param limit stop summing once the bound exceeds this
+     * @return the lower bound, or a partial bound greater than the limit
+     */
+    public static double lbKeogh(double[][] series, double[][] lower, double[][] upper, double limit) {
+        return lbKeogh(series, new int[series.length], maxLength(series), lower, upper, limit);
+    }
+
+    /**
+     * Returns LB_Keogh for a series held in regions of larger arrays.
+     *
+     * @param series arrays holding the series, one per dimension
+     * @param offsets index of the first value of the series in each array
+     * @param length length of the series
+     * @param lower [dim][time] lower envelope
+     * @param upper [dim][time] upper envelope
+     * @param limit stop summing once the bound exceeds this
+     * @return the lower bound, or a partial bound greater than the limit
+     */
+    public static double lbKeogh(double[][] series, int[] offsets, int length, double[][] lower, double[][] upper,
+            double limit) {
+        double bound = 0;
+        for(int d = 0; d < series.length; d++) {
+            final double[] values = series[d];
+            final int offset = offsets[d];
+            final double[] l = lower[d];
+            final double[] u = upper[d];
+            for(int i = 0; i < length; i++) {
+                final double value = values[offset + i];
+                if(value > u[i]) {
+                    final double diff = value - u[i];
+                    bound += diff * diff;
+                } else if(value < l[i]) {
+                    final double diff = l[i] - value;
+                    bound += diff * diff;
+                }
+            }
+            if(bound > limit) {
+                return bound;
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Builds the envelope of a series, the min and max within the radius of each point, in linear time using
+     * Lemire's streaming min / max.
+     *
+     * @param series the values
+     * @param radius number of points either side
+     * @param lower output for the running min, at least as long as the series
+     * @param upper output for the running max, at least as long as the series
+     * @param lowerDeque working space, at least as long as the series
+     * @param upperDeque working space, at least as long as the series
+     */
+    public static void envelope(double[] series, int radius, double[] lower, double[] upper, int[] lowerDeque, int[] upperDeque) {
+        envelope(series, 0, series.length, radius, lower, upper, lowerDeque, upperDeque);
+    }
+
+    /**
+     * Builds the envelope of a series held in a region of a larger array. The deques hold indices relative to the
+     * start of the region.
+     *
+     * @param series array holding the values
+     * @param offset index of the first value in the array
+     * @param length number of values
+     * @param radius number of points either side
+     * @param lower output for the running min, at least as long as the series
+     * @param upper output for the running max, at least as long as the series
+     * @param lowerDeque working space, at least as long as the series
+     * @param upperDeque working space, at least as long as the series
+     */
+    public static void envelope(double[] series, int offset, int length, int radius, double[] lower, double[] upper,
+            int[] lowerDeque, int[] upperDeque) {
+        // each index enters each deque once so the deques never wrap
+        int upperHead = 0, upperTail = 0, lowerHead = 0, lowerTail = 0;
+        int next = 0;
+        for(int i = 0; i < length; i++) {
+            final int end = Math.min(length - 1, i + radius);
+            for(; next <= end; next++) {
+                final double value = series[offset + next];
+                while(upperTail > upperHead && series[offset + upperDeque[upperTail - 1]] <= value) upperTail--;
+                upperDeque[upperTail++] = next;
+                while(lowerTail > lowerHead && series[offset + lowerDeque[lowerTail - 1]] >= value) lowerTail--;
+                lowerDeque[lowerTail++] = next;
+            }
+            final int start = i - radius;
+            while(upperDeque[upperHead] < start) upperHead++;
+            while(lowerDeque[lowerHead] < start) lowerHead++;
+            upper[i] = series[offset + upperDeque[upperHead]];
+            lower[i] = series[offset + lowerDeque[lowerHead]];
+        }
+    }
+
+    /**
+     * DTW over two rolling rows. This follows DTWDistance cell for cell so the distances are identical.
+     */
+    private static double dtw(Scratch scratch, double[][] a, int[] aOffsets, int aLength, double[][] b, int[] bOffsets,
+            int bLength, double window, double limit) {
+        scratch.ensureRows(bLength);
+        // step is the increment of the mid point for each row
+        final double step = (double) (bLength - 1) / (aLength - 1);
+        final double windowSize = window * bLength;
+
+        int start;
+        double mid;
+        int end = Math.min(bLength - 1, (int) Math.floor(windowSize));
+        int prevEnd;
+        double[] row = scratch.evenRow;
+        double[] prevRow = scratch.oddRow;
+
+        int j = 0;
+        // process the first row (can only warp left - not top/topLeft)
+        double min = row[j++] = cost(a, aOffsets, 0, b, bOffsets, 0);
+        for(; j <= end; j++) {
+            row[j] = row[j - 1] + cost(a, aOffsets, 0, b, bOffsets, j);
+            min = Math.min(min, row[j]);
+        }
+        if(min > limit) return Double.POSITIVE_INFINITY;
+
+        for(int i = 1; i < aLength; i++) {
+            min = Double.POSITIVE_INFINITY;
+            final double[] tmp = prevRow;
+            prevRow = row;
+            row = tmp;
+
+            prevEnd = end;
+            mid = i * step;
+            start = Math.max(0, (int) Math.ceil(mid - windowSize));
+            end = Math.min(bLength - 1, (int) Math.floor(mid + windowSize));
+            j = start;
+
+            // cells above the current row and outside of the previous window are unreachable
+            if(prevEnd + 1 < end + 1) Arrays.fill(prevRow, prevEnd + 1, end + 1, Double.POSITIVE_INFINITY);
+            // as is the cell left of the window
+            if(j > 0) row[j - 1] = Double.POSITIVE_INFINITY;
+
+            // the left most column can only be reached from the top
+            if(j == 0) {
+                row[j] = prevRow[j] + cost(a, aOffsets, i, b, bOffsets, j);
+                min = Math.min(min, row[j++]);
+            }
+
+            for(; j <= end; j++) {
+                row[j] = Math.min(prevRow[j], Math.min(row[j - 1], prevRow[j - 1])) + cost(a, aOffsets, i, b, bOffsets, j);
+                min = Math.min(min, row[j]);
+            }
+
+            if(min > limit) return Double.POSITIVE_INFINITY;
+        }
+
+        return row[bLength - 1];
+    }
+}
@@ -23,6 +23,10 @@ import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
 import tsml.data_containers.TimeSeriesInstance;
 
 public class EDistance extends BaseDistanceMeasure {
+
+    @Override public boolean isThreadSafe() {
+        return true;
+    }
     
     public double distance(final TimeSeriesInstance a, TimeSeriesInstance b, final double limit) {
         double sum = 0;
@@ -83,7 +83,7 @@ public class ERPDistance extends MatrixBasedDistanceMeasure {
         
         final int aLength = a.getMaxLength();
         final int bLength = b.getMaxLength();
-        setup(aLength, bLength, true);
+        final Context context = setup(aLength, bLength);
 
         // step is the increment of the mid point for each row
         final double step = (double) (bLength - 1) / (aLength - 1);
@@ -97,7 +97,7 @@ public class ERPDistance extends MatrixBasedDistanceMeasure {
         double mid = 0;
         int end = Math.min(bLength - 1, (int) Math.floor(windowSize));
         int prevEnd; // store end of window from previous row to fill in shifted space with inf
-        double[] row = getRow(i);
+        double[] row = context.getRow(i);
         double[] prevRow;
 
         // col index
@@ -118,7 +118,7 @@ public class ERPDistance extends MatrixBasedDistanceMeasure {
             min = Double.POSITIVE_INFINITY;
             // change rows
             prevRow = row;
-            row = getRow(i);
+            row = context.getRow(i);
 
             // start, end and mid of window
             prevEnd = end;
@@ -165,7 +165,6 @@ public class ERPDistance extends MatrixBasedDistanceMeasure {
         
         // last value in the current row is the distance
         final double distance = row[bLength - 1];
-        teardown();
         return distance;
     }
 
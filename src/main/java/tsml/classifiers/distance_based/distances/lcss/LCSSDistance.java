@@ -75,7 +75,7 @@ public class LCSSDistance extends MatrixBasedDistanceMeasure {
         
         final int aLength = a.getMaxLength();
         final int bLength = b.getMaxLength();
-        setup(aLength, bLength, true);
+        final Context context = setup(aLength, bLength);
         
         // 22/10/19 goastler - limit LCSS such that if any value in the current window is larger than the limit then we can stop here, no point in doing the extra work
         if(limit != Double.POSITIVE_INFINITY) { // check if there's a limit set
@@ -97,7 +97,7 @@ public class LCSSDistance extends MatrixBasedDistanceMeasure {
         double mid = 0;
         int end = Math.min(bLength - 1, (int) Math.floor(windowSize));
         int prevEnd; // store end of window from previous row to fill in shifted space with inf
-        double[] row = getRow(i);
+        double[] row = context.getRow(i);
         double[] prevRow;
 
         // col index
@@ -123,7 +123,7 @@ public class LCSSDistance extends MatrixBasedDistanceMeasure {
             min = Double.POSITIVE_INFINITY;
             // change rows
             prevRow = row;
-            row = getRow(i);
+            row = context.getRow(i);
 
             // start, end and mid of window
             prevEnd = end;
@@ -173,8 +173,7 @@ public class LCSSDistance extends MatrixBasedDistanceMeasure {
         }
         
         // last value in the current row is the distance
-        final double distance = 1d - row[row.length - 1] / Math.min(aLength, bLength);
-        teardown();
+        final double distance = 1d - row[bLength - 1] / Math.min(aLength, bLength);
         return distance;
     }
 
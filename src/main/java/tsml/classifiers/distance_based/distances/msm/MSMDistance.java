@@ -124,7 +124,7 @@ public class MSMDistance extends MatrixBasedDistanceMeasure {
 
         final int aLength = a.getMaxLength();
         final int bLength = b.getMaxLength();
-        setup(aLength, bLength, true);
+        final Context context = setup(aLength, bLength);
 
         // step is the increment of the mid point for each row
         final double step = (double) (bLength - 1) / (aLength - 1);
@@ -138,7 +138,7 @@ public class MSMDistance extends MatrixBasedDistanceMeasure {
         double mid = 0;
         int end = Math.min(bLength - 1, (int) Math.floor(windowSize));
         int prevEnd; // store end of window from previous row to fill in shifted space with inf
-        double[] row = getRow(i);
+        double[] row = context.getRow(i);
         double[] prevRow;
 
         // col index
@@ -160,7 +160,7 @@ public class MSMDistance extends MatrixBasedDistanceMeasure {
             min = Double.POSITIVE_INFINITY;
             // change rows
             prevRow = row;
-            row = getRow(i);
+            row = context.getRow(i);
 
             // start, end and mid of window
             prevEnd = end;
@@ -197,8 +197,7 @@ public class MSMDistance extends MatrixBasedDistanceMeasure {
         }
         
         // last value in the current row is the distance
-        final double distance = row[row.length - 1];
-        teardown();
+        final double distance = row[bLength - 1];
         return distance;
     }
 
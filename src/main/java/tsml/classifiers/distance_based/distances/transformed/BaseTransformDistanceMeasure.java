@@ -32,6 +32,7 @@ import tsml.classifiers.distance_based.utils.collections.params.ParamHandler;
 import tsml.classifiers.distance_based.utils.collections.params.ParamHandlerUtils;
 import tsml.classifiers.distance_based.utils.collections.params.ParamSet;
 import tsml.data_containers.TimeSeriesInstance;
+import tsml.transformers.Derivative;
 import tsml.transformers.Transformer;
 import weka.core.Instance;
 
@@ -77,6 +78,11 @@ public class BaseTransformDistanceMeasure extends BaseDistanceMeasure implements
         return distanceMeasure.isSymmetric();
     }
     
+    @Override public boolean isThreadSafe() {
+        // derivatives are pure functions, whereas other transformers may hold state (e.g. a cache of transforms)
+        return distanceMeasure.isThreadSafe() && (transformer == null || transformer instanceof Derivative);
+    }
+    
     public TimeSeriesInstance transform(TimeSeriesInstance inst) {
         return transform(inst, true);
     }
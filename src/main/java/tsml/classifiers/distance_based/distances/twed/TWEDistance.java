@@ -75,7 +75,7 @@ public class TWEDistance
 
         final int aLength = a.getMaxLength();
         final int bLength = b.getMaxLength();
-        setup(aLength + 1, bLength + 1, true);
+        final Context context = setup(aLength + 1, bLength + 1);
 
         // step is the increment of the mid point for each row
         final double step = (double) (bLength) / (aLength);
@@ -89,9 +89,10 @@ public class TWEDistance
         double mid = 0;
         int end = Math.min(bLength, (int) Math.floor(windowSize)); // +1 as matrix padded by 1 row and 1 col
         int prevEnd; // store end of window from previous row to fill in shifted space with inf
-        double[] row = getRow(i);
+        double[] row = context.getRow(i);
         double[] prevRow;
-        double[] jCosts = new double[bLength + 1];
+        // the cost of each column, filled in as the window reaches it
+        final double[] jCosts = context.getBuffer();
         double min, iCost;
 
         // col index
@@ -116,7 +117,7 @@ public class TWEDistance
             min = Double.POSITIVE_INFINITY;
             // change rows
             prevRow = row;
-            row = getRow(i);
+            row = context.getRow(i);
 
             // start, end and mid of window
             prevEnd = end;
@@ -171,8 +172,7 @@ public class TWEDistance
         }
         
         // last value in the current row is the distance
-        final double distance = row[row.length - 1];
-        teardown();
+        final double distance = row[bLength];
         return distance;
     }
 
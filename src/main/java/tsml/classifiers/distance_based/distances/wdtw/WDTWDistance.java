@@ -35,7 +35,7 @@ public class WDTWDistance
     extends MatrixBasedDistanceMeasure implements WDTW {
 
     private double g = 0.05;
-    private double[] weights = new double[0];
+    private volatile double[] weights = new double[0];
 
     @Override
     public double getG() {
@@ -51,16 +51,19 @@ public class WDTWDistance
         this.g = g;
     }
     
-    private void generateWeights(int length) {
-        if(weights.length < length) {
-            final double halfLength = (double) length / 2;
-            double[] oldWeights = weights;
-            weights = new double[length];
-            System.arraycopy(oldWeights, 0, weights, 0, oldWeights.length);
-            for(int i = oldWeights.length; i < length; i++) {
-                weights[i] = 1d / (1d + Math.exp(-g * (i - halfLength)));
-            }
+    private double[] generateWeights(int length) {
+        final double[] weights = this.weights;
+        if(weights.length >= length) {
+            return weights;
+        }
+        // fill the new weights before publishing them, as other threads may be reading the current weights
+        final double halfLength = (double) length / 2;
+        final double[] newWeights = Arrays.copyOf(weights, length);
+        for(int i = weights.length; i < length; i++) {
+            newWeights[i] = 1d / (1d + Math.exp(-g * (i - halfLength)));
         }
+        this.weights = newWeights;
+        return newWeights;
     }
 
     @Override
@@ -75,7 +78,7 @@ public class WDTWDistance
 
         final int aLength = a.getMaxLength();
         final int bLength = b.getMaxLength();
-        setup(aLength, bLength, true);
+        final Context context = setup(aLength, bLength);
 
         // step is the increment of the mid point for each row
         final double step = (double) (bLength - 1) / (aLength - 1);
@@ -83,7 +86,7 @@ public class WDTWDistance
         final double windowSize = window * bLength;
 
         // generate weights for soft weighting of costs
-        generateWeights(Math.max(aLength, bLength));
+        final double[] weights = generateWeights(Math.max(aLength, bLength));
 
         // row index
         int i = 0;
@@ -93,7 +96,7 @@ public class WDTWDistance
         double mid = 0;
         int end = Math.min(bLength - 1, (int) Math.floor(windowSize));
         int prevEnd; // store end of window from previous row to fill in shifted space with inf
-        double[] row = getRow(i);
+        double[] row = context.getRow(i);
         double[] prevRow;
 
         // col index
@@ -117,7 +120,7 @@ public class WDTWDistance
             min = Double.POSITIVE_INFINITY;
             // change rows
             prevRow = row;
-            row = getRow(i);
+            row = context.getRow(i);
 
             // start, end and mid of window
             prevEnd = end;
@@ -150,8 +153,7 @@ public class WDTWDistance
         }
         
         // last value in the current row is the distance
-        final double distance = row[row.length - 1];
-        teardown();
+        final double distance = row[bLength - 1];
         return distance;
     }
 
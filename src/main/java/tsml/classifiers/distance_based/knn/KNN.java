@@ -19,12 +19,16 @@ package tsml.classifiers.distance_based.knn;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
 import evaluation.storage.ClassifierResults;
 import experiments.data.DatasetLoading;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainEstimateTimeable;
 import tsml.classifiers.distance_based.distances.DistanceMeasure;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
 import tsml.classifiers.distance_based.distances.ed.EDistance;
 import tsml.classifiers.distance_based.utils.classifiers.configs.Configs;
 import tsml.classifiers.distance_based.utils.collections.pruned.PrunedMap;
@@ -46,9 +50,10 @@ import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import utilities.ArrayUtilities;
 import utilities.ClassifierTools;
+import utilities.ThreadingUtilities;
 
 public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, ContractedTrain, TrainEstimateTimeable,
-                                                         ContractedTest {
+                                                         ContractedTest, MultiThreadable {
 
     public static void main(String[] args) throws Exception {
         final int seed = 0;
@@ -127,6 +132,18 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
             knn.setNeighbourhoodSizeLimitProportional(1d);
         });
 
+        configs.add("1NN_DTW", "DTW with full window, early abandoning through the lower bound cascade", KNN::new, knn -> {
+            knn.setTestTimeLimit(-1);
+            knn.setTrainTimeLimit(-1);
+            knn.setDistanceMeasure(new DTWDistance());
+            knn.setK(1);
+            knn.setAutoK(false);
+            knn.setEarlyPredict(false);
+            knn.setEarlyAbandonDistances(true);
+            knn.setNeighbourhoodSizeLimit(-1);
+            knn.setNeighbourhoodSizeLimitProportional(1d);
+        });
+
         return configs;
     }
     
@@ -144,6 +161,12 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
     private boolean earlyAbandonDistances;
     private boolean autoK;
     private int bestK;
+    private int numThreads = 1;
+    
+    // number of train insts along each side of a tile of the train distance matrix in the parallel loocv
+    private static final int TILE_SIZE = 32;
+    // number of tiles handed to each thread between contract / checkpoint checks
+    private static final int TILES_PER_THREAD = 4;
     
     // track the total run time of the build
     private final StopWatch runTimer = new StopWatch();
@@ -265,7 +288,9 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
                 neighbourhoodSize = 0;
                 trainData = data;
                 longestAddNeighbourTime = 0;
+                // reset stops the timer, so restart it from the beginning of this build
                 runTimer.reset();
+                runTimer.start(timeStamp);
                 evaluationTimer.reset();
                 checkpointConfig.resetCheckpointingTime();
                 if(getEstimateOwnPerformance()) {
@@ -305,6 +330,9 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
         // if neighbourhood is empty, then set workDone to true to regenerate the (not yet made) train results
         // otherwise, more neighbours must be added before the train results are regenerated
         boolean workDone = neighbourhoodSize == 0;
+        if(numThreads > 1 && !earlyPredict) {
+            workDone |= estimatePerformanceInParallel();
+        }
         // while there are remaining searches
         while(!remainingSearchIndices.isEmpty() && insideNeighbourhoodLimit() 
                       && insideTrainTimeLimit(getRunTime() + longestAddNeighbourTime)) {
@@ -390,6 +418,116 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
         evaluationTimer.stop();
     }
     
+    /**
+     * Fill the loocv neighbourhoods using multiple threads. The train distance matrix is split into square tiles
+     * which are handed out to the threads, so each thread works over a small block of train insts which stays in cache.
+     * If the distance measure is symmetric only the upper triangle is computed and each distance is given to both
+     * searches. Each distance is early abandoned against the furthest nearest neighbour of the search(es) it is given
+     * to, which the threads tighten for each other as they go. The contract and checkpointing are checked between
+     * rounds of tiles. The insts and the tiles are visited in a random order so a neighbourhood cut short by the
+     * contract is still a random sample.
+     *
+     * @return whether any neighbours were added
+     */
+    private boolean estimatePerformanceInParallel() throws Exception {
+        final int numInstances = trainData.numInstances();
+        final boolean symmetric = distanceMeasure.isSymmetric();
+        final List<Integer> order = new ArrayList<>(numInstances);
+        for(int i = 0; i < numInstances; i++) {
+            order.add(i);
+        }
+        Collections.shuffle(order, getRandom());
+        final int numBlocks = (numInstances + TILE_SIZE - 1) / TILE_SIZE;
+        final List<int[]> tiles = new ArrayList<>();
+        for(int row = 0; row < numBlocks; row++) {
+            for(int col = symmetric ? row : 0; col < numBlocks; col++) {
+                tiles.add(new int[] {row, col});
+            }
+        }
+        Collections.shuffle(tiles, getRandom());
+        
+        final int startNeighbourhoodSize = neighbourhoodSize;
+        final ExecutorService executor = ThreadingUtilities.buildExecutorService(numThreads);
+        try {
+            int nextTile = 0;
+            long longestRoundTime = 0;
+            while(nextTile < tiles.size() && insideNeighbourhoodLimit()
+                          && insideTrainTimeLimit(getRunTime() + longestRoundTime)) {
+                final long timeStamp = System.nanoTime();
+                final List<Future<Integer>> futures = new ArrayList<>();
+                for(int i = 0; i < numThreads * TILES_PER_THREAD && nextTile < tiles.size(); i++, nextTile++) {
+                    final int[] tile = tiles.get(nextTile);
+                    futures.add(executor.submit(() -> searchTile(order, tile[0], tile[1], symmetric)));
+                }
+                for(Future<Integer> future : futures) {
+                    neighbourhoodSize += future.get();
+                }
+                longestRoundTime = Math.max(longestRoundTime, System.nanoTime() - timeStamp);
+                saveCheckpoint();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        
+        // bring the searches up to date with the neighbours seen via the tiles
+        for(int i = remainingSearchIndices.size() - 1; i >= 0; i--) {
+            final Search search = searches.get(remainingSearchIndices.get(i));
+            search.discardSeenNeighbours();
+            if(!search.hasNext()) {
+                remainingSearchIndices.remove(i);
+            }
+        }
+        
+        return neighbourhoodSize != startNeighbourhoodSize;
+    }
+
+    /**
+     * Compute the distances for a tile of the train distance matrix and add them to the corresponding searches.
+     *
+     * @param order the random order of the train insts
+     * @param rowBlock the tile's row
+     * @param colBlock the tile's column
+     * @param symmetric whether the distance measure is symmetric. If so, the tile must be on or above the diagonal.
+     * @return the number of neighbours added across all searches
+     */
+    private int searchTile(List<Integer> order, int rowBlock, int colBlock, boolean symmetric) {
+        // distance measures which are not thread safe hold state during a distance computation so each thread needs its own
+        final DistanceMeasure distanceMeasure = this.distanceMeasure.isThreadSafe() ? this.distanceMeasure :
+                                                        CopierUtils.deepCopy(this.distanceMeasure);
+        final int rowEnd = Math.min(order.size(), (rowBlock + 1) * TILE_SIZE);
+        final int colEnd = Math.min(order.size(), (colBlock + 1) * TILE_SIZE);
+        int count = 0;
+        for(int row = rowBlock * TILE_SIZE; row < rowEnd; row++) {
+            final int targetIndex = order.get(row);
+            final Search search = searches.get(targetIndex);
+            for(int col = colBlock * TILE_SIZE; col < colEnd; col++) {
+                // the lower triangle is covered by the upper triangle when symmetric
+                if(symmetric ? col <= row : col == row) {
+                    continue;
+                }
+                final int neighbourIndex = order.get(col);
+                // may have been seen before a checkpoint
+                if(search.isSeenNeighbour(neighbourIndex)) {
+                    continue;
+                }
+                final long timeStamp = System.nanoTime();
+                final Search altSearch = symmetric ? searches.get(neighbourIndex) : null;
+                double limit = search.getLimit();
+                if(symmetric) {
+                    limit = Math.max(limit, altSearch.getLimit());
+                }
+                final double distance = distanceMeasure.distance(search.getTarget(), trainData.get(neighbourIndex), limit);
+                search.offer(neighbourIndex, distance, System.nanoTime() - timeStamp);
+                count++;
+                if(symmetric) {
+                    altSearch.offer(targetIndex, distance, 0);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+    
     private void generateTrainResults() {
         trainResults = new ClassifierResults();
         for(int i = 0; i < trainData.numInstances(); i++) {
@@ -490,6 +628,14 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
         this.autoK = autoK;
     }
 
+    @Override public void enableMultiThreading(final int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
     public double getNeighbourhoodSizeLimitProportional() {
         return neighbourhoodSizeLimitProportional;
     }
@@ -525,7 +671,8 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
         
         private final TimeSeriesInstance target;
         private final int targetIndexInTrainData;
-        private double limit = Double.POSITIVE_INFINITY;
+        // volatile as the parallel loocv reads the limit of other threads' searches
+        private volatile double limit = Double.POSITIVE_INFINITY;
         private final BitSet seenNeighbours = new BitSet(trainData.numInstances());
         private final PrunedMap<Double, Integer> nearestNeighbourIndices;
         private boolean updateDistribution = false;
@@ -573,6 +720,15 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
         }
         
         private boolean add(int neighbourIndexInTrainData, double distance) {
+            final boolean nearest = offer(neighbourIndexInTrainData, distance, 0);
+            neighbourhoodSize++;
+            return nearest;
+        }
+        
+        /**
+         * Add a neighbour without counting it towards the neighbourhood size. Safe to call from multiple threads.
+         */
+        private synchronized boolean offer(int neighbourIndexInTrainData, double distance, long time) {
             if(seenNeighbours.get(neighbourIndexInTrainData)) {
                 throw new IllegalStateException("already examined neighbour " + neighbourIndexInTrainData + " for inst " + targetIndexInTrainData);
             }
@@ -591,10 +747,31 @@ public class KNN extends BaseClassifier implements ParamHandler, Checkpointed, C
 
             seenNeighbours.set(neighbourIndexInTrainData, true);
             size++; // we've examined another neighbour
-            neighbourhoodSize++;
+            this.time += time;
             
             return nearest;
         }
+        
+        private synchronized boolean isSeenNeighbour(int neighbourIndexInTrainData) {
+            return seenNeighbours.get(neighbourIndexInTrainData);
+        }
+        
+        /**
+         * Remove any seen neighbours from the unseen neighbours, deactivating classes which have none left.
+         */
+        private void discardSeenNeighbours() {
+            for(int i = availableClassIndices.size() - 1; i >= 0; i--) {
+                final List<Integer> unseenNeighbourIndices = unseenNeighbourIndicesByClass.get(availableClassIndices.get(i));
+                for(int j = unseenNeighbourIndices.size() - 1; j >= 0; j--) {
+                    if(seenNeighbours.get(unseenNeighbourIndices.get(j))) {
+                        unseenNeighbourIndices.remove(j);
+                    }
+                }
+                if(unseenNeighbourIndices.isEmpty()) {
+                    availableClassIndices.remove(i);
+                }
+            }
+        }
 
         @Override public Neighbour next() {
             final long timeStamp = System.nanoTime();
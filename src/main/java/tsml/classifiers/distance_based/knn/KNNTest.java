@@ -0,0 +1,101 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.classifiers.distance_based.knn;
+
+import evaluation.storage.ClassifierResults;
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.classifiers.distance_based.distances.DistanceMeasure;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.classifiers.distance_based.distances.ed.EDistance;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.utilities.Converter;
+import weka.core.Instances;
+
+public class KNNTest {
+
+    /**
+     * A distance which is not symmetric, so the parallel loocv has to compute both triangles of the distance matrix.
+     */
+    private static class AsymmetricEDistance extends EDistance {
+        @Override public boolean isSymmetric() {
+            return false;
+        }
+
+        @Override public double distance(final TimeSeriesInstance a, final TimeSeriesInstance b, final double limit) {
+            final double weight = 1 + Math.abs(a.get(0).getValue(0));
+            return weight * super.distance(a, b, limit / weight);
+        }
+    }
+
+    // ItalyPowerDemand train plus part of the test data, enough insts to span several tiles of the distance matrix
+    private static TimeSeriesInstances trainData() throws Exception {
+        final Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        final Instances train = new Instances(data[0]);
+        for(int i = 0; i < 100; i++) {
+            train.add(data[1].get(i));
+        }
+        return Converter.fromArff(train);
+    }
+
+    private static ClassifierResults trainEstimate(String config, DistanceMeasure distanceMeasure, int k,
+            int numThreads) throws Exception {
+        final KNN knn = KNN.CONFIGS.get(config).build();
+        knn.setSeed(0);
+        knn.setDistanceMeasure(distanceMeasure);
+        knn.setK(k);
+        knn.setEstimateOwnPerformance(true);
+        knn.enableMultiThreading(numThreads);
+        knn.buildClassifier(trainData());
+        Assert.assertTrue(knn.isFullyBuilt());
+        return knn.getTrainResults();
+    }
+
+    private static void assertThreadedMatchesSequential(String config, DistanceMeasure distanceMeasure, int k)
+            throws Exception {
+        final ClassifierResults sequential = trainEstimate(config, distanceMeasure, k, 1);
+        final ClassifierResults threaded = trainEstimate(config, distanceMeasure, k, 4);
+        Assert.assertArrayEquals(sequential.getPredClassValsAsArray(), threaded.getPredClassValsAsArray(), 0);
+        final double[][] expected = sequential.getProbabilityDistributionsAsArray();
+        final double[][] actual = threaded.getProbabilityDistributionsAsArray();
+        Assert.assertEquals(expected.length, actual.length);
+        for(int i = 0; i < expected.length; i++) {
+            Assert.assertArrayEquals(expected[i], actual[i], 0);
+        }
+    }
+
+    @Test
+    public void testThreadedTrainEstimate() throws Exception {
+        assertThreadedMatchesSequential("1NN_ED", new EDistance(), 1);
+        assertThreadedMatchesSequential("1NN_ED", new EDistance(), 5);
+    }
+
+    @Test
+    public void testThreadedTrainEstimateEarlyAbandon() throws Exception {
+        assertThreadedMatchesSequential("1NN_DTW", new DTWDistance(), 1);
+        assertThreadedMatchesSequential("1NN_DTW", new DTWDistance(), 5);
+    }
+
+    @Test
+    public void testThreadedTrainEstimateAsymmetric() throws Exception {
+        assertThreadedMatchesSequential("1NN_ED", new AsymmetricEDistance(), 1);
+        assertThreadedMatchesSequential("1NN_DTW", new AsymmetricEDistance(), 5);
+    }
+}
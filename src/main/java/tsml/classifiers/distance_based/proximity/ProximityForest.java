@@ -22,6 +22,7 @@ import evaluation.evaluators.Evaluator;
 import evaluation.evaluators.OutOfBagEvaluator;
 import evaluation.storage.ClassifierResults;
 import experiments.data.DatasetLoading;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainEstimateTimeable;
 import tsml.classifiers.distance_based.utils.classifiers.*;
 import tsml.classifiers.distance_based.utils.classifiers.checkpointing.CheckpointConfig;
@@ -39,8 +40,13 @@ import tsml.classifiers.distance_based.utils.system.timing.StopWatch;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import utilities.ClassifierTools;
+import utilities.ThreadingUtilities;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static utilities.ArrayUtilities.*;
@@ -52,7 +58,7 @@ import static utilities.Utilities.argMax;
  * Contributors: goastler
  */
 public class ProximityForest extends BaseClassifier implements ContractedTrain, ContractedTest, TrainEstimateTimeable,
-                                                                       Checkpointed, MemoryWatchable {
+                                                                       Checkpointed, MemoryWatchable, MultiThreadable {
 
     public static void main(String[] args) throws Exception {
 ////        Thread.sleep(10000);
@@ -156,6 +162,8 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
     private double[][] trainEstimateDistributions;
     private final StopWatch evaluationTimer = new StopWatch();
     private long[] trainEstimatePredictionTimes;
+    // the number of trees to build / predict with at once
+    private int numThreads = 1;
 
     @Override public long getMaxMemoryUsage() {
         return memoryWatcher.getMaxMemoryUsage();
@@ -218,11 +226,6 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
         evaluationTimer.checkStopped();
         
         LogUtils.logTimeContract(runTimer.elapsedTime(), trainTimeLimit, getLogger(), "train");
-        // whether work has been done in this call to buildClassifier
-        boolean workDone = false;
-        // maintain a timer for how long trees take to build
-        final StopWatch trainStageTimer = new StopWatch();
-        // while remaining time / more trees need to be built
         if(estimateOwnPerformance && trainEstimateMethod.equals(TrainEstimateMethod.CV)) {
             // if there's a train contract then need to spend half the time CV'ing
             evaluationTimer.start();
@@ -254,66 +257,8 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
             LogUtils.logTimeContract(runTimer.elapsedTime(), trainTimeLimit, getLogger(), "train");
             getLogger().info("cross validation finished, acc " + trainResults.getAcc());
         }
-        while(
-                // there's remaining trees to be built
-                insideNumTreeLimit()
-                &&
-                // and there's remaining time left to build more trees
-                insideTrainTimeLimit(runTimer.elapsedTime() + longestTrainStageTime)
-        ) {
-            // reset the tree build timer
-            trainStageTimer.resetAndStart();
-            // setup a new tree
-            final int treeIndex = trees.size();
-            final ProximityTree tree = proximityTreeBuilder.build();
-            final int treeSeed = rand.nextInt();
-            tree.setSeed(treeSeed);
-            // setup the constituent
-            trees.add(tree);
-            // estimate the performance of the tree
-            if(estimateOwnPerformance && trainEstimateMethod.equals(TrainEstimateMethod.OOB)) {
-                // the timer for contracting the estimate of train error
-                evaluationTimer.start();
-                // build train estimate based on method
-                final OutOfBagEvaluator oobe = new OutOfBagEvaluator();
-                oobe.setCloneClassifier(false);
-                oobe.setSeed(treeSeed);
-                treeEvaluators.add(oobe);
-                getLogger().info(() -> "oob evaluating tree " + treeIndex);
-                // evaluate the tree
-                final ClassifierResults treeEvaluationResults = oobe.evaluate(tree, trainData);
-                treeTrainResults.add(treeEvaluationResults);
-                // for each index in the test data of the oobe
-                final List<Integer> outOfBagTestDataIndices = oobe.getOutOfBagTestDataIndices();
-                // for each instance in the oobe test data, add the distribution and prediction time to the corresponding instance predictions in the train estimate results
-                for(int oobeIndex = 0; oobeIndex < outOfBagTestDataIndices.size(); oobeIndex++) {
-                    final int trainDataIndex = outOfBagTestDataIndices.get(oobeIndex);
-                    // get the corresponding distribution from the oobe results
-                    double[] distribution = treeEvaluationResults.getProbabilityDistribution(oobeIndex);
-                    distribution = vote(treeIndex, distribution);
-                    // get the corresponding distribution from the train estimate distribution
-                    // add tree's distribution for this instance onto the overall train estimate distribution for this instance
-                    add(trainEstimateDistributions[trainDataIndex], distribution);
-                    // add the prediction time from the oobe to the time for this instance in the train estimate
-                    trainEstimatePredictionTimes[trainDataIndex] += treeEvaluationResults.getPredictionTime(oobeIndex);
-                }
-                treeEvaluationResults.setErrorEstimateMethod(getEstimatorMethod());
-                evaluationTimer.stop();
-            }
-            // build the tree if not producing train estimate OR rebuild after evaluation
-            getLogger().info(() -> "building tree " + treeIndex);
-            tree.setRebuild(true);
-            tree.buildClassifier(trainData);
-            // tree fully built
-            trainStageTimer.stop();
-            workDone = true;
-            // optional checkpoint
-            saveCheckpoint();
-            // update train timer
-            LogUtils.logTimeContract(runTimer.elapsedTime(), trainTimeLimit, getLogger(), "train");
-            // update longest tree build time
-            longestTrainStageTime = Math.max(longestTrainStageTime, trainStageTimer.elapsedTime());
-        }
+        // build trees while remaining time / more trees need to be built, noting whether any work was done in this call
+        final boolean workDone = buildTrees(trainData);
         // if work has been done towards estimating the train error via OOB
         if(estimateOwnPerformance && workDone && trainEstimateMethod.equals(TrainEstimateMethod.OOB)) {
             // must format the OOB errors into classifier results
@@ -349,6 +294,146 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
         }
     }
 
+    /**
+     * Build trees until the tree limit or train contract is reached. Up to numThreads trees are built at once on the
+     * shared pool. Each tree's seed is drawn in tree order when the tree is started, and finished trees are added to
+     * the forest (and the OOB train estimate) in tree order on this thread only, so checkpoints only ever hold
+     * completed trees. A single thread therefore builds exactly the same forest as before trees were threaded.
+     *
+     * @param trainData the train data
+     * @return whether any trees were added
+     */
+    private boolean buildTrees(final TimeSeriesInstances trainData) throws Exception {
+        boolean workDone = false;
+        final ExecutorService executor = ThreadingUtilities.buildExecutorService(numThreads);
+        final CompletionService<TreeBuild> completionService = new ExecutorCompletionService<>(executor);
+        // trees which have finished but are waiting on an earlier tree before being added to the forest
+        final Map<Integer, TreeBuild> finishedTrees = new HashMap<>();
+        int nextTreeIndex = trees.size();
+        int numTreesInProgress = 0;
+        try {
+            while(true) {
+                // start trees while there's a free thread, remaining trees to be built and enough time for another tree
+                while(
+                        numTreesInProgress < numThreads
+                        &&
+                        insideNumTreeLimit(nextTreeIndex)
+                        &&
+                        insideTrainTimeLimit(runTimer.elapsedTime() + longestTrainStageTime)
+                ) {
+                    final int treeIndex = nextTreeIndex++;
+                    final ProximityTree tree = proximityTreeBuilder.build();
+                    final int treeSeed = rand.nextInt();
+                    tree.setSeed(treeSeed);
+                    tree.enableMultiThreading(numThreads);
+                    completionService.submit(() -> buildTree(treeIndex, tree, treeSeed, trainData));
+                    numTreesInProgress++;
+                }
+                if(numTreesInProgress == 0) {
+                    break;
+                }
+                // wait for any tree to finish
+                final TreeBuild finishedTree = completionService.take().get();
+                numTreesInProgress--;
+                finishedTrees.put(finishedTree.treeIndex, finishedTree);
+                // add the finished trees to the forest in order
+                TreeBuild treeBuild;
+                while((treeBuild = finishedTrees.remove(trees.size())) != null) {
+                    addTree(treeBuild);
+                    workDone = true;
+                    // optional checkpoint
+                    saveCheckpoint();
+                    // update train timer
+                    LogUtils.logTimeContract(runTimer.elapsedTime(), trainTimeLimit, getLogger(), "train");
+                    // update longest tree build time
+                    longestTrainStageTime = Math.max(longestTrainStageTime, treeBuild.buildTime);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        return workDone;
+    }
+
+    /**
+     * Build a single tree, evaluating it out-of-bag first if need be. This only touches the given tree so can be run
+     * concurrently with other trees.
+     */
+    private TreeBuild buildTree(final int treeIndex, final ProximityTree tree, final int treeSeed,
+            final TimeSeriesInstances trainData) throws Exception {
+        final TreeBuild treeBuild = new TreeBuild(treeIndex, tree);
+        final long timeStamp = System.nanoTime();
+        // estimate the performance of the tree
+        if(estimateOwnPerformance && trainEstimateMethod.equals(TrainEstimateMethod.OOB)) {
+            // build train estimate based on method
+            final OutOfBagEvaluator oobe = new OutOfBagEvaluator();
+            oobe.setCloneClassifier(false);
+            oobe.setSeed(treeSeed);
+            treeBuild.evaluator = oobe;
+            getLogger().info(() -> "oob evaluating tree " + treeIndex);
+            // evaluate the tree
+            treeBuild.evaluationResults = oobe.evaluate(tree, trainData);
+            treeBuild.evaluationTime = System.nanoTime() - timeStamp;
+        }
+        // build the tree if not producing train estimate OR rebuild after evaluation
+        getLogger().info(() -> "building tree " + treeIndex);
+        tree.setRebuild(true);
+        tree.buildClassifier(trainData);
+        // tree fully built
+        treeBuild.buildTime = System.nanoTime() - timeStamp;
+        return treeBuild;
+    }
+
+    /**
+     * Add a finished tree to the forest, adding its out-of-bag votes to the train estimate if need be.
+     */
+    private void addTree(final TreeBuild treeBuild) {
+        final int treeIndex = treeBuild.treeIndex;
+        trees.add(treeBuild.tree);
+        if(treeBuild.evaluator != null) {
+            // the evaluation ran alongside other trees, so only its share of the wall clock time counts towards the 
+            // train estimate time
+            evaluationTimer.add(treeBuild.evaluationTime / numThreads);
+            evaluationTimer.start();
+            treeEvaluators.add(treeBuild.evaluator);
+            final ClassifierResults treeEvaluationResults = treeBuild.evaluationResults;
+            treeTrainResults.add(treeEvaluationResults);
+            // for each index in the test data of the oobe
+            final List<Integer> outOfBagTestDataIndices = treeBuild.evaluator.getOutOfBagTestDataIndices();
+            // for each instance in the oobe test data, add the distribution and prediction time to the corresponding instance predictions in the train estimate results
+            for(int oobeIndex = 0; oobeIndex < outOfBagTestDataIndices.size(); oobeIndex++) {
+                final int trainDataIndex = outOfBagTestDataIndices.get(oobeIndex);
+                // get the corresponding distribution from the oobe results
+                double[] distribution = treeEvaluationResults.getProbabilityDistribution(oobeIndex);
+                distribution = vote(treeIndex, distribution);
+                // get the corresponding distribution from the train estimate distribution
+                // add tree's distribution for this instance onto the overall train estimate distribution for this instance
+                add(trainEstimateDistributions[trainDataIndex], distribution);
+                // add the prediction time from the oobe to the time for this instance in the train estimate
+                trainEstimatePredictionTimes[trainDataIndex] += treeEvaluationResults.getPredictionTime(oobeIndex);
+            }
+            treeEvaluationResults.setErrorEstimateMethod(getEstimatorMethod());
+            evaluationTimer.stop();
+        }
+    }
+
+    /**
+     * A tree built by buildTree, waiting to be added to the forest.
+     */
+    private static class TreeBuild {
+        private final int treeIndex;
+        private final ProximityTree tree;
+        private OutOfBagEvaluator evaluator;
+        private ClassifierResults evaluationResults;
+        private long evaluationTime;
+        private long buildTime;
+
+        private TreeBuild(final int treeIndex, final ProximityTree tree) {
+            this.treeIndex = treeIndex;
+            this.tree = tree;
+        }
+    }
+
     @Override
     public double[] distributionForInstance(final TimeSeriesInstance instance) throws Exception {
         // start timer
@@ -358,20 +443,35 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
         // time each stage of the prediction
         final StopWatch testStageTimer = new StopWatch();
         final double[] finalDistribution = new double[getNumClasses()];
-        // while there's remaining constituents to be examined and remaining test time
-        for(int i = 0;
-            i < trees.size()
-            &&
-            (testTimeLimit <= 0 || testTimer.elapsedTime() + longestTestStageTimeNanos < testTimeLimit)
-                ; i++) {
-            testStageTimer.resetAndStart();
-            // let the constituent vote
-            final double[] distribution = vote(i, instance);
-            // add the vote to the total votes
-            add(finalDistribution, distribution);
-            // update timings
-            testStageTimer.stop();
-            longestTestStageTimeNanos = Math.max(longestTestStageTimeNanos, testStageTimer.elapsedTime());
+        final ExecutorService executor = numThreads > 1 ? ThreadingUtilities.buildExecutorService(numThreads) : null;
+        try {
+            // while there's remaining constituents to be examined and remaining test time
+            for(int i = 0;
+                i < trees.size()
+                &&
+                (testTimeLimit <= 0 || testTimer.elapsedTime() + longestTestStageTimeNanos < testTimeLimit)
+                    ; ) {
+                testStageTimer.resetAndStart();
+                // each stage is a single tree, or a round of trees predicting in parallel (all of them if there's no
+                // test contract to check between rounds)
+                final int end = executor == null ? i + 1 :
+                                        testTimeLimit <= 0 ? trees.size() : Math.min(trees.size(), i + numThreads);
+                final List<double[]> treeDistributions = distributionsForInstance(instance, i, end, executor);
+                for(double[] treeDistribution : treeDistributions) {
+                    // let the constituent vote. Votes are cast in tree order so ties are broken the same whatever the
+                    // number of threads
+                    final double[] distribution = vote(i++, treeDistribution);
+                    // add the vote to the total votes
+                    add(finalDistribution, distribution);
+                }
+                // update timings
+                testStageTimer.stop();
+                longestTestStageTimeNanos = Math.max(longestTestStageTimeNanos, testStageTimer.elapsedTime());
+            }
+        } finally {
+            if(executor != null) {
+                executor.shutdown();
+            }
         }
         // normalise the final vote, i.e. [71,29] --> [.71,.29]
         normalise(finalDistribution);
@@ -379,11 +479,26 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
         testTimer.stop();
         return finalDistribution;
     }
-    
-    private double[] vote(int constituentIndex, TimeSeriesInstance instance) throws Exception {
-        final ProximityTree tree = trees.get(constituentIndex);
-        final double[] distribution = tree.distributionForInstance(instance);
-        return vote(constituentIndex, distribution);
+
+    /**
+     * Find the distributions of trees start (inclusive) to end (exclusive) for the given instance, in parallel if
+     * given an executor.
+     */
+    private List<double[]> distributionsForInstance(final TimeSeriesInstance instance, final int start, final int end,
+            final ExecutorService executor) throws Exception {
+        if(executor == null) {
+            final List<double[]> distributions = new ArrayList<>(end - start);
+            for(int i = start; i < end; i++) {
+                distributions.add(trees.get(i).distributionForInstance(instance));
+            }
+            return distributions;
+        }
+        final List<Callable<double[]>> jobs = new ArrayList<>(end - start);
+        for(int i = start; i < end; i++) {
+            final ProximityTree tree = trees.get(i);
+            jobs.add(() -> tree.distributionForInstance(instance));
+        }
+        return ThreadingUtilities.computeAll(executor, jobs, false);
     }
     
     private double[] vote(int constituentIndex, double[] distribution) {
@@ -397,7 +512,11 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
     }
 
     public boolean insideNumTreeLimit() {
-        return !hasNumTreeLimit() || trees.size() < numTreeLimit;
+        return insideNumTreeLimit(trees.size());
+    }
+
+    private boolean insideNumTreeLimit(int numTrees) {
+        return !hasNumTreeLimit() || numTrees < numTreeLimit;
     }
 
     public boolean hasNumTreeLimit() {
@@ -465,6 +584,14 @@ public class ProximityForest extends BaseClassifier implements ContractedTrain,
         return testTimer.elapsedTime();
     }
 
+    @Override public void enableMultiThreading(final int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
     @Override public CheckpointConfig getCheckpointConfig() {
         return checkpointConfig;
     }
@@ -0,0 +1,112 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+ 
+package tsml.classifiers.distance_based.proximity;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+import tsml.data_containers.utilities.Converter;
+
+import java.util.concurrent.TimeUnit;
+
+public class ProximityForestTest {
+
+    private static TimeSeriesInstances[] italyPowerDemand() throws Exception {
+        final weka.core.Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        return new TimeSeriesInstances[] {Converter.fromArff(data[0]), Converter.fromArff(data[1])};
+    }
+
+    private static ProximityForest newForest(int numTrees) {
+        final ProximityForest pf = ProximityForest.CONFIGS.get("PF_R5").build();
+        pf.setSeed(0);
+        pf.setNumTreeLimit(numTrees);
+        return pf;
+    }
+
+    private static void assertSamePredictions(ProximityForest expected, ProximityForest actual, TimeSeriesInstances test) throws Exception {
+        for(TimeSeriesInstance inst : test) {
+            Assert.assertArrayEquals(expected.distributionForInstance(inst), actual.distributionForInstance(inst), 0);
+        }
+    }
+
+    @Test
+    public void testThreadedMatchesSequential() throws Exception {
+        final TimeSeriesInstances[] data = italyPowerDemand();
+        final ProximityForest sequential = newForest(10);
+        sequential.buildClassifier(data[0]);
+
+        final ProximityForest threaded = newForest(10);
+        threaded.enableMultiThreading(4);
+        threaded.buildClassifier(data[0]);
+
+        Assert.assertTrue(threaded.isFullyBuilt());
+        assertSamePredictions(sequential, threaded, data[1]);
+    }
+
+    @Test
+    public void testParallelPartitioningMatchesSequential() throws Exception {
+        // partition every node in parallel, however small
+        final TimeSeriesInstances[] data = italyPowerDemand();
+        final ProximityTree sequential = ProximityTree.CONFIGS.get("PT_R5").build();
+        sequential.setSeed(0);
+        sequential.buildClassifier(data[0]);
+
+        final ProximityTree threaded = ProximityTree.CONFIGS.get("PT_R5").build();
+        threaded.setSeed(0);
+        threaded.enableMultiThreading(4);
+        threaded.setMinParallelPartitionSize(1);
+        threaded.buildClassifier(data[0]);
+
+        Assert.assertEquals(sequential.getTree().toString(), threaded.getTree().toString());
+        for(TimeSeriesInstance inst : data[1]) {
+            Assert.assertArrayEquals(sequential.distributionForInstance(inst), threaded.distributionForInstance(inst), 0);
+        }
+    }
+
+    @Test
+    public void testThreadedOutOfBagEstimate() throws Exception {
+        final TimeSeriesInstances[] data = italyPowerDemand();
+        final ProximityForest pf = newForest(8);
+        pf.setEstimateOwnPerformance(true);
+        pf.setTrainEstimateMethod("oob");
+        pf.enableMultiThreading(3);
+        pf.buildClassifier(data[0]);
+
+        Assert.assertTrue(pf.isFullyBuilt());
+        Assert.assertEquals(data[0].numInstances(), pf.getTrainResults().numInstances());
+        Assert.assertTrue(pf.getTrainResults().getAcc() > 0.5);
+        Assert.assertTrue(pf.getTrainEstimateTime() <= pf.getRunTime());
+    }
+
+    @Test
+    public void testThreadedTrainContract() throws Exception {
+        final TimeSeriesInstances[] data = italyPowerDemand();
+        final ProximityForest pf = newForest(0);
+        pf.enableMultiThreading(2);
+        pf.setTrainTimeLimit(2, TimeUnit.SECONDS);
+        pf.buildClassifier(data[0]);
+
+        // at least one tree is built, and the contract stops the unlimited number of trees
+        Assert.assertTrue(pf.getRunTime() < TimeUnit.SECONDS.toNanos(10));
+        final double[] distribution = pf.distributionForInstance(data[1].get(0));
+        Assert.assertEquals(1, distribution[0] + distribution[1], 1e-9);
+    }
+}
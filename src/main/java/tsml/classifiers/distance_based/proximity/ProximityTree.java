@@ -20,6 +20,7 @@ package tsml.classifiers.distance_based.proximity;
 import com.google.common.collect.Lists;
 import experiments.data.DatasetLoading;
 import org.junit.Assert;
+import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.distance_based.distances.DistanceMeasure;
 import tsml.classifiers.distance_based.distances.IndependentDistanceMeasure;
 import tsml.classifiers.distance_based.distances.dtw.spaces.*;
@@ -53,6 +54,7 @@ import tsml.classifiers.distance_based.utils.strings.StrUtils;
 import tsml.classifiers.distance_based.utils.system.logging.LogUtils;
 import tsml.classifiers.distance_based.utils.system.memory.MemoryWatchable;
 import tsml.classifiers.distance_based.utils.system.memory.MemoryWatcher;
+import tsml.classifiers.distance_based.utils.system.copy.CopierUtils;
 import tsml.classifiers.distance_based.utils.system.random.RandomUtils;
 import tsml.classifiers.distance_based.utils.system.timing.StopWatch;
 import tsml.data_containers.TimeSeriesInstance;
@@ -63,9 +65,13 @@ import tsml.transformers.TransformPipeline;
 import tsml.transformers.Transformer;
 import utilities.ArrayUtilities;
 import utilities.ClassifierTools;
+import utilities.ThreadingUtilities;
 
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
@@ -76,7 +82,8 @@ import static tsml.classifiers.distance_based.utils.collections.checks.Checks.re
  * <p>
  * Contributors: goastler
  */
-public class ProximityTree extends BaseClassifier implements ContractedTest, ContractedTrain, Checkpointed, MemoryWatchable {
+public class ProximityTree extends BaseClassifier implements ContractedTest, ContractedTrain, Checkpointed, MemoryWatchable,
+                                                                    MultiThreadable {
 
     public static void main(String[] args) throws Exception {
 //        System.out.println(CONFIGS);
@@ -199,6 +206,12 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
     private boolean partitionExaminationReordering;
     // cache certain transformers to avoid repetition
     private Map<Transformer, CachedTransformer> transformerCache;
+    // the number of threads to find the distances between the data and the exemplars at a node with
+    private int numThreads = 1;
+    // the minimum number of insts at a node before the distances to the exemplars are found in parallel
+    private int minParallelPartitionSize = 128;
+    // the number of insts each thread finds the distances to the exemplars for at a time
+    private static final int PARALLEL_PARTITION_BLOCK_SIZE = 32;
 
     public DistanceMode getDistanceMode() {
         return distanceMode;
@@ -242,6 +255,27 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
         return checkpointConfig;
     }
 
+    @Override public void enableMultiThreading(final int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    public int getMinParallelPartitionSize() {
+        return minParallelPartitionSize;
+    }
+
+    /**
+     * Set the minimum number of insts at a node before the distances between them and the exemplars are found in
+     * parallel (when multithreading). The partitioning is the same whatever the number of threads.
+     * @param minParallelPartitionSize
+     */
+    public void setMinParallelPartitionSize(final int minParallelPartitionSize) {
+        this.minParallelPartitionSize = minParallelPartitionSize;
+    }
+
     public boolean isCacheTransforms() {
         return transformerCache != null;
     }
@@ -646,6 +680,9 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
         private TransformPipeline pipeline;
         private TimeSeriesInstances transformedDataAtSplit;
         
+        // the closest partition(s) for each inst at this split if found in parallel during setup, otherwise null
+        private List<List<Integer>> closestPartitionIndexIndices;
+        
         private double[] distribution;
         
         public double[] distributionForInstance(TimeSeriesInstance testInst) {
@@ -707,6 +744,7 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
             setupDistanceMeasure();
             setupExemplars();
             setupMisc();
+            setupClosestPartitions();
         }
 
         @Override public Integer next() {
@@ -737,7 +775,15 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
                     // otherwise just loop through all partitions in order looking for the closest. Order is static and never changed
                     partitionIndicesOrder = partitionIndices;
                 }
-                closestPartitionIndexIndex = findPartitionIndexIndexFor(inst, instIndexInSplitData, partitionIndicesOrder);
+                final List<Integer> closestIndexIndices;
+                if(closestPartitionIndexIndices != null) {
+                    // already found in parallel
+                    closestIndexIndices = closestPartitionIndexIndices.get(instIndexInSplitData);
+                } else {
+                    closestIndexIndices = findClosestPartitionIndexIndicesFor(inst, instIndexInSplitData, partitionIndicesOrder, distanceMeasure);
+                }
+                // random pick the best partition for the instance
+                closestPartitionIndexIndex = RandomUtils.choice(closestIndexIndices, rand);
                 closestPartitionIndex = partitionIndicesOrder.get(closestPartitionIndexIndex);
             }
 
@@ -771,6 +817,7 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
         
         public void cleanup() {
             transformedDataAtSplit = null;
+            closestPartitionIndexIndices = null;
 
             // quick check that partitions line up with num insts
             if(isDebug()) {
@@ -969,6 +1016,54 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
             }
         }
         
+        /**
+         * Find the closest partition(s) for every inst in parallel for large nodes. The distances for each inst do not
+         * depend on any other inst unless examining the partitions in order of size, so blocks of insts can be
+         * compared to the exemplars concurrently. Only the random choice between equally close partitions is left to
+         * next(), which makes the choices in the same order as if the distances were found one inst at a time.
+         */
+        private void setupClosestPartitions() {
+            closestPartitionIndexIndices = null;
+            if(numThreads <= 1
+                       || data.numInstances() < minParallelPartitionSize
+                       || partitionExaminationReordering
+                       // cached transformers cannot be shared between threads
+                       || isCacheTransforms()) {
+                return;
+            }
+            final List<Callable<List<List<Integer>>>> jobs = new ArrayList<>();
+            for(int start = 0; start < data.numInstances(); start += PARALLEL_PARTITION_BLOCK_SIZE) {
+                final int blockStart = start;
+                final int blockEnd = Math.min(data.numInstances(), start + PARALLEL_PARTITION_BLOCK_SIZE);
+                jobs.add(() -> {
+                    // distance measures which are not thread safe hold state during a distance computation so each thread needs its own
+                    final DistanceMeasure blockDistanceMeasure = distanceMeasure.isThreadSafe() ? distanceMeasure :
+                                                                         CopierUtils.deepCopy(distanceMeasure);
+                    final List<List<Integer>> block = new ArrayList<>(blockEnd - blockStart);
+                    for(int i = blockStart; i < blockEnd; i++) {
+                        if(earlyExemplarCheck && exemplarIndexInSplitDataToPartitionIndex.containsKey(i)) {
+                            // exemplars are allocated to their own partition without finding any distances
+                            block.add(null);
+                        } else {
+                            block.add(findClosestPartitionIndexIndicesFor(data.get(i), i, partitionIndices, blockDistanceMeasure));
+                        }
+                    }
+                    return block;
+                });
+            }
+            final ExecutorService executor = ThreadingUtilities.buildExecutorService(numThreads);
+            try {
+                closestPartitionIndexIndices = new ArrayList<>(data.numInstances());
+                for(List<List<Integer>> block : ThreadingUtilities.computeAll(executor, jobs, false)) {
+                    closestPartitionIndexIndices.addAll(block);
+                }
+            } catch(InterruptedException | ExecutionException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                executor.shutdown();
+            }
+        }
+        
         /**
          * Partition the data and derive score for this split.
          */
@@ -997,6 +1092,20 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
          * @return
          */
         public int findPartitionIndexIndexFor(TimeSeriesInstance inst, int instIndexInSplitData, List<Integer> partitionIndicesIterator) {
+            final List<Integer> closestPartitionIndexIndices = findClosestPartitionIndexIndicesFor(inst, instIndexInSplitData, partitionIndicesIterator, distanceMeasure);
+            // random pick the best partition for the instance
+            return RandomUtils.choice(closestPartitionIndexIndices, rand);
+        }
+
+        /**
+         * Find the partition(s) closest to the given instance. More than one partition is returned if several are equally close. This does not alter the state of the split, so can be called concurrently given a distance measure per thread.
+         *
+         * @param inst
+         * @param instIndexInSplitData the index of the inst in the data at this node. If the inst is not in the data at this node then set this to -1
+         * @param distanceMeasure the distance measure to find the distances with
+         * @return
+         */
+        private List<Integer> findClosestPartitionIndexIndicesFor(TimeSeriesInstance inst, int instIndexInSplitData, List<Integer> partitionIndicesIterator, DistanceMeasure distanceMeasure) {
             // replace inst with transformed version (i.e. apply the multivariate strategy)
             if(instIndexInSplitData >= 0) {
                 inst = transformedDataAtSplit.get(instIndexInSplitData);
@@ -1012,7 +1121,7 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
                 final Integer exemplarIndexInSplitData = exemplarIndicesInSplitData.get(i);
                 // check the instance isn't an exemplar
                 if(!earlyExemplarCheck && instIndexInSplitData == exemplarIndexInSplitData) {
-                    return i;
+                    return Collections.singletonList(i);
                 }
                 final TimeSeriesInstance exemplar = exemplars.get(i);
                 // find the distance
@@ -1027,8 +1136,7 @@ public class ProximityTree extends BaseClassifier implements ContractedTest, Con
                 }
             }
             
-            // random pick the best partition for the instance
-            return RandomUtils.choice(filter.valuesList(), rand);
+            return filter.valuesList();
         }
 
         /**
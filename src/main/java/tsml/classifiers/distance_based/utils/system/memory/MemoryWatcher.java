@@ -27,10 +27,12 @@ import javax.management.openmbean.CompositeData;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
 import java.lang.management.MemoryUsage;
 import java.util.*;
 
-import org.nd4j.linalg.io.Assert;
 import tsml.classifiers.distance_based.utils.system.timing.Stated;
 import utilities.Utilities;
 
@@ -77,7 +79,29 @@ public class MemoryWatcher extends Stated implements MemoryWatchable {
         return maxMemoryUsage;
     }
 
+    /**
+     * The memory in use over the heap pools straight after the most recent garbage collection, i.e. the live data at that
+     * point, or the currently used heap if no collection has been seen yet.
+     */
+    public synchronized long getLatestMemoryUsage() {
+        if(latestMemoryUsage < 0) {
+            return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        }
+        return latestMemoryUsage;
+    }
+
+    // names of the heap pools, so non-heap pools such as metaspace and the code cache are not counted as live data
+    private static final Set<String> HEAP_POOLS = new HashSet<>();
+    static {
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                HEAP_POOLS.add(pool.getName());
+            }
+        }
+    }
+
     private long maxMemoryUsage = -1;
+    private long latestMemoryUsage = -1;
     private transient NotificationListener listener = this::handleNotification;
     private boolean activeListener = false;
     
@@ -143,7 +167,7 @@ public class MemoryWatcher extends Stated implements MemoryWatchable {
             super.stop();
             activeListener = false;
         }
-        Assert.isNull(listener);
+        if(listener != null) throw new IllegalStateException("listener should not be set after deserialisation");
 
     }
 
@@ -158,11 +182,16 @@ public class MemoryWatcher extends Stated implements MemoryWatchable {
                 long memoryUsage = memoryUsageSnapshot.getUsed();
                 maxMemoryUsage = Math.max(memoryUsage, maxMemoryUsage);
             }
+            long totalMemoryUsage = 0;
             for(Map.Entry<String, MemoryUsage> entry : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
                 MemoryUsage memoryUsageSnapshot = entry.getValue();
                 long memoryUsage = memoryUsageSnapshot.getUsed();
                 maxMemoryUsage = Math.max(memoryUsage, maxMemoryUsage);
+                if(HEAP_POOLS.contains(entry.getKey())) {
+                    totalMemoryUsage += memoryUsage;
+                }
             }
+            latestMemoryUsage = totalMemoryUsage;
         }
     }
     
@@ -173,6 +202,7 @@ public class MemoryWatcher extends Stated implements MemoryWatchable {
 
     public synchronized void onReset() {
         maxMemoryUsage = -1;
+        latestMemoryUsage = -1;
     }
 
 }
@@ -0,0 +1,72 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.classifiers.distance_based.utils.system.timing;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentilesWithinBucketWidth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Random rand = new Random(0);
+        long[] latencies = new long[10000];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = (long) Math.exp(rand.nextDouble() * 20);
+            histogram.record(latencies[i]);
+        }
+        Arrays.sort(latencies);
+
+        Assert.assertEquals(latencies.length, histogram.getCount());
+        Assert.assertEquals(latencies[latencies.length - 1], histogram.getMax());
+        for (double percentile : new double[] {1, 50, 90, 99, 99.9, 100}) {
+            long exact = latencies[(int) Math.ceil(percentile / 100 * latencies.length) - 1];
+            long reported = histogram.getPercentile(percentile);
+            Assert.assertTrue(reported >= exact);
+            Assert.assertTrue(reported <= exact + exact / 32 + 1);
+        }
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 1; i <= 1000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assert.assertEquals(4000, histogram.getCount());
+        Assert.assertEquals(1000, histogram.getMax());
+        Assert.assertEquals(500.5, histogram.getMean(), 0);
+        histogram.reset();
+        Assert.assertEquals(0, histogram.getCount());
+        Assert.assertEquals(0, histogram.getPercentile(50));
+    }
+}
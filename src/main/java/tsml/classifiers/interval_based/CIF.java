@@ -31,6 +31,7 @@ import tsml.data_containers.TimeSeriesInstances;
 import tsml.data_containers.utilities.Converter;
 import tsml.transformers.Catch22;
 import utilities.ClassifierTools;
+import utilities.ThreadingUtilities;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.core.*;
@@ -437,7 +438,7 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
         }
 
         if (multiThread) {
-            ex = Executors.newFixedThreadPool(numThreads);
+            ex = ThreadingUtilities.buildExecutorService(numThreads);
             if (checkpoint) System.out.println("Unable to checkpoint until end of build when multi threading.");
         }
 
@@ -581,6 +582,7 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
             }
 
             int[] subsampleAtt = new int[numAttributes];
+            double[] c22Features = new double[numAttributes];
             for (int n = 0; n < numAttributes; n++) {
                 subsampleAtt[n] = arrl.remove(rand.nextInt(arrl.size()));
             }
@@ -629,14 +631,13 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                 for (int j = 0; j < numIntervals; j++) {
                     //extract the interval
                     double[] series = dimensions[instIdx][intervalDimension[j]];
-                    double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
+                    c22.getSummaryStats(series, interval[j][0], interval[j][1], subsampleAtt, c22Features);
 
                     //process features
 
                     for (int g = 0; g < numAttributes; g++) {
                         if (subsampleAtt[g] < 22) {
-                            result.instance(k).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtt[g], j, intervalArray));
+                            result.instance(k).setValue(j * numAttributes + g, c22Features[g]);
                         } else {
                             result.instance(k).setValue(j * numAttributes + g,
                                     FeatureSet.calcFeatureByIndex(subsampleAtt[g], interval[j][0],
@@ -674,12 +675,11 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
 
                         for (int j = 0; j < numIntervals; j++) {
                             double[] series = dimensions[n][intervalDimension[j]];
-                            double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
+                            c22.getSummaryStats(series, interval[j][0], interval[j][1], subsampleAtt, c22Features);
 
                             for (int g = 0; g < numAttributes; g++) {
                                 if (subsampleAtt[g] < 22) {
-                                    testHolder.instance(0).setValue(j * numAttributes + g,
-                                            c22.getSummaryStatByIndex(subsampleAtt[g], j, intervalArray));
+                                    testHolder.instance(0).setValue(j * numAttributes + g, c22Features[g]);
                                 } else {
                                     testHolder.instance(0).setValue(j * numAttributes + g,
                                             FeatureSet.calcFeatureByIndex(subsampleAtt[g], interval[j][0],
@@ -917,16 +917,16 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
             for (int i = 0; i < trees.size(); i++) {
                 Catch22 c22 = new Catch22();
                 c22.setOutlierNormalise(outlierNorm);
+                double[] c22Features = new double[numAttributes];
 
                 for (int j = 0; j < numIntervals; j++) {
                     double[] series = dimensions[intervalDimensions.get(i)[j]];
-                    double[] intervalArray = Arrays.copyOfRange(series, intervals.get(i)[j][0],
-                            intervals.get(i)[j][1] + 1);
+                    c22.getSummaryStats(series, intervals.get(i)[j][0], intervals.get(i)[j][1],
+                            subsampleAtts.get(i), c22Features);
 
                     for (int g = 0; g < numAttributes; g++) {
                         if (subsampleAtts.get(i)[g] < 22) {
-                            testHolder.instance(0).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtts.get(i)[g], j, intervalArray));
+                            testHolder.instance(0).setValue(j * numAttributes + g, c22Features[g]);
                         } else {
                             testHolder.instance(0).setValue(j * numAttributes + g,
                                     FeatureSet.calcFeatureByIndex(subsampleAtts.get(i)[g], intervals.get(i)[j][0],
@@ -1512,6 +1512,7 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
 
             Catch22 c22 = new Catch22();
             c22.setOutlierNormalise(outlierNorm);
+            double[] c22Features = new double[numAttributes];
 
             //1. Select random intervals for tree i
             int[][] interval = new int[numIntervals][2];  //Start and end
@@ -1615,13 +1616,12 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                 for (int j = 0; j < numIntervals; j++) {
                     //extract the interval
                     double[] series = dimensions[instIdx][intervalDimensions[j]];
-                    double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
+                    c22.getSummaryStats(series, interval[j][0], interval[j][1], subsampleAtts, c22Features);
 
                     for (int g = 0; g < numAttributes; g++) {
                         //process features
                         if (subsampleAtts[g] < 22) {
-                            result.instance(k).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtts[g], j, intervalArray));
+                            result.instance(k).setValue(j * numAttributes + g, c22Features[g]);
                         } else {
                             result.instance(k).setValue(j * numAttributes + g,
                                     FeatureSet.calcFeatureByIndex(subsampleAtts[g], interval[j][0],
@@ -1661,12 +1661,11 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
 
                         for (int j = 0; j < numIntervals; j++) {
                             double[] series = dimensions[n][intervalDimensions[j]];
-                            double[] intervalArray = Arrays.copyOfRange(series, interval[j][0], interval[j][1] + 1);
+                            c22.getSummaryStats(series, interval[j][0], interval[j][1], subsampleAtts, c22Features);
 
                             for (int g = 0; g < numAttributes; g++) {
                                 if (subsampleAtts[g] < 22) {
-                                    result.instance(0).setValue(j * numAttributes + g,
-                                            c22.getSummaryStatByIndex(subsampleAtts[g], j, intervalArray));
+                                    result.instance(0).setValue(j * numAttributes + g, c22Features[g]);
                                 } else {
                                     result.instance(0).setValue(j * numAttributes + g,
                                             FeatureSet.calcFeatureByIndex(subsampleAtts[g], interval[j][0],
@@ -1739,16 +1738,16 @@ public class CIF extends EnhancedAbstractClassifier implements TechnicalInformat
                 //Build transformed instance
                 Catch22 c22 = new Catch22();
                 c22.setOutlierNormalise(outlierNorm);
+                double[] c22Features = new double[numAttributes];
 
                 for (int j = 0; j < numIntervals; j++) {
                     double[] series = dimensions[intervalDimensions.get(i)[j]];
-                    double[] intervalArray = Arrays.copyOfRange(series, intervals.get(i)[j][0],
-                            intervals.get(i)[j][1] + 1);
+                    c22.getSummaryStats(series, intervals.get(i)[j][0], intervals.get(i)[j][1],
+                            subsampleAtts.get(i), c22Features);
 
                     for (int g = 0; g < numAttributes; g++) {
                         if (subsampleAtts.get(i)[g] < 22) {
-                            testHolder.instance(0).setValue(j * numAttributes + g,
-                                    c22.getSummaryStatByIndex(subsampleAtts.get(i)[g], j, intervalArray));
+                            testHolder.instance(0).setValue(j * numAttributes + g, c22Features[g]);
                         } else {
                             testHolder.instance(0).setValue(j * numAttributes + g,
                                     FeatureSet.calcFeatureByIndex(subsampleAtts.get(i)[g], intervals.get(i)[j][0],
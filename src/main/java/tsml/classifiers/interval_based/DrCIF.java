@@ -29,6 +29,7 @@ import tsml.transformers.Catch22;
 import tsml.transformers.Differences;
 import tsml.transformers.Fast_FFT;
 import utilities.ClassifierTools;
+import utilities.ThreadingUtilities;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.core.*;
@@ -440,7 +441,7 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
         }
 
         if (multiThread) {
-            ex = Executors.newFixedThreadPool(numThreads);
+            ex = ThreadingUtilities.buildExecutorService(numThreads);
             if (checkpoint) System.out.println("Unable to checkpoint until end of build when multi threading.");
         }
 
@@ -589,6 +590,7 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
             }
 
             int[] subsampleAtt = new int[numAttributes];
+            double[] c22Features = new double[numAttributes];
             for (int n = 0; n < numAttributes; n++) {
                 subsampleAtt[n] = arrl.remove(rand.nextInt(arrl.size()));
             }
@@ -642,13 +644,12 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                     for (int j = 0; j < numIntervals[r]; j++) {
                         //extract the interval
                         double[] series = dimensions[instIdx][r][intervalDimension[r][j]];
-                        double[] intervalArray = Arrays.copyOfRange(series, interval[r][j][0], interval[r][j][1] + 1);
+                        c22.getSummaryStats(series, interval[r][j][0], interval[r][j][1], subsampleAtt, c22Features);
 
                         //process features
                         for (int a = 0; a < numAttributes; a++) {
                             if (subsampleAtt[a] < 22) {
-                                result.instance(k).setValue(p,
-                                        c22.getSummaryStatByIndex(subsampleAtt[a], j, intervalArray));
+                                result.instance(k).setValue(p, c22Features[a]);
                             } else {
                                 result.instance(k).setValue(p,
                                         FeatureSet.calcFeatureByIndex(subsampleAtt[a], interval[r][j][0],
@@ -691,13 +692,12 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                         for (int r = 0; r < representations.length; r++) {
                             for (int j = 0; j < numIntervals[r]; j++) {
                                 double[] series = dimensions[n][r][intervalDimension[r][j]];
-                                double[] intervalArray = Arrays.copyOfRange(series, interval[r][j][0],
-                                        interval[r][j][1] + 1);
+                                c22.getSummaryStats(series, interval[r][j][0], interval[r][j][1],
+                                        subsampleAtt, c22Features);
 
                                 for (int a = 0; a < numAttributes; a++) {
                                     if (subsampleAtt[a] < 22) {
-                                        testHolder.instance(0).setValue(p,
-                                                c22.getSummaryStatByIndex(subsampleAtt[a], j, intervalArray));
+                                        testHolder.instance(0).setValue(p, c22Features[a]);
                                     } else {
                                         testHolder.instance(0).setValue(p,
                                                 FeatureSet.calcFeatureByIndex(subsampleAtt[a],
@@ -981,18 +981,18 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
             for (int i = 0; i < trees.size(); i++) {
                 Catch22 c22 = new Catch22();
                 c22.setOutlierNormalise(outlierNorm);
+                double[] c22Features = new double[numAttributes];
 
                 int p = 0;
                 for (int r = 0; r < dimensions.length; r++) {
                     for (int j = 0; j < intervals.get(i)[r].length; j++) {
                         double[] series = dimensions[r][intervalDimensions.get(i)[r][j]];
-                        double[] intervalArray = Arrays.copyOfRange(series, intervals.get(i)[r][j][0],
-                                intervals.get(i)[r][j][1] + 1);
+                        c22.getSummaryStats(series, intervals.get(i)[r][j][0], intervals.get(i)[r][j][1],
+                                subsampleAtts.get(i), c22Features);
 
                         for (int a = 0; a < numAttributes; a++) {
                             if (subsampleAtts.get(i)[a] < 22) {
-                                testHolder.instance(0).setValue(p,
-                                        c22.getSummaryStatByIndex(subsampleAtts.get(i)[a], j, intervalArray));
+                                testHolder.instance(0).setValue(p, c22Features[a]);
                             } else {
                                 testHolder.instance(0).setValue(p,
                                         FeatureSet.calcFeatureByIndex(subsampleAtts.get(i)[a],
@@ -1416,6 +1416,7 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
 
             Catch22 c22 = new Catch22();
             c22.setOutlierNormalise(outlierNorm);
+            double[] c22Features = new double[numAttributes];
 
             //1. Select random intervals for tree i
             int[][][] interval = new int[dimensions[0].length][][];
@@ -1529,13 +1530,12 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                     for (int j = 0; j < numIntervals[r]; j++) {
                         //extract the interval
                         double[] series = dimensions[instIdx][r][intervalDimensions[r][j]];
-                        double[] intervalArray = Arrays.copyOfRange(series, interval[r][j][0], interval[r][j][1] + 1);
+                        c22.getSummaryStats(series, interval[r][j][0], interval[r][j][1], subsampleAtts, c22Features);
 
                         //process features
                         for (int a = 0; a < numAttributes; a++) {
                             if (subsampleAtts[a] < 22) {
-                                result.instance(k).setValue(p,
-                                        c22.getSummaryStatByIndex(subsampleAtts[a], j, intervalArray));
+                                result.instance(k).setValue(p, c22Features[a]);
                             } else {
                                 result.instance(k).setValue(p,
                                         FeatureSet.calcFeatureByIndex(subsampleAtts[a], interval[r][j][0],
@@ -1580,13 +1580,12 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
                         for (int r = 0; r < dimensions[0].length; r++) {
                             for (int j = 0; j < numIntervals[r]; j++) {
                                 double[] series = dimensions[n][r][intervalDimensions[r][j]];
-                                double[] intervalArray = Arrays.copyOfRange(series, interval[r][j][0],
-                                        interval[r][j][1] + 1);
+                                c22.getSummaryStats(series, interval[r][j][0], interval[r][j][1],
+                                        subsampleAtts, c22Features);
 
                                 for (int a = 0; a < numAttributes; a++) {
                                     if (subsampleAtts[a] < 22) {
-                                        result.instance(0).setValue(p,
-                                                c22.getSummaryStatByIndex(subsampleAtts[a], j, intervalArray));
+                                        result.instance(0).setValue(p, c22Features[a]);
                                     } else {
                                         result.instance(0).setValue(p,
                                                 FeatureSet.calcFeatureByIndex(subsampleAtts[a],
@@ -1687,18 +1686,18 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
             } else {
                 Catch22 c22 = new Catch22();
                 c22.setOutlierNormalise(outlierNorm);
+                double[] c22Features = new double[numAttributes];
 
                 int p = 0;
                 for (int r = 0; r < dimensions.length; r++) {
                     for (int j = 0; j < intervals.get(i)[r].length; j++) {
                         double[] series = dimensions[r][intervalDimensions.get(i)[r][j]];
-                        double[] intervalArray = Arrays.copyOfRange(series, intervals.get(i)[r][j][0],
-                                intervals.get(i)[r][j][1] + 1);
+                        c22.getSummaryStats(series, intervals.get(i)[r][j][0], intervals.get(i)[r][j][1],
+                                subsampleAtts.get(i), c22Features);
 
                         for (int a = 0; a < numAttributes; a++) {
                             if (subsampleAtts.get(i)[a] < 22) {
-                                testHolder.instance(0).setValue(p,
-                                        c22.getSummaryStatByIndex(subsampleAtts.get(i)[a], j, intervalArray));
+                                testHolder.instance(0).setValue(p, c22Features[a]);
                             } else {
                                 testHolder.instance(0).setValue(p,
                                         FeatureSet.calcFeatureByIndex(subsampleAtts.get(i)[a],
@@ -1725,92 +1724,70 @@ public class DrCIF extends EnhancedAbstractClassifier implements TechnicalInform
             c22_21, mean, median, stdev, slope, iqr, min, max};
 
     public static final Function<Interval, Double> c22_0 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(0, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(0, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_1 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(1, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(1, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_2 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(2, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(2, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_3 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(3, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(3, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_4 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(4, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(4, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_5 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(5, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(5, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_6 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(6, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(6, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_7 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(7, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(7, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_8 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(8, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(8, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_9 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(9, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(9, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_10 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(10, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(10, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_11 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(11, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(11, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_12 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(12, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(12, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_13 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(13, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(13, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_14 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(14, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(14, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_15 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(15, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(15, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_16 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(16, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(16, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_17 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(17, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(17, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_18 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(18, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(18, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_19 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(19, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(19, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_20 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(20, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(20, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> c22_21 = (Interval i) -> {
-        double[] intervalArray = Arrays.copyOfRange(i.series, i.start, i.end + 1);
-        return Catch22.getSummaryStatByIndex(21, intervalArray, true);
+        return Catch22.getSummaryStatByIndex(21, i.series, i.start, i.end, true);
     };
     public static final Function<Interval, Double> mean = (Interval i) ->
             FeatureSet.calcFeatureByIndex(22, i.start, i.end, i.series);
@@ -24,7 +24,10 @@ import machine_learning.classifiers.RidgeClassifierCV;
 import tsml.classifiers.EnhancedAbstractClassifier;
 import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
+import tsml.classifiers.distance_based.utils.system.timing.LatencyHistogram;
+import tsml.transformers.MiniROCKET;
 import tsml.transformers.ROCKET;
+import tsml.transformers.TrainableTransformer;
 import utilities.ClassifierTools;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
@@ -63,11 +66,15 @@ public class Arsenal extends EnhancedAbstractClassifier implements TrainTimeCont
     private boolean multithreading = false;
     private int threads;
 
+    private boolean useMiniROCKET = false;
+
     private Classifier[] classifiers;
-    private ROCKET[] rockets;
+    private TrainableTransformer[] rockets;
     private double weightSum;
     private Instances header;
 
+    private final WindowClassifier windowClassifier = new WindowClassifier();
+
     public Arsenal() {
         super(CAN_ESTIMATE_OWN_PERFORMANCE);
     }
@@ -77,7 +84,7 @@ public class Arsenal extends EnhancedAbstractClassifier implements TrainTimeCont
         int cl = classifiers == null ? 0 : classifiers.length;
         return super.getParameters() + ",numKernels," + numKernels + ",normalise," + normalise +
                 ",ensembleSize," + cl + ",trainContract," + trainTimeContract + ",contractTime," +
-                trainContractTimeNanos;
+                trainContractTimeNanos + ",miniROCKET," + useMiniROCKET;
     }
 
     @Override
@@ -117,6 +124,13 @@ public class Arsenal extends EnhancedAbstractClassifier implements TrainTimeCont
         this.bagging = bagging;
     }
 
+    /**
+     * Use the MiniROCKET transform in place of ROCKET for each member, with numKernels as the number of features.
+     */
+    public void setUseMiniROCKET(boolean useMiniROCKET) {
+        this.useMiniROCKET = useMiniROCKET;
+    }
+
     @Override
     public void setTrainTimeLimit(long time) {
         trainContractTimeNanos = time;
@@ -160,18 +174,32 @@ public class Arsenal extends EnhancedAbstractClassifier implements TrainTimeCont
         }
 
         ArrayList<Classifier> tempCls = new ArrayList<>();
-        ArrayList<ROCKET> tempROCKET = new ArrayList<>();
+        ArrayList<TrainableTransformer> tempROCKET = new ArrayList<>();
         weightSum = 0;
 
         int i = 0;
         while (i < ensembleSize && withinTrainContract(trainResults.getBuildTime())) {
-            ROCKET r = new ROCKET();
-            r.setNumKernels(numKernels);
-            r.setNormalise(normalise);
-            if (seedClassifier) r.setSeed(seed + (i + 1) * 47);
+            TrainableTransformer r;
+            if (useMiniROCKET) {
+                MiniROCKET m = new MiniROCKET();
+                m.setNumFeatures(numKernels);
+                m.setNormalise(normalise);
+                if (seedClassifier) m.setSeed(seed + (i + 1) * 47);
+
+                if (multithreading) {
+                    m.enableMultiThreading(threads);
+                }
+                r = m;
+            } else {
+                ROCKET rocket = new ROCKET();
+                rocket.setNumKernels(numKernels);
+                rocket.setNormalise(normalise);
+                if (seedClassifier) rocket.setSeed(seed + (i + 1) * 47);
 
-            if (multithreading) {
-                r.enableMultiThreading(threads);
+                if (multithreading) {
+                    rocket.enableMultiThreading(threads);
+                }
+                r = rocket;
             }
 
             //If bagging find instances with replacement
@@ -247,7 +275,7 @@ public class Arsenal extends EnhancedAbstractClassifier implements TrainTimeCont
 
         classifiers = new Classifier[tempCls.size()];
         classifiers = tempCls.toArray(classifiers);
-        rockets = new ROCKET[tempROCKET.size()];
+        rockets = new TrainableTransformer[tempROCKET.size()];
         rockets = tempROCKET.toArray(rockets);
 
         trainResults.setTimeUnit(TimeUnit.NANOSECONDS);
@@ -344,6 +372,47 @@ public class Arsenal extends EnhancedAbstractClassifier implements TrainTimeCont
         return probs;
     }
 
+    /**
+     * The class distribution of a single window of a series, as [dimension][time], without converting it to or from a
+     * weka Instance. Buffers are reused between calls on the same thread, and the time taken is recorded in
+     * getWindowLatencies().
+     */
+    public double[] distributionForWindow(double[][] window) throws Exception {
+        return windowClassifier.distribution(this::windowDistribution, window);
+    }
+
+    /**
+     * The class distributions of a batch of windows, each as [dimension][time]. With multiple threads the windows are
+     * split into blocks between them. The time taken for each window is recorded in getWindowLatencies().
+     */
+    public double[][] distributionForWindows(double[][][] windows) throws Exception {
+        return windowClassifier.distributions(this::windowDistribution, windows, multithreading ? threads : 1);
+    }
+
+    /**
+     * The time taken for each window classified through distributionForWindow or distributionForWindows.
+     */
+    public LatencyHistogram getWindowLatencies() {
+        return windowClassifier.getLatencies();
+    }
+
+    private double[] windowDistribution(double[][] window, WindowScratch scratch) throws Exception {
+        if (header == null)
+            throw new IllegalStateException("Must build Arsenal prior to classifying windows.");
+
+        double[] probs = new double[header.numClasses()];
+        for (int i = 0; i < classifiers.length; i++) {
+            scratch.transform(rockets[i], window, false);
+            double pred = scratch.classify(classifiers[i], header);
+            double w = cls instanceof RidgeClassifierCV ?
+                    Math.pow(((RidgeClassifierCV) classifiers[i]).getBestScore(), 4) : 1;
+            probs[(int) pred] += w;
+        }
+
+        for (int i = 0; i < probs.length; i++) probs[i] /= weightSum;
+        return probs;
+    }
+
     private void copyParameters(Arsenal other) {
         this.numKernels = other.numKernels;
         this.ensembleSize = other.ensembleSize;
@@ -352,6 +421,7 @@ public class Arsenal extends EnhancedAbstractClassifier implements TrainTimeCont
         this.bagging = other.bagging;
         this.trainContractTimeNanos = other.trainContractTimeNanos;
         this.trainTimeContract = other.trainTimeContract;
+        this.useMiniROCKET = other.useMiniROCKET;
     }
 
     public static void main(String[] args) throws Exception {
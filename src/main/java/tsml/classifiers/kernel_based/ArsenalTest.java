@@ -0,0 +1,95 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.classifiers.kernel_based;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+
+import static utilities.multivariate_tools.MultivariateInstanceTools.convertMultiInstanceToArrays;
+import static utilities.multivariate_tools.MultivariateInstanceTools.splitMultivariateInstance;
+
+public class ArsenalTest {
+
+    @Test
+    public void testMultivariateWindows() throws Exception {
+        Instances[] data = DatasetLoading.sampleBasicMotions(0);
+        Arsenal c = new Arsenal();
+        c.setSeed(0);
+        c.setEnsembleSize(3);
+        c.setNumKernels(200);
+        c.setUseMiniROCKET(true);
+        // members other than RidgeClassifierCV classify through an Instance over the reused feature array
+        c.setClassifier(new J48());
+        c.buildClassifier(data[0]);
+
+        double[][][] windows = new double[data[1].numInstances()][][];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = convertMultiInstanceToArrays(splitMultivariateInstance(data[1].get(i)));
+        }
+        double[][] batch = c.distributionForWindows(windows);
+        for (int i = 0; i < windows.length; i++) {
+            double[] expected = c.distributionForInstance(data[1].get(i));
+            Assert.assertArrayEquals(expected, c.distributionForWindow(windows[i]), 0);
+            Assert.assertArrayEquals(expected, batch[i], 0);
+        }
+        Assert.assertEquals(2L * windows.length, c.getWindowLatencies().getCount());
+    }
+
+    @Test
+    public void testAlternatingFeatureCounts() throws Exception {
+        // both classifiers share this thread's scratch, so each call switches the feature array to a different length
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        Arsenal arsenal = new Arsenal();
+        arsenal.setSeed(0);
+        arsenal.setEnsembleSize(2);
+        arsenal.setNumKernels(100);
+        arsenal.setClassifier(new J48());
+        arsenal.buildClassifier(data[0]);
+        ROCKETClassifier rocket = new ROCKETClassifier();
+        rocket.setSeed(1);
+        rocket.setNumKernels(300);
+        rocket.setClassifier(new J48());
+        rocket.buildClassifier(data[0]);
+
+        for (int i = 0; i < 50; i++) {
+            double[][] window = ROCKETClassifierTest.window(data[1].get(i));
+            Assert.assertArrayEquals(arsenal.distributionForInstance(data[1].get(i)),
+                    arsenal.distributionForWindow(window), 0);
+            Assert.assertArrayEquals(rocket.distributionForInstance(data[1].get(i)),
+                    rocket.distributionForWindow(window), 0);
+        }
+    }
+
+    @Test
+    public void testROCKETWindows() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        Arsenal c = new Arsenal();
+        c.setSeed(0);
+        c.setEnsembleSize(3);
+        c.setNumKernels(200);
+        c.buildClassifier(data[0]);
+
+        for (int i = 0; i < data[1].numInstances(); i++) {
+            Assert.assertArrayEquals(c.distributionForInstance(data[1].get(i)),
+                    c.distributionForWindow(ROCKETClassifierTest.window(data[1].get(i))), 0);
+        }
+    }
+}
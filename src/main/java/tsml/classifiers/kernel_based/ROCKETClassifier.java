@@ -23,6 +23,8 @@ import machine_learning.classifiers.RidgeClassifierCV;
 import tsml.classifiers.EnhancedAbstractClassifier;
 import tsml.classifiers.MultiThreadable;
 import tsml.classifiers.TrainTimeContractable;
+import tsml.classifiers.distance_based.utils.system.timing.LatencyHistogram;
+import tsml.transformers.MiniROCKET;
 import tsml.transformers.ROCKET;
 import utilities.ClassifierTools;
 import weka.classifiers.AbstractClassifier;
@@ -54,18 +56,29 @@ public class ROCKETClassifier extends EnhancedAbstractClassifier implements Trai
     private boolean multithreading = false;
     private int threads;
 
+    private boolean useMiniROCKET = false;
+
     private ROCKET rocket;
+    private ArrayList<MiniROCKET> miniRockets;
     private Instances header;
 
+    private final WindowClassifier windowClassifier = new WindowClassifier();
+
     public ROCKETClassifier() {
         super(CAN_ESTIMATE_OWN_PERFORMANCE);
     }
 
     @Override
     public String getParameters() {
-        int nc = rocket == null ? numKernels : rocket.getNumKernels();
+        int nc = numKernels;
+        if (rocket != null) {
+            nc = rocket.getNumKernels();
+        } else if (miniRockets != null) {
+            nc = miniRockets.stream().mapToInt(MiniROCKET::getNumFeatures).sum();
+        }
         return super.getParameters() + ",numKernels," + nc + ",normalise," + normalise + ",trainContract," +
-                trainTimeContract + ",contractTime," + trainContractTimeNanos + ",numKernelStep," + numKernelsStep;
+                trainTimeContract + ",contractTime," + trainContractTimeNanos + ",numKernelStep," + numKernelsStep +
+                ",miniROCKET," + useMiniROCKET;
     }
 
     @Override
@@ -101,6 +114,14 @@ public class ROCKETClassifier extends EnhancedAbstractClassifier implements Trai
         this.numKernelsStep = numKernelsStep;
     }
 
+    /**
+     * Use the MiniROCKET transform in place of ROCKET, with numKernels as the number of features. When contracted each
+     * step adds a MiniROCKET transform of at least 84 features with a new seed.
+     */
+    public void setUseMiniROCKET(boolean useMiniROCKET) {
+        this.useMiniROCKET = useMiniROCKET;
+    }
+
     @Override
     public void setTrainTimeLimit(long time) {
         trainContractTimeNanos = time;
@@ -130,31 +151,48 @@ public class ROCKETClassifier extends EnhancedAbstractClassifier implements Trai
 
         Instances trainEstData = null;
 
+        rocket = null;
+        miniRockets = null;
+
         if (trainTimeContract) {
             ArrayList<Instances> fragmentedTransformedData = new ArrayList<>();
-            rocket = new ROCKET();
-            rocket.setNumKernels(0);
-            rocket.setNormalise(normalise);
-            if (seedClassifier) rocket.setSeed(seed);
+            if (useMiniROCKET) {
+                miniRockets = new ArrayList<>();
+            } else {
+                rocket = new ROCKET();
+                rocket.setNumKernels(0);
+                rocket.setNormalise(normalise);
+                if (seedClassifier) rocket.setSeed(seed);
+            }
 
             int l = 0;
-            while (withinTrainContract(trainResults.getBuildTime()) && rocket.getNumKernels() < maxKernels) {
-                ROCKET tempRocket = new ROCKET();
-                tempRocket.setNumKernels(numKernelsStep);
-                tempRocket.setNormalise(normalise);
-                tempRocket.setSeed(seed + l * numKernelsStep);
+            int numFeatures = 0;
+            while (withinTrainContract(trainResults.getBuildTime()) && numFeatures < maxKernels) {
+                if (useMiniROCKET) {
+                    MiniROCKET tempRocket = newMiniROCKET(Math.max(numKernelsStep, MiniROCKET.NUM_KERNELS),
+                            seed + l * numKernelsStep);
+                    fragmentedTransformedData.add(tempRocket.fitTransform(data));
+                    miniRockets.add(tempRocket);
+                    numFeatures += tempRocket.getNumFeatures();
+                } else {
+                    ROCKET tempRocket = new ROCKET();
+                    tempRocket.setNumKernels(numKernelsStep);
+                    tempRocket.setNormalise(normalise);
+                    tempRocket.setSeed(seed + l * numKernelsStep);
+
+                    if (multithreading) {
+                        tempRocket.enableMultiThreading(threads);
+                    }
 
-                if (multithreading) {
-                    tempRocket.enableMultiThreading(threads);
+                    fragmentedTransformedData.add(tempRocket.fitTransform(data));
+                    rocket.addKernels(tempRocket);
+                    numFeatures = rocket.getNumKernels();
                 }
 
-                fragmentedTransformedData.add(tempRocket.fitTransform(data));
-                rocket.addKernels(tempRocket);
-
                 l++;
             }
 
-            Instances transformedData = rocket.determineOutputFormat(data);
+            Instances transformedData = determineOutputFormat(data, fragmentedTransformedData);
             header = new Instances(transformedData, 0);
 
             for (int i = 0; i < data.numInstances(); i++) {
@@ -162,10 +200,10 @@ public class ROCKETClassifier extends EnhancedAbstractClassifier implements Trai
                 int a1 = 0;
                 for (Instances insts : fragmentedTransformedData) {
                     Instance inst = insts.get(i);
-                    for (int j = 0; j < numKernelsStep * 2; j++) {
+                    for (int j = 0; j < insts.numAttributes() - 1; j++) {
                         arr[a1 + j] = inst.value(j);
                     }
-                    a1 += numKernelsStep * 2;
+                    a1 += insts.numAttributes() - 1;
                 }
                 arr[arr.length - 1] = data.get(i).classValue();
                 transformedData.add(new DenseInstance(1, arr));
@@ -181,16 +219,24 @@ public class ROCKETClassifier extends EnhancedAbstractClassifier implements Trai
                 trainEstData = transformedData;
             }
         } else {
-            rocket = new ROCKET();
-            rocket.setNumKernels(numKernels);
-            rocket.setNormalise(normalise);
-            if (seedClassifier) rocket.setSeed(seed);
+            Instances transformedData;
+            if (useMiniROCKET) {
+                MiniROCKET miniRocket = newMiniROCKET(numKernels, seed);
+                miniRockets = new ArrayList<>();
+                miniRockets.add(miniRocket);
+                transformedData = miniRocket.fitTransform(data);
+            } else {
+                rocket = new ROCKET();
+                rocket.setNumKernels(numKernels);
+                rocket.setNormalise(normalise);
+                if (seedClassifier) rocket.setSeed(seed);
 
-            if (multithreading) {
-                rocket.enableMultiThreading(threads);
-            }
+                if (multithreading) {
+                    rocket.enableMultiThreading(threads);
+                }
 
-            Instances transformedData = rocket.fitTransform(data);
+                transformedData = rocket.fitTransform(data);
+            }
             header = new Instances(transformedData, 0);
 
             if (cls instanceof Randomizable) {
@@ -216,6 +262,36 @@ public class ROCKETClassifier extends EnhancedAbstractClassifier implements Trai
         trainResults.setParas(getParameters());
     }
 
+    private MiniROCKET newMiniROCKET(int numFeatures, int seed) {
+        MiniROCKET miniRocket = new MiniROCKET(numFeatures);
+        miniRocket.setNormalise(normalise);
+        if (seedClassifier) miniRocket.setSeed(seed);
+
+        if (multithreading) {
+            miniRocket.enableMultiThreading(threads);
+        }
+        return miniRocket;
+    }
+
+    /**
+     * The format of the transformed data when it is made up of the features of each step of a contracted build.
+     */
+    private Instances determineOutputFormat(Instances data, ArrayList<Instances> fragmentedTransformedData) {
+        if (rocket != null)
+            return rocket.determineOutputFormat(data);
+
+        ArrayList<Attribute> atts = new ArrayList<>();
+        for (Instances insts : fragmentedTransformedData) {
+            for (int j = 0; j < insts.numAttributes() - 1; j++) {
+                atts.add(new Attribute("att" + atts.size()));
+            }
+        }
+        atts.add(data.classAttribute());
+        Instances transformedData = new Instances("MiniROCKETTransform", atts, data.numInstances());
+        transformedData.setClassIndex(transformedData.numAttributes() - 1);
+        return transformedData;
+    }
+
     private void estimateOwnPerformance(Instances data) throws Exception {
         int numFolds = Math.min(data.numInstances(), 10);
         CrossValidationEvaluator cv = new CrossValidationEvaluator();
@@ -239,11 +315,70 @@ public class ROCKETClassifier extends EnhancedAbstractClassifier implements Trai
     }
 
     public double[] distributionForInstance(Instance instance) throws Exception {
-        Instance transformedInst = rocket.transform(instance);
+        Instance transformedInst;
+        if (rocket != null) {
+            transformedInst = rocket.transform(instance);
+        } else if (miniRockets.size() == 1) {
+            transformedInst = miniRockets.get(0).transform(instance);
+        } else {
+            double[] arr = new double[header.numAttributes()];
+            int a1 = 0;
+            for (MiniROCKET miniRocket : miniRockets) {
+                Instance inst = miniRocket.transform(instance);
+                System.arraycopy(inst.toDoubleArray(), 0, arr, a1, inst.numAttributes() - 1);
+                a1 += inst.numAttributes() - 1;
+            }
+            arr[arr.length - 1] = instance.classValue();
+            transformedInst = new DenseInstance(1, arr);
+        }
         transformedInst.setDataset(header);
         return cls.distributionForInstance(transformedInst);
     }
 
+    /**
+     * The class distribution of a single window of a series, as [dimension][time], without converting it to or from a
+     * weka Instance. Buffers are reused between calls on the same thread, and the time taken is recorded in
+     * getWindowLatencies().
+     */
+    public double[] distributionForWindow(double[][] window) throws Exception {
+        return windowClassifier.distribution(this::windowDistribution, window);
+    }
+
+    /**
+     * The class distributions of a batch of windows, each as [dimension][time]. With multiple threads the windows are
+     * split into blocks between them. The time taken for each window is recorded in getWindowLatencies().
+     */
+    public double[][] distributionForWindows(double[][][] windows) throws Exception {
+        return windowClassifier.distributions(this::windowDistribution, windows, multithreading ? threads : 1);
+    }
+
+    /**
+     * The time taken for each window classified through distributionForWindow or distributionForWindows.
+     */
+    public LatencyHistogram getWindowLatencies() {
+        return windowClassifier.getLatencies();
+    }
+
+    private double[] windowDistribution(double[][] window, WindowScratch scratch) throws Exception {
+        if (header == null)
+            throw new IllegalStateException("Must build ROCKETClassifier prior to classifying windows.");
+
+        if (rocket != null) {
+            scratch.transform(rocket, window, false);
+        } else if (miniRockets.size() == 1) {
+            scratch.transform(miniRockets.get(0), window, false);
+        } else {
+            double[] features = scratch.features(header.numAttributes() - 1);
+            int a1 = 0;
+            for (MiniROCKET miniRocket : miniRockets) {
+                double[] part = scratch.transform(miniRocket, window, true);
+                System.arraycopy(part, 0, features, a1, miniRocket.getNumFeatures());
+                a1 += miniRocket.getNumFeatures();
+            }
+        }
+        return scratch.distribution(cls, header);
+    }
+
     public static void main(String[] args) throws Exception {
         int fold = 0;
 
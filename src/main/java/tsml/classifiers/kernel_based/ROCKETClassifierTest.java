@@ -0,0 +1,73 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.classifiers.kernel_based;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.Arrays;
+
+public class ROCKETClassifierTest {
+
+    static double[][] window(Instance inst) {
+        return new double[][] { Arrays.copyOf(inst.toDoubleArray(), inst.numAttributes() - 1) };
+    }
+
+    private static void assertWindowsMatchInstances(ROCKETClassifier c, Instances test) throws Exception {
+        double[][][] windows = new double[test.numInstances()][][];
+        for (int i = 0; i < windows.length; i++) {
+            windows[i] = window(test.get(i));
+        }
+        double[][] batch = c.distributionForWindows(windows);
+        for (int i = 0; i < windows.length; i++) {
+            double[] expected = c.distributionForInstance(test.get(i));
+            Assert.assertArrayEquals(expected, c.distributionForWindow(windows[i]), 0);
+            Assert.assertArrayEquals(expected, batch[i], 0);
+        }
+        Assert.assertEquals(2L * windows.length, c.getWindowLatencies().getCount());
+        Assert.assertTrue(c.getWindowLatencies().getPercentile(99) > 0);
+    }
+
+    @Test
+    public void testROCKETWindows() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        ROCKETClassifier c = new ROCKETClassifier();
+        c.setSeed(0);
+        c.setNumKernels(500);
+        c.enableMultiThreading(2);
+        c.buildClassifier(data[0]);
+        assertWindowsMatchInstances(c, data[1]);
+    }
+
+    @Test
+    public void testContractedMiniROCKETWindows() throws Exception {
+        // a contracted build is made of several MiniROCKET transforms whose features are concatenated
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        ROCKETClassifier c = new ROCKETClassifier();
+        c.setSeed(0);
+        c.setUseMiniROCKET(true);
+        c.setNumKernelsStep(100);
+        c.maxKernels = 300;
+        c.setTrainTimeLimit(Long.MAX_VALUE);
+        c.buildClassifier(data[0]);
+        assertWindowsMatchInstances(c, data[1]);
+    }
+}
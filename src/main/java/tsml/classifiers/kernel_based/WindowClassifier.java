@@ -0,0 +1,96 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.classifiers.kernel_based;
+
+import tsml.classifiers.distance_based.utils.system.timing.LatencyHistogram;
+import utilities.ThreadingUtilities;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import static utilities.ThreadingUtilities.computeAll;
+
+/**
+ * Classifies windows given as [dimension][time] arrays on behalf of a classifier in the package, recording the time
+ * taken for each window and splitting batches between threads. The executor is built on the first threaded batch and
+ * kept for later ones.
+ */
+class WindowClassifier implements Serializable {
+
+    // windows per job when a batch is split between threads
+    private static final int WINDOW_BLOCK_SIZE = 8;
+
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private transient ExecutorService ex;
+
+    /**
+     * The distribution of a window using the calling thread's buffers, recording the time taken.
+     */
+    double[] distribution(WindowScratch.WindowDistribution distribution, double[][] window) throws Exception {
+        long start = System.nanoTime();
+        double[] probs = distribution.apply(window, WindowScratch.get());
+        latencies.record(System.nanoTime() - start);
+        return probs;
+    }
+
+    /**
+     * The distributions of a batch of windows, split into blocks between the given number of threads. The time taken
+     * for each window is recorded.
+     */
+    double[][] distributions(WindowScratch.WindowDistribution distribution, double[][][] windows, int numThreads)
+            throws Exception {
+        double[][] probs = new double[windows.length][];
+        if (numThreads <= 1 || windows.length <= WINDOW_BLOCK_SIZE) {
+            for (int i = 0; i < windows.length; i++) {
+                probs[i] = distribution(distribution, windows[i]);
+            }
+            return probs;
+        }
+
+        if (ex == null) {
+            ex = ThreadingUtilities.buildExecutorService(numThreads);
+        }
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for (int i = 0; i < windows.length; i += WINDOW_BLOCK_SIZE) {
+            int from = i, to = Math.min(windows.length, i + WINDOW_BLOCK_SIZE);
+            jobs.add(() -> {
+                for (int n = from; n < to; n++) {
+                    probs[n] = distribution(distribution, windows[n]);
+                }
+                return null;
+            });
+        }
+        try {
+            computeAll(ex, jobs, false);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+        return probs;
+    }
+
+    /**
+     * The time taken for each window classified so far.
+     */
+    LatencyHistogram getLatencies() {
+        return latencies;
+    }
+}
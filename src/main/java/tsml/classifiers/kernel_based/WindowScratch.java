@@ -0,0 +1,129 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.classifiers.kernel_based;
+
+import machine_learning.classifiers.RidgeClassifierCV;
+import tsml.transformers.MiniROCKET;
+import tsml.transformers.ROCKET;
+import tsml.transformers.TrainableTransformer;
+import weka.classifiers.Classifier;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+/**
+ * Buffers for classifying windows given as [dimension][time] arrays, one set per thread and shared by every
+ * classifier in the package. Feature vectors are written in place and end in a missing class value, so can back an
+ * Instance directly for classifiers which need one.
+ */
+class WindowScratch {
+
+    private static final ThreadLocal<WindowScratch> SCRATCH = ThreadLocal.withInitial(WindowScratch::new);
+
+    private final ROCKET.Workspace rocketWorkspace = new ROCKET.Workspace();
+    private final MiniROCKET.Workspace miniRocketWorkspace = new MiniROCKET.Workspace();
+    private double[] features = new double[0];
+    private double[] part = new double[0];
+    private Instance instance;
+    // the feature array the instance wraps
+    private double[] instanceFeatures;
+
+    /**
+     * A classifier's distribution for a single window, using the given buffers.
+     */
+    interface WindowDistribution {
+        double[] apply(double[][] window, WindowScratch scratch) throws Exception;
+    }
+
+    /**
+     * The calling thread's buffers.
+     */
+    static WindowScratch get() {
+        return SCRATCH.get();
+    }
+
+    /**
+     * A feature array of the given number of features plus the class value, reused between calls.
+     */
+    double[] features(int numFeatures) {
+        if (features.length != numFeatures + 1) {
+            features = new double[numFeatures + 1];
+            features[numFeatures] = Utils.missingValue();
+        }
+        return features;
+    }
+
+    /**
+     * Transforms a window with a fit ROCKET or MiniROCKET into the feature array, or into a second array kept for parts
+     * of a larger feature vector.
+     */
+    double[] transform(TrainableTransformer transformer, double[][] window, boolean asPart) {
+        if (transformer instanceof ROCKET) {
+            ROCKET rocket = (ROCKET) transformer;
+            double[] output = asPart ? part(rocket.getNumKernels() * 2) : features(rocket.getNumKernels() * 2);
+            rocket.transform(window, output, rocketWorkspace);
+            return output;
+        } else if (transformer instanceof MiniROCKET) {
+            MiniROCKET miniRocket = (MiniROCKET) transformer;
+            double[] output = asPart ? part(miniRocket.getNumFeatures()) : features(miniRocket.getNumFeatures());
+            miniRocket.transform(window, output, miniRocketWorkspace);
+            return output;
+        }
+        throw new IllegalArgumentException("cannot transform windows with " + transformer.getClass().getSimpleName());
+    }
+
+    private double[] part(int numFeatures) {
+        if (part.length < numFeatures) {
+            part = new double[numFeatures];
+        }
+        return part;
+    }
+
+    /**
+     * Classifies the features in the feature array, without building an Instance for a RidgeClassifierCV.
+     */
+    double classify(Classifier cls, Instances header) throws Exception {
+        if (cls instanceof RidgeClassifierCV) {
+            return ((RidgeClassifierCV) cls).classify(features);
+        }
+        return cls.classifyInstance(instance(header));
+    }
+
+    /**
+     * The distribution of the features in the feature array, without building an Instance for a RidgeClassifierCV.
+     */
+    double[] distribution(Classifier cls, Instances header) throws Exception {
+        if (cls instanceof RidgeClassifierCV) {
+            double[] probs = new double[header.numClasses()];
+            probs[(int) ((RidgeClassifierCV) cls).classify(features)] = 1;
+            return probs;
+        }
+        return cls.distributionForInstance(instance(header));
+    }
+
+    private Instance instance(Instances header) {
+        // the feature array is replaced whenever a classifier with a different number of features uses this scratch
+        if (instance == null || instanceFeatures != features) {
+            instance = new DenseInstance(1, features);
+            instanceFeatures = features;
+        }
+        instance.setDataset(header);
+        return instance;
+    }
+}
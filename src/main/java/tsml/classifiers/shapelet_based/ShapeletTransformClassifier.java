@@ -418,7 +418,7 @@ public class ShapeletTransformClassifier  extends EnhancedAbstractClassifier
     public void configureDefaultShapeletTransform(){
     searchType=ShapeletSearch.SearchType.FULL;
 
-    transformOptions.setDistanceType(ShapeletDistance.DistanceType.IMPROVED_ONLINE);
+    transformOptions.setDistanceType(ShapeletDistance.DistanceType.SLIDING);
     transformOptions.setQualityMeasure(ShapeletQuality.ShapeletQualityChoice.INFORMATION_GAIN);
     transformOptions.setRescalerType(ShapeletDistance.RescalerType.NORMALISATION);
     transformOptions.setRoundRobin(true);
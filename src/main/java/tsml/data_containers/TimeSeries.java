@@ -17,9 +17,10 @@
 
 package tsml.data_containers;
 
+import com.google.common.primitives.Doubles;
+
 import java.io.Serializable;
 import java.util.*;
-import java.util.stream.Collectors;
 import java.util.stream.DoubleStream;
 import java.util.stream.Stream;
 
@@ -29,6 +30,11 @@ import java.util.stream.Stream;
  * The model for the indexes is the first is always zero the other indexes are in units of md.increment
  * Hopefully most of this can be encapsulated, so if the data has equal increments then indices is null and the user
  *
+ * Values are held in a primitive array rather than a list of boxed doubles. List based accessors are views over that
+ * array, and getValueArrayView() hands out the array itself for hot loops which cannot afford to copy. A series may
+ * also be a view onto a region of a larger array, e.g. a column of a packed TimeSeriesColumns store, which
+ * getBackingArray() and getOffset() expose without copying.
+ *
  * @author Aaron Bostrom, 2020
  */
 public class TimeSeries implements Iterable<Double>, Serializable {
@@ -36,7 +42,9 @@ public class TimeSeries implements Iterable<Double>, Serializable {
     public final static double DEFAULT_VALUE = Double.NaN;
     private final static List<Double> EMPTY_INDICES = Collections.emptyList();
 
-    private List<Double> series;
+    private double[] series;
+    private int offset;
+    private int length;
     private List<Double> indices = EMPTY_INDICES;
 
     // just for internal use
@@ -48,9 +56,20 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @param data time series raw data
      */
     public TimeSeries(double[] data){
-        series = new ArrayList<Double>();
-        for(double value : data)
-            series.add(value);
+        this(data, 0, data.length);
+    }
+
+    /**
+     * Create a TimeSeries object from a region of an array of time series data.
+     *
+     * @param data time series raw data
+     * @param offset index in data of the first value
+     * @param length number of values
+     */
+    public TimeSeries(double[] data, int offset, int length) {
+        checkRange(data, offset, length);
+        series = Arrays.copyOfRange(data, offset, offset + length);
+        this.length = length;
     }
 
     /**
@@ -59,7 +78,8 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @param data time series raw data
      */
     public TimeSeries(List<Double> data) {
-        series = new ArrayList<>(data);
+        series = Doubles.toArray(data);
+        length = series.length;
     }
 
     /**
@@ -68,7 +88,55 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @param other TimeSeries object
      */
     public TimeSeries(TimeSeries other) {
-        this(other.series);
+        this(other.series, other.offset, other.length);
+    }
+
+    /**
+     * Create a TimeSeries object which takes ownership of the array passed rather than copying it. The caller must
+     * not modify the array afterwards.
+     *
+     * @param data time series raw data
+     * @return a new TimeSeries object backed by data
+     */
+    public static TimeSeries wrap(double[] data) {
+        return wrap(data, 0, data.length);
+    }
+
+    /**
+     * Create a TimeSeries object which is a view onto a region of the array passed. No values are copied and the caller
+     * must not modify the region afterwards.
+     *
+     * @param data time series raw data
+     * @param offset index in data of the first value
+     * @param length number of values
+     * @return a new TimeSeries object backed by data
+     */
+    public static TimeSeries wrap(double[] data, int offset, int length) {
+        checkRange(data, offset, length);
+        final TimeSeries ts = new TimeSeries();
+        ts.series = data;
+        ts.offset = offset;
+        ts.length = length;
+        return ts;
+    }
+
+    private static void checkRange(double[] data, int offset, int length) {
+        if(offset < 0 || length < 0 || offset + length > data.length) {
+            throw new IndexOutOfBoundsException("region [" + offset + ", " + (offset + length) + ") out of bounds for length " + data.length);
+        }
+    }
+
+    private void checkSubRange(int startInclusive, int endExclusive) {
+        if(startInclusive < 0 || endExclusive > length || startInclusive > endExclusive) {
+            throw new IndexOutOfBoundsException("range [" + startInclusive + ", " + endExclusive + ") out of bounds for length " + length);
+        }
+    }
+
+    private int checkIndex(int index) {
+        if(index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + length);
+        }
+        return offset + index;
     }
 
     /**
@@ -77,7 +145,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return int length of series
      */
     public int getSeriesLength() {
-        return series.size();
+        return length;
     }
 
     /**
@@ -89,7 +157,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      */
     public boolean hasValidValueAt(int index) {
         // test whether its out of range, or NaN
-        return index < series.size() && Double.isFinite(series.get(index));
+        return index >= 0 && index < length && Double.isFinite(series[offset + index]);
     }
 
     /**
@@ -99,7 +167,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return value at index
      */
     public double getValue(int index){
-        return series.get(index);
+        return series[checkIndex(index)];
     }
 
     /**
@@ -109,7 +177,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return value at index
      */
     public Double get(int index) {
-        return series.get(index);
+        return series[checkIndex(index)];
     }
 
     /**
@@ -128,7 +196,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return stream of values in series
      */
     public DoubleStream streamValues() {
-        return series.stream().mapToDouble(Double::doubleValue);
+        return Arrays.stream(series, offset, offset + length);
     }
 
     /**
@@ -137,16 +205,16 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return stream of doubles in series
      */
     public Stream<Double> stream() {
-        return series.stream();
+        return streamValues().boxed();
     }
 
     /**
-     * Returns all values in series.
+     * Returns all values in series. The list is a fixed size view over the underlying values.
      *
      * @return values in series
      */
     public List<Double> getSeries() {
-        return series;
+        return Doubles.asList(series).subList(offset, offset + length);
     }
 
     /**
@@ -165,8 +233,8 @@ public class TimeSeries implements Iterable<Double>, Serializable {
     public String toString(){
         StringBuilder sb = new StringBuilder();
 
-        for(double val : series) {
-            sb.append(val).append(',');
+        for(int i = 0; i < length; i++) {
+            sb.append(series[offset + i]).append(',');
         }
 
         return sb.substring(0, sb.length() - 1);
@@ -178,7 +246,50 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return values in series
      */
 	public double[] toValueArray() {
-		return getSeries().stream().mapToDouble(Double::doubleValue).toArray();
+		return Arrays.copyOfRange(series, offset, offset + length);
+    }
+
+    /**
+     * Returns the array holding the values in the series without copying. The array must be treated as read only.
+     * If this series is a view onto part of a larger array the values are copied out instead, so hot loops over
+     * packed data should read the region given by getBackingArray() and getOffset().
+     *
+     * @return values in series
+     */
+    public double[] getValueArrayView() {
+        if(isView()) {
+            return toValueArray();
+        }
+        return series;
+    }
+
+    /**
+     * Returns the array the values are held in without copying, even if this series is a view. The values run from
+     * getOffset() for getSeriesLength() values and the array may hold other values either side. The array must be
+     * treated as read only.
+     *
+     * @return array holding the values in series
+     */
+    public double[] getBackingArray() {
+        return series;
+    }
+
+    /**
+     * Returns the index in getBackingArray() of the first value in the series.
+     *
+     * @return offset of the series in its array
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns whether this series is a view onto part of a larger array.
+     *
+     * @return true if a view, false if the series owns its array
+     */
+    public boolean isView() {
+        return offset != 0 || length != series.length;
     }
 
     /**
@@ -188,7 +299,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return a new TimeSeries object
      */
     public TimeSeries getVSlice(int[] indexesToKeep) {
-        return new TimeSeries(getVSliceArray(indexesToKeep));
+        return wrap(getVSliceArray(indexesToKeep));
     }
 
     /**
@@ -231,7 +342,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return a new TimeSeries object
      */
     public TimeSeries getVSliceComplement(int[] indexesToRemove) {
-        return new TimeSeries(getVSliceComplementArray(indexesToRemove));
+        return wrap(getVSliceComplementArray(indexesToRemove));
     }
 
     /**
@@ -255,14 +366,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return a list of new series
      */
     public List<Double> getVSliceComplementList(List<Integer> indexesToRemove){
-        //if the current index isn't in the removal list, then copy across.
-        List<Double> out = new ArrayList<>(this.getSeriesLength() - indexesToRemove.size());
-        for(int i=0; i<this.getSeriesLength(); ++i){
-            if(!indexesToRemove.contains(i))
-                out.add(getOrDefault(i));
-        }
-
-        return out;
+        return Doubles.asList(getVSliceComplementArray(indexesToRemove));
     }
 
     /**
@@ -272,7 +376,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return a list of new series
      */
     public List<Double> getVSliceComplementList(int[] indexesToRemove) {
-        return getVSliceComplementList(Arrays.stream(indexesToRemove).boxed().collect(Collectors.toList()));
+        return Doubles.asList(getVSliceComplementArray(indexesToRemove));
     }
 
     /**
@@ -292,7 +396,8 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return an array of new series
      */
     public double[] getVSliceComplementArray(int[] indexesToRemove){
-        return getVSliceComplementArray(Arrays.stream(indexesToRemove).boxed().collect(Collectors.toList()));
+        //if the current index isn't in the removal list, then copy across.
+        return getVSliceArray(indexMask(indexesToRemove, false));
     }
 
     /**
@@ -302,7 +407,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return an array of new series
      */
     public double[] getVSliceComplementArray(List<Integer> indexesToRemove){
-        return getVSliceComplementList(indexesToRemove).stream().mapToDouble(Double::doubleValue).toArray();
+        return getVSliceComplementArray(indexesToRemove.stream().mapToInt(Integer::intValue).toArray());
     }
 
     /**
@@ -322,14 +427,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return a list of new series
      */
     public List<Double> getVSliceList(List<Integer> indexesToKeep){
-        //if the current index isn't in the removal list, then copy across.
-        List<Double> out = new ArrayList<>(indexesToKeep.size());
-        for(int i=0; i<this.getSeriesLength(); ++i){
-            if(indexesToKeep.contains(i))
-                out.add(getOrDefault(i));
-        }
-
-        return out;
+        return Doubles.asList(getVSliceArray(indexesToKeep));
     }
 
     /**
@@ -339,7 +437,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return a list of new series
      */
     public List<Double> getVSliceList(int[] indexesToKeep) {
-        return getVSliceList(Arrays.stream(indexesToKeep).boxed().collect(Collectors.toList()));
+        return Doubles.asList(getVSliceArray(indexesToKeep));
     }
 
     /**
@@ -369,7 +467,8 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return a list of new series
      */
     public double[] getVSliceArray(int[] indexesToKeep) {
-        return getVSliceArray(Arrays.stream(indexesToKeep).boxed().collect(Collectors.toList()));
+        //if the current index is in the keep list, then copy across.
+        return getVSliceArray(indexMask(indexesToKeep, true));
     }
 
     /**
@@ -379,7 +478,49 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return a list of new series
      */
     public double[] getVSliceArray(List<Integer> indexesToKeep) {
-        return getVSliceList(indexesToKeep).stream().mapToDouble(Double::doubleValue).toArray();
+        return getVSliceArray(indexesToKeep.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Builds a mask over the series marking the indexes passed with the given value and all others with the opposite.
+     * Indexes outside the series are ignored.
+     *
+     * @param indexes to mark
+     * @param value to mark the indexes with
+     * @return mask over the series
+     */
+    private boolean[] indexMask(int[] indexes, boolean value) {
+        final boolean[] mask = new boolean[length];
+        if(!value) {
+            Arrays.fill(mask, true);
+        }
+        for(int index : indexes) {
+            if(index >= 0 && index < length) {
+                mask[index] = value;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns an array of the values at the indexes set in the mask, in series order.
+     *
+     * @param mask over the series
+     * @return an array of values
+     */
+    private double[] getVSliceArray(boolean[] mask) {
+        int count = 0;
+        for(boolean keep : mask) {
+            if(keep) count++;
+        }
+        final double[] out = new double[count];
+        int j = 0;
+        for(int i = 0; i < mask.length; i++) {
+            if(mask[i]) {
+                out[j++] = getOrDefault(i);
+            }
+        }
+        return out;
     }
 
     /**
@@ -388,7 +529,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return series iterator
      */
     @Override public Iterator<Double> iterator() {
-        return series.iterator();
+        return getSeries().iterator();
     }
 
     /**
@@ -400,7 +541,7 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return Sliding window of series
      */
     public List<Double> getVSliceList(int startInclusive, int endExclusive) {
-        return series.subList(startInclusive, endExclusive);
+        return getSeries().subList(startInclusive, endExclusive);
     }
 
     /**
@@ -412,7 +553,8 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return Sliding window of series
      */
     public double[] getVSliceArray(int startInclusive, int endExclusive) {
-        return getVSliceList(startInclusive, endExclusive).stream().mapToDouble(d -> d).toArray();
+        checkSubRange(startInclusive, endExclusive);
+        return Arrays.copyOfRange(series, offset + startInclusive, offset + endExclusive);
     }
 
     /**
@@ -424,9 +566,9 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return Sliding window of series
      */
     public TimeSeries getVSlice(int startInclusive, int endExclusive) {
-        final TimeSeries ts = new TimeSeries();
-        ts.series = getVSliceList(startInclusive, endExclusive);
-        return ts;
+        checkSubRange(startInclusive, endExclusive);
+        // share the values rather than copying, as the list based implementation did
+        return wrap(series, offset + startInclusive, endExclusive - startInclusive);
     }
 
     /**
@@ -442,7 +584,15 @@ public class TimeSeries implements Iterable<Double>, Serializable {
             return false;
         }
         final TimeSeries that = (TimeSeries) other;
-        return Objects.equals(series, that.series);
+        if(length != that.length) {
+            return false;
+        }
+        for(int i = 0; i < length; i++) {
+            if(Double.doubleToLongBits(series[offset + i]) != Double.doubleToLongBits(that.series[that.offset + i])) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -451,7 +601,11 @@ public class TimeSeries implements Iterable<Double>, Serializable {
      * @return hash code
      */
     @Override public int hashCode() {
-        return Objects.hash(series);
+        int result = 1;
+        for(int i = 0; i < length; i++) {
+            result = 31 * result + Double.hashCode(series[offset + i]);
+        }
+        return result;
     }
 
     /**
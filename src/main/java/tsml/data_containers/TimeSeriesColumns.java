@@ -0,0 +1,277 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Packed, column oriented storage for a collection of time series instances. Each dimension is held in a single
+ * contiguous array with the series of every instance laid end to end. An offset and length table per dimension
+ * locates each instance's series, so unequal length data is supported. Instances which lack a dimension have a length
+ * of zero in that dimension.
+ *
+ * When every series in a dimension has the same length the column is a row major [instance][time] matrix, so batch
+ * code can walk it with a fixed stride.
+ */
+public class TimeSeriesColumns implements Serializable {
+
+    // [dim] all values of all instances in that dimension
+    private final double[][] columns;
+    // [dim][inst] index in the column of the first value of the inst's series
+    private final int[][] offsets;
+    // [dim][inst] length of the inst's series, 0 if the inst does not have the dimension
+    private final int[][] lengths;
+    // [inst] number of dimensions in the inst
+    private final int[] numDimensions;
+    private final int numInstances;
+
+    /**
+     * Pack the instances passed into columns. The values are copied.
+     *
+     * @param insts to pack
+     */
+    public TimeSeriesColumns(Iterable<? extends TimeSeriesInstance> insts) {
+        final List<TimeSeriesInstance> list = new ArrayList<>();
+        int maxNumDimensions = 0;
+        for(TimeSeriesInstance inst : insts) {
+            list.add(inst);
+            maxNumDimensions = Math.max(maxNumDimensions, inst.getNumDimensions());
+        }
+        numInstances = list.size();
+        numDimensions = new int[numInstances];
+        offsets = new int[maxNumDimensions][numInstances];
+        lengths = new int[maxNumDimensions][numInstances];
+        columns = new double[maxNumDimensions][];
+
+        // first pass to size each column
+        final long[] columnSizes = new long[maxNumDimensions];
+        for(int i = 0; i < numInstances; i++) {
+            final TimeSeriesInstance inst = list.get(i);
+            numDimensions[i] = inst.getNumDimensions();
+            for(int d = 0; d < numDimensions[i]; d++) {
+                final int length = inst.get(d).getSeriesLength();
+                offsets[d][i] = (int) columnSizes[d];
+                lengths[d][i] = length;
+                columnSizes[d] += length;
+            }
+        }
+        for(int d = 0; d < maxNumDimensions; d++) {
+            if(columnSizes[d] > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("dimension " + d + " has " + columnSizes[d] + " values, too many to pack into one column");
+            }
+            columns[d] = new double[(int) columnSizes[d]];
+        }
+
+        // second pass to copy the values in
+        for(int i = 0; i < numInstances; i++) {
+            final TimeSeriesInstance inst = list.get(i);
+            for(int d = 0; d < numDimensions[i]; d++) {
+                final TimeSeries ts = inst.get(d);
+                for(int t = 0; t < lengths[d][i]; t++) {
+                    columns[d][offsets[d][i] + t] = ts.getValue(t);
+                }
+            }
+        }
+    }
+
+    /**
+     * Create columns from raw values which are already packed, e.g. read from a binary file. The arrays are used as
+     * given rather than copied, and the offsets are derived by laying the series end to end in instance order.
+     *
+     * @param columns [dim] all values in that dimension
+     * @param lengths [dim][inst] length of each series, 0 if the instance does not have the dimension
+     * @param numDimensions [inst] number of dimensions in each instance
+     */
+    public TimeSeriesColumns(double[][] columns, int[][] lengths, int[] numDimensions) {
+        if(columns.length != lengths.length) {
+            throw new IllegalArgumentException("mismatch between " + columns.length + " columns and " + lengths.length + " length tables");
+        }
+        this.columns = columns;
+        this.lengths = lengths;
+        this.numDimensions = numDimensions;
+        numInstances = numDimensions.length;
+        offsets = new int[columns.length][numInstances];
+        for(int d = 0; d < columns.length; d++) {
+            if(lengths[d].length != numInstances) {
+                throw new IllegalArgumentException("dimension " + d + " has " + lengths[d].length + " lengths, expected " + numInstances);
+            }
+            long offset = 0;
+            for(int i = 0; i < numInstances; i++) {
+                offsets[d][i] = (int) offset;
+                offset += lengths[d][i];
+            }
+            if(offset != columns[d].length) {
+                throw new IllegalArgumentException("dimension " + d + " has " + columns[d].length + " values, expected " + offset);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of instances packed.
+     *
+     * @return number of instances
+     */
+    public int numInstances() {
+        return numInstances;
+    }
+
+    /**
+     * Returns the highest number of dimensions from the instances packed, i.e. the number of columns.
+     *
+     * @return number of columns
+     */
+    public int getMaxNumDimensions() {
+        return columns.length;
+    }
+
+    /**
+     * Returns the number of dimensions in an instance.
+     *
+     * @param inst index of the instance
+     * @return number of dimensions
+     */
+    public int getNumDimensions(int inst) {
+        return numDimensions[inst];
+    }
+
+    /**
+     * Returns the contiguous array holding every value in a dimension. The array must be treated as read only.
+     *
+     * @param dim index of the dimension
+     * @return column of values
+     */
+    public double[] getColumn(int dim) {
+        return columns[dim];
+    }
+
+    /**
+     * Returns the index in the column of the first value of an instance's series.
+     *
+     * @param inst index of the instance
+     * @param dim index of the dimension
+     * @return offset into the column
+     */
+    public int getOffset(int inst, int dim) {
+        return offsets[dim][inst];
+    }
+
+    /**
+     * Returns the length of an instance's series.
+     *
+     * @param inst index of the instance
+     * @param dim index of the dimension
+     * @return length of the series, 0 if the instance does not have the dimension
+     */
+    public int getLength(int inst, int dim) {
+        return lengths[dim][inst];
+    }
+
+    /**
+     * Returns a single value.
+     *
+     * @param inst index of the instance
+     * @param dim index of the dimension
+     * @param index time point in the series
+     * @return value
+     */
+    public double getValue(int inst, int dim, int index) {
+        if(index < 0 || index >= lengths[dim][inst]) {
+            throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + lengths[dim][inst]);
+        }
+        return columns[dim][offsets[dim][inst] + index];
+    }
+
+    /**
+     * Returns the length shared by every series in a dimension, or -1 if the lengths differ. When this is not -1 the
+     * column can be read as a row major matrix with this stride.
+     *
+     * @param dim index of the dimension
+     * @return common length or -1
+     */
+    public int getStride(int dim) {
+        final int[] dimLengths = lengths[dim];
+        if(dimLengths.length == 0) {
+            return 0;
+        }
+        for(int length : dimLengths) {
+            if(length != dimLengths[0]) {
+                return -1;
+            }
+        }
+        return dimLengths[0];
+    }
+
+    /**
+     * Copies an instance's series into the destination array.
+     *
+     * @param inst index of the instance
+     * @param dim index of the dimension
+     * @param dest array to copy into
+     * @param destPos index in dest to start at
+     */
+    public void copySeries(int inst, int dim, double[] dest, int destPos) {
+        System.arraycopy(columns[dim], offsets[dim][inst], dest, destPos, lengths[dim][inst]);
+    }
+
+    /**
+     * Copies a contiguous block of instances from a dimension into a 2d array, one row per instance. This is a single
+     * sequential sweep of the column so is much kinder to the cache than gathering the series instance by instance.
+     *
+     * @param dim index of the dimension
+     * @param fromInclusive first instance (inclusive)
+     * @param toExclusive last instance (exclusive)
+     * @return 2d array of values, [instance][time]
+     */
+    public double[][] getBatch(int dim, int fromInclusive, int toExclusive) {
+        final double[][] out = new double[toExclusive - fromInclusive][];
+        for(int i = fromInclusive; i < toExclusive; i++) {
+            final int offset = offsets[dim][i];
+            out[i - fromInclusive] = Arrays.copyOfRange(columns[dim], offset, offset + lengths[dim][i]);
+        }
+        return out;
+    }
+
+    /**
+     * Returns a TimeSeries which is a view onto an instance's series. No values are copied.
+     *
+     * @param inst index of the instance
+     * @param dim index of the dimension
+     * @return view of the series
+     */
+    public TimeSeries getSeries(int inst, int dim) {
+        return TimeSeries.wrap(columns[dim], offsets[dim][inst], lengths[dim][inst]);
+    }
+
+    /**
+     * Returns a list of views, one per dimension of an instance.
+     *
+     * @param inst index of the instance
+     * @return list of series views
+     */
+    public List<TimeSeries> getSeries(int inst) {
+        final List<TimeSeries> out = new ArrayList<>(numDimensions[inst]);
+        for(int d = 0; d < numDimensions[inst]; d++) {
+            out.add(getSeries(inst, d));
+        }
+        return out;
+    }
+
+}
@@ -232,6 +232,22 @@ public class TimeSeriesInstance implements Iterable<TimeSeries>, Serializable {
         dataChecks();
     }
 
+    /**
+     * Create an instance from a list of series, setting both the class label
+     * index and regression target.
+     *
+     * @param series      raw data
+     * @param labelIndex  of class label
+     * @param targetValue value
+     */
+    public TimeSeriesInstance(List<? extends TimeSeries> series, int labelIndex, double targetValue) {
+        seriesDimensions = new ArrayList<>(series);
+        this.labelIndex = labelIndex;
+        this.targetValue = targetValue;
+
+        dataChecks();
+    }
+
     /**
      * Returns a discretised label index.
      *
@@ -280,7 +296,13 @@ public class TimeSeriesInstance implements Iterable<TimeSeries>, Serializable {
      * @param other TimeSeriesInstance
      */
     private TimeSeriesInstance(double[][] data, TimeSeriesInstance other) {
-        this(data, Double.NaN);
+        seriesDimensions = new ArrayList<TimeSeries>(data.length);
+
+        // the data is freshly sliced so no need to copy it again
+        for (double[] in : data) {
+            seriesDimensions.add(TimeSeries.wrap(in));
+        }
+
         labelIndex = other.labelIndex;
         targetValue = other.targetValue;
 
@@ -351,7 +373,15 @@ public class TimeSeriesInstance implements Iterable<TimeSeries>, Serializable {
      */
     private void calculateIfMissing() {
         // if any of the series have a NaN value, across all dimensions then this is true.
-        hasMissing = seriesDimensions.stream().anyMatch(e -> e.streamValues().anyMatch(Double::isNaN));
+        hasMissing = false;
+        for (TimeSeries ts : seriesDimensions) {
+            for (int i = 0; i < ts.getSeriesLength(); i++) {
+                if (Double.isNaN(ts.getValue(i))) {
+                    hasMissing = true;
+                    return;
+                }
+            }
+        }
     }
 
     /**
@@ -668,13 +698,37 @@ public class TimeSeriesInstance implements Iterable<TimeSeries>, Serializable {
         return output;
     }
 
+    /**
+     * Returns a 2d array, containing all dimensions and series values, without copying the values. The arrays must be
+     * treated as read only.
+     *
+     * @return each dimension of series
+     */
+    public double[][] getValueArrayView() {
+        double[][] output = new double[this.seriesDimensions.size()][];
+        for (int i = 0; i < output.length; ++i) {
+            output[i] = seriesDimensions.get(i).getValueArrayView();
+        }
+        return output;
+    }
+
+    /**
+     * Returns the values of the dimension passed without copying. The array must be treated as read only.
+     *
+     * @param dim to get
+     * @return array of series
+     */
+    public double[] getValueArrayView(int dim) {
+        return seriesDimensions.get(dim).getValueArrayView();
+    }
+
     /**
      * Returns a transposed 2d array.
      *
      * @return transposed array
      */
     public double[][] toTransposedArray() {
-        double[][] original = this.toValueArray();
+        double[][] original = this.getValueArrayView();
         double[][] transposed = new double[maxLength][seriesDimensions.size()];
 
         // for each dimension
@@ -766,7 +820,7 @@ public class TimeSeriesInstance implements Iterable<TimeSeries>, Serializable {
      * @return 2d array
      */
     public double[][] getHSliceArray(int startInclusive, int endExclusive) {
-        return getHSliceList(startInclusive, endExclusive).stream().map(dim -> dim.stream().mapToDouble(d -> d).toArray()).toArray(double[][]::new);
+        return seriesDimensions.subList(startInclusive, endExclusive).stream().map(TimeSeries::toValueArray).toArray(double[][]::new);
     }
 
     /**
@@ -790,7 +844,7 @@ public class TimeSeriesInstance implements Iterable<TimeSeries>, Serializable {
      * @return 2d array
      */
     public double[][] getVSliceArray(int startInclusive, int endExclusive) {
-        return getVSliceList(startInclusive, endExclusive).stream().map(dim -> dim.stream().mapToDouble(d -> d).toArray()).toArray(double[][]::new);
+        return seriesDimensions.stream().map(dim -> dim.getVSliceArray(startInclusive, endExclusive)).toArray(double[][]::new);
     }
 
     /**
@@ -173,6 +173,9 @@ public class TimeSeriesInstances implements Iterable<TimeSeriesInstance>, Serial
 
     private int[] classCounts;
 
+    // packed copy of the data, built on demand and dropped whenever the data changes
+    private transient TimeSeriesColumns columns;
+
     public TimeSeriesInstances(final String[] classLabels) {
         this.classLabels = classLabels;
 
@@ -337,6 +340,7 @@ public class TimeSeriesInstances implements Iterable<TimeSeriesInstance>, Serial
      */
     public void add(final TimeSeriesInstance newSeries) {
         seriesCollection.add(newSeries);
+        columns = null;
 
         //guard for if we're going to force update classCounts after.
         if (classCounts != null && newSeries.getLabelIndex() < classCounts.length)
@@ -400,6 +404,82 @@ public class TimeSeriesInstances implements Iterable<TimeSeriesInstance>, Serial
         return output;
     }
 
+    /**
+     * Returns a 3d array in the same layout as toValueArray() but without copying the values. The arrays must be
+     * treated as read only.
+     *
+     * @return values in 3d array format
+     */
+    public double[][][] getValueArrayView() {
+        final double[][][] output = new double[seriesCollection.size()][][];
+        for (int i = 0; i < output.length; ++i) {
+            output[i] = seriesCollection.get(i).getValueArrayView();
+        }
+        return output;
+    }
+
+    /**
+     * Returns the data packed into contiguous columns, one per dimension. If this object was created by pack() the
+     * columns are the storage backing every series, otherwise they are built on first use and cached until the data
+     * changes via add(). Callers modifying the list from getAll() must not rely on the cached columns.
+     *
+     * @return columnar view of the data
+     */
+    public TimeSeriesColumns getColumns() {
+        if (columns == null) {
+            columns = new TimeSeriesColumns(seriesCollection);
+        }
+        return columns;
+    }
+
+    /**
+     * Returns a copy of this data where every series is a view onto a packed TimeSeriesColumns store rather than
+     * owning its own array. This keeps each dimension in one contiguous block of memory, reducing per series overhead
+     * and making sweeps over the data cache friendly.
+     *
+     * @return packed copy of the data
+     */
+    public TimeSeriesInstances pack() {
+        final TimeSeriesColumns packed = new TimeSeriesColumns(seriesCollection);
+        final TimeSeriesInstances tsi = fromColumns(packed, getClassIndexes(), getTargetValues(), classLabels);
+        tsi.problemName = problemName;
+        tsi.description = description;
+        return tsi;
+    }
+
+    /**
+     * Creates a TimeSeriesInstances object where every series is a view onto the columns passed.
+     *
+     * @param columns packed values
+     * @param labelIndexes class label index of each instance, -1 if unlabelled
+     * @param targetValues regression target of each instance, NaN if not set
+     * @param classLabels class labels
+     * @return TimeSeriesInstances backed by the columns
+     */
+    public static TimeSeriesInstances fromColumns(TimeSeriesColumns columns, int[] labelIndexes, double[] targetValues, String[] classLabels) {
+        final List<TimeSeriesInstance> insts = new ArrayList<>(columns.numInstances());
+        for (int i = 0; i < columns.numInstances(); i++) {
+            insts.add(new TimeSeriesInstance(columns.getSeries(i), labelIndexes[i], targetValues[i]));
+        }
+        final TimeSeriesInstances tsi = new TimeSeriesInstances(insts, classLabels);
+        tsi.columns = columns;
+        return tsi;
+    }
+
+    /**
+     * Returns an array containing the target value of each instance.
+     *
+     * @return array of target values
+     */
+    public double[] getTargetValues() {
+        double[] out = new double[numInstances()];
+        int index = 0;
+        for (TimeSeriesInstance inst : seriesCollection) {
+            out[index++] = inst.getTargetValue();
+        }
+        return out;
+    }
+
     /**
      * Returns an array containing each class index.
      *
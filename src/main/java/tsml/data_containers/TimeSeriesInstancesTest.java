@@ -17,5 +17,55 @@
  
 package tsml.data_containers;
 
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
 public class TimeSeriesInstancesTest {
+
+    private TimeSeriesInstances insts;
+
+    @Before
+    public void before() {
+        insts = new TimeSeriesInstances(new double[][][] {
+                {{1, 2, 3}, {4, 5, 6}},
+                {{7, 8}, {9, Double.NaN, 10, 11}},
+                {{12, 13, 14}, {15, 16, 17}}
+        }, new int[] {0, 1, 0}, new String[] {"a", "b"});
+    }
+
+    @Test
+    public void testColumns() {
+        final TimeSeriesColumns columns = insts.getColumns();
+        assertEquals(3, columns.numInstances());
+        assertEquals(2, columns.getMaxNumDimensions());
+        assertArrayEquals(new double[] {1, 2, 3, 7, 8, 12, 13, 14}, columns.getColumn(0), 0d);
+        assertEquals(3, columns.getOffset(1, 0));
+        assertEquals(2, columns.getLength(1, 0));
+        assertEquals(Double.NaN, columns.getValue(1, 1, 1), 0d);
+        assertEquals(-1, columns.getStride(0));
+        assertArrayEquals(new double[][] {{7, 8}, {12, 13, 14}}, columns.getBatch(0, 1, 3));
+        assertSame(columns, insts.getColumns());
+    }
+
+    @Test
+    public void testPack() {
+        final TimeSeriesInstances packed = insts.pack();
+        assertEquals(insts, packed);
+        assertEquals(insts.hashCode(), packed.hashCode());
+        assertTrue(packed.get(1).get(1).isView());
+        assertTrue(packed.hasMissing());
+        assertFalse(packed.isEqualLength());
+        assertArrayEquals(insts.getClassIndexes(), packed.getClassIndexes());
+        assertArrayEquals(new double[] {15, 16, 17}, packed.get(2).get(1).getValueArrayView(), 0d);
+    }
+
+    @Test
+    public void testAddInvalidatesColumns() {
+        final TimeSeriesColumns columns = insts.getColumns();
+        insts.add(new TimeSeriesInstance(new double[][] {{0, 0, 0}, {0, 0, 0}}, 1, insts.getClassLabels()));
+        assertNotSame(columns, insts.getColumns());
+        assertEquals(4, insts.getColumns().numInstances());
+    }
 }
@@ -89,6 +89,39 @@ public class TimeSeriesTest {
         }
     }
     
+    @Test
+    public void testValueArrayView() {
+        assertArrayEquals(array, ts.getValueArrayView(), 0d);
+        assertSame(ts.getValueArrayView(), ts.getValueArrayView());
+        assertNotSame(ts.getValueArrayView(), ts.toValueArray());
+    }
+
+    @Test
+    public void testBackingArray() {
+        assertEquals(0, ts.getOffset());
+        assertSame(ts.getValueArrayView(), ts.getBackingArray());
+        final TimeSeries view = TimeSeries.wrap(array, 1, 3);
+        assertSame(array, view.getBackingArray());
+        assertEquals(1, view.getOffset());
+        assertEquals(3, view.getSeriesLength());
+    }
+
+    @Test
+    public void testWrap() {
+        ts = TimeSeries.wrap(array);
+        assertSame(array, ts.getValueArrayView());
+        assertEquals(new TimeSeries(array), ts);
+        assertEquals(new TimeSeries(array).hashCode(), ts.hashCode());
+    }
+
+    @Test
+    public void testVSliceArray() {
+        assertArrayEquals(new double[] {second, fourth}, ts.getVSliceArray(new int[] {3, 1, 10}), 0d);
+        assertArrayEquals(new double[] {first, third}, ts.getVSliceComplementArray(new int[] {1, 3}), 0d);
+        assertArrayEquals(new double[] {second, third}, ts.getVSliceArray(1, 3), 0d);
+        assertEquals(Arrays.asList(second, third), ts.getVSlice(1, 3).getSeries());
+    }
+    
     // todo test hslice
     // todo test vslice
     // todo test metadata / stats
@@ -0,0 +1,209 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers.ts_fileIO;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import tsml.data_containers.TimeSeries;
+import tsml.data_containers.TimeSeriesColumns;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+
+/**
+ * Reads the binary format written by TSBinaryWriter. Only the header is read on construction; each dimension's
+ * values are memory mapped, so opening a file costs next to nothing and the operating system shares the pages
+ * between every process reading the same file. Instances are materialised on demand, either one at a time through
+ * get() or all together through GetInstances(), which bulk copies each dimension into a packed TimeSeriesColumns
+ * store.
+ */
+public class TSBinaryReader {
+
+    private final String problemName;
+    private final String description;
+    private final String[] classLabels;
+    private final int numInstances;
+    private final int[] numDimensions;
+    private final int[] labelIndexes;
+    private final double[] targetValues;
+    // [dim][inst]
+    private final int[][] lengths;
+    private final long[][] offsets;
+    // [dim] mapped values, one buffer per dimension
+    private final DoubleBuffer[] columns;
+
+    private TimeSeriesInstances m_data;
+
+    public TSBinaryReader(File file) throws IOException {
+        // closing the channel leaves the column mappings valid
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // the header is read into the heap, only the values are mapped
+            final HeaderReader header = new HeaderReader(channel, file);
+            final ByteBuffer prefix = header.read(2 * Integer.BYTES);
+            if (prefix.getInt() != TSBinaryWriter.MAGIC) {
+                throw new IOException(file + " is not a binary ts file");
+            }
+            final int version = prefix.getInt();
+            if (version != TSBinaryWriter.VERSION) {
+                throw new IOException("unsupported binary ts version " + version + " in " + file);
+            }
+            problemName = header.readString();
+            description = header.readString();
+            classLabels = new String[header.readInt()];
+            for (int i = 0; i < classLabels.length; i++) {
+                classLabels[i] = header.readString();
+            }
+            numInstances = header.readInt();
+            final int numColumns = header.readInt();
+            numDimensions = header.readInts(numInstances);
+            labelIndexes = header.readInts(numInstances);
+            targetValues = new double[numInstances];
+            header.read(numInstances * Double.BYTES).asDoubleBuffer().get(targetValues);
+            lengths = new int[numColumns][];
+            offsets = new long[numColumns][numInstances];
+            for (int d = 0; d < numColumns; d++) {
+                lengths[d] = header.readInts(numInstances);
+            }
+            long position = header.position;
+            position += (Double.BYTES - position % Double.BYTES) % Double.BYTES;
+
+            columns = new DoubleBuffer[numColumns];
+            for (int d = 0; d < numColumns; d++) {
+                long size = 0;
+                for (int i = 0; i < numInstances; i++) {
+                    offsets[d][i] = size;
+                    size += lengths[d][i];
+                }
+                final long numBytes = size * Double.BYTES;
+                if (numBytes > Integer.MAX_VALUE) {
+                    throw new IOException("dimension " + d + " of " + file + " is too large to map");
+                }
+                if (position + numBytes > channel.size()) {
+                    throw new IOException(file + " is truncated");
+                }
+                columns[d] = channel.map(FileChannel.MapMode.READ_ONLY, position, numBytes)
+                                    .order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                position += numBytes;
+            }
+        }
+    }
+
+    /**
+     * Reads the header field by field from the start of the file.
+     */
+    private static class HeaderReader {
+
+        private final FileChannel channel;
+        private final File file;
+        private long position;
+
+        private HeaderReader(FileChannel channel, File file) {
+            this.channel = channel;
+            this.file = file;
+        }
+
+        private ByteBuffer read(int numBytes) throws IOException {
+            if (numBytes < 0 || position + numBytes > channel.size()) {
+                throw new IOException(file + " is truncated or not a binary ts file");
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate(numBytes).order(ByteOrder.LITTLE_ENDIAN);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new IOException(file + " is truncated");
+                }
+            }
+            position += numBytes;
+            buffer.flip();
+            return buffer;
+        }
+
+        private int readInt() throws IOException {
+            return read(Integer.BYTES).getInt();
+        }
+
+        private int[] readInts(int length) throws IOException {
+            final int[] ints = new int[length];
+            read(length * Integer.BYTES).asIntBuffer().get(ints);
+            return ints;
+        }
+
+        private String readString() throws IOException {
+            return new String(read(readInt()).array(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public String getProblemName() {
+        return problemName;
+    }
+
+    public String[] getClassLabels() {
+        return classLabels;
+    }
+
+    public int numInstances() {
+        return numInstances;
+    }
+
+    /**
+     * Materialises a single instance from the mapped file. Safe to call from multiple threads.
+     *
+     * @param index of the instance
+     * @return the instance
+     */
+    public TimeSeriesInstance get(int index) {
+        final List<TimeSeries> series = new ArrayList<>(numDimensions[index]);
+        for (int d = 0; d < numDimensions[index]; d++) {
+            final double[] values = new double[lengths[d][index]];
+            // duplicate so concurrent readers don't share a position
+            final DoubleBuffer column = columns[d].duplicate();
+            column.position((int) offsets[d][index]);
+            column.get(values);
+            series.add(TimeSeries.wrap(values));
+        }
+        return new TimeSeriesInstance(series, labelIndexes[index], targetValues[index]);
+    }
+
+    /**
+     * Materialises every instance, packed into one contiguous array per dimension. The result is cached.
+     *
+     * @return the instances
+     */
+    public TimeSeriesInstances GetInstances() {
+        if (m_data == null) {
+            final double[][] values = new double[columns.length][];
+            for (int d = 0; d < columns.length; d++) {
+                final DoubleBuffer column = columns[d].duplicate();
+                values[d] = new double[column.remaining()];
+                column.get(values[d]);
+            }
+            final TimeSeriesColumns packed = new TimeSeriesColumns(values, lengths, numDimensions);
+            m_data = TimeSeriesInstances.fromColumns(packed, labelIndexes, targetValues, classLabels);
+            m_data.setProblemName(problemName);
+            m_data.setDescription(description);
+        }
+        return m_data;
+    }
+}
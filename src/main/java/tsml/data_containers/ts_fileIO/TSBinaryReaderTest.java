@@ -0,0 +1,117 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers.ts_fileIO;
+
+import experiments.data.DatasetLoading;
+import experiments.data.TSBinaryConverter;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tsml.data_containers.TimeSeriesInstances;
+import weka.core.Instances;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.*;
+
+public class TSBinaryReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static TimeSeriesInstances roundTrip(TimeSeriesInstances data) throws IOException {
+        final File file = File.createTempFile("tsml", TSBinaryWriter.EXTENSION);
+        file.deleteOnExit();
+        final TSBinaryWriter writer = new TSBinaryWriter(file);
+        writer.setData(data);
+        writer.writeBatch();
+        final TSBinaryReader reader = new TSBinaryReader(file);
+        assertEquals(data.numInstances(), reader.numInstances());
+        for (int i = 0; i < data.numInstances(); i++) {
+            assertEquals(data.get(i), reader.get(i));
+        }
+        return reader.GetInstances();
+    }
+
+    @Test
+    public void testUnivariate() throws IOException {
+        final TimeSeriesInstances data = DatasetLoading.loadGunPointTS();
+        final TimeSeriesInstances read = roundTrip(data);
+        assertEquals(data, read);
+        assertEquals(data.getProblemName(), read.getProblemName());
+        assertArrayEquals(data.getClassLabels(), read.getClassLabels());
+    }
+
+    @Test
+    public void testUnequalLengthMultivariate() throws IOException {
+        final TimeSeriesInstances data = new TimeSeriesInstances(new double[][][] {
+                {{1, 2, 3}, {4, 5, 6}},
+                {{7, 8}, {9, Double.NaN, 10, 11}},
+                {{12}}
+        }, new double[] {0.5, 1.5, 2.5});
+        final TimeSeriesInstances read = roundTrip(data);
+        assertEquals(data, read);
+        assertArrayEquals(data.getTargetValues(), read.getTargetValues(), 0d);
+    }
+
+    @Test
+    public void testStaleBinaryIgnored() throws IOException {
+        final String source = DatasetLoading.BAKED_IN_TSC_DATA_PATH + "ItalyPowerDemand/ItalyPowerDemand_";
+        final File ts = new File(folder.getRoot(), "Data.ts");
+        final File tsb = new File(folder.getRoot(), "Data" + TSBinaryWriter.EXTENSION);
+        Files.copy(new File(source + "TRAIN.ts").toPath(), ts.toPath());
+        TSBinaryConverter.convert(ts, ts);
+        assertTrue(tsb.exists());
+        final File noExtension = new File(folder.getRoot(), "Data");
+        assertEquals(DatasetLoading.loadTSData(new File(source + "TRAIN.ts")), DatasetLoading.loadTSData(noExtension));
+
+        // the ts file is regenerated after conversion, so the binary copy is out of date
+        Files.copy(new File(source + "TEST.ts").toPath(), ts.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(ts.setLastModified(tsb.lastModified() + 10000));
+        assertEquals(DatasetLoading.loadTSData(new File(source + "TEST.ts")), DatasetLoading.loadTSData(noExtension));
+    }
+
+    @Test
+    public void testSplitFilesPreferUpToDateBinary() throws Exception {
+        final String source = DatasetLoading.BAKED_IN_TSC_DATA_PATH + "ItalyPowerDemand/ItalyPowerDemand_";
+        final File problem = folder.newFolder("Data");
+        final File train = new File(problem, "Data_TRAIN.ts");
+        final File test = new File(problem, "Data_TEST.ts");
+        Files.copy(new File(source + "TRAIN.ts").toPath(), train.toPath());
+        Files.copy(new File(source + "TEST.ts").toPath(), test.toPath());
+        TSBinaryConverter.convert(train, train);
+        TSBinaryConverter.convert(test, test);
+
+        // the ts files now hold different data, but are older than their binary copies, which are read instead
+        Files.copy(new File(source + "TEST.ts").toPath(), train.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        assertTrue(train.setLastModified(new File(problem, "Data_TRAIN" + TSBinaryWriter.EXTENSION).lastModified() - 10000));
+        assertTrue(test.setLastModified(new File(problem, "Data_TEST" + TSBinaryWriter.EXTENSION).lastModified() - 10000));
+        final Instances[] expected = DatasetLoading.sampleItalyPowerDemand(0);
+        Instances[] split = DatasetLoading.sampleDataset(folder.getRoot().getPath(), "Data", 0);
+        assertEquals(expected[0].numInstances(), split[0].numInstances());
+        assertEquals(expected[1].numInstances(), split[1].numInstances());
+
+        // once the ts file is changed after conversion, it is read instead of its out of date binary copy
+        assertTrue(train.setLastModified(new File(problem, "Data_TRAIN" + TSBinaryWriter.EXTENSION).lastModified() + 10000));
+        split = DatasetLoading.sampleDataset(folder.getRoot().getPath(), "Data", 0);
+        assertEquals(expected[1].numInstances(), split[0].numInstances());
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers.ts_fileIO;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+import tsml.data_containers.TimeSeriesColumns;
+import tsml.data_containers.TimeSeriesInstances;
+
+/**
+ * Writes TimeSeriesInstances in a compact binary format which TSBinaryReader can memory map. All numbers are little
+ * endian. The layout is:
+ *
+ * <pre>
+ * int     magic number, "TSB1"
+ * int     format version
+ * string  problem name            (strings are an int byte length followed by UTF-8 bytes)
+ * string  description
+ * int     number of class labels, followed by that many strings
+ * int     number of instances, n
+ * int     number of dimensions (the max across instances), d
+ * int[n]  number of dimensions in each instance
+ * int[n]  class label index of each instance
+ * double[n] target value of each instance
+ * int[d][n] length of each series, 0 where an instance lacks a dimension
+ * padding to an 8 byte boundary
+ * double[] the values of each dimension in turn, every instance's series laid end to end
+ * </pre>
+ *
+ * The payload matches the layout of TimeSeriesColumns, so a whole dimension can be read with one bulk copy.
+ */
+public class TSBinaryWriter {
+
+    public static final String EXTENSION = ".tsb";
+    static final int MAGIC = 0x54534231;
+    static final int VERSION = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    TimeSeriesInstances data;
+    WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long position;
+
+    public TSBinaryWriter() {}
+
+    public TSBinaryWriter(File output) throws IOException {
+        setDestination(output);
+    }
+
+    public void setData(TimeSeriesInstances dat) {
+        data = dat;
+    }
+
+    public void setDestination(OutputStream output) {
+        channel = Channels.newChannel(output);
+    }
+
+    public void setDestination(File output) throws FileNotFoundException {
+        channel = new FileOutputStream(output).getChannel();
+    }
+
+    public void writeBatch() throws IOException {
+        final TimeSeriesColumns columns = data.getColumns();
+        final int numInstances = columns.numInstances();
+        final int numColumns = columns.getMaxNumDimensions();
+        position = 0;
+        buffer.clear();
+
+        putInt(MAGIC);
+        putInt(VERSION);
+        putString(data.getProblemName());
+        putString(data.getDescription());
+        putInt(data.getClassLabels().length);
+        for (String label : data.getClassLabels()) {
+            putString(label);
+        }
+        putInt(numInstances);
+        putInt(numColumns);
+        for (int i = 0; i < numInstances; i++) {
+            putInt(columns.getNumDimensions(i));
+        }
+        for (int labelIndex : data.getClassIndexes()) {
+            putInt(labelIndex);
+        }
+        for (double targetValue : data.getTargetValues()) {
+            putDouble(targetValue);
+        }
+        for (int d = 0; d < numColumns; d++) {
+            for (int i = 0; i < numInstances; i++) {
+                putInt(columns.getLength(i, d));
+            }
+        }
+        while (position % Double.BYTES != 0) {
+            ensureCapacity(1);
+            buffer.put((byte) 0);
+            position++;
+        }
+        for (int d = 0; d < numColumns; d++) {
+            putDoubles(columns.getColumn(d));
+        }
+
+        flush();
+        channel.close();
+    }
+
+    private void ensureCapacity(int numBytes) throws IOException {
+        if (buffer.remaining() < numBytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void putInt(int value) throws IOException {
+        ensureCapacity(Integer.BYTES);
+        buffer.putInt(value);
+        position += Integer.BYTES;
+    }
+
+    private void putDouble(double value) throws IOException {
+        ensureCapacity(Double.BYTES);
+        buffer.putDouble(value);
+        position += Double.BYTES;
+    }
+
+    private void putDoubles(double[] values) throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            ensureCapacity(Double.BYTES);
+            final int count = Math.min(buffer.remaining() / Double.BYTES, values.length - offset);
+            buffer.asDoubleBuffer().put(values, offset, count);
+            buffer.position(buffer.position() + count * Double.BYTES);
+            position += (long) count * Double.BYTES;
+            offset += count;
+        }
+    }
+
+    private void putString(String value) throws IOException {
+        final byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        for (byte b : bytes) {
+            ensureCapacity(1);
+            buffer.put(b);
+            position++;
+        }
+    }
+}
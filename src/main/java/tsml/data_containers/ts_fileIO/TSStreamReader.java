@@ -0,0 +1,421 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers.ts_fileIO;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.*;
+
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+
+/**
+ * Streaming parser for sktime format (.ts) data. The header is read on construction, after which instances are
+ * parsed one line at a time on demand, either individually through the Iterator interface or in chunks through
+ * nextBatch(). Only one instance (or one chunk) is held at a time so data larger than the heap can be processed
+ * chunk-wise.
+ *
+ * The parser works directly on a large character buffer filled from the underlying reader. There is no Scanner,
+ * no regex and no String per value: values are parsed straight into primitive arrays.
+ */
+public class TSStreamReader implements Iterator<TimeSeriesInstance>, Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int EOF = -1;
+    // powers of ten which are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // max number of significant digits which is guaranteed to fit in the 53 bit mantissa of a double
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private int lineNumber = 1;
+
+    private final Map<String, String> variables = new HashMap<>();
+    private String problemName;
+    private boolean univariate;
+    private boolean missing;
+    private boolean timeStamps;
+    private boolean classLabel;
+    private String[] classLabels = TimeSeriesInstances.EMPTY_CLASS_LABELS;
+    private final Map<String, Integer> classLabelIndices = new HashMap<>();
+
+    // scratch space reused across lines
+    private char[] token = new char[64];
+    private int tokenLength;
+    private double[] values = new double[1024];
+    private int numValues;
+    private final List<double[]> dimensions = new ArrayList<>();
+
+    // lookahead for the iterator
+    private TimeSeriesInstance next;
+
+    public TSStreamReader(Reader reader) throws IOException {
+        this.reader = Objects.requireNonNull(reader);
+        readHeader();
+    }
+
+    public String getProblemName() {
+        return problemName;
+    }
+
+    public boolean isUnivariate() {
+        return univariate;
+    }
+
+    public boolean hasMissing() {
+        return missing;
+    }
+
+    public boolean hasTimeStamps() {
+        return timeStamps;
+    }
+
+    public boolean hasClassLabel() {
+        return classLabel;
+    }
+
+    public String[] getClassLabels() {
+        return classLabels;
+    }
+
+    /**
+     * Returns the raw header variables, keyed by their lower case name including the '@', e.g. "@serieslength".
+     *
+     * @return header variables
+     */
+    public Map<String, String> getVariables() {
+        return Collections.unmodifiableMap(variables);
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null) {
+            try {
+                next = readInstance();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public TimeSeriesInstance next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        final TimeSeriesInstance inst = next;
+        next = null;
+        return inst;
+    }
+
+    /**
+     * Reads up to the given number of instances.
+     *
+     * @param maxNumInstances to read
+     * @return the instances read, or null if no instances remain
+     */
+    public TimeSeriesInstances nextBatch(int maxNumInstances) {
+        final List<TimeSeriesInstance> batch = new ArrayList<>(Math.min(maxNumInstances, 1024));
+        while (batch.size() < maxNumInstances && hasNext()) {
+            batch.add(next());
+        }
+        if (batch.isEmpty()) {
+            return null;
+        }
+        final TimeSeriesInstances insts = new TimeSeriesInstances(batch, classLabels);
+        insts.setProblemName(problemName);
+        return insts;
+    }
+
+    /**
+     * Reads all remaining instances.
+     *
+     * @return the instances read
+     */
+    public TimeSeriesInstances readAll() {
+        final List<TimeSeriesInstance> insts = new ArrayList<>();
+        while (hasNext()) {
+            insts.add(next());
+        }
+        final TimeSeriesInstances data = new TimeSeriesInstances(insts, classLabels);
+        data.setProblemName(problemName);
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int peek() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return EOF;
+            }
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        final int c = peek();
+        if (c != EOF) {
+            position++;
+            if (c == '\n') {
+                lineNumber++;
+            }
+        }
+        return c;
+    }
+
+    private String readLine() throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = read()) != EOF && c != '\n') {
+            sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static boolean isInlineWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+
+    // this function reads upto and including the @data line.
+    private void readHeader() throws IOException {
+        while (true) {
+            int c = peek();
+            while (c != EOF && (isInlineWhitespace(c) || c == '\n')) {
+                read();
+                c = peek();
+            }
+            if (c == EOF) {
+                throw error("keyword " + TSReader.DATA + " expected");
+            }
+            final String line = readLine().trim();
+            if (line.startsWith("#")) {
+                continue;
+            }
+            final StringTokenizer tokenizer = new StringTokenizer(line);
+            final String key = tokenizer.nextToken().toLowerCase();
+            if (key.equals(TSReader.DATA.toLowerCase())) {
+                break;
+            } else if (key.equals(TSReader.CLASS_LABEL.toLowerCase())) {
+                classLabel = tokenizer.hasMoreTokens() && Boolean.parseBoolean(tokenizer.nextToken());
+                final List<String> labels = new ArrayList<>();
+                while (classLabel && tokenizer.hasMoreTokens()) {
+                    labels.add(tokenizer.nextToken());
+                }
+                classLabels = labels.toArray(new String[0]);
+                for (int i = 0; i < classLabels.length; i++) {
+                    classLabelIndices.putIfAbsent(classLabels[i], i);
+                }
+            } else {
+                variables.put(key, tokenizer.hasMoreTokens() ? tokenizer.nextToken() : "");
+            }
+        }
+
+        // these are required.
+        problemName = variables.get(TSReader.PROBLEM_NAME.toLowerCase());
+        if (problemName == null) {
+            throw error("keyword " + TSReader.PROBLEM_NAME + " expected");
+        }
+        final String univariateValue = variables.get(TSReader.UNIVARIATE.toLowerCase());
+        if (univariateValue == null) {
+            throw error("keyword " + TSReader.UNIVARIATE + " expected");
+        }
+        univariate = Boolean.parseBoolean(univariateValue);
+
+        // set optionals.
+        missing = Boolean.parseBoolean(variables.get(TSReader.MISSING.toLowerCase()));
+        timeStamps = Boolean.parseBoolean(variables.get(TSReader.TIME_STAMPS.toLowerCase()));
+        if (timeStamps) {
+            throw error("time stamped series are not supported");
+        }
+    }
+
+    /**
+     * Reads the next field on the current line into the token buffer, trimming surrounding whitespace.
+     *
+     * @return the character which terminated the field: ',', ':', '\n' or EOF
+     */
+    private int readField() throws IOException {
+        tokenLength = 0;
+        int c = read();
+        while (isInlineWhitespace(c)) {
+            c = read();
+        }
+        while (c != ',' && c != ':' && c != '\n' && c != EOF) {
+            if (tokenLength == token.length) {
+                token = Arrays.copyOf(token, tokenLength * 2);
+            }
+            token[tokenLength++] = (char) c;
+            c = read();
+        }
+        while (tokenLength > 0 && isInlineWhitespace(token[tokenLength - 1])) {
+            tokenLength--;
+        }
+        return c;
+    }
+
+    private void addValue(double value) {
+        if (numValues == values.length) {
+            values = Arrays.copyOf(values, numValues * 2);
+        }
+        values[numValues++] = value;
+    }
+
+    private TimeSeriesInstance readInstance() throws IOException {
+        // skip blank lines and comments
+        int c = peek();
+        while (c != EOF && (isInlineWhitespace(c) || c == '\n' || c == '#')) {
+            if (c == '#') {
+                readLine();
+            } else {
+                read();
+            }
+            c = peek();
+        }
+        if (c == EOF) {
+            return null;
+        }
+
+        final int line = lineNumber;
+        dimensions.clear();
+        numValues = 0;
+        boolean lastField;
+        do {
+            final int terminator = readField();
+            lastField = terminator == '\n' || terminator == EOF;
+            // empty fields, e.g. a trailing comma, are ignored. The last field on the line is the class label
+            // rather than a value when there are labels, so is left in the token buffer unparsed
+            if (tokenLength > 0 && !(classLabel && lastField)) {
+                addValue(parseDouble(token, tokenLength));
+            }
+            if (terminator == ':') {
+                dimensions.add(Arrays.copyOf(values, numValues));
+                numValues = 0;
+            }
+        } while (!lastField);
+
+        int labelIndex = -1;
+        if (classLabel) {
+            if (dimensions.isEmpty() || numValues > 0) {
+                throw new IOException("class label expected on line " + line);
+            }
+            final String label = new String(token, 0, tokenLength);
+            final Integer index = classLabelIndices.get(label);
+            if (index == null) {
+                throw new IOException("unknown class label '" + label + "' on line " + line);
+            }
+            labelIndex = index;
+        } else {
+            dimensions.add(Arrays.copyOf(values, numValues));
+        }
+
+        return new TimeSeriesInstance(dimensions.toArray(new double[0][]), labelIndex, classLabels);
+    }
+
+    /**
+     * Parses a double from the characters passed. Plain decimals with up to 15 significant digits and a small exponent,
+     * which covers the vast majority of values in the archives, are computed exactly with a single multiply or divide
+     * of two exactly representable doubles, so give the same result as Double.parseDouble. Anything else is handed to
+     * Double.parseDouble. Values which cannot be parsed, e.g. '?' for missing, are NaN.
+     *
+     * @param chars buffer holding the value
+     * @param length number of characters in the value
+     * @return the value
+     */
+    static double parseDouble(char[] chars, int length) {
+        int i = 0;
+        boolean negative = false;
+        if (chars[i] == '-' || chars[i] == '+') {
+            negative = chars[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int numDigits = 0;
+        int numSignificantDigits = 0;
+        int exponent = 0;
+        for (; i < length && chars[i] >= '0' && chars[i] <= '9'; i++, numDigits++) {
+            mantissa = mantissa * 10 + (chars[i] - '0');
+            if (mantissa != 0) numSignificantDigits++;
+        }
+        if (i < length && chars[i] == '.') {
+            for (i++; i < length && chars[i] >= '0' && chars[i] <= '9'; i++, numDigits++) {
+                mantissa = mantissa * 10 + (chars[i] - '0');
+                if (mantissa != 0) numSignificantDigits++;
+                exponent--;
+            }
+        }
+        if (i < length && (chars[i] == 'e' || chars[i] == 'E') && numDigits > 0) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < length && (chars[i] == '-' || chars[i] == '+')) {
+                negativeExponent = chars[i] == '-';
+                i++;
+            }
+            int explicitExponent = 0;
+            final int start = i;
+            for (; i < length && chars[i] >= '0' && chars[i] <= '9' && explicitExponent < 10000; i++) {
+                explicitExponent = explicitExponent * 10 + (chars[i] - '0');
+            }
+            if (i == start) {
+                return parseDoubleSlow(chars, length);
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != length || numDigits == 0 || numSignificantDigits > MAX_EXACT_DIGITS) {
+            return parseDoubleSlow(chars, length);
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        } else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        } else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        } else {
+            return parseDoubleSlow(chars, length);
+        }
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(char[] chars, int length) {
+        try {
+            return Double.parseDouble(new String(chars, 0, length));
+        } catch (NumberFormatException ex) {
+            return Double.NaN;
+        }
+    }
+
+    private IOException error(String msg) {
+        return new IOException(msg + ", line " + lineNumber);
+    }
+}
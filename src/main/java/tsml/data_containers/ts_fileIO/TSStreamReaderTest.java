@@ -0,0 +1,112 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.data_containers.ts_fileIO;
+
+import org.junit.Test;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TSStreamReaderTest {
+
+    private static final String DATA = "#a comment\n" +
+            "@problemName Test\n" +
+            "@timeStamps false\n" +
+            "@missing true\n" +
+            "@univariate false\n" +
+            "@classLabel true a b\n" +
+            "@data\n" +
+            "1.5,2,-3e2:4, 5 ,?:b\n" +
+            "\n" +
+            "6,7:8,9,10:a\r\n" +
+            "11:12:a";
+
+    @Test
+    public void testReadAll() throws IOException {
+        final TSStreamReader reader = new TSStreamReader(new StringReader(DATA));
+        assertEquals("Test", reader.getProblemName());
+        assertArrayEquals(new String[] {"a", "b"}, reader.getClassLabels());
+        final TimeSeriesInstances insts = reader.readAll();
+        assertEquals(3, insts.numInstances());
+        assertArrayEquals(new double[][] {{1.5, 2, -300}, {4, 5, Double.NaN}}, insts.get(0).toValueArray());
+        assertArrayEquals(new double[][] {{6, 7}, {8, 9, 10}}, insts.get(1).toValueArray());
+        assertArrayEquals(new int[] {1, 0, 0}, insts.getClassIndexes());
+        assertTrue(insts.hasMissing());
+    }
+
+    @Test
+    public void testBatches() throws IOException {
+        final TSStreamReader reader = new TSStreamReader(new StringReader(DATA));
+        assertEquals(2, reader.nextBatch(2).numInstances());
+        final TimeSeriesInstances last = reader.nextBatch(2);
+        assertEquals(1, last.numInstances());
+        assertNull(reader.nextBatch(2));
+        assertFalse(reader.hasNext());
+    }
+
+    @Test
+    public void testUnlabelled() throws IOException {
+        final TSStreamReader reader = new TSStreamReader(new StringReader(
+                "@problemName Test\n@univariate true\n@classLabel false\n@data\n1,2,3\n4,5\n"));
+        final TimeSeriesInstance inst = reader.next();
+        assertArrayEquals(new double[][] {{1, 2, 3}}, inst.toValueArray());
+        assertEquals(-1, inst.getLabelIndex());
+        assertArrayEquals(new double[][] {{4, 5}}, reader.next().toValueArray());
+        assertFalse(reader.hasNext());
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void testUnknownLabel() throws IOException {
+        final TSStreamReader reader = new TSStreamReader(new StringReader(
+                "@problemName Test\n@univariate true\n@classLabel true a b\n@data\n1,2,3:a\n4,5:c\n"));
+        assertEquals(0, reader.next().getLabelIndex());
+        reader.next();
+    }
+
+    @Test(expected = IOException.class)
+    public void testTimeStampsUnsupported() throws IOException {
+        new TSStreamReader(new StringReader("@problemName Test\n@timeStamps true\n@univariate true\n@data\n"));
+    }
+
+    @Test
+    public void testParseDoubleMatchesJdk() {
+        final Random random = new Random(0);
+        final String[] fixed = {"0", "-0", "0.0", "1", "-1.25", "1e5", "1E-5", "+3.5", "123456789012345678",
+                "0.000000000000000000000001234", "1.7976931348623157E308", "4.9E-324", "NaN", "Infinity", "-.5",
+                "5.", "-0.64199155", "1.8316333"};
+        for (String value : fixed) {
+            assertParse(value);
+        }
+        for (int i = 0; i < 100000; i++) {
+            final double value = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10);
+            assertParse(Double.toString(value));
+            assertParse(String.format("%.8f", value));
+            assertParse(String.format("%.3e", value));
+        }
+    }
+
+    private static void assertParse(String value) {
+        assertEquals(value, Double.parseDouble(value), TSStreamReader.parseDouble(value.toCharArray(), value.length()), 0d);
+    }
+}
@@ -21,12 +21,14 @@ package tsml.data_containers.utilities;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import experiments.data.DatasetLoading;
 import org.apache.commons.lang3.ArrayUtils;
 
+import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import weka.core.Attribute;
@@ -112,6 +114,48 @@ public class Converter {
         return tsInsts.get(0);
     }
 
+    /**
+     * Convert the values of a single instance, leaving out the class value. This reads the values straight into
+     * arrays which the returned inst wraps, without building an Instances or boxing any values as fromArff does, so is
+     * suited to converting insts one at a time (e.g. for a distance between two insts). The returned inst is unlabelled.
+     * <p>
+     * As with fromArff, the class is the last attribute if no class index is set. An inst without a dataset is
+     * assumed to be univariate with no class value.
+     *
+     * @param instance the instance to convert
+     * @return the series of the instance
+     */
+    public static TimeSeriesInstance fromArffValues(Instance instance) {
+        final Instances dataset = instance.dataset();
+        if(dataset != null && instance.attribute(0).isRelationValued()) {
+            // each row of the relation is a dimension
+            final Instances relation = instance.relationalValue(0);
+            final List<TimeSeries> dimensions = new ArrayList<>(relation.numInstances());
+            for(int i = 0; i < relation.numInstances(); i++) {
+                final Instance row = relation.get(i);
+                final double[] values = new double[row.numAttributes()];
+                for(int j = 0; j < values.length; j++) {
+                    values[j] = row.value(j);
+                }
+                dimensions.add(TimeSeries.wrap(values));
+            }
+            return new TimeSeriesInstance(Double.NaN, dimensions);
+        }
+        final int numAttributes = instance.numAttributes();
+        int classIndex = -1;
+        if(dataset != null) {
+            classIndex = dataset.classIndex() < 0 ? numAttributes - 1 : dataset.classIndex();
+        }
+        final double[] values = new double[classIndex < 0 ? numAttributes : numAttributes - 1];
+        for(int i = 0, j = 0; i < numAttributes; i++) {
+            // skip the class value
+            if(i != classIndex) {
+                values[j++] = instance.value(i);
+            }
+        }
+        return new TimeSeriesInstance(Double.NaN, Collections.singletonList(TimeSeries.wrap(values)));
+    }
+
     public static Instances toArff(TimeSeriesInstances  data){
         double[][][] values = data.toValueArray();
         int[] classIndexes = data.getClassIndexes();
@@ -0,0 +1,89 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+ 
+package tsml.data_containers.utilities;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.classifiers.distance_based.distances.DistanceMeasure;
+import tsml.classifiers.distance_based.distances.dtw.DTWDistance;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.DistanceFunction;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class ConverterTest {
+
+    private static void assertSameValues(Instances data) {
+        final TimeSeriesInstances converted = Converter.fromArff(new Instances(data));
+        for(int i = 0; i < data.numInstances(); i++) {
+            final TimeSeriesInstance inst = Converter.fromArffValues(data.get(i));
+            Assert.assertArrayEquals(converted.get(i).toValueArray(), inst.toValueArray());
+        }
+    }
+
+    @Test
+    public void testUnivariateValues() throws Exception {
+        assertSameValues(DatasetLoading.sampleGunPoint(0)[0]);
+    }
+
+    @Test
+    public void testClassIndexHonoured() {
+        // the class is the first attribute
+        final ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("class", Arrays.asList("a", "b")));
+        attributes.add(new Attribute("t0"));
+        attributes.add(new Attribute("t1"));
+        final Instances data = new Instances("test", attributes, 1);
+        data.setClassIndex(0);
+        data.add(new DenseInstance(1, new double[] {1, 5, 6}));
+        Assert.assertArrayEquals(new double[][] {{5, 6}}, Converter.fromArffValues(data.get(0)).toValueArray());
+    }
+
+    @Test
+    public void testMultivariateValues() throws Exception {
+        assertSameValues(DatasetLoading.sampleBasicMotions(0)[0]);
+    }
+
+    @Test
+    public void testInstanceWithoutDataset() {
+        // e.g. a cluster centre, every value is part of the series
+        final Instance inst = new DenseInstance(1, new double[] {1, 2, 3});
+        Assert.assertArrayEquals(new double[][] {{1, 2, 3}}, Converter.fromArffValues(inst).toValueArray());
+    }
+
+    @Test
+    public void testDistanceFunctionMatchesDistanceMeasure() throws Exception {
+        final Instances data = DatasetLoading.sampleGunPoint(0)[0];
+        final TimeSeriesInstances converted = Converter.fromArff(new Instances(data));
+        final DistanceMeasure dtw = new DTWDistance();
+        final DistanceFunction df = dtw.asDistanceFunction();
+        df.setInstances(data);
+        for(int i = 0; i < 10; i++) {
+            Assert.assertEquals(dtw.distance(converted.get(i), converted.get(i + 1)),
+                    df.distance(data.get(i), data.get(i + 1)), 0);
+        }
+    }
+}
@@ -17,7 +17,6 @@
 
 package tsml.transformers;
 
-import org.apache.commons.math3.complex.Complex;
 import org.apache.commons.math3.transform.DftNormalization;
 import org.apache.commons.math3.transform.FastFourierTransformer;
 import org.apache.commons.math3.transform.TransformType;
@@ -50,6 +49,9 @@ import static utilities.Utilities.extractTimeSeries;
  * Implementation based on C and Matlab code provided on authors github:
  * https://github.com/chlubba/catch22
  *
+ * The FFT working space and the intermediates of the last series are held by the object, so an object must not be
+ * used from more than one thread at a time. The static getSummaryStatByIndex methods use a separate object per thread.
+ *
  * @author Matthew Middlehurst
  */
 public class Catch22 implements Transformer {
@@ -60,16 +62,28 @@ public class Catch22 implements Transformer {
     // large positive/negative values
     private boolean outlierNorm = false;
 
-    // for summary stat by index
+    // working space for the static summary stat methods, one per thread
+    private static final ThreadLocal<Catch22> WORKSPACE = ThreadLocal.withInitial(Catch22::new);
+
+    // for summary stat by index, the current series and the intermediates shared between its features
     private int currentSeriesID = Integer.MIN_VALUE;
+    private transient double[] idxSeries;
+    private transient double[] idxOutlierSeries;
     private double idxMin;
     private double idxMax;
     private double idxMean;
-    private Complex[] idxFFT;
-    private double[] idxAC;
+    private transient double[][] idxFFT;
+    private transient double[] idxAC;
     private int idxACFZ;
-    private double[] idxOutlierSeries;
-    private double[] idxSeries;
+    private boolean hasExtremes;
+    private boolean hasMean;
+
+    // FFT working space for the series, autocorrelations and the residuals of feature 16, each indexed by the log2 of
+    // the transform size
+    private static final int SERIES_FFT = 0;
+    private static final int AC_FFT = 1;
+    private static final int RESIDUAL_FFT = 2;
+    private transient double[][][][] fftSpace;
 
     public Catch22() { }
 
@@ -118,8 +132,18 @@ public class Catch22 implements Transformer {
         return transform(series, Double.MIN_VALUE);
     }
 
-    //no class value in series
+    /**
+     * Finds the 22 features of a series. The FFTs are found in working space held by this object, so each thread
+     * should use its own Catch22 object.
+     *
+     * @param series the series, with no class value
+     * @param classValue class value to append to the features, or Double.MIN_VALUE for none
+     * @return the features
+     */
     public double[] transform(double[] series, double classValue){
+        // the FFT working space is about to be overwritten, so the intermediates kept for the last series are lost
+        currentSeriesID = Integer.MIN_VALUE;
+
         int atts = classValue == Double.MIN_VALUE ? 22 : 23;
         double[] featureSet = new double[atts];
 
@@ -155,17 +179,7 @@ public class Catch22 implements Transformer {
         }
         mean /= arr.length;
 
-        int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(series.length) / Math.log(2)));
-        Complex[] fft = new Complex[nfft];
-        for (int j = 0; j < nfft; j++) {
-            if (j < series.length)
-                fft[j] = new Complex(series[j] - mean, 0);
-            else
-                fft[j] = new Complex(0, 0);
-        }
-
-        FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-        fft = f.transform(fft, TransformType.FORWARD);
+        double[][] fft = centredFFT(series, mean, SERIES_FFT);
 
         double[] ac = autoCorr(arr, fft);
 
@@ -206,160 +220,120 @@ public class Catch22 implements Transformer {
     }
 
     public double getSummaryStatByIndex(int summaryStatIndex, int seriesID, double[] series) throws Exception {
+        if (summaryStatIndex < 0 || summaryStatIndex > 21) {
+            throw new Exception("Invalid Catch22 summary stat index.");
+        }
+
         if (seriesID != currentSeriesID) {
             currentSeriesID = seriesID;
-            idxMin = Double.MAX_VALUE;
-            idxMax = -99999999;
-            idxMean = Double.MIN_VALUE;
-            idxFFT = null;
-            idxAC = null;
-            idxACFZ = -1;
-            idxOutlierSeries = null;
-
-            if (norm) {
-                idxSeries = new double[series.length];
-                System.arraycopy(series, 0, idxSeries, 0, series.length);
-                zNormalise(idxSeries);
-            } else {
-                idxSeries = series;
+            setSeries(series, 0, series.length - 1);
+        }
+
+        return summaryStat(summaryStatIndex);
+    }
+
+    /**
+     * Finds the features at the given indexes for the values of a series from start to end inclusive, writing the
+     * feature for summaryStatIndexes[i] to output[i]. Indexes outside 0-21 are skipped, leaving their output free for
+     * other features. The extremes, mean, FFT, autocorrelation and its first zero crossing are found at most once and
+     * shared between the features that use them. Working space is kept between calls, so each thread should use its
+     * own Catch22 object.
+     *
+     * @param series the series
+     * @param start index of the first value of the interval
+     * @param end index of the last value of the interval
+     * @param summaryStatIndexes the features to find
+     * @param output array to write the features to, at least as long as summaryStatIndexes
+     */
+    public void getSummaryStats(double[] series, int start, int end, int[] summaryStatIndexes, double[] output) {
+        currentSeriesID = Integer.MIN_VALUE;
+        setSeries(series, start, end);
+
+        for (int i = 0; i < summaryStatIndexes.length; i++) {
+            if (summaryStatIndexes[i] >= 0 && summaryStatIndexes[i] <= 21) {
+                output[i] = summaryStat(summaryStatIndexes[i]);
             }
         }
+    }
 
-        switch (summaryStatIndex) {
-            case 0:
-            case 1:
-            case 11:
-                if (idxMin == Double.MAX_VALUE) {
-                    for (double v : idxSeries) {
-                        if (v < idxMin) {
-                            idxMin = v;
-                        }
-                        if (v > idxMax) {
-                            idxMax = v;
-                        }
-                    }
-                }
-                break;
-            case 2:
-                if (idxMean == Double.MIN_VALUE) {
-                    idxMean = mean(idxSeries);
-                }
-                break;
-            case 3:
-            case 4:
-                if (idxOutlierSeries == null) {
-                    if (outlierNorm && !norm) {
-                        idxOutlierSeries = new double[idxSeries.length];
-                        System.arraycopy(idxSeries, 0, idxOutlierSeries, 0, idxSeries.length);
-                        zNormalise(idxOutlierSeries);
-                    } else {
-                        idxOutlierSeries = idxSeries;
-                    }
-                }
-                break;
-            case 7:
-            case 8:
-                if (idxFFT == null) {
-                    if (idxMean == Double.MIN_VALUE) {
-                        idxMean = mean(idxSeries);
-                    }
+    public static double getSummaryStatByIndex(int summaryStatIndex, double[] series, boolean outlierNorm) {
+        return getSummaryStatByIndex(summaryStatIndex, series, 0, series.length - 1, outlierNorm);
+    }
 
-                    int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(idxSeries.length) / Math.log(2)));
-                    idxFFT = new Complex[nfft];
-                    for (int j = 0; j < nfft; j++) {
-                        if (j < idxSeries.length)
-                            idxFFT[j] = new Complex(idxSeries[j] - idxMean, 0);
-                        else
-                            idxFFT[j] = new Complex(0, 0);
-                    }
+    /**
+     * Finds a single feature for the values of a series from start to end inclusive, using working space held for
+     * the calling thread.
+     *
+     * @param summaryStatIndex the feature to find
+     * @param series the series
+     * @param start index of the first value of the interval
+     * @param end index of the last value of the interval
+     * @param outlierNorm whether to z-normalise the interval for the outlier features
+     * @return the feature
+     */
+    public static double getSummaryStatByIndex(int summaryStatIndex, double[] series, int start, int end,
+                                               boolean outlierNorm) {
+        if (summaryStatIndex < 0 || summaryStatIndex > 21){
+            System.err.println("Invalid Catch22 summary stat index.");
+            return Double.MAX_VALUE;
+        }
 
-                    FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-                    idxFFT = f.transform(idxFFT, TransformType.FORWARD);
-                }
-                break;
-            case 5:
-            case 6:
-            case 12:
-                if (idxAC == null) {
-                    if (idxFFT == null) {
-                        if (idxMean == Double.MIN_VALUE) {
-                            idxMean = mean(idxSeries);
-                        }
-
-                        int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(idxSeries.length) / Math.log(2)));
-                        idxFFT = new Complex[nfft];
-                        for (int j = 0; j < nfft; j++) {
-                            if (j < idxSeries.length)
-                                idxFFT[j] = new Complex(idxSeries[j] - idxMean, 0);
-                            else
-                                idxFFT[j] = new Complex(0, 0);
-                        }
-
-                        FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-                        idxFFT = f.transform(idxFFT, TransformType.FORWARD);
-                    }
+        Catch22 c22 = WORKSPACE.get();
+        c22.outlierNorm = outlierNorm;
+        c22.currentSeriesID = Integer.MIN_VALUE;
+        c22.setSeries(series, start, end);
+        return c22.summaryStat(summaryStatIndex);
+    }
 
-                    idxAC = autoCorr(idxSeries, idxFFT);
-                }
-                break;
-            case 16:
-            case 17:
-            case 20:
-                if (idxACFZ == -1){
-                    if (idxAC == null) {
-                        if (idxFFT == null) {
-                            if (idxMean == Double.MIN_VALUE) {
-                                idxMean = mean(idxSeries);
-                            }
-
-                            int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(idxSeries.length) / Math.log(2)));
-                            idxFFT = new Complex[nfft];
-                            for (int j = 0; j < nfft; j++) {
-                                if (j < idxSeries.length)
-                                    idxFFT[j] = new Complex(idxSeries[j] - idxMean, 0);
-                                else
-                                    idxFFT[j] = new Complex(0, 0);
-                            }
-
-                            FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-                            idxFFT = f.transform(idxFFT, TransformType.FORWARD);
-                        }
-
-                        idxAC = autoCorr(idxSeries, idxFFT);
-                    }
-                    idxACFZ = acFirstZero(idxAC);
-                }
-                break;
+    private void setSeries(double[] series, int start, int end) {
+        int length = end - start + 1;
+        if (idxSeries == null || idxSeries.length != length) {
+            idxSeries = new double[length];
         }
+        System.arraycopy(series, start, idxSeries, 0, length);
+        if (norm) {
+            zNormalise(idxSeries);
+        }
+
+        idxOutlierSeries = null;
+        idxFFT = null;
+        idxAC = null;
+        idxACFZ = -1;
+        hasExtremes = false;
+        hasMean = false;
+    }
 
+    private double summaryStat(int summaryStatIndex) {
         double feature;
         switch (summaryStatIndex) {
             case 0:
+                findExtremes();
                 feature = histMode5DN(idxSeries, idxMin, idxMax);
                 break;
             case 1:
+                findExtremes();
                 feature = histMode10DN(idxSeries, idxMin, idxMax);
                 break;
             case 2:
-                feature = binaryStatsMeanLongstretch1SB(idxSeries, idxMean);
+                feature = binaryStatsMeanLongstretch1SB(idxSeries, seriesMean());
                 break;
             case 3:
-                feature = outlierIncludeP001mdrmdDN(idxOutlierSeries);
+                feature = outlierIncludeP001mdrmdDN(outlierSeries());
                 break;
             case 4:
-                feature = outlierIncludeN001mdrmdDN(idxOutlierSeries);
+                feature = outlierIncludeN001mdrmdDN(outlierSeries());
                 break;
             case 5:
-                feature = f1ecacCO(idxAC);
+                feature = f1ecacCO(seriesAC());
                 break;
             case 6:
-                feature = firstMinacCO(idxAC);
+                feature = firstMinacCO(seriesAC());
                 break;
             case 7:
-                feature = summariesWelchRectArea51SP(idxSeries, idxFFT);
+                feature = summariesWelchRectArea51SP(idxSeries, seriesFFT());
                 break;
             case 8:
-                feature = summariesWelchRectCentroidSP(idxSeries, idxFFT);
+                feature = summariesWelchRectCentroidSP(idxSeries, seriesFFT());
                 break;
             case 9:
                 feature = localSimpleMean3StderrFC(idxSeries);
@@ -368,10 +342,11 @@ public class Catch22 implements Transformer {
                 feature = trev1NumCO(idxSeries);
                 break;
             case 11:
+                findExtremes();
                 feature = histogramAMIeven25CO(idxSeries, idxMin, idxMax);
                 break;
             case 12:
-                feature = autoMutualInfoStats40GaussianFmmiIN(idxAC);
+                feature = autoMutualInfoStats40GaussianFmmiIN(seriesAC());
                 break;
             case 13:
                 feature = hrvClassicPnn40MD(idxSeries);
@@ -383,10 +358,10 @@ public class Catch22 implements Transformer {
                 feature = motifThreeQuantileHhSB(idxSeries);
                 break;
             case 16:
-                feature = localSimpleMean1TauresratFC(idxSeries, idxACFZ);
+                feature = localSimpleMean1TauresratFC(idxSeries, seriesACFZ());
                 break;
             case 17:
-                feature = embed2DistTauDExpfitMeandiffCO(idxSeries, idxACFZ);
+                feature = embed2DistTauDExpfitMeandiffCO(idxSeries, seriesACFZ());
                 break;
             case 18:
                 feature = fluctAnal2Dfa5012LogiPropR1SC(idxSeries);
@@ -395,13 +370,10 @@ public class Catch22 implements Transformer {
                 feature = fluctAnal2Rsrangefit501LogiPropR1SC(idxSeries);
                 break;
             case 20:
-                feature = transitionMatrix3acSumdiagcovSB(idxSeries, idxACFZ);
-                break;
-            case 21:
-                feature = periodicityWangTh001PD(idxSeries);
+                feature = transitionMatrix3acSumdiagcovSB(idxSeries, seriesACFZ());
                 break;
             default:
-                throw new Exception("Invalid Catch22 summary stat index.");
+                feature = periodicityWangTh001PD(idxSeries);
         }
 
         if (Double.isNaN(feature) || Double.isInfinite(feature)){
@@ -411,180 +383,62 @@ public class Catch22 implements Transformer {
         return feature;
     }
 
-    public static double getSummaryStatByIndex(int summaryStatIndex, double[] series, boolean outlierNorm) {
-        double min = Double.MAX_VALUE;
-        double max = -99999999;
-        double mean = Double.MIN_VALUE;
-        Complex[] fft = null;
-        double[] ac = null;
-        int acfz = -1;
-        double[] newSeries = series;
-
-        if (summaryStatIndex < 0 || summaryStatIndex > 21){
-            System.err.println("Invalid Catch22 summary stat index.");
-            return Double.MAX_VALUE;
-        }
-
-        switch (summaryStatIndex) {
-            case 0:
-            case 1:
-            case 11:
-                for (double v : newSeries) {
-                    if (v < min) {
-                        min = v;
-                    }
-                    if (v > max) {
-                        max = v;
-                    }
-                }
-                break;
-            case 2:
-                mean = mean(newSeries);
-                break;
-            case 3:
-            case 4:
-                if (outlierNorm) {
-                    newSeries = new double[newSeries.length];
-                    System.arraycopy(series, 0, newSeries, 0, series.length);
-                    zNormalise(newSeries);
-                }
-                break;
-            case 7:
-            case 8:
-                mean = mean(newSeries);
-
-                int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(newSeries.length) / Math.log(2)));
-                fft = new Complex[nfft];
-                for (int j = 0; j < nfft; j++) {
-                    if (j < newSeries.length)
-                        fft[j] = new Complex(newSeries[j] - mean, 0);
-                    else
-                        fft[j] = new Complex(0, 0);
-                }
-
-                FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-                fft = f.transform(fft, TransformType.FORWARD);
-                break;
-            case 5:
-            case 6:
-            case 12:
-                mean = mean(newSeries);
-
-                int nfft2 = (int) Math.pow(2.0, (int) Math.ceil(Math.log(newSeries.length) / Math.log(2)));
-                fft = new Complex[nfft2];
-                for (int j = 0; j < nfft2; j++) {
-                    if (j < newSeries.length)
-                        fft[j] = new Complex(newSeries[j] - mean, 0);
-                    else
-                        fft[j] = new Complex(0, 0);
+    private void findExtremes() {
+        if (!hasExtremes) {
+            idxMin = Double.MAX_VALUE;
+            idxMax = -99999999;
+            for (double v : idxSeries) {
+                if (v < idxMin) {
+                    idxMin = v;
                 }
-
-                FastFourierTransformer f2 = new FastFourierTransformer(DftNormalization.STANDARD);
-                fft = f2.transform(fft, TransformType.FORWARD);
-
-                ac = autoCorr(newSeries, fft);
-                break;
-            case 16:
-            case 17:
-            case 20:
-                mean = mean(newSeries);
-
-                int nfft3 = (int) Math.pow(2.0, (int) Math.ceil(Math.log(newSeries.length) / Math.log(2)));
-                fft = new Complex[nfft3];
-                for (int j = 0; j < nfft3; j++) {
-                    if (j < newSeries.length)
-                        fft[j] = new Complex(newSeries[j] - mean, 0);
-                    else
-                        fft[j] = new Complex(0, 0);
+                if (v > idxMax) {
+                    idxMax = v;
                 }
+            }
+            hasExtremes = true;
+        }
+    }
 
-                FastFourierTransformer f3 = new FastFourierTransformer(DftNormalization.STANDARD);
-                fft = f3.transform(fft, TransformType.FORWARD);
-
-                ac = autoCorr(newSeries, fft);
-
-                acfz = acFirstZero(ac);
-                break;
+    private double seriesMean() {
+        if (!hasMean) {
+            idxMean = mean(idxSeries);
+            hasMean = true;
         }
+        return idxMean;
+    }
 
+    private double[] outlierSeries() {
+        if (idxOutlierSeries == null) {
+            if (outlierNorm && !norm) {
+                idxOutlierSeries = new double[idxSeries.length];
+                System.arraycopy(idxSeries, 0, idxOutlierSeries, 0, idxSeries.length);
+                zNormalise(idxOutlierSeries);
+            } else {
+                idxOutlierSeries = idxSeries;
+            }
+        }
+        return idxOutlierSeries;
+    }
 
-        double feature;
-        switch (summaryStatIndex) {
-            case 0:
-                feature = histMode5DN(newSeries, min, max);
-                break;
-            case 1:
-                feature = histMode10DN(newSeries, min, max);
-                break;
-            case 2:
-                feature = binaryStatsMeanLongstretch1SB(newSeries, mean);
-                break;
-            case 3:
-                feature = outlierIncludeP001mdrmdDN(newSeries);
-                break;
-            case 4:
-                feature = outlierIncludeN001mdrmdDN(newSeries);
-                break;
-            case 5:
-                feature = f1ecacCO(ac);
-                break;
-            case 6:
-                feature = firstMinacCO(ac);
-                break;
-            case 7:
-                feature = summariesWelchRectArea51SP(newSeries, fft);
-                break;
-            case 8:
-                feature = summariesWelchRectCentroidSP(newSeries, fft);
-                break;
-            case 9:
-                feature = localSimpleMean3StderrFC(newSeries);
-                break;
-            case 10:
-                feature = trev1NumCO(newSeries);
-                break;
-            case 11:
-                feature = histogramAMIeven25CO(newSeries, min, max);
-                break;
-            case 12:
-                feature = autoMutualInfoStats40GaussianFmmiIN(ac);
-                break;
-            case 13:
-                feature = hrvClassicPnn40MD(newSeries);
-                break;
-            case 14:
-                feature = binaryStatsDiffLongstretch0SB(newSeries);
-                break;
-            case 15:
-                feature = motifThreeQuantileHhSB(newSeries);
-                break;
-            case 16:
-                feature = localSimpleMean1TauresratFC(newSeries, acfz);
-                break;
-            case 17:
-                feature = embed2DistTauDExpfitMeandiffCO(newSeries, acfz);
-                break;
-            case 18:
-                feature = fluctAnal2Dfa5012LogiPropR1SC(newSeries);
-                break;
-            case 19:
-                feature = fluctAnal2Rsrangefit501LogiPropR1SC(newSeries);
-                break;
-            case 20:
-                feature = transitionMatrix3acSumdiagcovSB(newSeries, acfz);
-                break;
-            case 21:
-                feature = periodicityWangTh001PD(newSeries);
-                break;
-            default:
-                feature = Double.MAX_VALUE;
+    private double[][] seriesFFT() {
+        if (idxFFT == null) {
+            idxFFT = centredFFT(idxSeries, seriesMean(), SERIES_FFT);
         }
+        return idxFFT;
+    }
 
-        if (Double.isNaN(feature) || Double.isInfinite(feature)){
-            feature = 0;
+    private double[] seriesAC() {
+        if (idxAC == null) {
+            idxAC = autoCorr(idxSeries, seriesFFT());
         }
+        return idxAC;
+    }
 
-        return feature;
+    private int seriesACFZ() {
+        if (idxACFZ == -1) {
+            idxACFZ = acFirstZero(seriesAC());
+        }
+        return idxACFZ;
     }
 
     public static String getSummaryStatNameByIndex(int summaryStatIndex) throws Exception {
@@ -677,12 +531,12 @@ public class Catch22 implements Transformer {
     }
 
     // Total power in lowest fifth of frequencies in the Fourier power spectrum
-    private static double summariesWelchRectArea51SP(double[] arr, Complex[] fft) {
+    private static double summariesWelchRectArea51SP(double[] arr, double[][] fft) {
         return summariesWelchRect(arr, false, fft);
     }
 
     // Centroid of the Fourier power spectrum
-    private static double summariesWelchRectCentroidSP(double[] arr, Complex[] fft) {
+    private static double summariesWelchRectCentroidSP(double[] arr, double[][] fft) {
         return summariesWelchRect(arr, true, fft);
     }
 
@@ -838,23 +692,13 @@ public class Catch22 implements Transformer {
     }
 
     // Change in correlation length after iterative differencing
-    private static double localSimpleMean1TauresratFC(double[] arr, int acfz) {
+    private double localSimpleMean1TauresratFC(double[] arr, int acfz) {
         if (arr.length - 1 < 1)
             return 0;
         double[] res = localSimpleMean(arr, 1);
         double mean = mean(res);
 
-        int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(res.length) / Math.log(2)));
-        Complex[] fft = new Complex[nfft];
-        for (int j = 0; j < nfft; j++) {
-            if (j < res.length)
-                fft[j] = new Complex(res[j] - mean, 0);
-            else
-                fft[j] = new Complex(0, 0);
-        }
-
-        FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-        fft = f.transform(fft, TransformType.FORWARD);
+        double[][] fft = centredFFT(res, mean, RESIDUAL_FFT);
 
         double[] resAc = autoCorr(res, fft);
 
@@ -1125,27 +969,31 @@ public class Catch22 implements Transformer {
         double[] means = new double[numThresholds];
         double[] dists = new double[numThresholds];
         double[] medians = new double[numThresholds];
+        double[] r = new double[arr.length];
         for (int i = 0; i < numThresholds; i++) {
             double d = i * 0.01;
 
-            ArrayList<Double> r = new ArrayList<>(arr.length);
+            int numExceeding = 0;
             for (int n = 0; n < arr.length; n++) {
                 if (arr[n] >= d) {
-                    r.add(n + 1.0);
+                    r[numExceeding++] = n + 1.0;
                 }
             }
 
-            if (r.size() == 0)
+            if (numExceeding == 0)
                 continue;
 
-            double[] diff = new double[r.size() - 1];
-            for (int n = 0; n < diff.length; n++) {
-                diff[n] = r.get(n + 1) - r.get(n);
+            // the indices are found in order, so the gaps and median need no sorting
+            double sum = 0;
+            for (int n = 0; n < numExceeding - 1; n++) {
+                sum += r[n + 1] - r[n];
             }
+            double median = numExceeding % 2 == 1 ? r[numExceeding / 2]
+                    : (r[numExceeding / 2 - 1] + r[numExceeding / 2]) / 2;
 
-            means[i] = mean(diff);
-            dists[i] = diff.length * 100.0 / total;
-            medians[i] = median(r, false) / (arr.length / 2.0) - 1;
+            means[i] = sum / (numExceeding - 1);
+            dists[i] = (numExceeding - 1) * 100.0 / total;
+            medians[i] = median / (arr.length / 2.0) - 1;
         }
 
         int mj = 0;
@@ -1164,38 +1012,67 @@ public class Catch22 implements Transformer {
         return median(Arrays.copyOf(medians, trimLimit + 1), false);
     }
 
-    private static double[] autoCorr(double[] arr, Complex[] fft) {
-        Complex[] c = new Complex[fft.length];
-        for (int i = 0; i < fft.length; i++) {
-            c[i] = fft[i].multiply(new Complex(fft[i].getReal(), -fft[i].getImaginary()));
+    // FFT of the mean centred series zero padded to a power of two, as {real, imaginary}, in reused working space
+    private double[][] centredFFT(double[] arr, double mean, int use) {
+        int nfft = (int) Math.pow(2.0, (int) Math.ceil(Math.log(arr.length) / Math.log(2)));
+        double[][] fft = fftSpace(use, nfft);
+        for (int j = 0; j < arr.length; j++) {
+            fft[0][j] = arr[j] - mean;
+        }
+        Arrays.fill(fft[0], arr.length, nfft, 0);
+        Arrays.fill(fft[1], 0);
+
+        FastFourierTransformer.transformInPlace(fft, DftNormalization.STANDARD, TransformType.FORWARD);
+        return fft;
+    }
+
+    private double[][] fftSpace(int use, int nfft) {
+        if (fftSpace == null) {
+            fftSpace = new double[3][32][][];
+        }
+
+        int log2 = Integer.numberOfTrailingZeros(nfft);
+        if (fftSpace[use][log2] == null) {
+            fftSpace[use][log2] = new double[2][nfft];
+        }
+        return fftSpace[use][log2];
+    }
+
+    private double[] autoCorr(double[] arr, double[][] fft) {
+        double[][] c = fftSpace(AC_FFT, fft[0].length);
+        for (int i = 0; i < fft[0].length; i++) {
+            // the FFT multiplied by its conjugate
+            double re = fft[0][i];
+            double im = fft[1][i];
+            c[0][i] = re * re - im * -im;
+            c[1][i] = re * -im + im * re;
         }
 
-        FastFourierTransformer f = new FastFourierTransformer(DftNormalization.STANDARD);
-        c = f.transform(c, TransformType.INVERSE);
+        FastFourierTransformer.transformInPlace(c, DftNormalization.STANDARD, TransformType.INVERSE);
 
         double[] acf = new double[arr.length];
-        double d = c[0].getReal();
+        double d = c[0][0];
         if (d != 0) {
             for (int i = 0; i < arr.length; i++) {
-                acf[i] = c[i].getReal() / d;
+                acf[i] = c[0][i] / d;
             }
         }
 
         return acf;
     }
 
-    private static double summariesWelchRect(double[] arr, boolean centroid, Complex[] fft) {
-        int newLength = fft.length / 2 + 1;
+    private static double summariesWelchRect(double[] arr, boolean centroid, double[][] fft) {
+        int newLength = fft[0].length / 2 + 1;
         double[] p = new double[newLength];
         double pi2 = 2 * Math.PI;
-        p[0] = (Math.pow(complexMagnitude(fft[0]), 2) / arr.length) / pi2;
+        p[0] = (Math.pow(complexMagnitude(fft, 0), 2) / arr.length) / pi2;
         for (int i = 1; i < newLength - 1; i++) {
-            p[i] = ((Math.pow(complexMagnitude(fft[i]), 2) / arr.length) * 2) / pi2;
+            p[i] = ((Math.pow(complexMagnitude(fft, i), 2) / arr.length) * 2) / pi2;
         }
-        p[newLength - 1] = (Math.pow(complexMagnitude(fft[newLength - 1]), 2) / arr.length) / pi2;
+        p[newLength - 1] = (Math.pow(complexMagnitude(fft, newLength - 1), 2) / arr.length) / pi2;
 
         double[] w = new double[newLength];
-        double a = 1.0 / fft.length;
+        double a = 1.0 / fft[0].length;
         for (int i = 0; i < newLength; i++) {
             w[i] = i * a * Math.PI * 2;
         }
@@ -1225,8 +1102,8 @@ public class Catch22 implements Transformer {
         }
     }
 
-    private static double complexMagnitude(Complex c){
-        return Math.sqrt(c.getReal() * c.getReal() + c.getImaginary() * c.getImaginary());
+    private static double complexMagnitude(double[][] fft, int i){
+        return Math.sqrt(fft[0][i] * fft[0][i] + fft[1][i] * fft[1][i]);
     }
 
     private static double[] localSimpleMean(double[] arr, int trainLength) {
@@ -0,0 +1,133 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.transformers;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import weka.core.Instances;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static utilities.Utilities.extractTimeSeries;
+
+public class Catch22Test {
+
+    // features of the first train series of GunPoint and ItalyPowerDemand fold 0, recorded from the Complex[] based FFTs
+    private static final double[] GUN_POINT = {
+            -0.519633617, -0.6510472235, 47.0, 0.10000000000000009,
+            -0.32666666666666666, 19.0, 48.0, 0.9899746366742812,
+            0.04908738521234052, 0.14731179963871485, -2.7329318642529143E-5, 0.7484418959395498,
+            26.0, 0.2214765100671141, 29.0, 1.3158470923962606,
+            0.6428571428571429, 2.705024193262505, 0.85, 0.15,
+            0.08000000000000002, 0.0};
+    private static final double[] GUN_POINT_NORMALISED = {
+            -0.5196336167436582, -0.6510472232799889, 47.0, 0.10000000000000009,
+            -0.32666666666666666, 19.0, 48.0, 0.9899746366706781,
+            0.04908738521234052, 0.14731179967944072, -2.732931866519551E-5, 0.7484418959395498,
+            26.0, 0.2214765100671141, 29.0, 1.3158470923962606,
+            0.6428571428571429, 2.7050241924685974, 0.85, 0.15,
+            0.08000000000000002, 0.0};
+    private static final double[] ITALY_POWER_DEMAND_OUTLIER_NORMALISED = {
+            1.15862957, -0.21722666499999999, 8.0, 0.29166666666666674,
+            -0.625, 3.0, 6.0, 0.46805194706632836,
+            0.5890486225480862, 0.8574191573061893, 0.09535590116573035, 0.48584729774712954,
+            3.0, 1.0, 5.0, 1.7714672101292832,
+            0.75, 0.24059833825539415, 0.0, 0.0,
+            0.04000000000000001, 0.0};
+
+    @Test
+    public void testRecordedFeatures() throws Exception {
+        double[] gunPoint = extractTimeSeries(DatasetLoading.sampleGunPoint(0)[0].get(0));
+        double[] italyPowerDemand = extractTimeSeries(DatasetLoading.sampleItalyPowerDemand(0)[0].get(0));
+
+        Assert.assertArrayEquals(GUN_POINT, new Catch22().transform(gunPoint), 0);
+        Catch22 norm = new Catch22();
+        norm.setNormalise(true);
+        Assert.assertArrayEquals(GUN_POINT_NORMALISED, norm.transform(gunPoint), 0);
+        Catch22 outlierNorm = new Catch22();
+        outlierNorm.setOutlierNormalise(true);
+        Assert.assertArrayEquals(ITALY_POWER_DEMAND_OUTLIER_NORMALISED, outlierNorm.transform(italyPowerDemand), 0);
+
+        for (int i = 0; i < 22; i++) {
+            Assert.assertEquals(GUN_POINT[i], Catch22.getSummaryStatByIndex(i, gunPoint, false), 0);
+        }
+    }
+
+    @Test
+    public void testTransformBetweenSummaryStats() throws Exception {
+        // transform reuses the FFT working space held for the series given to getSummaryStatByIndex
+        Instances train = DatasetLoading.sampleGunPoint(0)[0];
+        double[] first = extractTimeSeries(train.get(0));
+        double[] second = extractTimeSeries(train.get(1));
+        Catch22 c22 = new Catch22();
+        Assert.assertEquals(GUN_POINT[7], c22.getSummaryStatByIndex(7, 0, first), 0);
+        c22.transform(second);
+        Assert.assertEquals(GUN_POINT[7], c22.getSummaryStatByIndex(7, 0, first), 0);
+    }
+
+    @Test
+    public void testBatchMatchesSingle() throws Exception {
+        Instances train = DatasetLoading.sampleGunPoint(0)[0];
+        // non catch22 indexes are left for other features
+        int[] indexes = new int[25];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = (i * 7) % 25;
+        }
+
+        Catch22 c22 = new Catch22();
+        c22.setOutlierNormalise(true);
+        Random rand = new Random(0);
+        double[] features = new double[indexes.length];
+        for (int i = 0; i < train.numInstances(); i++) {
+            double[] series = extractTimeSeries(train.get(i));
+            int start = rand.nextInt(series.length - 3);
+            int end = start + 3 + rand.nextInt(series.length - start - 3);
+            Arrays.fill(features, -1);
+            c22.getSummaryStats(series, start, end, indexes, features);
+
+            double[] interval = Arrays.copyOfRange(series, start, end + 1);
+            for (int n = 0; n < indexes.length; n++) {
+                double expected = indexes[n] < 22 ? Catch22.getSummaryStatByIndex(indexes[n], interval, true) : -1;
+                Assert.assertEquals(expected, features[n], 0);
+                if (indexes[n] < 22) {
+                    Assert.assertEquals(expected,
+                            Catch22.getSummaryStatByIndex(indexes[n], series, start, end, true), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBatchMatchesTransform() throws Exception {
+        Instances train = DatasetLoading.sampleItalyPowerDemand(0)[0];
+        int[] indexes = new int[22];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = i;
+        }
+
+        Catch22 c22 = new Catch22();
+        double[] features = new double[indexes.length];
+        for (int i = 0; i < train.numInstances(); i++) {
+            double[] series = extractTimeSeries(train.get(i));
+            c22.getSummaryStats(series, 0, series.length - 1, indexes, features);
+            Assert.assertArrayEquals(c22.transform(series), features, 0);
+        }
+    }
+}
@@ -18,15 +18,31 @@
 package tsml.transformers;
 
 import experiments.data.DatasetLoading;
+import org.apache.commons.math3.transform.DftNormalization;
+import org.apache.commons.math3.transform.FastFourierTransformer;
+import org.apache.commons.math3.transform.TransformType;
+import tsml.classifiers.MultiThreadable;
 import tsml.data_containers.TimeSeries;
 import tsml.data_containers.TimeSeriesInstance;
+import utilities.ThreadingUtilities;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
 import static utilities.rescalers.ZNormalisation.ROUNDING_ERROR_CORRECTION;
+import static utilities.Utilities.extractTimeSeries;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Randomizable;
 
 /**
  *
@@ -37,22 +53,37 @@ import weka.core.Instances;
  *         using the values, rather than having to extract the data back from
  *         the output Instances of process
  * 
- *         To-do: - Cache distances that will be reused (is it worth it?
- *         Probably not since it's offline, but might be important for very
- *         large problems and small windows) - Implement 'stride' - not sure if
+ *         The profile is found as in STOMP/SCRIMP, walking each diagonal of the
+ *         distance matrix with a sliding dot product and the running mean and
+ *         standard deviation of each window, in O(n^2) time and O(n) space.
+ *         Diagonals can be split between threads. With a time limit the search
+ *         is anytime, as in SCRIMP++: a quick pass over sampled windows
+ *         (PreSCRIMP) followed by diagonals in random order until time runs
+ *         out. join() finds the profile of one series against another.
+ * 
+ *         To-do: - Implement 'stride' - not sure if
  *         this makes sense particularly, but we could allow it so the user can
  *         change the step between comparison subseries that are evaluated when
  *         calculating the profile (e.g. not every 1 index, every 2, 3, ...
  *         etc.)
  * 
  */
-public class MatrixProfile implements Transformer {
+public class MatrixProfile implements Transformer, Randomizable, MultiThreadable {
+
+    // fewer diagonals than this are walked by a single thread
+    private static final int MIN_PARALLEL_DIAGONALS = 256;
+    // running variances below this are recomputed directly
+    private static final double NEAR_FLAT = 1e-8;
 
     private int windowSize = 10;
     private final int stride = 1; // to-do later (maybe!)
     private double[][] distances;
     private int[][] indices;
     private boolean m_Debug = false;
+    // nanoseconds allowed per series, 0 for the exact profile
+    private long timeLimit = 0;
+    private int seed = 0;
+    private int numThreads = 1;
 
     public MatrixProfile() {
         this(10);
@@ -62,18 +93,55 @@ public class MatrixProfile implements Transformer {
         this.windowSize = windowSize;
     }
 
+    /**
+     * Limits the time spent finding the profile of each series, making the search anytime. A limit of 0, the
+     * default, finds the exact profile.
+     *
+     * @param nanos the time limit in nanoseconds
+     */
+    public void setTimeLimit(long nanos) {
+        this.timeLimit = Math.max(0, nanos);
+    }
+
+    public void setTimeLimit(TimeUnit unit, long amount) {
+        setTimeLimit(TimeUnit.NANOSECONDS.convert(amount, unit));
+    }
+
+    public long getTimeLimit() {
+        return timeLimit;
+    }
+
+    @Override
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public int getSeed() {
+        return seed;
+    }
+
+    @Override
+    public void enableMultiThreading(int numThreads) {
+        this.numThreads = Math.max(1, numThreads);
+    }
+
+    public int getNumThreads() {
+        return numThreads;
+    }
+
     @Override
     public Instance transform(Instance inst) {
 
-        SingleInstanceMatrixProfile mpIns = new SingleInstanceMatrixProfile(inst, this.windowSize, this.stride);
+        Profile profile = selfJoin(extractTimeSeries(inst));
         Instance out = new DenseInstance(inst.numAttributes() + 1 - windowSize);
 
-        for (int i = 0; i < mpIns.distances.length; i++) {
-            out.setValue(i, mpIns.distances[i]);
+        for (int i = 0; i < profile.distances.length; i++) {
+            out.setValue(i, profile.distances[i]);
         }
 
         if (inst.classIndex() >= 0) {
-            out.setValue(mpIns.distances.length, inst.classValue());
+            out.setValue(profile.distances.length, inst.classValue());
         }
 
         return out;
@@ -85,7 +153,7 @@ public class MatrixProfile implements Transformer {
         double[][] out = new double[inst.getNumDimensions()][];
         int i = 0;
         for (TimeSeries ts : inst) {
-            out[i++] = new SingleInstanceMatrixProfile(ts.toValueArray(), this.windowSize, this.stride).series;
+            out[i++] = selfJoin(ts.toValueArray()).distances;
         }
         return new TimeSeriesInstance(out, inst.getLabelIndex()); 
     }
@@ -143,7 +211,7 @@ public class MatrixProfile implements Transformer {
                             + " and you have specified " + windowSize);
         }
 
-        SingleInstanceMatrixProfile mpIns;
+        Profile profile;
         Instances outputDistances = this.determineOutputFormat(instances);
         Instances outputIndices = this.determineOutputFormat(instances);
         Instance outDist, outIdx;
@@ -157,21 +225,21 @@ public class MatrixProfile implements Transformer {
         outputIndices.setRelationName(outputIndices.relationName() + "_indices");
 
         for (int ins = 0; ins < instances.numInstances(); ins++) {
-            mpIns = new SingleInstanceMatrixProfile(instances.get(ins), this.windowSize, this.stride);
+            profile = selfJoin(extractTimeSeries(instances.get(ins)));
             outDist = new DenseInstance(outputDistances.numAttributes());
             outIdx = new DenseInstance(outputIndices.numAttributes());
 
-            distances[ins] = mpIns.distances;
-            indices[ins] = mpIns.indices;
+            distances[ins] = profile.distances;
+            indices[ins] = profile.indices;
 
-            for (int i = 0; i < mpIns.distances.length; i++) {
-                outDist.setValue(i, mpIns.distances[i]);
-                outIdx.setValue(i, mpIns.indices[i]);
+            for (int i = 0; i < profile.distances.length; i++) {
+                outDist.setValue(i, profile.distances[i]);
+                outIdx.setValue(i, profile.indices[i]);
             }
 
             if (instances.classIndex() >= 0) {
-                outDist.setValue(mpIns.distances.length, instances.instance(ins).classValue());
-                outIdx.setValue(mpIns.indices.length, instances.instance(ins).classValue());
+                outDist.setValue(profile.distances.length, instances.instance(ins).classValue());
+                outIdx.setValue(profile.indices.length, instances.instance(ins).classValue());
             }
 
             outputDistances.add(outDist);
@@ -194,81 +262,308 @@ public class MatrixProfile implements Transformer {
         return this.indices;
     }
 
-    private static class SingleInstanceMatrixProfile {
-        private final double[] series;
-        private final int windowSize;
-        private final int stride;
+    /**
+     * Finds the matrix profile of a series: for every window, the squared Euclidean distance between the
+     * z-normalised window and its closest z-normalised window elsewhere in the series, excluding trivial matches
+     * within 1.5 windows, and where that match starts.
+     *
+     * @param series the series
+     * @return the profile
+     */
+    public Profile selfJoin(double[] series) {
+        Windows windows = new Windows(series, windowSize);
+        return findProfile(windows, windows, true);
+    }
+
+    /**
+     * Finds the matrix profile of one series against another (an AB-join): for every window of a, the closest
+     * window of b under the same distance as selfJoin, with no exclusion zone.
+     *
+     * @param a the series whose windows are profiled
+     * @param b the series searched for matches
+     * @return the profile, indexed by the windows of a
+     */
+    public Profile join(double[] a, double[] b) {
+        return findProfile(new Windows(a, windowSize), new Windows(b, windowSize), false);
+    }
+
+    /**
+     * A matrix profile: the distance from each window to its closest match and the start of that match, or
+     * Double.MAX_VALUE and -1 where no match was compared.
+     */
+    public static class Profile {
         private final double[] distances;
         private final int[] indices;
-        private final int seriesLength;
-
-        public SingleInstanceMatrixProfile(Instance series, int windowSize, int stride) {
-            this.series = series.toDoubleArray();
-            this.seriesLength = series.classIndex() > 0 ? series.numAttributes() - 1 : series.numAttributes();
-            this.windowSize = windowSize;
-            this.stride = stride;
-            this.distances = new double[seriesLength + 1 - windowSize];
-            this.indices = new int[seriesLength + 1 - windowSize];
-
-            for (int a = 0; a <= seriesLength - windowSize; a++) {
-                this.locateBestMatch(a);
-            }
+
+        private Profile(int numWindows) {
+            distances = new double[numWindows];
+            indices = new int[numWindows];
+            Arrays.fill(distances, Double.MAX_VALUE);
+            Arrays.fill(indices, -1);
         }
 
-        public SingleInstanceMatrixProfile(double[] series, int windowSize, int stride) {
-            this.series = series;
-            this.seriesLength = series.length;
-            this.windowSize = windowSize;
-            this.stride = stride;
-            this.distances = new double[seriesLength + 1 - windowSize];
-            this.indices = new int[seriesLength + 1 - windowSize];
+        public double[] getDistances() {
+            return distances;
+        }
 
-            for (int a = 0; a <= seriesLength - windowSize; a++) {
-                this.locateBestMatch(a);
+        public int[] getIndices() {
+            return indices;
+        }
+
+        // ties go to the earliest match, as in a scan from the start of the series
+        private void update(int window, double distance, int match) {
+            if (distance < distances[window] || (distance == distances[window] && match < indices[window])) {
+                distances[window] = distance;
+                indices[window] = match;
             }
         }
 
-        // query is fixed, comparison is every possible match within the series
-        private void locateBestMatch(int queryStartIdx) {
+        private void merge(Profile other) {
+            for (int i = 0; i < distances.length; i++) {
+                if (other.indices[i] >= 0) {
+                    update(i, other.distances[i], other.indices[i]);
+                }
+            }
+        }
+    }
 
-            double dist;
-            double bsfDist = Double.MAX_VALUE;
-            int bsfIdx = -1;
+    // a series centred on its mean, with the mean and standard deviation of each window, the latter 0 where the
+    // window is flat
+    private static class Windows {
+        private final double[] values;
+        private final double[] means;
+        private final double[] stdvs;
+        private final int count;
+
+        private Windows(double[] series, int windowSize) {
+            if (windowSize < 1 || windowSize > series.length) {
+                throw new IllegalArgumentException("window size must be between 1 and the series length ("
+                        + series.length + "): " + windowSize);
+            }
 
-            double[] query = zNormalise(series, queryStartIdx, this.windowSize, false);
-            double[] comparison;
+            // z-normalised windows ignore shifts, centring keeps the sliding sums and dot products accurate
+            double seriesMean = 0;
+            for (double v : series) {
+                seriesMean += v;
+            }
+            seriesMean /= series.length;
+            values = new double[series.length];
+            for (int i = 0; i < series.length; i++) {
+                values[i] = series[i] - seriesMean;
+            }
 
-            for (int comparisonStartIdx = 0; comparisonStartIdx <= seriesLength
-                    - windowSize; comparisonStartIdx += stride) {
+            count = series.length - windowSize + 1;
+            means = new double[count];
+            stdvs = new double[count];
+            double mean = 0;
+            for (int j = 0; j < windowSize; j++) {
+                mean += values[j];
+            }
+            mean /= windowSize;
+            double sumSq = 0;
+            for (int j = 0; j < windowSize; j++) {
+                sumSq += (values[j] - mean) * (values[j] - mean);
+            }
 
-                // exclusion zone +/- windowSize/2 around the window
-                if (comparisonStartIdx >= queryStartIdx - windowSize * 1.5
-                        && comparisonStartIdx <= queryStartIdx + windowSize * 1.5) {
-                    continue;
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    // Welford's update for the value leaving and the value entering the window
+                    double out = values[i - 1];
+                    double in = values[i + windowSize - 1];
+                    double previousMean = mean;
+                    mean += (in - out) / windowSize;
+                    sumSq = Math.max(0, sumSq + (in - out) * (in - mean + out - previousMean));
+                    if (sumSq < NEAR_FLAT * windowSize) {
+                        // rounding left by the update could hide a flat window, so recompute it exactly
+                        mean = 0;
+                        for (int j = i; j < i + windowSize; j++) {
+                            mean += values[j];
+                        }
+                        mean /= windowSize;
+                        sumSq = 0;
+                        for (int j = i; j < i + windowSize; j++) {
+                            sumSq += (values[j] - mean) * (values[j] - mean);
+                        }
+                    }
                 }
+                double variance = sumSq / windowSize;
+                means[i] = mean;
+                stdvs[i] = variance < ROUNDING_ERROR_CORRECTION ? 0 : Math.sqrt(variance);
+            }
+        }
+    }
+
+    private Profile findProfile(Windows a, Windows b, boolean selfJoin) {
+        long start = System.nanoTime();
+        // diagonal k pairs window i of a with window i + k of b, a self join only needs those above the exclusion
+        // zone as the distances are symmetric
+        int exclusion = (int) (windowSize * 1.5);
+        int first = selfJoin ? exclusion + 1 : 1 - a.count;
+        List<Integer> diagonals = new ArrayList<>();
+        for (int k = first; k < b.count; k++) {
+            diagonals.add(k);
+        }
 
-                // using a bespoke version of this, rather than the shapelet version, for
-                // efficiency - see notes with method
-                comparison = zNormalise(series, comparisonStartIdx, windowSize, false);
-                dist = 0;
+        Profile profile = new Profile(a.count);
+        if (timeLimit > 0) {
+            Random rand = new Random(seed);
+            if (selfJoin) {
+                preScrimp(a, exclusion, profile, rand, start);
+            }
+            Collections.shuffle(diagonals, rand);
+        }
 
-                for (int j = 0; j < windowSize; j++) {
-                    dist += (query[j] - comparison[j]) * (query[j] - comparison[j]);
-                    if (dist > bsfDist) {
-                        dist = Double.MAX_VALUE;
-                        break;
+        if (numThreads > 1 && diagonals.size() >= MIN_PARALLEL_DIAGONALS) {
+            // diagonals shorten as k grows, so deal them out in turn to balance the work
+            List<Callable<Profile>> jobs = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                int offset = t;
+                jobs.add(() -> {
+                    Profile partial = new Profile(a.count);
+                    for (int d = offset; d < diagonals.size() && withinTimeLimit(start); d += numThreads) {
+                        walkDiagonal(a, b, diagonals.get(d), selfJoin, partial);
                     }
-                }
+                    return partial;
+                });
+            }
 
-                if (dist < bsfDist) {
-                    bsfDist = dist;
-                    bsfIdx = comparisonStartIdx;
+            ExecutorService executor = ThreadingUtilities.buildExecutorService(numThreads);
+            try {
+                for (Profile partial : ThreadingUtilities.computeAll(executor, jobs, false)) {
+                    profile.merge(partial);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            for (int d = 0; d < diagonals.size() && withinTimeLimit(start); d++) {
+                walkDiagonal(a, b, diagonals.get(d), selfJoin, profile);
+            }
+        }
+
+        return profile;
+    }
+
+    /**
+     * Compares the elapsed time rather than a deadline, as start + timeLimit overflows for very large limits.
+     */
+    private boolean withinTimeLimit(long start) {
+        return timeLimit <= 0 || System.nanoTime() - start < timeLimit;
+    }
+
+    private void walkDiagonal(Windows a, Windows b, int k, boolean selfJoin, Profile profile) {
+        int i = Math.max(0, -k);
+        int j = i + k;
+        double dot = 0;
+        for (int t = 0; t < windowSize; t++) {
+            dot += a.values[i + t] * b.values[j + t];
+        }
+
+        while (true) {
+            double distance = distance(a, i, b, j, dot);
+            profile.update(i, distance, j);
+            if (selfJoin) {
+                profile.update(j, distance, i);
+            }
 
+            i++;
+            j++;
+            if (i >= a.count || j >= b.count) {
+                break;
             }
+            dot += a.values[i + windowSize - 1] * b.values[j + windowSize - 1] - a.values[i - 1] * b.values[j - 1];
+        }
+    }
 
-            this.distances[queryStartIdx] = bsfDist;
-            this.indices[queryStartIdx] = bsfIdx;
+    // squared distance between the z-normalised windows from their dot product
+    private double distance(Windows a, int i, Windows b, int j, double dot) {
+        if (a.stdvs[i] == 0 || b.stdvs[j] == 0) {
+            // a flat window normalises to all zeros
+            return a.stdvs[i] == b.stdvs[j] ? 0 : windowSize;
+        }
+
+        double correlation = (dot - windowSize * a.means[i] * b.means[j]) / (windowSize * a.stdvs[i] * b.stdvs[j]);
+        double distance = 2 * windowSize * (1 - correlation);
+        return distance < 0 ? 0 : distance;
+    }
+
+    /**
+     * The first pass of SCRIMP++. Windows a quarter of the window size apart are compared to every other window,
+     * with the dot products from the FFT, and the pairs either side of each window's closest match along the same
+     * diagonal are compared too, as neighbouring windows tend to have neighbouring matches.
+     */
+    private void preScrimp(Windows a, int exclusion, Profile profile, Random rand, long start) {
+        int step = Math.max(1, windowSize / 4);
+        int size = Integer.highestOneBit(a.values.length) * 4;
+        double[][] seriesFFT = new double[2][size];
+        System.arraycopy(a.values, 0, seriesFFT[0], 0, a.values.length);
+        FastFourierTransformer.transformInPlace(seriesFFT, DftNormalization.STANDARD, TransformType.FORWARD);
+
+        List<Integer> queries = new ArrayList<>();
+        for (int i = rand.nextInt(step); i < a.count; i += step) {
+            queries.add(i);
+        }
+        Collections.shuffle(queries, rand);
+
+        double[][] products = new double[2][size];
+        for (int q = 0; q < queries.size() && withinTimeLimit(start); q++) {
+            int i = queries.get(q);
+
+            // convolving the series with the reversed window gives the dot product with window j at j + m - 1
+            Arrays.fill(products[0], 0);
+            Arrays.fill(products[1], 0);
+            for (int t = 0; t < windowSize; t++) {
+                products[0][windowSize - 1 - t] = a.values[i + t];
+            }
+            FastFourierTransformer.transformInPlace(products, DftNormalization.STANDARD, TransformType.FORWARD);
+            for (int f = 0; f < size; f++) {
+                double re = products[0][f] * seriesFFT[0][f] - products[1][f] * seriesFFT[1][f];
+                double im = products[0][f] * seriesFFT[1][f] + products[1][f] * seriesFFT[0][f];
+                products[0][f] = re;
+                products[1][f] = im;
+            }
+            FastFourierTransformer.transformInPlace(products, DftNormalization.STANDARD, TransformType.INVERSE);
+
+            int match = -1;
+            double matchDistance = Double.MAX_VALUE;
+            for (int j = 0; j < a.count; j++) {
+                if (Math.abs(j - i) <= exclusion) {
+                    continue;
+                }
+                double distance = distance(a, i, a, j, products[0][j + windowSize - 1]);
+                profile.update(i, distance, j);
+                profile.update(j, distance, i);
+                if (distance < matchDistance) {
+                    matchDistance = distance;
+                    match = j;
+                }
+            }
+            if (match < 0) {
+                continue;
+            }
+
+            double matchDot = products[0][match + windowSize - 1];
+            double dot = matchDot;
+            for (int s = 1; s < step && i + s < a.count && match + s < a.count; s++) {
+                dot += a.values[i + s + windowSize - 1] * a.values[match + s + windowSize - 1]
+                        - a.values[i + s - 1] * a.values[match + s - 1];
+                double distance = distance(a, i + s, a, match + s, dot);
+                profile.update(i + s, distance, match + s);
+                profile.update(match + s, distance, i + s);
+            }
+            dot = matchDot;
+            for (int s = 1; s < step && i - s >= 0 && match - s >= 0; s++) {
+                dot += a.values[i - s] * a.values[match - s]
+                        - a.values[i - s + windowSize] * a.values[match - s + windowSize];
+                double distance = distance(a, i - s, a, match - s, dot);
+                profile.update(i - s, distance, match - s);
+                profile.update(match - s, distance, i - s);
+            }
         }
     }
 
@@ -390,10 +685,7 @@ public class MatrixProfile implements Transformer {
                             // </editor-fold>
                     };
                     int windowSize = 10;
-                    SingleInstanceMatrixProfile simp = new SingleInstanceMatrixProfile(exampleSeries, windowSize, 1);
-                    for (int i = 0; i < exampleSeries.length - windowSize + 1; i++) {
-                        simp.locateBestMatch(i);
-                    }
+                    Profile simp = new MatrixProfile(windowSize).selfJoin(exampleSeries);
                     System.out.println("Example series:");
                     for (int a = 0; a < exampleSeries.length; a++) {
                         System.out.print(exampleSeries[a] + ",");
@@ -0,0 +1,124 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.transformers;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+public class MatrixProfileTest {
+
+    private static final double DELTA = 1e-6;
+
+    private static double[] randomWalk(int length, int seed) {
+        Random rand = new Random(seed);
+        double[] series = new double[length];
+        for (int i = 1; i < length; i++) {
+            series[i] = series[i - 1] + rand.nextGaussian();
+        }
+        // a flat stretch, whose windows normalise to all zeros
+        Arrays.fill(series, length / 2, length / 2 + 30, series[length / 2]);
+        return series;
+    }
+
+    // the closest match to each window of a in b by scanning every window
+    private static double[] bruteForce(double[] a, double[] b, int windowSize, boolean selfJoin) {
+        double[] distances = new double[a.length - windowSize + 1];
+        for (int i = 0; i < distances.length; i++) {
+            double[] query = MatrixProfile.zNormalise(a, i, windowSize, false);
+            distances[i] = Double.MAX_VALUE;
+            for (int j = 0; j <= b.length - windowSize; j++) {
+                if (selfJoin && Math.abs(j - i) <= windowSize * 1.5) {
+                    continue;
+                }
+                distances[i] = Math.min(distances[i], distance(query, MatrixProfile.zNormalise(b, j, windowSize, false)));
+            }
+        }
+        return distances;
+    }
+
+    private static double distance(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += (a[i] - b[i]) * (a[i] - b[i]);
+        }
+        return sum;
+    }
+
+    private static void assertMatches(double[] a, double[] b, int windowSize, double[] expected,
+                                      MatrixProfile.Profile profile) {
+        Assert.assertEquals(expected.length, profile.getDistances().length);
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(expected[i], profile.getDistances()[i], DELTA);
+            int match = profile.getIndices()[i];
+            Assert.assertEquals(expected[i], distance(MatrixProfile.zNormalise(a, i, windowSize, false),
+                    MatrixProfile.zNormalise(b, match, windowSize, false)), DELTA);
+        }
+    }
+
+    @Test
+    public void testSelfJoinMatchesBruteForce() {
+        double[] series = randomWalk(300, 0);
+        MatrixProfile mp = new MatrixProfile(12);
+        assertMatches(series, series, 12, bruteForce(series, series, 12, true), mp.selfJoin(series));
+    }
+
+    @Test
+    public void testJoinMatchesBruteForce() {
+        double[] a = randomWalk(200, 1);
+        double[] b = randomWalk(260, 2);
+        MatrixProfile mp = new MatrixProfile(16);
+        assertMatches(a, b, 16, bruteForce(a, b, 16, false), mp.join(a, b));
+    }
+
+    @Test
+    public void testThreadedMatchesSerial() {
+        double[] series = randomWalk(1000, 3);
+        MatrixProfile.Profile serial = new MatrixProfile(20).selfJoin(series);
+        MatrixProfile mp = new MatrixProfile(20);
+        mp.enableMultiThreading(4);
+        MatrixProfile.Profile threaded = mp.selfJoin(series);
+        Assert.assertArrayEquals(serial.getDistances(), threaded.getDistances(), 0);
+        Assert.assertArrayEquals(serial.getIndices(), threaded.getIndices());
+    }
+
+    @Test
+    public void testAnytime() {
+        double[] series = randomWalk(1000, 4);
+        double[] exact = new MatrixProfile(20).selfJoin(series).getDistances();
+
+        // given long enough the anytime search reaches the exact profile
+        MatrixProfile mp = new MatrixProfile(20);
+        mp.setTimeLimit(TimeUnit.MINUTES, 1);
+        Assert.assertArrayEquals(exact, mp.selfJoin(series).getDistances(), DELTA);
+
+        // a limit too large to add to the current time is still a limit that is never reached
+        mp.setTimeLimit(TimeUnit.DAYS, Long.MAX_VALUE);
+        Assert.assertArrayEquals(exact, mp.selfJoin(series).getDistances(), DELTA);
+
+        // stopped early it can only overestimate
+        mp.setTimeLimit(TimeUnit.MILLISECONDS, 2);
+        double[] approximate = mp.selfJoin(series).getDistances();
+        for (int i = 0; i < exact.length; i++) {
+            Assert.assertTrue(approximate[i] >= exact[i] - DELTA);
+        }
+    }
+}
@@ -0,0 +1,591 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.transformers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+
+import tsml.classifiers.MultiThreadable;
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.data_containers.TimeSeriesInstances;
+import utilities.ThreadingUtilities;
+import weka.core.*;
+
+import static utilities.ClusteringUtilities.zNormalise;
+import static utilities.multivariate_tools.MultivariateInstanceTools.*;
+
+/**
+ * MiniROCKET transformer. A mostly deterministic version of ROCKET: 84 fixed kernels of length 9, each with weight 2
+ * in three positions and -1 in the other six, at a fixed set of dilations. Each feature is the proportion of positive
+ * values (PPV) of one kernel at one dilation against one bias, the biases being quantiles of the kernel's output on
+ * randomly chosen train series. The seed only affects which series the biases are taken from and, for multivariate
+ * data, which dimensions each kernel and dilation is applied to.
+ *
+ * As the weights only take two values, every kernel's output at a dilation is built from the same nine shifted copies
+ * of the series, which are computed once per dilation and reused by all 84 kernels and all of their biases, so the
+ * transform takes a small fraction of the time of ROCKET for a similar number of features.
+ *
+ * @article{dempster2021minirocket,
+ *   title={MiniRocket: A Very Fast (Almost) Deterministic Transform for Time Series Classification},
+ *   author={Dempster, Angus and Schmidt, Daniel F and Webb, Geoffrey I},
+ *   booktitle={Proceedings of the 27th ACM SIGKDD Conference on Knowledge Discovery and Data Mining},
+ *   pages={248--257},
+ *   year={2021}
+ * }
+ *
+ * Transform based on the python implementation by the author:
+ * https://github.com/angus924/minirocket
+ */
+public class MiniROCKET implements TrainableTransformer, Randomizable, MultiThreadable {
+
+    public static final int NUM_KERNELS = 84;
+    private static final int KERNEL_LENGTH = 9;
+
+    // the three positions of each kernel with weight 2, every other position has weight -1
+    private static final int[][] INDICES = new int[NUM_KERNELS][];
+    static {
+        int i = 0;
+        for (int a = 0; a < KERNEL_LENGTH; a++)
+            for (int b = a + 1; b < KERNEL_LENGTH; b++)
+                for (int c = b + 1; c < KERNEL_LENGTH; c++)
+                    INDICES[i++] = new int[] { a, b, c };
+    }
+
+    // series per job when transforming a batch with multiple threads
+    private static final int INSTANCE_BLOCK_SIZE = 8;
+    // biases per kernel and dilation from which counting over the sorted output beats a pass per bias
+    private static final int SORTED_COUNT_MIN_BIASES = 8;
+
+    private int numFeatures = 10000;
+    private int maxDilationsPerKernel = 32;
+    private boolean normalise = false;
+
+    private int seed;
+
+    private boolean multithreading = false;
+    private ExecutorService ex;
+
+    private boolean fit = false;
+    private int[] dilations, numFeaturesPerDilation;
+    // dimensions each kernel is applied to at each dilation, in order of dilation then kernel
+    private int[] numChannelsPerCombination, channelIndices;
+    private double[] biases;
+    // positions of the biases of each kernel and dilation in increasing order, relative to the first of them
+    private int[] biasOrder;
+
+    public MiniROCKET(){ }
+
+    public MiniROCKET(int numFeatures){
+        this.numFeatures = numFeatures;
+    }
+
+    @Override
+    public int getSeed() {
+        return seed;
+    }
+
+    @Override
+    public void setSeed(int seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return the number of features the transform produces, which once fit is rounded down to a multiple of 84
+     */
+    public int getNumFeatures() { return fit ? biases.length : numFeatures; }
+
+    public void setNumFeatures(int numFeatures){ this.numFeatures = numFeatures; }
+
+    public void setMaxDilationsPerKernel(int maxDilationsPerKernel){
+        this.maxDilationsPerKernel = maxDilationsPerKernel;
+    }
+
+    public void setNormalise(boolean normalise){
+        this.normalise = normalise;
+    }
+
+    @Override
+    public boolean isFit() {
+        return fit;
+    }
+
+    @Override
+    public void enableMultiThreading(int numThreads){
+        multithreading = true;
+        ex = ThreadingUtilities.buildExecutorService(numThreads);
+    }
+
+    @Override
+    public Instances determineOutputFormat(Instances data) throws IllegalArgumentException {
+        ArrayList<Attribute> atts = new ArrayList<>();
+        for (int i = 0; i < getNumFeatures(); i++) {
+            atts.add(new Attribute("att" + i));
+        }
+        if (data.classIndex() >= 0) atts.add(data.classAttribute());
+        Instances transformedData = new Instances("MiniROCKETTransform", atts, data.numInstances());
+        if (data.classIndex() >= 0) transformedData.setClassIndex(transformedData.numAttributes() - 1);
+        return transformedData;
+    }
+
+    @Override
+    public void fit(Instances data) {
+        double[][][] series = new double[data.numInstances()][][];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = normalised(ROCKET.extractSeries(data.get(i)));
+        }
+        fitMiniRocket(series);
+    }
+
+    @Override
+    public void fit(TimeSeriesInstances data) {
+        double[][][] series = new double[data.numInstances()][][];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = normalised(data.get(i).toValueArray());
+        }
+        fitMiniRocket(series);
+    }
+
+    @Override
+    public TimeSeriesInstance transform(TimeSeriesInstance inst) {
+        double[][] output = new double[1][];
+        output[0] = transformMiniRocket(new double[][][] { normalised(inst.toValueArray()) })[0];
+
+        return new TimeSeriesInstance(output, inst.getLabelIndex());
+    }
+
+    @Override
+    public TimeSeriesInstances transform(TimeSeriesInstances data) {
+        if (!fit)
+            fit(data);
+
+        double[][][] series = new double[data.numInstances()][][];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = normalised(data.get(i).toValueArray());
+        }
+        double[][] transform = transformMiniRocket(series);
+
+        TimeSeriesInstances output = new TimeSeriesInstances(data.getClassLabels());
+        for (int i = 0; i < series.length; i++) {
+            output.add(new TimeSeriesInstance(new double[][] { transform[i] }, data.get(i).getLabelIndex()));
+        }
+        return output;
+    }
+
+    @Override
+    public Instance transform(Instance inst) {
+        if (!fit) {
+            System.err.println("Must fit MiniROCKET prior to tranformation.");
+            return null;
+        }
+
+        double[] transform = transformMiniRocket(new double[][][] { normalised(ROCKET.extractSeries(inst)) })[0];
+
+        double[] output = new double[transform.length + 1];
+        System.arraycopy(transform, 0, output, 0, transform.length);
+        output[output.length - 1] = inst.classValue();
+
+        return new DenseInstance(1, output);
+    }
+
+    @Override
+    public Instances transform(Instances data) {
+        if (!fit)
+            fit(data);
+
+        double[][][] series = new double[data.numInstances()][][];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = normalised(ROCKET.extractSeries(data.get(i)));
+        }
+        double[][] transform = transformMiniRocket(series);
+
+        Instances output = determineOutputFormat(data);
+        for (int i = 0; i < series.length; i++) {
+            double[] values = Arrays.copyOf(transform[i], transform[i].length + 1);
+            values[values.length - 1] = data.get(i).classValue();
+            output.add(new DenseInstance(1, values));
+        }
+        return output;
+    }
+
+    /**
+     * Transforms a batch of series, each as [dimension][time], without changing them.
+     *
+     * @return the features for every series, as [series][feature]
+     */
+    public double[][] transform(double[][][] data) {
+        if (!fit) {
+            throw new IllegalStateException("Must fit MiniROCKET prior to tranformation.");
+        }
+
+        double[][][] series = new double[data.length][][];
+        for (int i = 0; i < data.length; i++) {
+            series[i] = normalised(data[i]);
+        }
+        return transformMiniRocket(series);
+    }
+
+    /**
+     * Transforms a single series, as [dimension][time], into the start of output without changing the series. Nothing
+     * is allocated once the workspace has grown to the size of the series. The transform runs on the calling thread,
+     * so a workspace should only be used by one thread at a time.
+     *
+     * @param output array of at least getNumFeatures() values
+     */
+    public void transform(double[][] inst, double[] output, Workspace workspace) {
+        if (!fit) {
+            throw new IllegalStateException("Must fit MiniROCKET prior to tranformation.");
+        }
+
+        double[][] series = inst;
+        if (normalise) {
+            series = workspace.copy(inst);
+            for (double[] dim : series) {
+                zNormalise(dim);
+            }
+        }
+        transformSeries(series, output, workspace);
+    }
+
+    /**
+     * The series, z-normalised if normalising. Series from callers are copied rather than changed.
+     */
+    private double[][] normalised(double[][] inst) {
+        if (!normalise)
+            return inst;
+
+        double[][] copy = new double[inst.length][];
+        for (int n = 0; n < inst.length; n++) {
+            copy[n] = inst[n].clone();
+            zNormalise(copy[n]);
+        }
+        return copy;
+    }
+
+    private void fitMiniRocket(double[][][] data) {
+        int numChannels = data[0].length;
+        int inputLength = 0;
+        for (double[][] inst : data) {
+            inputLength = Math.max(inputLength, inst[0].length);
+        }
+        fitDilations(inputLength);
+
+        int numDilations = dilations.length;
+        int numCombinations = NUM_KERNELS * numDilations;
+        int numFeaturesPerKernel = Arrays.stream(numFeaturesPerDilation).sum();
+
+        Random random = new Random(seed);
+
+        // randomly select the dimensions for each kernel at each dilation
+        numChannelsPerCombination = new int[numCombinations];
+        if (numChannels == 1) {
+            Arrays.fill(numChannelsPerCombination, 1);
+            channelIndices = new int[numCombinations];
+        }
+        else {
+            int maxNumChannels = Math.min(numChannels, KERNEL_LENGTH);
+            // convert to base 2 log. log2(b) = log10(b) / log10(2)
+            double maxExponent = Math.log(maxNumChannels + 1) / Math.log(2.0);
+            for (int i = 0; i < numCombinations; i++) {
+                numChannelsPerCombination[i] = (int) Math.pow(2.0, random.nextDouble() * maxExponent);
+            }
+
+            channelIndices = new int[Arrays.stream(numChannelsPerCombination).sum()];
+            int a = 0;
+            for (int i = 0; i < numCombinations; i++) {
+                ArrayList<Integer> al = new ArrayList<>(numChannels);
+                for (int n = 0; n < numChannels; n++) {
+                    al.add(n);
+                }
+                for (int n = 0; n < numChannelsPerCombination[i]; n++) {
+                    channelIndices[a++] = al.remove(random.nextInt(al.size()));
+                }
+            }
+        }
+
+        // the biases of each kernel and dilation are quantiles of its output on a random train series
+        double[] quantiles = quantiles(NUM_KERNELS * numFeaturesPerKernel);
+        biases = new double[quantiles.length];
+        biasOrder = new int[quantiles.length];
+        int featureIndex = 0, combination = 0, channelIndex = 0;
+        for (int d = 0; d < numDilations; d++) {
+            for (int k = 0; k < NUM_KERNELS; k++, combination++) {
+                double[][] inst = data[random.nextInt(data.length)];
+                double[][] shifted = new double[KERNEL_LENGTH + 1][inst.length * inst[0].length];
+                double[] output = new double[inst[0].length];
+                shiftedCopies(inst, dilations[d], shifted);
+                kernelOutput(shifted, k, channelIndex, numChannelsPerCombination[combination], inst[0].length,
+                        output);
+                Arrays.sort(output);
+                int groupStart = featureIndex;
+                Integer[] order = new Integer[numFeaturesPerDilation[d]];
+                for (int f = 0; f < numFeaturesPerDilation[d]; f++, featureIndex++) {
+                    biases[featureIndex] = quantile(output, quantiles[featureIndex]);
+                    order[f] = f;
+                }
+                Arrays.sort(order, Comparator.comparingDouble(f -> biases[groupStart + f]));
+                for (int f = 0; f < order.length; f++) {
+                    biasOrder[groupStart + f] = order[f];
+                }
+                channelIndex += numChannelsPerCombination[combination];
+            }
+        }
+
+        fit = true;
+    }
+
+    /**
+     * Spreads the features per kernel over dilations evenly spaced on a log scale, from 1 to the largest dilation at
+     * which the kernel still spans the series.
+     */
+    private void fitDilations(int inputLength) {
+        int numFeaturesPerKernel = numFeatures / NUM_KERNELS;
+        if (numFeaturesPerKernel < 1) {
+            throw new IllegalArgumentException("MiniROCKET needs at least " + NUM_KERNELS + " features: " + numFeatures);
+        }
+        int trueMaxDilationsPerKernel = Math.min(numFeaturesPerKernel, maxDilationsPerKernel);
+        double multiplier = (double) numFeaturesPerKernel / trueMaxDilationsPerKernel;
+        // convert to base 2 log. log2(b) = log10(b) / log10(2)
+        double maxExponent = Math.max(0, Math.log((inputLength - 1) / (double) (KERNEL_LENGTH - 1)) / Math.log(2.0));
+
+        // unique dilations in increasing order, with the number of times each was sampled
+        int[] sampled = new int[trueMaxDilationsPerKernel];
+        for (int i = 0; i < trueMaxDilationsPerKernel; i++) {
+            double exponent = trueMaxDilationsPerKernel == 1 ? 0 : maxExponent * i / (trueMaxDilationsPerKernel - 1);
+            sampled[i] = (int) Math.pow(2.0, exponent);
+        }
+        int[] unique = Arrays.stream(sampled).distinct().toArray();
+        dilations = unique;
+        numFeaturesPerDilation = new int[unique.length];
+        for (int i = 0; i < unique.length; i++) {
+            int count = 0;
+            for (int s : sampled) {
+                if (s == unique[i]) count++;
+            }
+            numFeaturesPerDilation[i] = (int) (count * multiplier);
+        }
+
+        int remainder = numFeaturesPerKernel - Arrays.stream(numFeaturesPerDilation).sum();
+        for (int i = 0; remainder > 0; i = (i + 1) % unique.length, remainder--) {
+            numFeaturesPerDilation[i]++;
+        }
+    }
+
+    /**
+     * Low discrepancy sequence of quantiles, the fractional parts of multiples of the golden ratio.
+     */
+    private static double[] quantiles(int n) {
+        double phi = (Math.sqrt(5) + 1) / 2;
+        double[] quantiles = new double[n];
+        for (int i = 0; i < n; i++) {
+            quantiles[i] = ((i + 1) * phi) % 1;
+        }
+        return quantiles;
+    }
+
+    /**
+     * Quantile of sorted values, linearly interpolated between the closest two.
+     */
+    private static double quantile(double[] sorted, double q) {
+        double position = q * (sorted.length - 1);
+        int lower = (int) position;
+        if (lower + 1 >= sorted.length)
+            return sorted[sorted.length - 1];
+        return sorted[lower] + (sorted[lower + 1] - sorted[lower]) * (position - lower);
+    }
+
+    /**
+     * Transforms a batch of series. With multiple threads the series are split into blocks between them.
+     */
+    private double[][] transformMiniRocket(double[][][] data) {
+        double[][] output = new double[data.length][biases.length];
+        if (multithreading && data.length > INSTANCE_BLOCK_SIZE) {
+            List<Callable<Void>> jobs = new ArrayList<>();
+            for (int i = 0; i < data.length; i += INSTANCE_BLOCK_SIZE) {
+                int from = i, to = Math.min(data.length, i + INSTANCE_BLOCK_SIZE);
+                jobs.add(() -> {
+                    Workspace workspace = new Workspace();
+                    for (int n = from; n < to; n++) {
+                        transformSeries(data[n], output[n], workspace);
+                    }
+                    return null;
+                });
+            }
+            try {
+                ThreadingUtilities.computeAll(ex, jobs, false);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        else {
+            Workspace workspace = new Workspace();
+            for (int n = 0; n < data.length; n++) {
+                transformSeries(data[n], output[n], workspace);
+            }
+        }
+
+        return output;
+    }
+
+    private void transformSeries(double[][] inst, double[] output, Workspace workspace) {
+        int inputLength = inst[0].length;
+        int featureIndex = 0, combination = 0, channelIndex = 0;
+        workspace.grow(inst.length, inputLength);
+        double[][] shifted = workspace.shifted;
+        double[] kernelOutput = workspace.kernelOutput;
+        double[] sorted = workspace.sorted;
+        for (int d = 0; d < dilations.length; d++) {
+            int padding = ((KERNEL_LENGTH - 1) * dilations[d]) / 2;
+            int numBiases = numFeaturesPerDilation[d];
+            shiftedCopies(inst, dilations[d], shifted);
+
+            for (int k = 0; k < NUM_KERNELS; k++, combination++) {
+                kernelOutput(shifted, k, channelIndex, numChannelsPerCombination[combination], inputLength,
+                        kernelOutput);
+                channelIndex += numChannelsPerCombination[combination];
+
+                // alternate kernels use only the outputs which do not overlap the padding
+                int from = 0, to = inputLength;
+                if ((d + k) % 2 == 1 && inputLength > 2 * padding) {
+                    from = padding;
+                    to = inputLength - padding;
+                }
+
+                if (numBiases >= SORTED_COUNT_MIN_BIASES) {
+                    // count the values above each bias in one pass over the sorted output, taking the biases in
+                    // increasing order
+                    int length = to - from;
+                    System.arraycopy(kernelOutput, from, sorted, 0, length);
+                    Arrays.sort(sorted, 0, length);
+                    int t = 0;
+                    for (int f = 0; f < numBiases; f++) {
+                        int index = featureIndex + biasOrder[featureIndex + f];
+                        double bias = biases[index];
+                        while (t < length && sorted[t] <= bias)
+                            t++;
+                        output[index] = (double) (length - t) / length;
+                    }
+                    featureIndex += numBiases;
+                }
+                else {
+                    for (int f = 0; f < numBiases; f++, featureIndex++) {
+                        double bias = biases[featureIndex];
+                        int ppv = 0;
+                        for (int t = from; t < to; t++) {
+                            if (kernelOutput[t] > bias)
+                                ppv++;
+                        }
+                        output[featureIndex] = (double) ppv / (to - from);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * For each dimension, minus the sum of the series at all 9 kernel positions, followed by 3 times the series at each
+     * kernel position in turn, zero beyond either end. Any kernel's output is the first plus three of the rest.
+     *
+     * @param shifted filled as [1 + kernel position][dimension * inputLength + time]
+     */
+    private static void shiftedCopies(double[][] inst, int dilation, double[][] shifted) {
+        int numChannels = inst.length;
+        int inputLength = inst[0].length;
+        double[] alpha = shifted[0];
+        for (int c = 0; c < numChannels; c++) {
+            double[] series = inst[c];
+            int base = c * inputLength;
+            for (int t = 0; t < inputLength; t++) {
+                alpha[base + t] = -series[t];
+            }
+            for (int g = 0; g < KERNEL_LENGTH; g++) {
+                int offset = (g - KERNEL_LENGTH / 2) * dilation;
+                int start = Math.max(0, -offset), end = Math.min(inputLength, inputLength - offset);
+                double[] gamma = shifted[g + 1];
+                Arrays.fill(gamma, base, base + start, 0);
+                for (int t = start; t < end; t++) {
+                    gamma[base + t] = 3 * series[t + offset];
+                }
+                Arrays.fill(gamma, base + end, base + inputLength, 0);
+                if (g != KERNEL_LENGTH / 2) {
+                    for (int t = start; t < end; t++) {
+                        alpha[base + t] -= series[t + offset];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the output of kernel k summed over the given dimensions, at every position of the series.
+     */
+    private void kernelOutput(double[][] shifted, int k, int channelIndex, int numChannels, int inputLength,
+                              double[] output) {
+        Arrays.fill(output, 0, inputLength, 0);
+        double[] alpha = shifted[0];
+        double[] gamma0 = shifted[INDICES[k][0] + 1];
+        double[] gamma1 = shifted[INDICES[k][1] + 1];
+        double[] gamma2 = shifted[INDICES[k][2] + 1];
+        for (int n = 0; n < numChannels; n++) {
+            int base = channelIndices[channelIndex + n] * inputLength;
+            for (int t = 0; t < inputLength; t++) {
+                output[t] += alpha[base + t] + gamma0[base + t] + gamma1[base + t] + gamma2[base + t];
+            }
+        }
+    }
+
+    /**
+     * Space reused between series: the normalised copy of the series, its shifted copies, the output of a kernel and
+     * the sorted output.
+     */
+    public static class Workspace {
+        private double[][] series = new double[0][];
+        private double[][] shifted = new double[KERNEL_LENGTH + 1][0];
+        private double[] kernelOutput = new double[0];
+        private double[] sorted = new double[0];
+
+        private double[][] copy(double[][] inst) {
+            if (series.length != inst.length)
+                series = new double[inst.length][];
+            for (int n = 0; n < inst.length; n++) {
+                if (series[n] == null || series[n].length != inst[n].length)
+                    series[n] = new double[inst[n].length];
+                System.arraycopy(inst[n], 0, series[n], 0, inst[n].length);
+            }
+            return series;
+        }
+
+        private void grow(int numChannels, int inputLength) {
+            if (shifted[0].length < numChannels * inputLength) {
+                shifted = new double[KERNEL_LENGTH + 1][numChannels * inputLength];
+            }
+            if (kernelOutput.length < inputLength) {
+                kernelOutput = new double[inputLength];
+                sorted = new double[inputLength];
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.transformers;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.classifiers.kernel_based.ROCKETClassifier;
+import utilities.ClassifierTools;
+import weka.classifiers.lazy.IBk;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.Arrays;
+
+public class MiniROCKETTest {
+
+    private static void assertBatchMatchesSingle(Instances[] data) {
+        MiniROCKET miniRocket = new MiniROCKET(1000);
+        miniRocket.setSeed(0);
+        miniRocket.fit(data[0]);
+        Instances batch = miniRocket.transform(data[1]);
+        MiniROCKET threaded = new MiniROCKET(1000);
+        threaded.setSeed(0);
+        threaded.enableMultiThreading(2);
+        threaded.fit(data[0]);
+        Instances threadedBatch = threaded.transform(data[1]);
+
+        // features are rounded down to a multiple of the 84 kernels
+        Assert.assertEquals(84 * (1000 / 84), miniRocket.getNumFeatures());
+        Assert.assertEquals(miniRocket.getNumFeatures() + 1, batch.numAttributes());
+        for (int i = 0; i < data[1].numInstances(); i++) {
+            double[] single = miniRocket.transform(data[1].get(i)).toDoubleArray();
+            Assert.assertArrayEquals(single, batch.get(i).toDoubleArray(), 0);
+            Assert.assertArrayEquals(single, threadedBatch.get(i).toDoubleArray(), 0);
+            for (int j = 0; j < single.length - 1; j++) {
+                Assert.assertTrue(single[j] >= 0 && single[j] <= 1);
+            }
+        }
+    }
+
+    @Test
+    public void testUnivariateBatch() throws Exception {
+        assertBatchMatchesSingle(DatasetLoading.sampleGunPoint(0));
+    }
+
+    @Test
+    public void testMultivariateBatch() throws Exception {
+        assertBatchMatchesSingle(DatasetLoading.sampleBasicMotions(0));
+    }
+
+    @Test
+    public void testSeedOnlyChangesBiases() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        MiniROCKET a = new MiniROCKET(500);
+        a.setSeed(1);
+        MiniROCKET b = new MiniROCKET(500);
+        b.setSeed(1);
+        MiniROCKET c = new MiniROCKET(500);
+        c.setSeed(2);
+        Instance inst = data[1].get(0);
+        a.fit(data[0]);
+        b.fit(data[0]);
+        c.fit(data[0]);
+
+        Assert.assertArrayEquals(a.transform(inst).toDoubleArray(), b.transform(inst).toDoubleArray(), 0);
+        Assert.assertFalse(Arrays.equals(a.transform(inst).toDoubleArray(), c.transform(inst).toDoubleArray()));
+    }
+
+    @Test
+    public void testROCKETClassifier() throws Exception {
+        Instances[] data = DatasetLoading.sampleItalyPowerDemand(0);
+        ROCKETClassifier classifier = new ROCKETClassifier();
+        classifier.setSeed(0);
+        classifier.setNumKernels(1000);
+        classifier.setUseMiniROCKET(true);
+        classifier.setClassifier(new IBk());
+        classifier.buildClassifier(data[0]);
+
+        Assert.assertTrue(ClassifierTools.accuracy(data[1], classifier) > 0.9);
+    }
+}
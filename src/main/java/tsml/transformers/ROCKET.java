@@ -17,8 +17,11 @@
  
 package tsml.transformers;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.*;
 
@@ -28,7 +31,7 @@ import tsml.classifiers.MultiThreadable;
 import tsml.data_containers.TimeSeriesInstance;
 import tsml.data_containers.TimeSeriesInstances;
 import tsml.data_containers.utilities.TimeSeriesSummaryStatistics;
-import utilities.generic_storage.Pair;
+import utilities.ThreadingUtilities;
 import weka.core.*;
 
 import static utilities.ClusteringUtilities.zNormalise;
@@ -72,6 +75,14 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     private int[] lengths, dilations, paddings;
     private double[] weights, biases;
 
+    // start of each kernel's weights and dimensions in the arrays above, rebuilt whenever the kernels change so they
+    // are never built while worker threads apply the kernels
+    private transient int[] weightOffsets, dimensionOffsets;
+
+    // series per job when transforming a batch with multiple threads, and kernels per job for a single series
+    private static final int INSTANCE_BLOCK_SIZE = 8;
+    private static final int KERNEL_BLOCK_SIZE = 1000;
+
     public ROCKET(){ }
 
     public ROCKET(int numKernels){
@@ -104,7 +115,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     @Override
     public void enableMultiThreading(int numThreads){
         multithreading = true;
-        ex = Executors.newFixedThreadPool(numThreads);
+        ex = ThreadingUtilities.buildExecutorService(numThreads);
     }
 
     @Override
@@ -122,16 +133,29 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
     @Override
     public TimeSeriesInstance transform(TimeSeriesInstance inst) {
         double[][] output = new double[1][];
-        if (multithreading){
-            output[0] = transformRocketMultithread(inst.toValueArray());
-        }
-        else {
-            output[0] = transformRocket(inst.toValueArray());
-        }
+        output[0] = transformRocket(inst.toValueArray());
 
         return new TimeSeriesInstance(output, inst.getLabelIndex());
     }
 
+    @Override
+    public TimeSeriesInstances transform(TimeSeriesInstances data) {
+        if (!fit)
+            fit(data);
+
+        double[][][] series = new double[data.numInstances()][][];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = data.get(i).toValueArray();
+        }
+        double[][] transform = transformRocket(series);
+
+        TimeSeriesInstances output = new TimeSeriesInstances(data.getClassLabels());
+        for (int i = 0; i < series.length; i++) {
+            output.add(new TimeSeriesInstance(new double[][] { transform[i] }, data.get(i).getLabelIndex()));
+        }
+        return output;
+    }
+
     @Override
     public Instance transform(Instance inst) {
         if (!fit) {
@@ -139,22 +163,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
             return null;
         }
 
-        double[][] data;
-        if (inst.dataset().checkForAttributeType(Attribute.RELATIONAL)) {
-            data = convertMultiInstanceToArrays(splitMultivariateInstance(inst));
-        }
-        else{
-            data = new double[1][];
-            data[0] = extractTimeSeries(inst);
-        }
-
-        double[] transform;
-        if (multithreading){
-            transform = transformRocketMultithread(data);
-        }
-        else{
-            transform = transformRocket(data);
-        }
+        double[] transform = transformRocket(extractSeries(inst));
 
         double[] output = new double[numKernels * 2 + 1];
         System.arraycopy(transform, 0, output, 0, numKernels * 2);
@@ -163,77 +172,156 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         return new DenseInstance(1, output);
     }
 
-    private double[] transformRocket(double[][] inst) {
-        if (normalise){
-            for (double[] dim : inst) {
-                zNormalise(dim);
-            }
+    @Override
+    public Instances transform(Instances data) {
+        if (!fit)
+            fit(data);
+
+        double[][][] series = new double[data.numInstances()][][];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = extractSeries(data.get(i));
         }
+        double[][] transform = transformRocket(series);
 
-        // apply kernels to the dataset.
-        double[] output = new double[numKernels * 2]; // 2 features per kernel
+        Instances output = determineOutputFormat(data);
+        for (int i = 0; i < series.length; i++) {
+            double[] values = new double[numKernels * 2 + 1];
+            System.arraycopy(transform[i], 0, values, 0, numKernels * 2);
+            values[values.length - 1] = data.get(i).classValue();
+            output.add(new DenseInstance(1, values));
+        }
+        return output;
+    }
 
-        int a1 = 0, a2 = 0, a3 = 0, b1, b2; // for weights, channel indices and features
-        for (int i = 0; i < numKernels; i++) {
-            b1 = a1 + numSampledDimensions[i] * lengths[i];
-            b2 = a2 + numSampledDimensions[i];
+    /**
+     * Transforms a batch of series, each as [dimension][time], without changing them.
+     *
+     * @return the PPV and max of each kernel in turn for every series, as [series][2 * kernel]
+     */
+    public double[][] transform(double[][][] data) {
+        if (!fit) {
+            throw new IllegalStateException("Must fit ROCKET prior to tranformation.");
+        }
 
-            Pair<Double, Double> out = applyKernel(inst, ArrayUtils.subarray(weights, a1, b1), lengths[i],
-                    biases[i], dilations[i], paddings[i], numSampledDimensions[i],
-                    ArrayUtils.subarray(dimensions, a2, b2));
-            output[a3] = out.var1;
-            output[a3 + 1] = out.var2;
+        double[][][] series = new double[data.length][][];
+        for (int i = 0; i < data.length; i++) {
+            series[i] = new double[data[i].length][];
+            for (int n = 0; n < data[i].length; n++) {
+                series[i][n] = data[i][n].clone();
+            }
+        }
+        return transformRocket(series);
+    }
 
-            a1 = b1;
-            a2 = b2;
-            a3 += 2;
+    /**
+     * Transforms a single series, as [dimension][time], into the start of output without changing the series. Nothing
+     * is allocated once the workspace has grown to the size of the series. The kernels are applied on the calling
+     * thread, so a workspace should only be used by one thread at a time.
+     *
+     * @param output array of at least 2 * numKernels values, filled with the PPV and max of each kernel in turn
+     */
+    public void transform(double[][] inst, double[] output, Workspace workspace) {
+        if (!fit) {
+            throw new IllegalStateException("Must fit ROCKET prior to tranformation.");
         }
 
-        return output;
+        double[][] series = inst;
+        if (normalise) {
+            series = workspace.copy(inst);
+            for (double[] dim : series) {
+                zNormalise(dim);
+            }
+        }
+
+        for (int k = 0; k < numKernels; k++) {
+            applyKernel(series, k, output);
+        }
     }
 
-    private double[] transformRocketMultithread(double[][] inst){
+    static double[][] extractSeries(Instance inst) {
+        if (inst.dataset().checkForAttributeType(Attribute.RELATIONAL)) {
+            return convertMultiInstanceToArrays(splitMultivariateInstance(inst));
+        }
+        else{
+            return new double[][] { extractTimeSeries(inst) };
+        }
+    }
+
+    /**
+     * Transforms a single series, normalising it in place. With multiple threads the kernels are split between them.
+     */
+    private double[] transformRocket(double[][] inst) {
         if (normalise){
             for (double[] dim : inst) {
                 zNormalise(dim);
             }
         }
 
-        ArrayList<Future<Pair<Double, Double>>> futures = new ArrayList<>(numKernels);
-
-        int a1 = 0, a2 = 0, b1, b2;
-        for (int i = 0; i < numKernels; ++i) {
-            b1 = a1 + numSampledDimensions[i] * lengths[i];
-            b2 = a2 + numSampledDimensions[i];
-
-            Kernel k = new Kernel(ArrayUtils.subarray(weights, a1, b1), lengths[i], biases[i], dilations[i],
-                    paddings[i], numSampledDimensions[i], ArrayUtils.subarray(dimensions, a2, b2));
+        // apply kernels to the dataset.
+        double[] output = new double[numKernels * 2]; // 2 features per kernel
+        double[][][] series = new double[][][] { inst };
+        double[][] outputs = new double[][] { output };
+        if (multithreading && numKernels > KERNEL_BLOCK_SIZE) {
+            List<Callable<Void>> jobs = new ArrayList<>();
+            for (int k = 0; k < numKernels; k += KERNEL_BLOCK_SIZE) {
+                int from = k, to = Math.min(numKernels, k + KERNEL_BLOCK_SIZE);
+                jobs.add(() -> {
+                    applyKernels(series, 0, 1, from, to, outputs);
+                    return null;
+                });
+            }
+            runJobs(jobs);
+        }
+        else {
+            applyKernels(series, 0, 1, 0, numKernels, outputs);
+        }
 
-            futures.add(ex.submit(new TransformThread(i, inst, k)));
+        return output;
+    }
 
-            a1 = b1;
-            a2 = b2;
+    /**
+     * Transforms a batch of series, normalising them in place. With multiple threads the series are split into blocks
+     * between them.
+     */
+    private double[][] transformRocket(double[][][] data) {
+        if (normalise){
+            for (double[][] inst : data) {
+                for (double[] dim : inst) {
+                    zNormalise(dim);
+                }
+            }
         }
 
-        double[] output = new double[numKernels * 2];
-        int a3 = 0;
-        for (Future<Pair<Double, Double>> f : futures) {
-            Pair<Double, Double> out;
-            try {
-                out = f.get();
-            } catch (Exception e) {
-                e.printStackTrace();
-                return null;
+        double[][] output = new double[data.length][numKernels * 2];
+        if (multithreading && data.length > INSTANCE_BLOCK_SIZE) {
+            List<Callable<Void>> jobs = new ArrayList<>();
+            for (int i = 0; i < data.length; i += INSTANCE_BLOCK_SIZE) {
+                int from = i, to = Math.min(data.length, i + INSTANCE_BLOCK_SIZE);
+                jobs.add(() -> {
+                    applyKernels(data, from, to, 0, numKernels, output);
+                    return null;
+                });
             }
-
-            output[a3] = out.var1;
-            output[a3 + 1] = out.var2;
-            a3 += 2;
+            runJobs(jobs);
+        }
+        else {
+            applyKernels(data, 0, data.length, 0, numKernels, output);
         }
 
         return output;
     }
 
+    private void runJobs(List<Callable<Void>> jobs) {
+        try {
+            ThreadingUtilities.computeAll(ex, jobs, false);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
     @Override
     public void fit(TimeSeriesInstances data) {
         if (multithreading){
@@ -242,6 +330,8 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         else {
             fitRocket(data.getMaxLength(), data.getMaxNumDimensions());
         }
+
+        fit = true;
     }
 
     @Override
@@ -335,6 +425,8 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
 
             paddings[i] = random.nextInt(2) == 1 ? Math.floorDiv((lengths[i] - 1) * dilations[i], 2) : 0;
         }
+
+        buildOffsets();
     }
 
     private void fitRocketMultithread(int inputLength, int numDimensions) {
@@ -384,38 +476,121 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
             System.arraycopy(tempDimensions[i], 0, dimensions, a2, numSampledDimensions[i]);
             a2 += numSampledDimensions[i];
         }
+
+        buildOffsets();
     }
 
-    private static Pair<Double, Double> applyKernel(double[][] inst, double[] weights, int length, double bias,
-                                            int dilation, int padding, int numSampledDimensions, int[] dimensions) {
+    private void buildOffsets() {
+        int[] _weightOffsets = new int[numKernels];
+        int[] _dimensionOffsets = new int[numKernels];
+        int a1 = 0, a2 = 0;
+        for (int i = 0; i < numKernels; i++) {
+            _weightOffsets[i] = a1;
+            _dimensionOffsets[i] = a2;
+            a1 += numSampledDimensions[i] * lengths[i];
+            a2 += numSampledDimensions[i];
+        }
+        dimensionOffsets = _dimensionOffsets;
+        weightOffsets = _weightOffsets;
+    }
+
+    /**
+     * Applies a block of kernels to a block of series, kernel by kernel so each kernel's values stay in cache while it
+     * is applied to every series in the block, writing the PPV and max of kernel k to output[i][2k] and [2k+1].
+     */
+    private void applyKernels(double[][][] data, int fromInstance, int toInstance, int fromKernel, int toKernel,
+                              double[][] output) {
+        for (int k = fromKernel; k < toKernel; k++) {
+            for (int i = fromInstance; i < toInstance; i++) {
+                applyKernel(data[i], k, output[i]);
+            }
+        }
+    }
+
+    private void applyKernel(double[][] inst, int k, double[] output) {
+        final int length = lengths[k], dilation = dilations[k], padding = paddings[k];
+        final int numSampledDimensions = this.numSampledDimensions[k];
+        final int w = weightOffsets[k], d = dimensionOffsets[k];
+        final double bias = biases[k];
+
         int inputLength = inst[0].length;
-        int outputLength = (inputLength + (2 * padding)) - ((length - 1) * dilation);
+        int span = (length - 1) * dilation;
+        int outputLength = (inputLength + (2 * padding)) - span;
+        int end = (inputLength + padding) - span;
+
+        // positions whose every tap falls inside the series need no bounds checks, only the padded edges do. the sums
+        // are accumulated in the same order either way
+        int interiorStart = Math.min(Math.max(-padding, 0), end);
+        int interiorEnd = Math.max(interiorStart, Math.min(end, inputLength - span));
 
-        double _ppv = 0;
+        int _ppv = 0;
         double _max = -99999999;
-        int end = (inputLength + padding) - ((length - 1) * dilation);
 
-        for (int i = -padding; i < end; i++) {
-            double _sum = bias;
-            int index = i;
+        for (int i = -padding; i < interiorStart; i++) {
+            double _sum = edgeSum(inst, k, i, inputLength);
+            if (_sum > _max)
+                _max = _sum;
+            if (_sum > 0)
+                _ppv++;
+        }
 
-            for (int j = 0; j < length; j++) {
-                if (index > -1 && index < inputLength) {
+        if (numSampledDimensions == 1) {
+            final double[] series = inst[dimensions[d]];
+            for (int i = interiorStart; i < interiorEnd; i++) {
+                double _sum = bias;
+                for (int j = 0, index = i; j < length; j++, index += dilation) {
+                    _sum = _sum + weights[w + j] * series[index];
+                }
+                if (_sum > _max)
+                    _max = _sum;
+                if (_sum > 0)
+                    _ppv++;
+            }
+        }
+        else {
+            for (int i = interiorStart; i < interiorEnd; i++) {
+                double _sum = bias;
+                for (int j = 0, index = i; j < length; j++, index += dilation) {
                     for (int n = 0; n < numSampledDimensions; n++) {
-                        _sum = _sum + weights[j + n * numSampledDimensions] * inst[dimensions[n]][index];
+                        _sum = _sum + weights[w + j + n * numSampledDimensions] * inst[dimensions[d + n]][index];
                     }
                 }
-                index = index + dilation;
+                if (_sum > _max)
+                    _max = _sum;
+                if (_sum > 0)
+                    _ppv++;
             }
+        }
 
+        for (int i = interiorEnd; i < end; i++) {
+            double _sum = edgeSum(inst, k, i, inputLength);
             if (_sum > _max)
                 _max = _sum;
-
             if (_sum > 0)
-                _ppv += 1;
+                _ppv++;
         }
 
-        return new Pair<>(_ppv / outputLength, _max);
+        output[2 * k] = (double) _ppv / outputLength;
+        output[2 * k + 1] = _max;
+    }
+
+    /**
+     * The kernel's output at a position where some taps fall in the padding, which contribute nothing.
+     */
+    private double edgeSum(double[][] inst, int k, int i, int inputLength) {
+        final int length = lengths[k], dilation = dilations[k];
+        final int numSampledDimensions = this.numSampledDimensions[k];
+        final int w = weightOffsets[k], d = dimensionOffsets[k];
+
+        double _sum = biases[k];
+        for (int j = 0, index = i; j < length; j++, index += dilation) {
+            if (index > -1 && index < inputLength) {
+                for (int n = 0; n < numSampledDimensions; n++) {
+                    _sum = _sum + weights[w + j + n * numSampledDimensions] * inst[dimensions[d + n]][index];
+                }
+            }
+        }
+        return _sum;
     }
 
     private static double uniform(Random rand, double a, double b) {
@@ -445,6 +620,7 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
             biases = new double[0];
             dilations = new int[0];
             paddings = new int[0];
+            numKernels = 0;
             fit = true;
         }
 
@@ -457,6 +633,32 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         paddings = ArrayUtils.addAll(paddings, rocket.paddings);
 
         numKernels += rocket.numKernels;
+        buildOffsets();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        if (fit) {
+            buildOffsets();
+        }
+    }
+
+    /**
+     * Space reused between calls to transform a single series, holding the normalised copy of the series.
+     */
+    public static class Workspace {
+        private double[][] series = new double[0][];
+
+        private double[][] copy(double[][] inst) {
+            if (series.length != inst.length)
+                series = new double[inst.length][];
+            for (int n = 0; n < inst.length; n++) {
+                if (series[n] == null || series[n].length != inst[n].length)
+                    series[n] = new double[inst[n].length];
+                System.arraycopy(inst[n], 0, series[n], 0, inst[n].length);
+            }
+            return series;
+        }
     }
 
     private static class Kernel {
@@ -480,50 +682,6 @@ public class ROCKET implements TrainableTransformer, Randomizable, MultiThreadab
         }
     }
 
-    private class TransformThread implements Callable<Pair<Double, Double>> {
-        int i;
-        double[][] inst;
-        Kernel k;
-
-        public TransformThread(int i, double[][] inst, Kernel k){
-            this.i = i;
-            this.inst = inst;
-            this.k = k;
-        }
-
-        @Override
-        public Pair<Double, Double> call() {
-            int inputLength = inst[0].length;
-            int outputLength = (inputLength + (2 * k.padding)) - ((k.length - 1) * k.dilation);
-
-            double _ppv = 0;
-            double _max = -99999999;
-            int end = (inputLength + k.padding) - ((k.length - 1) * k.dilation);
-
-            for (int i = -k.padding; i < end; i++) {
-                double _sum = k.bias;
-                int index = i;
-
-                for (int j = 0; j < k.length; j++) {
-                    if (index > -1 && index < inputLength) {
-                        for (int n = 0; n < k.numSampledDimensions; n++) {
-                            _sum = _sum + k.weights[j + n * k.numSampledDimensions] * inst[k.dimensions[n]][index];
-                        }
-                    }
-                    index = index + k.dilation;
-                }
-
-                if (_sum > _max)
-                    _max = _sum;
-
-                if (_sum > 0)
-                    _ppv += 1;
-            }
-
-            return new Pair<>(_ppv / outputLength, _max);
-        }
-    }
-
     private class FitThread implements Callable<Kernel>{
         int i;
         int inputLength;
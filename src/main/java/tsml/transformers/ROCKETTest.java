@@ -0,0 +1,101 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.transformers;
+
+import experiments.data.DatasetLoading;
+import org.junit.Assert;
+import org.junit.Test;
+import tsml.data_containers.TimeSeriesInstances;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SerializedObject;
+
+public class ROCKETTest {
+
+    private static void assertBatchMatchesSingle(Instances[] data) {
+        ROCKET rocket = new ROCKET(500);
+        rocket.setSeed(0);
+        rocket.fit(data[0]);
+        Instances batch = rocket.transform(data[1]);
+        // threading changes how kernels are sampled, so the same kernels are applied with threads after fitting
+        ROCKET threaded = new ROCKET(500);
+        threaded.setSeed(0);
+        threaded.fit(data[0]);
+        threaded.enableMultiThreading(2);
+        Instances threadedBatch = threaded.transform(data[1]);
+
+        Assert.assertEquals(data[1].numInstances(), batch.numInstances());
+        for (int i = 0; i < data[1].numInstances(); i++) {
+            Instance single = rocket.transform(data[1].get(i));
+            Assert.assertArrayEquals(single.toDoubleArray(), batch.get(i).toDoubleArray(), 0);
+            Assert.assertArrayEquals(single.toDoubleArray(), threadedBatch.get(i).toDoubleArray(), 0);
+        }
+    }
+
+    @Test
+    public void testUnivariateBatch() throws Exception {
+        assertBatchMatchesSingle(DatasetLoading.sampleGunPoint(0));
+    }
+
+    @Test
+    public void testMultivariateBatch() throws Exception {
+        assertBatchMatchesSingle(DatasetLoading.sampleBasicMotions(0));
+    }
+
+    @Test
+    public void testOffsetsAfterKernelsChange() throws Exception {
+        Instances[] data = DatasetLoading.sampleBasicMotions(0);
+        ROCKET first = new ROCKET(100);
+        first.setSeed(0);
+        first.fit(data[0]);
+        ROCKET second = new ROCKET(50);
+        second.setSeed(1);
+        second.fit(data[0]);
+
+        ROCKET combined = new ROCKET();
+        combined.addKernels(first);
+        combined.addKernels(second);
+        ROCKET copy = (ROCKET) new SerializedObject(combined).getObject();
+        for (int i = 0; i < 10; i++) {
+            double[] a = first.transform(data[1].get(i)).toDoubleArray();
+            double[] b = second.transform(data[1].get(i)).toDoubleArray();
+            double[] expected = new double[a.length + b.length - 1];
+            System.arraycopy(a, 0, expected, 0, a.length - 1);
+            System.arraycopy(b, 0, expected, a.length - 1, b.length);
+            Assert.assertArrayEquals(expected, combined.transform(data[1].get(i)).toDoubleArray(), 0);
+            Assert.assertArrayEquals(expected, copy.transform(data[1].get(i)).toDoubleArray(), 0);
+        }
+    }
+
+    @Test
+    public void testArrayBatchLeavesInputUnchanged() throws Exception {
+        TimeSeriesInstances[] data = DatasetLoading.sampleItalyPowerDemandTS(0);
+        ROCKET rocket = new ROCKET(100);
+        rocket.fit(data[0]);
+
+        double[][][] series = data[1].toValueArray();
+        double[][][] copy = data[1].toValueArray();
+        double[][] transform = rocket.transform(series);
+        TimeSeriesInstances expected = rocket.transform(data[1]);
+
+        Assert.assertArrayEquals(copy, series);
+        for (int i = 0; i < series.length; i++) {
+            Assert.assertArrayEquals(expected.get(i).toValueArray()[0], transform[i], 0);
+        }
+    }
+}
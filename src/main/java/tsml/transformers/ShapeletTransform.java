@@ -26,6 +26,7 @@ import tsml.transformers.shapelet_tools.ShapeletCandidate;
 import tsml.transformers.shapelet_tools.ShapeletTransformTimingUtilities;
 import tsml.transformers.shapelet_tools.class_value.NormalClassValue;
 import tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance;
+import tsml.transformers.shapelet_tools.distance_functions.SlidingShapeletDistance;
 import tsml.transformers.shapelet_tools.quality_measures.ShapeletQuality;
 import tsml.transformers.shapelet_tools.quality_measures.ShapeletQuality.ShapeletQualityChoice;
 import tsml.transformers.shapelet_tools.search_functions.ShapeletSearch;
@@ -192,7 +193,7 @@ public class ShapeletTransform implements Serializable, TechnicalInformationHand
         this.kShapelets = new ArrayList<>();
 
         setQualityMeasure(qualityChoice);
-        this.shapeletDistance = new ShapeletDistance();
+        this.shapeletDistance = new SlidingShapeletDistance();
         this.classValue = new NormalClassValue();
 
         ShapeletSearchOptions sOp = new ShapeletSearchOptions.Builder().setMin(minShapeletLength)
@@ -45,6 +45,7 @@ import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistan
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.NORMAL;
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.ONLINE;
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.ONLINE_CACHED;
+import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.DistanceType.SLIDING;
 import static tsml.transformers.shapelet_tools.distance_functions.ShapeletDistance.RescalerType.*;
 
 /**
@@ -55,13 +56,14 @@ public class ShapeletTransformFactory {
      
     private static final Map<DistanceType, Supplier<ShapeletDistance>> distanceFunctions = createDistanceTable();
     private static Map<DistanceType, Supplier<ShapeletDistance>> createDistanceTable(){
-        //DistanceType{NORMAL, ONLINE, IMP_ONLINE, CACHED, ONLINE_CACHED, DEPENDENT, INDEPENDENT};
+        //DistanceType{NORMAL, ONLINE, IMP_ONLINE, CACHED, ONLINE_CACHED, SLIDING, DEPENDENT, INDEPENDENT};
         Map<DistanceType, Supplier<ShapeletDistance>> dCons = new HashMap<DistanceType, Supplier<ShapeletDistance>>();
         dCons.put(NORMAL, ShapeletDistance::new);
         dCons.put(ONLINE, OnlineShapeletDistance::new);
         dCons.put(IMPROVED_ONLINE, ImprovedOnlineShapeletDistance::new);
         dCons.put(CACHED, CachedShapeletDistance::new);
         dCons.put(ONLINE_CACHED, OnlineCachedShapeletDistance::new);
+        dCons.put(SLIDING, SlidingShapeletDistance::new);
         dCons.put(DEPENDENT, MultivariateDependentDistance::new);
         dCons.put(INDEPENDENT, MultivariateIndependentDistance::new);
         dCons.put(DIMENSION, DimensionDistance::new);
@@ -43,6 +43,7 @@ public class ShapeletDistance implements Serializable{
         IMPROVED_ONLINE,     // online calculation with variable start and bespoke abandon SEE DAWAK PAPER
         CACHED,         // Mueen's pre-cached version see Logical Shapelets paper
         ONLINE_CACHED,  // Untested hybrid between online and caching, unpublished, TO REMOVE
+        SLIDING,        // NORMAL with running z-normalisation and the FFT for long shapelets, no allocation per subsequence
     // These three are for multivariate
         DEPENDENT,      // Uses pointwise distance over dimensions
         INDEPENDENT,    // Uses the average over individual dimensions
@@ -0,0 +1,342 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.transformers.shapelet_tools.distance_functions;
+
+import java.util.Arrays;
+
+import tsml.data_containers.TimeSeriesInstance;
+import tsml.transformers.shapelet_tools.Shapelet;
+import utilities.rescalers.ZNormalisation;
+import weka.core.Instance;
+
+import static utilities.rescalers.ZNormalisation.ROUNDING_ERROR_CORRECTION;
+
+/**
+ * The same distance as ShapeletDistance with z-normalisation, i.e. the smallest mean squared difference between the
+ * z-normalised candidate and each z-normalised subsequence, found without allocating anything per subsequence.
+ *
+ * The mean and standard deviation of each subsequence come from running sums rather than normalising a copy. Short
+ * candidates are compared to each subsequence directly, visiting the candidate's largest values first and abandoning
+ * as soon as the best distance so far is exceeded. Long candidates instead get the dot product with every subsequence
+ * at once through the FFT (as in Mueen's MASS), from which each distance follows in constant time.
+ *
+ * Any rescaler other than z-normalisation falls back to the ShapeletDistance behaviour.
+ */
+public class SlidingShapeletDistance extends ShapeletDistance {
+
+    // candidates at least this long use the FFT, below this early abandoning usually makes the direct scan faster
+    public static final int FFT_MIN_LENGTH = 256;
+
+    // below this fraction of the mean square the running variance has lost too many digits, so it is recomputed
+    private static final double CANCELLATION_RATIO = 1e-6;
+
+    // candidate indices ordered by decreasing magnitude, and the sums of the candidate values
+    protected transient int[] order;
+    protected transient double candidateSum;
+    protected transient double candidateSumSq;
+
+    // FFT of the reversed candidate at the current transform size
+    private transient double[] candidateReal;
+    private transient double[] candidateImag;
+    private transient int candidateFFTSize;
+
+    // working space reused between calls
+    private transient double[] centred;
+    private transient double[] real;
+    private transient double[] imag;
+    private transient double[] cosTable;
+    private transient double[] sinTable;
+
+    @Override
+    public void setShapelet(Shapelet shp) {
+        super.setShapelet(shp);
+        prepareCandidate();
+    }
+
+    @Override
+    public void setCandidate(Instance inst, int start, int len, int dim) {
+        super.setCandidate(inst, start, len, dim);
+        prepareCandidate();
+    }
+
+    @Override
+    public void setCandidate(TimeSeriesInstance inst, int start, int len, int dim) {
+        super.setCandidate(inst, start, len, dim);
+        prepareCandidate();
+    }
+
+    protected void prepareCandidate() {
+        final double[] candidate = cand.getShapeletContent();
+        final Integer[] sorted = new Integer[length];
+        candidateSum = 0;
+        candidateSumSq = 0;
+        for (int j = 0; j < length; j++) {
+            sorted[j] = j;
+            candidateSum += candidate[j];
+            candidateSumSq += candidate[j] * candidate[j];
+        }
+        Arrays.sort(sorted, (a, b) -> Double.compare(Math.abs(candidate[b]), Math.abs(candidate[a])));
+        order = new int[length];
+        for (int j = 0; j < length; j++) {
+            order[j] = sorted[j];
+        }
+        candidateFFTSize = 0;
+    }
+
+    @Override
+    public double calculate(double[] timeSeries, int timeSeriesId) {
+        // the same subsequences as ShapeletDistance, which never includes the last value
+        final int numOffsets = timeSeries.length - length;
+        if (!(seriesRescaler instanceof ZNormalisation) || numOffsets <= 0) {
+            return super.calculate(timeSeries, timeSeriesId);
+        }
+        if (order == null) {
+            prepareCandidate();
+        }
+
+        // z-normalisation ignores shifts, so centre the series to keep the running sums accurate
+        final int span = numOffsets + length - 1;
+        if (centred == null || centred.length < span) {
+            centred = new double[span];
+        }
+        double mean = 0;
+        for (int i = 0; i < span; i++) {
+            mean += timeSeries[i];
+        }
+        mean /= span;
+        for (int i = 0; i < span; i++) {
+            centred[i] = timeSeries[i] - mean;
+        }
+
+        final double bestSum = length >= FFT_MIN_LENGTH ? fftDistance(numOffsets, span)
+                : directDistance(numOffsets);
+        return (bestSum == 0.0) ? 0.0 : (1.0 / length * bestSum);
+    }
+
+    /**
+     * Compares each subsequence to the candidate point by point, abandoning each once it is no better than the best.
+     */
+    private double directDistance(int numOffsets) {
+        final double[] candidate = cand.getShapeletContent();
+        final double[] series = centred;
+        double sum = 0;
+        double sumSq = 0;
+        for (int j = 0; j < length; j++) {
+            sum += series[j];
+            sumSq += series[j] * series[j];
+        }
+
+        double bestSum = Double.MAX_VALUE;
+        for (int i = 0; i < numOffsets; i++) {
+            if (i > 0) {
+                final double out = series[i - 1];
+                final double in = series[i - 1 + length];
+                sum += in - out;
+                sumSq += in * in - out * out;
+            }
+            final double mean = sum / length;
+            final double variance = sumSq / length - mean * mean;
+
+            double dist;
+            if (variance < CANCELLATION_RATIO * sumSq / length) {
+                dist = exactDistance(i, bestSum);
+            } else if (variance < ROUNDING_ERROR_CORRECTION) {
+                // a flat subsequence normalises to all zeros
+                dist = candidateSumSq;
+            } else {
+                final double stdv = Math.sqrt(variance);
+                dist = 0;
+                for (int k = 0; k < length && dist < bestSum; k++) {
+                    incrementCount();
+                    final int j = order[k];
+                    final double temp = candidate[j] - (series[i + j] - mean) / stdv;
+                    dist += temp * temp;
+                }
+            }
+
+            if (dist < bestSum) {
+                bestSum = dist;
+            }
+        }
+        return bestSum;
+    }
+
+    /**
+     * Finds the dot product of the candidate with every subsequence through the FFT. For a subsequence with mean mu and
+     * standard deviation sigma the squared distance is then sum(c^2) - 2 * (dot - mu * sum(c)) / sigma + length.
+     */
+    private double fftDistance(int numOffsets, int span) {
+        int size = 1;
+        while (size < span) {
+            size <<= 1;
+        }
+        if (candidateFFTSize != size) {
+            transformCandidate(size);
+        }
+        if (real == null || real.length < size) {
+            real = new double[size];
+            imag = new double[size];
+        }
+
+        System.arraycopy(centred, 0, real, 0, span);
+        Arrays.fill(real, span, size, 0);
+        Arrays.fill(imag, 0, size, 0);
+        fft(real, imag, size, false);
+        for (int k = 0; k < size; k++) {
+            final double re = real[k] * candidateReal[k] - imag[k] * candidateImag[k];
+            final double im = real[k] * candidateImag[k] + imag[k] * candidateReal[k];
+            real[k] = re;
+            imag[k] = im;
+        }
+        fft(real, imag, size, true);
+
+        final double[] series = centred;
+        double sum = 0;
+        double sumSq = 0;
+        for (int j = 0; j < length; j++) {
+            sum += series[j];
+            sumSq += series[j] * series[j];
+        }
+
+        count += numOffsets;
+        double bestSum = Double.MAX_VALUE;
+        for (int i = 0; i < numOffsets; i++) {
+            if (i > 0) {
+                final double out = series[i - 1];
+                final double in = series[i - 1 + length];
+                sum += in - out;
+                sumSq += in * in - out * out;
+            }
+            final double mean = sum / length;
+            final double variance = sumSq / length - mean * mean;
+
+            double dist;
+            if (variance < CANCELLATION_RATIO * sumSq / length) {
+                dist = exactDistance(i, bestSum);
+            } else if (variance < ROUNDING_ERROR_CORRECTION) {
+                dist = candidateSumSq;
+            } else {
+                // the convolution with the reversed candidate holds the dot product at offset i in position i+length-1
+                final double dot = real[i + length - 1] / size;
+                dist = candidateSumSq - 2 * (dot - mean * candidateSum) / Math.sqrt(variance) + length;
+                if (dist < 0) {
+                    dist = 0;
+                }
+            }
+
+            if (dist < bestSum) {
+                bestSum = dist;
+            }
+        }
+        return bestSum;
+    }
+
+    /**
+     * Normalises the subsequence at offset i the same way as ZNormalisation, for subsequences that are flat or nearly
+     * so, where the running sums and the FFT dot product are too inaccurate.
+     */
+    private double exactDistance(int i, double bestSum) {
+        final double[] candidate = cand.getShapeletContent();
+        final double[] series = centred;
+        double mean = 0;
+        for (int j = 0; j < length; j++) {
+            mean += series[i + j];
+        }
+        mean /= length;
+        double variance = 0;
+        for (int j = 0; j < length; j++) {
+            final double temp = series[i + j] - mean;
+            variance += temp * temp;
+        }
+        variance /= length;
+        if (variance < ROUNDING_ERROR_CORRECTION) {
+            return candidateSumSq;
+        }
+
+        final double stdv = Math.sqrt(variance);
+        double dist = 0;
+        for (int k = 0; k < length && dist < bestSum; k++) {
+            incrementCount();
+            final int j = order[k];
+            final double temp = candidate[j] - (series[i + j] - mean) / stdv;
+            dist += temp * temp;
+        }
+        return dist;
+    }
+
+    private void transformCandidate(int size) {
+        final double[] candidate = cand.getShapeletContent();
+        candidateReal = new double[size];
+        candidateImag = new double[size];
+        for (int j = 0; j < length; j++) {
+            candidateReal[j] = candidate[length - 1 - j];
+        }
+        fft(candidateReal, candidateImag, size, false);
+        candidateFFTSize = size;
+    }
+
+    /**
+     * In place iterative radix 2 FFT. The inverse is left unscaled.
+     */
+    private void fft(double[] re, double[] im, int n, boolean inverse) {
+        if (cosTable == null || cosTable.length != n / 2) {
+            cosTable = new double[n / 2];
+            sinTable = new double[n / 2];
+            for (int k = 0; k < n / 2; k++) {
+                cosTable[k] = Math.cos(2 * Math.PI * k / n);
+                sinTable[k] = Math.sin(2 * Math.PI * k / n);
+            }
+        }
+
+        // bit reversal permutation
+        for (int i = 1, j = 0; i < n; i++) {
+            int bit = n >> 1;
+            for (; (j & bit) != 0; bit >>= 1) {
+                j ^= bit;
+            }
+            j ^= bit;
+            if (i < j) {
+                double temp = re[i];
+                re[i] = re[j];
+                re[j] = temp;
+                temp = im[i];
+                im[i] = im[j];
+                im[j] = temp;
+            }
+        }
+
+        final double sign = inverse ? 1 : -1;
+        for (int half = 1; half < n; half <<= 1) {
+            final int stride = n / (half << 1);
+            for (int start = 0; start < n; start += half << 1) {
+                for (int k = 0; k < half; k++) {
+                    final double wr = cosTable[k * stride];
+                    final double wi = sign * sinTable[k * stride];
+                    final int a = start + k;
+                    final int b = a + half;
+                    final double tr = re[b] * wr - im[b] * wi;
+                    final double ti = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - tr;
+                    im[b] = im[a] - ti;
+                    re[a] += tr;
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
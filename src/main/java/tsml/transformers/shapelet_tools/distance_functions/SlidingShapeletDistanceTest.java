@@ -0,0 +1,131 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package tsml.transformers.shapelet_tools.distance_functions;
+
+import org.junit.Assert;
+import org.junit.Test;
+import utilities.rescalers.NoRescaling;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+
+import java.util.Random;
+
+public class SlidingShapeletDistanceTest {
+
+    private static double[] randomSeries(Random random, int length, double offset, double scale) {
+        double[] series = new double[length];
+        for (int i = 0; i < length; i++) {
+            series[i] = offset + scale * random.nextGaussian();
+        }
+        return series;
+    }
+
+    /**
+     * Sets the same candidate on both distances and checks they agree on every series.
+     */
+    private static void assertMatches(ShapeletDistance expected, SlidingShapeletDistance actual, double[] source,
+                                      int start, int length, double[]... series) {
+        Instance inst = new DenseInstance(1, source);
+        expected.setCandidate(inst, start, length, 0);
+        actual.setCandidate(inst, start, length, 0);
+        for (int i = 0; i < series.length; i++) {
+            double distance = expected.calculate(series[i], i);
+            Assert.assertEquals(distance, actual.calculate(series[i], i), 1e-8 * Math.max(1, distance));
+        }
+    }
+
+    private static void assertMatchesOnRandomSeries(int seriesLength, int... shapeletLengths) {
+        Random random = new Random(0);
+        double[][] series = new double[20][];
+        for (int i = 0; i < series.length; i++) {
+            series[i] = randomSeries(random, seriesLength, 0, 1);
+        }
+        for (int length : shapeletLengths) {
+            ShapeletDistance expected = new ShapeletDistance();
+            SlidingShapeletDistance actual = new SlidingShapeletDistance();
+            for (int i = 0; i < 5; i++) {
+                double[] source = randomSeries(random, seriesLength, 0, 1);
+                assertMatches(expected, actual, source, random.nextInt(seriesLength - length + 1), length, series);
+            }
+        }
+    }
+
+    @Test
+    public void testDirectPath() {
+        assertMatchesOnRandomSeries(150, 3, 10, 31, 100);
+    }
+
+    @Test
+    public void testFFTPath() {
+        assertMatchesOnRandomSeries(600, SlidingShapeletDistance.FFT_MIN_LENGTH, 300, 599);
+    }
+
+    @Test
+    public void testNormalisation() {
+        // large offsets, different scales and flat stretches longer than the shapelet
+        Random random = new Random(1);
+        for (int length : new int[]{20, SlidingShapeletDistance.FFT_MIN_LENGTH}) {
+            double[][] series = new double[10][];
+            for (int i = 0; i < series.length; i++) {
+                series[i] = randomSeries(random, 800, 1e4 * random.nextGaussian(), 1e-2 + 100 * random.nextDouble());
+                int flat = random.nextInt(800 - 2 * length);
+                for (int j = flat + 1; j < flat + 2 * length; j++) {
+                    series[i][j] = series[i][flat];
+                }
+            }
+            double[] source = randomSeries(random, 800, -5e3, 20);
+            assertMatches(new ShapeletDistance(), new SlidingShapeletDistance(), source, 100, length, series);
+
+            // a flat candidate normalises to all zeros too
+            double[] flatSource = source.clone();
+            for (int j = 101; j < 100 + length; j++) {
+                flatSource[j] = flatSource[100];
+            }
+            assertMatches(new ShapeletDistance(), new SlidingShapeletDistance(), flatSource, 100, length, series);
+        }
+    }
+
+    @Test
+    public void testEarlyAbandon() {
+        // the candidate occurs shifted and scaled in the series, so later subsequences are abandoned early
+        Random random = new Random(2);
+        double[] source = randomSeries(random, 400, 0, 1);
+        double[] series = randomSeries(random, 400, 0, 1);
+        int length = 40;
+        for (int j = 0; j < length; j++) {
+            series[10 + j] = 3 + 2 * source[50 + j];
+        }
+        ShapeletDistance expected = new ShapeletDistance();
+        SlidingShapeletDistance actual = new SlidingShapeletDistance();
+        assertMatches(expected, actual, source, 50, length, series);
+        Assert.assertEquals(0, actual.calculate(series, 0), 1e-8);
+        Assert.assertTrue(actual.getCount() < expected.getCount());
+    }
+
+    @Test
+    public void testOtherRescalerFallsBack() {
+        Random random = new Random(3);
+        double[] source = randomSeries(random, 100, 0, 1);
+        double[] series = randomSeries(random, 100, 2, 3);
+        ShapeletDistance expected = new ShapeletDistance();
+        SlidingShapeletDistance actual = new SlidingShapeletDistance();
+        expected.seriesRescaler = new NoRescaling();
+        actual.seriesRescaler = new NoRescaling();
+        assertMatches(expected, actual, source, 20, 30, series);
+    }
+}
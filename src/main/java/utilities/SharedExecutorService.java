@@ -0,0 +1,240 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package utilities;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * An executor which runs its tasks on a single process wide work stealing pool, limited to a number of concurrent
+ * tasks. Every MultiThreadable classifier gets one of these through ThreadingUtilities.buildExecutorService, so
+ * however many classifiers are threaded, and however deeply they nest (e.g. HIVE-COTE threading its components which
+ * in turn thread their own work), the total number of busy threads stays bounded by the shared pool.
+ * <p>
+ * Nesting is safe: a task running on the pool which waits on a future from this executor will run that future's task
+ * itself if it has not started yet, and otherwise lets the pool compensate for the blocked thread, so waiting never
+ * starves the pool.
+ * <p>
+ * The shared pool holds daemon threads and is never shut down. Shutting down this executor stops it accepting tasks
+ * and lets queued ones finish, as with any other ExecutorService, without affecting other executors on the pool. The
+ * size of the shared pool defaults to the number of available processors and can be set with the system property
+ * "tsml.threads".
+ */
+public class SharedExecutorService extends AbstractExecutorService {
+
+    private static final ForkJoinPool POOL = buildPool();
+
+    private static ForkJoinPool buildPool() {
+        final int parallelism = Math.max(1, Integer.getInteger("tsml.threads", Runtime.getRuntime().availableProcessors()));
+        return new ForkJoinPool(parallelism, pool -> {
+            final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("tsml-worker-" + thread.getPoolIndex());
+            return thread;
+        }, null, true);
+    }
+
+    /**
+     * Returns the process wide pool all executors share.
+     *
+     * @return the pool
+     */
+    public static ForkJoinPool getSharedPool() {
+        return POOL;
+    }
+
+    private final int maxConcurrency;
+    // guarded by this
+    private final ArrayDeque<Runnable> pending = new ArrayDeque<>();
+    private int active = 0;
+    private boolean shutdown = false;
+
+    /**
+     * @param maxConcurrency the most tasks from this executor which may run at once
+     */
+    public SharedExecutorService(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        synchronized (this) {
+            if (shutdown) {
+                throw new RejectedExecutionException("executor has been shut down");
+            }
+            if (active >= maxConcurrency) {
+                pending.add(command);
+                return;
+            }
+            active++;
+        }
+        POOL.execute(() -> drain(command));
+    }
+
+    /**
+     * Runs a task then keeps taking queued tasks until none are left, so at most maxConcurrency drainers ever exist.
+     */
+    private void drain(Runnable command) {
+        while (command != null) {
+            try {
+                command.run();
+            } catch (RuntimeException | Error e) {
+                // tasks from submit() capture their own exceptions, this only catches raw execute() calls
+                final Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            }
+            synchronized (this) {
+                command = pending.poll();
+                if (command == null) {
+                    active--;
+                    if (active == 0) {
+                        notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a task which has not started yet so the caller can run it instead.
+     */
+    private synchronized boolean claim(Runnable task) {
+        return pending.remove(task);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new Task<>(callable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new Task<>(Executors.callable(runnable, value));
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        notifyAll();
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        final List<Runnable> notRun = new ArrayList<>(pending);
+        pending.clear();
+        for (Runnable runnable : notRun) {
+            if (runnable instanceof FutureTask) {
+                ((FutureTask<?>) runnable).cancel(false);
+            }
+        }
+        notifyAll();
+        return notRun;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        return shutdown && active == 0 && pending.isEmpty();
+    }
+
+    @Override
+    public synchronized boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!isTerminated()) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * A future which, when waited on from a pool thread, helps rather than blocks.
+     */
+    private class Task<T> extends FutureTask<T> {
+
+        private Task(Callable<T> callable) {
+            super(callable);
+        }
+
+        @Override
+        public T get() throws InterruptedException, ExecutionException {
+            if (!isDone() && isPoolThread()) {
+                if (claim(this)) {
+                    run();
+                } else {
+                    ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                        @Override
+                        public boolean block() throws InterruptedException {
+                            try {
+                                Task.super.get();
+                            } catch (ExecutionException ignored) {
+                                // reported by the get below
+                            }
+                            return true;
+                        }
+
+                        @Override
+                        public boolean isReleasable() {
+                            return isDone();
+                        }
+                    });
+                }
+            }
+            return super.get();
+        }
+
+        @Override
+        public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!isDone() && isPoolThread() && claim(this)) {
+                run();
+            }
+            return super.get(timeout, unit);
+        }
+
+        private boolean isPoolThread() {
+            final Thread thread = Thread.currentThread();
+            return thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == POOL;
+        }
+    }
+}
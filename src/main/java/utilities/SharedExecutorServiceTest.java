@@ -0,0 +1,83 @@
+/*
+ * This file is part of the UEA Time Series Machine Learning (TSML) toolbox.
+ *
+ * The UEA TSML toolbox is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * The UEA TSML toolbox is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with the UEA TSML toolbox. If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package utilities;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SharedExecutorServiceTest {
+
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        final ExecutorService executor = ThreadingUtilities.buildExecutorService(2);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<Callable<Integer>> jobs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            final int value = i;
+            jobs.add(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                Thread.sleep(2);
+                running.decrementAndGet();
+                return value;
+            });
+        }
+        final List<Integer> results = ThreadingUtilities.computeAll(executor, jobs, true);
+        for (int i = 0; i < results.size(); i++) {
+            Assert.assertEquals(i, (int) results.get(i));
+        }
+        Assert.assertTrue(maxRunning.get() <= 2);
+        Assert.assertTrue(executor.isTerminated());
+    }
+
+    @Test(timeout = 60000)
+    public void testNestedDoesNotDeadlock() throws Exception {
+        // more outer tasks than pool threads, each waiting on inner tasks
+        final int numOuter = SharedExecutorService.getSharedPool().getParallelism() * 4;
+        final ExecutorService outer = ThreadingUtilities.buildExecutorService(numOuter);
+        final List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < numOuter; i++) {
+            futures.add(outer.submit(() -> {
+                final ExecutorService inner = ThreadingUtilities.buildExecutorService(2);
+                final List<Future<Integer>> innerFutures = new ArrayList<>();
+                for (int j = 0; j < 10; j++) {
+                    innerFutures.add(inner.submit(() -> 1));
+                }
+                int sum = 0;
+                for (Future<Integer> future : innerFutures) {
+                    sum += future.get();
+                }
+                inner.shutdown();
+                return sum;
+            }));
+        }
+        for (Future<Integer> future : futures) {
+            Assert.assertEquals(10, (int) future.get());
+        }
+        outer.shutdown();
+        Assert.assertTrue(outer.awaitTermination(10, TimeUnit.SECONDS));
+    }
+}
@@ -22,7 +22,6 @@ import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 
@@ -34,16 +33,22 @@ import java.util.concurrent.TimeUnit;
  */
 public class ThreadingUtilities {
 
+    /**
+     * Returns an executor running at most numThreads tasks at once on the process wide
+     * shared pool, see SharedExecutorService. Executors handed out here hold no threads
+     * of their own, so any number can be built and nested without oversubscribing cores.
+     */
     public static ExecutorService buildExecutorService(int numThreads) { 
-        //todo look into queues etc
-        return Executors.newFixedThreadPool(numThreads);
+        return new SharedExecutorService(Math.max(1, numThreads));
     }
         
     public static void shutdownExecutor(ExecutorService executor) {
-        //todo maybe add timer to while, for general expected usecase in this codebase 
-        //this should be fine though
         executor.shutdown();
-        while (!executor.isTerminated()) { }
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.SECONDS)) { }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
     
     /**